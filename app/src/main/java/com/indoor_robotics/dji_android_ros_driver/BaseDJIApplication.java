@@ -15,6 +15,7 @@ package com.indoor_robotics.dji_android_ros_driver;
 import android.app.Application;
 import android.content.Context;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
@@ -35,7 +36,7 @@ public class BaseDJIApplication extends Application {
 
     public static final String FLAG_CONNECTION_CHANGE = "uilibrary_demo_connection_change";
 
-    private static BaseProduct mProduct;
+    private static final ProductRegistry productRegistry = new ProductRegistry();
     private Handler mHandler;
     private DJISDKManager.SDKManagerCallback mDJISDKManagerCallback;
     private BaseProduct.BaseProductListener mDJIBaseProductListener;
@@ -59,11 +60,15 @@ public class BaseDJIApplication extends Application {
      * This function is used to get the instance of DJIBaseProduct.
      * If no product is connected, it returns null.
      */
-    public static synchronized BaseProduct getProductInstance() {
-        if (null == mProduct) {
-            mProduct = DJISDKManager.getInstance().getProduct();
-        }
-        return mProduct;
+    public static BaseProduct getProductInstance() {
+        return productRegistry.get().product;
+    }
+
+    /**
+     * @return the registry of the connected product and its components, updated by the SDK listeners
+     */
+    public static ProductRegistry getProductRegistry() {
+        return productRegistry;
     }
 
     @Override
@@ -71,17 +76,6 @@ public class BaseDJIApplication extends Application {
         super.onCreate();
         mHandler = new Handler(Looper.getMainLooper());
 
-        //Check the permissions before registering the application for android system 6.0 above.
-        int permissionCheck = ContextCompat.checkSelfPermission(getApplicationContext(), android.Manifest.permission.WRITE_EXTERNAL_STORAGE);
-        int permissionCheck2 = ContextCompat.checkSelfPermission(getApplicationContext(), android.Manifest.permission.READ_PHONE_STATE);
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || (permissionCheck == 0 && permissionCheck2 == 0)) {
-
-            //This is used to start SDK services and initiate SDK.
-            DJISDKManager.getInstance().registerApp(getApplicationContext(), mDJISDKManagerCallback);
-        } else {
-            Toast.makeText(getApplicationContext(), "Please check if the permission is granted.", Toast.LENGTH_LONG).show();
-        }
-
         /**
          * When starting SDK services, an instance of interface DJISDKManager.DJISDKManagerCallback will be used to listen to
          * the SDK Registration result and the product changing.
@@ -120,10 +114,10 @@ public class BaseDJIApplication extends Application {
             @Override
             public void onProductChange(BaseProduct oldProduct, BaseProduct newProduct) {
 
-                mProduct = newProduct;
-                if(mProduct != null) {
-                    mProduct.setBaseProductListener(mDJIBaseProductListener);
+                if(newProduct != null) {
+                    newProduct.setBaseProductListener(mDJIBaseProductListener);
                 }
+                productRegistry.update(newProduct);
 
                 notifyStatusChange();
             }
@@ -137,12 +131,14 @@ public class BaseDJIApplication extends Application {
                 if(newComponent != null) {
                     newComponent.setComponentListener(mDJIComponentListener);
                 }
+                productRegistry.refresh();
                 notifyStatusChange();
             }
 
             @Override
             public void onConnectivityChange(boolean isConnected) {
 
+                productRegistry.refresh();
                 notifyStatusChange();
             }
 
@@ -152,11 +148,36 @@ public class BaseDJIApplication extends Application {
 
             @Override
             public void onConnectivityChange(boolean isConnected) {
+                productRegistry.refresh();
                 notifyStatusChange();
             }
 
         };
 
+        // the listeners above must exist before the registration, the SDK keeps the callback it is given
+        registerApp();
+    }
+
+    /**
+     * Registers the application with the SDK off the main thread, so the registration (a network round trip to DJI)
+     * and the startup of the ROS nodes run concurrently. The product connection starts from onRegister().
+     */
+    private void registerApp() {
+        //Check the permissions before registering the application for android system 6.0 above.
+        int permissionCheck = ContextCompat.checkSelfPermission(getApplicationContext(), android.Manifest.permission.WRITE_EXTERNAL_STORAGE);
+        int permissionCheck2 = ContextCompat.checkSelfPermission(getApplicationContext(), android.Manifest.permission.READ_PHONE_STATE);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || (permissionCheck == 0 && permissionCheck2 == 0)) {
+
+            //This is used to start SDK services and initiate SDK.
+            AsyncTask.execute(new Runnable() {
+                @Override
+                public void run() {
+                    DJISDKManager.getInstance().registerApp(getApplicationContext(), mDJISDKManagerCallback);
+                }
+            });
+        } else {
+            Toast.makeText(getApplicationContext(), "Please check if the permission is granted.", Toast.LENGTH_LONG).show();
+        }
     }
 
     private void loginAccount(){
@@ -0,0 +1,82 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.message.MessageListener;
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+
+/**
+ * Measures the clock offset and round trip to the ROS host with sensor_msgs/TimeReference ping/echo messages.
+ * Each run publishes a ping stamped with the phone wall time; the echo node on the host (ClockEchoNode of the
+ * udp_relay module) answers with its own time in the header stamp and the ping stamp copied into time_ref, so no
+ * state is kept here between the two. Pings carry the node name as source, so several drivers can share the topics.
+ * The phone clock is the same as RosTime's, in milliseconds.
+ * Run from the scheduler at a low rate, so messages are built on every ping.
+ */
+public class ClockSyncClient implements Runnable {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_PERIOD_MS = 1000;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Publisher<sensor_msgs.TimeReference> pubPing;
+    private final ClockOffsetEstimator estimator;
+    private final java.lang.String source;
+    private int seq = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public ClockSyncClient(ConnectedNode connectedNode, java.lang.String pingTopicName, java.lang.String echoTopicName,
+                           ClockOffsetEstimator estimator) {
+        this.estimator = estimator;
+        this.source = connectedNode.getName().toString();
+        this.pubPing = connectedNode.newPublisher(pingTopicName, sensor_msgs.TimeReference._TYPE);
+
+        Subscriber<sensor_msgs.TimeReference> subEcho =
+                connectedNode.newSubscriber(echoTopicName, sensor_msgs.TimeReference._TYPE);
+        subEcho.addMessageListener(new MessageListener<sensor_msgs.TimeReference>() {
+            @Override
+            public void onNewMessage(sensor_msgs.TimeReference message) {
+                onEcho(message);
+            }
+        });
+    }
+
+    /**
+     * Sends one ping
+     */
+    @Override
+    public void run() {
+        sensor_msgs.TimeReference ping = pubPing.newMessage();
+        ping.getHeader().setSeq(seq++);
+        ping.setSource(source);
+        RosTime.setNow(ping.getHeader().getStamp());
+        pubPing.publish(ping);
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void onEcho(sensor_msgs.TimeReference echo) {
+        long receivedNanos = System.currentTimeMillis() * 1000000L;
+        if (!source.equals(echo.getSource())) {
+            // the echo of another driver
+            return;
+        }
+        estimator.onEcho(echo.getTimeRef().totalNsecs(), echo.getHeader().getStamp().totalNsecs(), receivedNanos);
+    }
+}
@@ -0,0 +1,221 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.message.MessageFactory;
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+
+import java.util.List;
+
+/**
+ * Publishes the health of the command path as a diagnostic_msgs/DiagnosticArray: per stage latency percentiles of
+ * the virtual stick commands, SDK completion errors, control loop overruns and failed ticks of the control loop and
+ * the scheduled tasks, and the age of the stamped commands
+ * with the host clock offset it is computed with. Latencies and ages are over the last period, counters are totals
+ * since start. A status is raised to WARN when errors, overruns, failures or stale commands occurred during the period.
+ * Published at a low rate, so messages are built on every publish. Must be called from a single thread.
+ */
+public class DiagnosticsPublisher {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final java.lang.String HARDWARE_ID = "dji_aircraft";
+
+    private static final java.lang.String LATENCY_STATUS_NAME = "dji_ros_driver: command latency";
+    private static final java.lang.String SDK_STATUS_NAME = "dji_ros_driver: virtual stick sdk";
+    private static final java.lang.String LOOP_STATUS_NAME = "dji_ros_driver: control loop";
+    private static final java.lang.String AGE_STATUS_NAME = "dji_ros_driver: command age";
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Publisher<diagnostic_msgs.DiagnosticArray> pubDiagnostics;
+    private final MessageFactory messageFactory;
+    private final CommandLatencyTracker tracker;
+    private final CommandAgeFilter ageFilter;
+    private final ClockOffsetEstimator clock;
+
+    private final LatencyHistogram.Interval receiveToPickup;
+    private final LatencyHistogram.Interval pickupToSubmit;
+    private final LatencyHistogram.Interval submitToCompletion;
+    private final LatencyHistogram.Interval receiveToCompletion;
+    private final LatencyHistogram.Interval commandAge;
+
+    private long lastErrors = 0;
+    private long lastLost = 0;
+    private long lastOverruns = 0;
+    private long lastLoopFailures = 0;
+    private long lastTaskFailures = 0;
+    private long lastDropped = 0;
+    private int seq = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public DiagnosticsPublisher(ConnectedNode connectedNode, java.lang.String topicName, CommandLatencyTracker tracker,
+                                CommandAgeFilter ageFilter, ClockOffsetEstimator clock) {
+        this.pubDiagnostics = connectedNode.newPublisher(topicName, diagnostic_msgs.DiagnosticArray._TYPE);
+        this.messageFactory = connectedNode.getTopicMessageFactory();
+        this.tracker = tracker;
+        this.ageFilter = ageFilter;
+        this.clock = clock;
+        this.receiveToPickup = tracker.getReceiveToPickup().newInterval();
+        this.pickupToSubmit = tracker.getPickupToSubmit().newInterval();
+        this.submitToCompletion = tracker.getSubmitToCompletion().newInterval();
+        this.receiveToCompletion = tracker.getReceiveToCompletion().newInterval();
+        this.commandAge = ageFilter.getAges().newInterval();
+    }
+
+    /**
+     * Publishes the statistics of the period since the previous call
+     *
+     * @param loopStats      stats of the running control loop, null if none is running
+     * @param watchdogTrips  how many times the stale command watchdog tripped
+     * @param taskFailures   how many runs of the scheduled tasks threw
+     */
+    public void publish(LoopStats loopStats, long watchdogTrips, long taskFailures) {
+        receiveToPickup.update();
+        pickupToSubmit.update();
+        submitToCompletion.update();
+        receiveToCompletion.update();
+        commandAge.update();
+
+        diagnostic_msgs.DiagnosticArray array = pubDiagnostics.newMessage();
+        array.getHeader().setSeq(seq++);
+        RosTime.setNow(array.getHeader().getStamp());
+        List<diagnostic_msgs.DiagnosticStatus> statuses = array.getStatus();
+
+        // latency per stage
+        diagnostic_msgs.DiagnosticStatus latency = newStatus(LATENCY_STATUS_NAME);
+        addLatency(latency, "receive_to_pickup", receiveToPickup);
+        addLatency(latency, "pickup_to_submit", pickupToSubmit);
+        addLatency(latency, "submit_to_completion", submitToCompletion);
+        addLatency(latency, "receive_to_completion", receiveToCompletion);
+        setLevel(latency, diagnostic_msgs.DiagnosticStatus.OK, "ok");
+        statuses.add(latency);
+
+        // sdk completions
+        long errors = tracker.getErrors();
+        long lost = tracker.getLost();
+        diagnostic_msgs.DiagnosticStatus sdk = newStatus(SDK_STATUS_NAME);
+        addValue(sdk, "submitted", Long.toString(tracker.getSubmitted()));
+        addValue(sdk, "completed", Long.toString(tracker.getCompleted()));
+        addValue(sdk, "errors", Long.toString(errors));
+        AircraftError lastError = tracker.getLastError();
+        addValue(sdk, "last_error", null == lastError ? "" : lastError.toString());
+        addValue(sdk, "lost_completions", Long.toString(lost));
+        addValue(sdk, "overlapped_sends", Long.toString(tracker.getOverlapped()));
+        addValue(sdk, "watchdog_trips", Long.toString(watchdogTrips));
+        if (errors > lastErrors || lost > lastLost) {
+            setLevel(sdk, diagnostic_msgs.DiagnosticStatus.WARN,
+                    (errors - lastErrors) + " errors, " + (lost - lastLost) + " lost completions");
+        }
+        else {
+            setLevel(sdk, diagnostic_msgs.DiagnosticStatus.OK, "ok");
+        }
+        lastErrors = errors;
+        lastLost = lost;
+        statuses.add(sdk);
+
+        // control loop
+        diagnostic_msgs.DiagnosticStatus loop = newStatus(LOOP_STATUS_NAME);
+        addValue(loop, "scheduled_task_failures", Long.toString(taskFailures));
+        if (null == loopStats) {
+            setLevel(loop, diagnostic_msgs.DiagnosticStatus.STALE, "not running");
+        }
+        else {
+            long overruns = loopStats.getOverruns();
+            long loopFailures = loopStats.getFailures();
+            addValue(loop, "rate_hz", Float.toString(loopStats.getMeasuredRateHz()));
+            addValue(loop, "ticks", Long.toString(loopStats.getTicks()));
+            addValue(loop, "overruns", Long.toString(overruns));
+            addValue(loop, "failures", Long.toString(loopFailures));
+            addValue(loop, "mean_jitter_us", Long.toString(loopStats.getMeanJitterMicros()));
+            addValue(loop, "max_jitter_us", Long.toString(loopStats.getMaxJitterMicros()));
+            if (loopFailures > lastLoopFailures || taskFailures > lastTaskFailures) {
+                setLevel(loop, diagnostic_msgs.DiagnosticStatus.WARN, (loopFailures - lastLoopFailures)
+                        + " failed ticks, " + (taskFailures - lastTaskFailures) + " failed task runs");
+            }
+            else if (overruns > lastOverruns) {
+                setLevel(loop, diagnostic_msgs.DiagnosticStatus.WARN, (overruns - lastOverruns) + " overruns");
+            }
+            else {
+                setLevel(loop, diagnostic_msgs.DiagnosticStatus.OK, "ok");
+            }
+            lastOverruns = overruns;
+            lastLoopFailures = loopFailures;
+        }
+        lastTaskFailures = taskFailures;
+        statuses.add(loop);
+
+        // stamped commands
+        long dropped = ageFilter.getDropped();
+        diagnostic_msgs.DiagnosticStatus age = newStatus(AGE_STATUS_NAME);
+        addValue(age, "accepted", Long.toString(ageFilter.getAccepted()));
+        addValue(age, "dropped", Long.toString(dropped));
+        addValue(age, "unknown_age", Long.toString(ageFilter.getUnknown()));
+        addValue(age, "max_age_ms", Integer.toString(ageFilter.getMaxAgeMs()));
+        addLatency(age, "age", commandAge);
+        addValue(age, "clock_synchronized", Boolean.toString(clock.hasEstimate()));
+        addValue(age, "clock_offset_ms", Double.toString(clock.getOffsetNanos() / NANOS_PER_MILLI));
+        addValue(age, "clock_rtt_ms", Double.toString(clock.getRttNanos() / NANOS_PER_MILLI));
+        addValue(age, "clock_last_rtt_ms", Double.toString(clock.getLastRttNanos() / NANOS_PER_MILLI));
+        addValue(age, "clock_samples", Long.toString(clock.getSamples()));
+        addValue(age, "clock_rejected", Long.toString(clock.getRejected()));
+        if (dropped > lastDropped) {
+            setLevel(age, diagnostic_msgs.DiagnosticStatus.WARN, (dropped - lastDropped) + " stale commands dropped");
+        }
+        else if (!clock.hasEstimate()) {
+            // ages are unknown and nothing is dropped, which is fine without stamped commands
+            setLevel(age, diagnostic_msgs.DiagnosticStatus.OK, "clock not synchronized");
+        }
+        else {
+            setLevel(age, diagnostic_msgs.DiagnosticStatus.OK, "ok");
+        }
+        lastDropped = dropped;
+        statuses.add(age);
+
+        pubDiagnostics.publish(array);
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private diagnostic_msgs.DiagnosticStatus newStatus(java.lang.String name) {
+        diagnostic_msgs.DiagnosticStatus status = messageFactory.newFromType(diagnostic_msgs.DiagnosticStatus._TYPE);
+        status.setName(name);
+        status.setHardwareId(HARDWARE_ID);
+        return status;
+    }
+
+    private void setLevel(diagnostic_msgs.DiagnosticStatus status, byte level, java.lang.String message) {
+        status.setLevel(level);
+        status.setMessage(message);
+    }
+
+    private void addLatency(diagnostic_msgs.DiagnosticStatus status, java.lang.String stage, LatencyHistogram.Interval interval) {
+        addValue(status, stage + "_samples", Long.toString(interval.getCount()));
+        addValue(status, stage + "_p50_us", Long.toString(interval.getPercentileMicros(50)));
+        addValue(status, stage + "_p90_us", Long.toString(interval.getPercentileMicros(90)));
+        addValue(status, stage + "_p99_us", Long.toString(interval.getPercentileMicros(99)));
+        addValue(status, stage + "_max_us", Long.toString(interval.getPercentileMicros(100)));
+    }
+
+    private void addValue(diagnostic_msgs.DiagnosticStatus status, java.lang.String key, java.lang.String value) {
+        diagnostic_msgs.KeyValue keyValue = messageFactory.newFromType(diagnostic_msgs.KeyValue._TYPE);
+        keyValue.setKey(key);
+        keyValue.setValue(value);
+        status.getValues().add(keyValue);
+    }
+}
@@ -0,0 +1,388 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import dji.common.battery.BatteryState;
+import dji.common.error.DJIError;
+import dji.common.flightcontroller.Attitude;
+import dji.common.flightcontroller.FlightControllerState;
+import dji.common.flightcontroller.FlightOrientationMode;
+import dji.common.flightcontroller.LocationCoordinate3D;
+import dji.common.flightcontroller.virtualstick.FlightControlData;
+import dji.common.flightcontroller.virtualstick.FlightCoordinateSystem;
+import dji.common.flightcontroller.virtualstick.RollPitchControlMode;
+import dji.common.flightcontroller.virtualstick.VerticalControlMode;
+import dji.common.flightcontroller.virtualstick.YawControlMode;
+import dji.common.util.CommonCallbacks;
+import dji.sdk.battery.Battery;
+import dji.sdk.flightcontroller.FlightAssistant;
+import dji.sdk.flightcontroller.FlightController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AircraftBackend of the aircraft connected through the DJI Mobile SDK.
+ * The flight controller and battery are taken from the ProductRegistry. The state and battery listeners are kept
+ * and registered again on the new components whenever the aircraft reconnects.
+ *
+ * A flight controller is configured for virtual stick control as soon as it connects, not on the first command:
+ * the settings are applied in parallel by a ControllerWarmUp, each one confirmed by its completion callback (or read
+ * back, for the control modes which are plain setters) and retried until it is. isReady() tells when it is done.
+ */
+public class DjiAircraftBackend implements AircraftBackend, ProductRegistry.Listener {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ProductRegistry registry;
+
+    // the flight controller being configured for virtual stick control, guarded by this
+    private final ControllerWarmUp warmUp = new ControllerWarmUp();
+    private FlightController warmUpController = null;
+    private long lastGeneration = -1;
+
+    private volatile StateListener stateListener = null;
+    private volatile BatteryListener batteryListener = null;
+    private FlightController stateCallbackController = null;
+    private Battery batteryCallbackBattery = null;
+
+    // Reused on every virtual stick command
+    private final FlightControlData flightControlData = new FlightControlData(0f, 0f, 0f, 0f);
+    private ResultCallback virtualStickCallback = null;
+    private CommonCallbacks.CompletionCallback virtualStickCompletion = null;
+
+    private final AircraftState state = new AircraftState();
+    private final BatteryInfo battery = new BatteryInfo();
+
+    private final FlightControllerState.Callback stateCallback = new FlightControllerState.Callback() {
+        @Override
+        public void onUpdate(FlightControllerState flightControllerState) {
+            StateListener listener = stateListener;
+            if (null == listener) {
+                return;
+            }
+
+            LocationCoordinate3D location = flightControllerState.getAircraftLocation();
+            Attitude attitude = flightControllerState.getAttitude();
+
+            state.areMotorsOn = flightControllerState.areMotorsOn();
+            state.isFlying = flightControllerState.isFlying();
+            state.isLandingConfirmationNeeded = flightControllerState.isLandingConfirmationNeeded();
+            state.latitude = location.getLatitude();
+            state.longitude = location.getLongitude();
+            state.altitude = location.getAltitude();
+            state.velocityX = flightControllerState.getVelocityX();
+            state.velocityY = flightControllerState.getVelocityY();
+            state.velocityZ = flightControllerState.getVelocityZ();
+            state.roll = attitude.roll;
+            state.pitch = attitude.pitch;
+            state.yaw = attitude.yaw;
+
+            listener.onStateUpdate(state);
+        }
+    };
+
+    private final BatteryState.Callback batteryCallback = new BatteryState.Callback() {
+        @Override
+        public void onUpdate(BatteryState batteryState) {
+            BatteryListener listener = batteryListener;
+            if (null == listener) {
+                return;
+            }
+
+            battery.chargeRemainingInPercent = batteryState.getChargeRemainingInPercent();
+            battery.voltageMv = batteryState.getVoltage();
+            battery.currentMa = batteryState.getCurrent();
+            battery.chargeRemainingMah = batteryState.getChargeRemaining();
+            battery.fullChargeCapacityMah = batteryState.getFullChargeCapacity();
+            battery.designCapacityMah = batteryState.getDesignCapacity();
+            battery.temperature = batteryState.getTemperature();
+
+            listener.onBatteryUpdate(battery);
+        }
+    };
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Creates a backend for the product of the application
+     */
+    public DjiAircraftBackend() {
+        this(BaseDJIApplication.getProductRegistry());
+    }
+
+    public DjiAircraftBackend(ProductRegistry registry) {
+        this.registry = registry;
+        registry.addListener(this);
+    }
+
+    /**
+     * Stops following the product changes of the registry, which outlives the backend
+     */
+    public void close() {
+        registry.removeListener(this);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return null != registry.get().product;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return registry.get().connected;
+    }
+
+    /**
+     * True once every virtual stick setting of the connected flight controller was confirmed
+     */
+    @Override
+    public boolean isReady() {
+        return registry.get().connected && warmUp.isReady();
+    }
+
+    /**
+     * @return the configuration of the connected flight controller, e.g. to follow its state
+     */
+    public ControllerWarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    @Override
+    public void setVirtualStickModeEnabled(boolean enabled, ResultCallback callback) {
+        FlightController flightController = getFlightController(callback);
+        if (null != flightController) {
+            flightController.setVirtualStickModeEnabled(enabled, toCompletion(callback));
+        }
+    }
+
+    @Override
+    public void sendVirtualStickData(float pitch, float roll, float yaw, float throttle, ResultCallback callback) {
+        FlightController flightController = getFlightController(callback);
+        if (null == flightController) {
+            return;
+        }
+
+        // the loop passes the same callback every time, so its adapter is only created once
+        if (callback != virtualStickCallback) {
+            virtualStickCallback = callback;
+            virtualStickCompletion = toCompletion(callback);
+        }
+
+        flightControlData.setPitch(pitch);
+        flightControlData.setRoll(roll);
+        flightControlData.setYaw(yaw);
+        flightControlData.setVerticalThrottle(throttle);
+        flightController.sendVirtualStickFlightControlData(flightControlData, virtualStickCompletion);
+    }
+
+    @Override
+    public void startTakeoff(ResultCallback callback) {
+        FlightController flightController = getFlightController(callback);
+        if (null != flightController) {
+            flightController.startTakeoff(toCompletion(callback));
+        }
+    }
+
+    @Override
+    public void startLanding(ResultCallback callback) {
+        FlightController flightController = getFlightController(callback);
+        if (null != flightController) {
+            flightController.startLanding(toCompletion(callback));
+        }
+    }
+
+    @Override
+    public void confirmLanding(ResultCallback callback) {
+        FlightController flightController = getFlightController(callback);
+        if (null != flightController) {
+            flightController.confirmLanding(toCompletion(callback));
+        }
+    }
+
+    @Override
+    public boolean setStateListener(StateListener listener) {
+        this.stateListener = listener;
+        return registerCallbacks(registry.get()).flightController != null;
+    }
+
+    @Override
+    public boolean setBatteryListener(BatteryListener listener) {
+        this.batteryListener = listener;
+        return registerCallbacks(registry.get()).battery != null;
+    }
+
+    /**
+     * Registers the state callbacks on the components of a new or reconnected aircraft and starts configuring its
+     * flight controller
+     */
+    @Override
+    public void onProductChange(ProductRegistry.Handles handles) {
+        synchronized (this) {
+            if (handles.generation < lastGeneration) {
+                // an older change notified late
+                return;
+            }
+            lastGeneration = handles.generation;
+        }
+        if (!handles.connected) {
+            // virtual stick settings do not survive a reconnection
+            synchronized (this) {
+                warmUpController = null;
+            }
+            warmUp.reset();
+        }
+        else if (null != handles.flightController) {
+            warmUpIfNeeded(handles.flightController);
+        }
+        registerCallbacks(handles);
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    /**
+     * @return the flight controller, or null after reporting NOT_AVAILABLE to the callback
+     */
+    private FlightController getFlightController(ResultCallback callback) {
+        FlightController flightController = registry.get().flightController;
+        if (null == flightController) {
+            if (null != callback) {
+                callback.onResult(AircraftError.NOT_AVAILABLE);
+            }
+            return null;
+        }
+        // normally started on connection already, this catches a controller which appeared without a connection change
+        warmUpIfNeeded(flightController);
+        return flightController;
+    }
+
+    private void warmUpIfNeeded(FlightController flightController) {
+        synchronized (this) {
+            if (warmUpController == flightController) {
+                return;
+            }
+            warmUpController = flightController;
+        }
+        warmUp.start(createWarmUpSteps(flightController));
+    }
+
+    /**
+     * The settings of virtual stick control with velocities in the body frame, without the assistance features
+     * which would alter the commands
+     */
+    private static List<ControllerWarmUp.Step> createWarmUpSteps(final FlightController flightController) {
+        List<ControllerWarmUp.Step> steps = new ArrayList<ControllerWarmUp.Step>();
+
+        // plain setters of the SDK, confirmed by reading them back
+        steps.add(new WarmUpStep("control_modes") {
+            @Override
+            public void run(ResultCallback callback) {
+                flightController.setYawControlMode(YawControlMode.ANGULAR_VELOCITY);
+                flightController.setVerticalControlMode(VerticalControlMode.VELOCITY);
+                flightController.setRollPitchControlMode(RollPitchControlMode.VELOCITY);
+                flightController.setRollPitchCoordinateSystem(FlightCoordinateSystem.BODY);
+                boolean applied = flightController.getYawControlMode() == YawControlMode.ANGULAR_VELOCITY
+                        && flightController.getVerticalControlMode() == VerticalControlMode.VELOCITY
+                        && flightController.getRollPitchControlMode() == RollPitchControlMode.VELOCITY
+                        && flightController.getRollPitchCoordinateSystem() == FlightCoordinateSystem.BODY;
+                callback.onResult(applied ? null : new AircraftError(AircraftError.CODE_UNKNOWN, "control modes not applied"));
+            }
+        });
+        steps.add(new WarmUpStep("virtual_stick_mode") {
+            @Override
+            public void run(ResultCallback callback) {
+                flightController.setVirtualStickModeEnabled(true, toCompletion(callback));
+            }
+        });
+        steps.add(new WarmUpStep("novice_mode") {
+            @Override
+            public void run(ResultCallback callback) {
+                flightController.setNoviceModeEnabled(false, toCompletion(callback));
+            }
+        });
+        steps.add(new WarmUpStep("flight_orientation_mode") {
+            @Override
+            public void run(ResultCallback callback) {
+                flightController.setFlightOrientationMode(FlightOrientationMode.AIRCRAFT_HEADING, toCompletion(callback));
+            }
+        });
+
+        // aircraft without vision sensors have no flight assistant, there is nothing to disable then
+        final FlightAssistant flightAssistant = flightController.getFlightAssistant();
+        if (null != flightAssistant) {
+            steps.add(new WarmUpStep("collision_avoidance") {
+                @Override
+                public void run(ResultCallback callback) {
+                    flightAssistant.setCollisionAvoidanceEnabled(false, toCompletion(callback));
+                }
+            });
+            steps.add(new WarmUpStep("active_obstacle_avoidance") {
+                @Override
+                public void run(ResultCallback callback) {
+                    flightAssistant.setActiveObstacleAvoidanceEnabled(false, toCompletion(callback));
+                }
+            });
+        }
+        return steps;
+    }
+
+    /**
+     * Sets the callbacks on components which did not get them yet, and on reconnected ones (the SDK drops the
+     * callbacks of a component when it is replaced).
+     */
+    private synchronized ProductRegistry.Handles registerCallbacks(ProductRegistry.Handles handles) {
+        if (null != stateListener && null != handles.flightController && handles.flightController != stateCallbackController) {
+            handles.flightController.setStateCallback(stateCallback);
+            stateCallbackController = handles.flightController;
+        }
+        if (null != batteryListener && null != handles.battery && handles.battery != batteryCallbackBattery) {
+            handles.battery.setStateCallback(batteryCallback);
+            batteryCallbackBattery = handles.battery;
+        }
+        if (!handles.connected) {
+            // the same components may come back with a new link, register again then
+            stateCallbackController = null;
+            batteryCallbackBattery = null;
+        }
+        return handles;
+    }
+
+    private static CommonCallbacks.CompletionCallback toCompletion(final ResultCallback callback) {
+        if (null == callback) {
+            return null;
+        }
+        return new CommonCallbacks.CompletionCallback() {
+            @Override
+            public void onResult(DJIError djiError) {
+                callback.onResult(null == djiError ? null : new AircraftError(djiError.getErrorCode(), djiError.getDescription()));
+            }
+        };
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    private abstract static class WarmUpStep implements ControllerWarmUp.Step {
+
+        private final java.lang.String name;
+
+        WarmUpStep(java.lang.String name) {
+            this.name = name;
+        }
+
+        @Override
+        public java.lang.String getName() {
+            return name;
+        }
+    }
+}
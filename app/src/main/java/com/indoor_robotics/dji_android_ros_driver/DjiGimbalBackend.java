@@ -0,0 +1,161 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import dji.common.error.DJIError;
+import dji.common.gimbal.Attitude;
+import dji.common.gimbal.GimbalState;
+import dji.common.gimbal.Rotation;
+import dji.common.gimbal.RotationMode;
+import dji.common.util.CommonCallbacks;
+import dji.sdk.gimbal.Gimbal;
+
+/**
+ * GimbalBackend of the gimbal of the product connected through the DJI Mobile SDK, taken from the ProductRegistry.
+ * The state listener is kept and registered again on a new gimbal whenever the product reconnects.
+ *
+ * The SDK only takes immutable Rotation objects, so one is built per command. This is bounded by the gimbal loop
+ * rate, which is much lower than the state and control rates.
+ */
+public class DjiGimbalBackend implements GimbalBackend, ProductRegistry.Listener {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ProductRegistry registry;
+
+    private volatile StateListener stateListener = null;
+    private Gimbal stateCallbackGimbal = null;
+    private long lastGeneration = -1;
+
+    // Reused on every command, the loop passes the same callback every time
+    private AircraftBackend.ResultCallback rotateCallback = null;
+    private CommonCallbacks.CompletionCallback rotateCompletion = null;
+
+    private final GimbalAttitude attitude = new GimbalAttitude();
+
+    private final GimbalState.Callback stateCallback = new GimbalState.Callback() {
+        @Override
+        public void onUpdate(GimbalState gimbalState) {
+            StateListener listener = stateListener;
+            if (null == listener) {
+                return;
+            }
+
+            Attitude gimbalAttitude = gimbalState.getAttitudeInDegrees();
+            attitude.pitch = gimbalAttitude.getPitch();
+            attitude.roll = gimbalAttitude.getRoll();
+            attitude.yaw = gimbalAttitude.getYaw();
+
+            listener.onGimbalUpdate(attitude);
+        }
+    };
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Creates a backend for the gimbal of the product of the application
+     */
+    public DjiGimbalBackend() {
+        this(BaseDJIApplication.getProductRegistry());
+    }
+
+    public DjiGimbalBackend(ProductRegistry registry) {
+        this.registry = registry;
+        registry.addListener(this);
+    }
+
+    /**
+     * Stops following the product changes of the registry, which outlives the backend
+     */
+    public void close() {
+        registry.removeListener(this);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return null != registry.get().gimbal;
+    }
+
+    @Override
+    public void rotate(GimbalCommand.Mode mode, float pitch, float roll, float yaw, float timeSeconds,
+                       AircraftBackend.ResultCallback callback) {
+        Gimbal gimbal = registry.get().gimbal;
+        if (null == gimbal) {
+            if (null != callback) {
+                callback.onResult(AircraftError.NOT_AVAILABLE);
+            }
+            return;
+        }
+
+        if (callback != rotateCallback) {
+            rotateCallback = callback;
+            rotateCompletion = toCompletion(callback);
+        }
+
+        Rotation rotation = new Rotation.Builder()
+                .mode(mode == GimbalCommand.Mode.ANGLE ? RotationMode.ABSOLUTE_ANGLE : RotationMode.SPEED)
+                .pitch(toSdk(pitch))
+                .roll(toSdk(roll))
+                .yaw(toSdk(yaw))
+                .time(timeSeconds)
+                .build();
+        gimbal.rotate(rotation, rotateCompletion);
+    }
+
+    @Override
+    public boolean setStateListener(StateListener listener) {
+        this.stateListener = listener;
+        return registerCallback(registry.get()).gimbal != null;
+    }
+
+    /**
+     * Registers the state callback on a new or reconnected gimbal
+     */
+    @Override
+    public synchronized void onProductChange(ProductRegistry.Handles handles) {
+        if (handles.generation < lastGeneration) {
+            // an older change notified late
+            return;
+        }
+        lastGeneration = handles.generation;
+        registerCallback(handles);
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private static float toSdk(float value) {
+        return Float.isNaN(value) ? Rotation.NO_ROTATION : value;
+    }
+
+    private synchronized ProductRegistry.Handles registerCallback(ProductRegistry.Handles handles) {
+        if (null != stateListener && null != handles.gimbal && handles.gimbal != stateCallbackGimbal) {
+            handles.gimbal.setStateCallback(stateCallback);
+            stateCallbackGimbal = handles.gimbal;
+        }
+        if (!handles.connected) {
+            stateCallbackGimbal = null;
+        }
+        return handles;
+    }
+
+    private static CommonCallbacks.CompletionCallback toCompletion(final AircraftBackend.ResultCallback callback) {
+        if (null == callback) {
+            return null;
+        }
+        return new CommonCallbacks.CompletionCallback() {
+            @Override
+            public void onResult(DJIError djiError) {
+                callback.onResult(null == djiError ? null : new AircraftError(djiError.getErrorCode(), djiError.getDescription()));
+            }
+        };
+    }
+}
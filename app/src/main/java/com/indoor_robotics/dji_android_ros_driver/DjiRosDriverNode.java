@@ -19,21 +19,9 @@ import org.ros.node.service.ServiceServer;
 import org.ros.node.topic.Publisher;
 import org.ros.node.topic.Subscriber;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
-import dji.common.battery.BatteryState;
-import dji.common.error.DJIError;
-import dji.common.flightcontroller.FlightControllerState;
-import dji.common.flightcontroller.FlightOrientationMode;
-import dji.common.flightcontroller.virtualstick.FlightControlData;
-import dji.common.flightcontroller.virtualstick.FlightCoordinateSystem;
-import dji.common.flightcontroller.virtualstick.RollPitchControlMode;
-import dji.common.flightcontroller.virtualstick.VerticalControlMode;
-import dji.common.flightcontroller.virtualstick.YawControlMode;
-import dji.common.util.CommonCallbacks;
-import dji.sdk.flightcontroller.FlightController;
-import dji.sdk.products.Aircraft;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DjiRosDriverNode implements NodeMain {
 
@@ -41,72 +29,247 @@ public class DjiRosDriverNode implements NodeMain {
     // Setting up constants
     //***************************
 
-    public static final int PERIOD = 100;
-    public static final int STATUS_PERIOD = 1000;
+    public static final int DEFAULT_CONTROL_RATE_HZ = 25;
+    public static final int MAX_CONTROL_RATE_HZ = 50;
+    public static final int STATUS_PERIOD = 1000; // default, ms
+    public static final int DIAGNOSTICS_PERIOD = 1000; // default, ms
+    public static final float DEFAULT_ROTATE_YAW_RATE = 20f; // degrees per second
+    public static final int DEFAULT_FAST_PATH_HOLD_OFF_MS = 500;
+
+    // Names of the periodic tasks, to look them up in the scheduler
+    public static final java.lang.String CONTROL_TASK_NAME = "dji_virtual_sticks";
+    public static final java.lang.String STATUS_TASK_NAME = "dji_status";
+    public static final java.lang.String DIAGNOSTICS_TASK_NAME = "dji_diagnostics";
+    public static final java.lang.String GIMBAL_TASK_NAME = "dji_gimbal";
+    public static final java.lang.String CLOCK_SYNC_TASK_NAME = "dji_clock_sync";
 
-    private static final float M_PI = 3.1459f;
     private static final java.lang.String NODE_NAME = "dji_ros_driver";
     private static final java.lang.String TAKE_OFF_CMD = "takeoff";
     private static final java.lang.String LAND_CMD = "land";
     private static final java.lang.String ROTATE_CLOCKWISE_CMD = "rotate_cw";
     private static final java.lang.String ROTATE_COUNTERCLOCKWISE_CMD = "rotate_ccw";
     private static final java.lang.String STOP_CMD = "stop";
+    private static final java.lang.String CANCEL_TRAJECTORY_CMD = "cancel_trajectory";
+    private static final java.lang.String HOLD_POSITION_CMD = "hold_position";
+    private static final java.lang.String RELEASE_HOLD_CMD = "release_hold";
+    private static final java.lang.String SET_ORIGIN_CMD = "set_origin";
+    private static final java.lang.String RELOAD_PARAMETERS_CMD = "reload_parameters";
 
     private static final java.lang.String BASE_TOPIC_NAME = "/flight_commands";
     private static final java.lang.String CMD_VEL_TOPIC_NAME = "/cmd_vel";
+    private static final java.lang.String CMD_VEL_STAMPED_TOPIC_NAME = "/cmd_vel_stamped";
+    private static final java.lang.String CMD_VEL_AGE_TOPIC_NAME = "/dji/cmd_vel_age";
+    private static final java.lang.String CLOCK_PING_TOPIC_NAME = "/dji/clock/ping";
+    private static final java.lang.String CLOCK_ECHO_TOPIC_NAME = "/dji/clock/echo";
+    private static final java.lang.String TRAJECTORY_TOPIC_NAME = "/dji/trajectory";
+    private static final java.lang.String POSITION_SETPOINT_TOPIC_NAME = "/dji/position_setpoint";
+    private static final java.lang.String ALTITUDE_SETPOINT_TOPIC_NAME = "/dji/altitude_setpoint";
+    private static final java.lang.String GIMBAL_RATE_TOPIC_NAME = "/dji/gimbal/rate";
+    private static final java.lang.String GIMBAL_ANGLE_TOPIC_NAME = "/dji/gimbal/angle";
+    private static final java.lang.String GIMBAL_ATTITUDE_TOPIC_NAME = "/dji/gimbal/attitude";
     private static final java.lang.String DONE_TOPIC_NAME = "done";
+    private static final java.lang.String RESULT_TOPIC_NAME = "result";
     private static final java.lang.String STATUS_TOPIC_NAME = "/dji/status";
+    private static final java.lang.String BATTERY_TOPIC_NAME = "/dji/battery";
+    private static final java.lang.String NAV_SAT_FIX_TOPIC_NAME = "/dji/gps";
+    private static final java.lang.String FLIGHT_STATE_TOPIC_NAME = "/dji/flight_state";
+    private static final java.lang.String ALTITUDE_TOPIC_NAME = "/dji/altitude";
+    private static final java.lang.String ODOMETRY_TOPIC_NAME = "/dji/odom";
+    private static final java.lang.String IMU_TOPIC_NAME = "/dji/imu";
+    private static final java.lang.String LOCAL_POSE_TOPIC_NAME = "/dji/local_pose";
+    private static final java.lang.String DIAGNOSTICS_TOPIC_NAME = "/diagnostics";
 
 
+    /**
+     * How commands are forwarded to the SDK:
+     * FIXED_RATE sends the latest command on every tick of the control loop,
+     * EVENT_DRIVEN sends as soon as a new command arrives, rate limited, with a low rate keepalive when idle.
+     */
+    public enum ForwardingMode {
+        FIXED_RATE,
+        EVENT_DRIVEN
+    }
+
     //***************************
     // Private Fields
     //***************************
 
     // Timers/Tasks:
-    private Timer sendVirtualStickDataTimer = null;
+    private PeriodicScheduler scheduler;
+    private final boolean ownsScheduler;
+    private volatile PeriodicScheduler.ScheduledTask sendVirtualStickDataLoop = null;
+    private volatile EventDrivenLoop sendVirtualStickDataEventLoop = null;
     private SendVirtualStickDataTask sendVirtualStickDataTask = null;
-    private Timer droneStatusTimer = null;
+    private int controlRateHz = DEFAULT_CONTROL_RATE_HZ;
+    private ForwardingMode forwardingMode = ForwardingMode.FIXED_RATE;
+    private int eventMinIntervalMs = EventDrivenLoop.DEFAULT_MIN_INTERVAL_MS;
+    private int eventKeepaliveMs = EventDrivenLoop.DEFAULT_KEEPALIVE_MS;
+    private volatile PeriodicScheduler.ScheduledTask droneStatusLoop = null;
+    private volatile PeriodicScheduler.ScheduledTask diagnosticsLoop = null;
+    private int statusPeriodMs = STATUS_PERIOD;
+    private int diagnosticsPeriodMs = DIAGNOSTICS_PERIOD;
+    private volatile float rotateYawRate = DEFAULT_ROTATE_YAW_RATE;
+    private volatile PeriodicScheduler.ScheduledTask gimbalLoop = null;
+    private int gimbalRateHz = GimbalController.DEFAULT_RATE_HZ;
+    private volatile PeriodicScheduler.ScheduledTask clockSyncLoop = null;
+    private int clockSyncPeriodMs = ClockSyncClient.DEFAULT_PERIOD_MS;
+    private ClockSyncClient clockSyncClient = null;
     private DroneStatusTask droneStatusTask = null;
 
-    // Movement command values
-    private float pitch = 0f;
-    private float roll = 0f;
-    private float yaw = 0f;
-    private float throttle = 0f;
-
-    private boolean initialized = false;
-    private float batteryLevelAvg = 0.0f;
-    private boolean isConnected = false;
-    private boolean isCallbackSetup = false;
-    private boolean areMotorsOn = false;
-    private boolean isFlying = false;
-    private float altitude = 0.0f;
-    private double latitude = 0.0f;
-    private double longitude = 0.0f;
+    private final AircraftBackend aircraft;
+
+    // Movement commands, published by the listeners and services and sent by the control loop
+    private final VirtualStickController stickController;
+
+    // Takeoff, landing and landing confirmation, completed asynchronously
+    private final FlightCommandExecutor commandExecutor;
+
+    // Gimbal commands, sent by the gimbal loop. Null when the driver has no gimbal backend
+    private final GimbalBackend gimbal;
+    private final GimbalController gimbalController;
+
+    // Host clock offset, and the age filter of the stamped movement commands using it
+    private final ClockOffsetEstimator clockOffsetEstimator = new ClockOffsetEstimator();
+    private final CommandAgeFilter commandAgeFilter = new CommandAgeFilter(clockOffsetEstimator);
+
+    private volatile float batteryLevelAvg = 0.0f;
+    private volatile boolean isConnected = false;
+    private volatile boolean areMotorsOn = false;
+    private volatile boolean isFlying = false;
+    private volatile float altitude = 0.0f;
+    private volatile double latitude = Double.NaN;
+    private volatile double longitude = Double.NaN;
     private boolean landConfirmNeeded = false;
 
     // Topics and services, publishers, types
     private java.lang.String commandsTopicName = BASE_TOPIC_NAME;
     private java.lang.String commandsMessageType = std_msgs.String._TYPE;
     private java.lang.String commandsResTopicName = BASE_TOPIC_NAME + "/" + DONE_TOPIC_NAME;
+    private java.lang.String commandsResultTopicName = BASE_TOPIC_NAME + "/" + RESULT_TOPIC_NAME;
 
     private java.lang.String cmdvelTopicName = CMD_VEL_TOPIC_NAME;
     private java.lang.String cmdvelMessageType = geometry_msgs.Twist._TYPE;
+    private java.lang.String cmdvelStampedTopicName = CMD_VEL_STAMPED_TOPIC_NAME;
 
     private java.lang.String djiStatusTopicName = STATUS_TOPIC_NAME;
     private java.lang.String djiStatusMessageType = std_msgs.String._TYPE;
 
+    // Black box recorder, null when recording is disabled
+    private File flightRecorderDirectory = null;
+    private volatile FlightRecorder flightRecorder = null;
+
+    // UDP side channel for commands and telemetry, null when disabled
+    private int fastPathPort = 0;
+    private volatile FastPathEndpoint fastPath = null;
+    private int fastPathHoldOffMs = DEFAULT_FAST_PATH_HOLD_OFF_MS;
+    private volatile long fastPathTwistNanos = 0;
+    private final AtomicLong ignoredTcpTwists = new AtomicLong();
+
+    private int statusMinIntervalMs = StatusPublisher.DEFAULT_MIN_INTERVAL_MS;
+    private int statusMaxIntervalMs = StatusPublisher.DEFAULT_MAX_INTERVAL_MS;
+
     private Publisher<std_msgs.String> pubDjiStatus;
+    private StatusPublisher statusPublisher;
+    private TelemetryPublisher telemetryPublisher;
+    private TfBroadcaster tfBroadcaster;
+    private DiagnosticsPublisher diagnosticsPublisher;
+    private Publisher<std_msgs.Float32> pubCommandAge;
+    private MessagePool<std_msgs.Float32> commandAgePool; // stamped cmd_vel subscriber only
+    private volatile GimbalPublisher gimbalPublisher;
     private Publisher<std_msgs.Empty> pubResult;
+    private Publisher<actionlib_msgs.GoalStatus> pubCommandResult;
     private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverTakeOff;
     private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverLand;
     private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverRotate;
+    private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverRotateCcw;
     private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverStop;
+    private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverCancelTrajectory;
+    private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverHoldPosition;
+    private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverReleaseHold;
+    private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverSetOrigin;
+    private ServiceServer<std_srvs.EmptyRequest, std_srvs.EmptyResponse> serverReloadParameters;
 
     //***************************
     // Public Methods
     //***************************
 
+    /**
+     * Creates a driver for the aircraft connected through the DJI SDK
+     */
+    public DjiRosDriverNode() {
+        this(new DjiAircraftBackend(), new DjiGimbalBackend(), null);
+    }
+
+    /**
+     * Creates a driver for the given aircraft backend, e.g. a SimulatedAircraftBackend, running its periodic
+     * tasks on its own scheduler
+     */
+    public DjiRosDriverNode(AircraftBackend aircraft) {
+        this(aircraft, null);
+    }
+
+    /**
+     * Creates a driver for the given aircraft backend, running its periodic tasks on the given shared scheduler.
+     * The tasks are cancelled on shutdown, the scheduler is left running.
+     */
+    public DjiRosDriverNode(AircraftBackend aircraft, PeriodicScheduler scheduler) {
+        this(aircraft, null, scheduler);
+    }
+
+    /**
+     * Creates a driver for the given aircraft and gimbal backends, running its periodic tasks on the given shared
+     * scheduler, or on its own one when it is null. Without a gimbal backend the gimbal topics are not set up.
+     */
+    public DjiRosDriverNode(AircraftBackend aircraft, GimbalBackend gimbal, PeriodicScheduler scheduler) {
+        this.aircraft = aircraft;
+        this.gimbal = gimbal;
+        this.gimbalController = null != gimbal ? new GimbalController(gimbal) : null;
+        this.scheduler = scheduler;
+        this.ownsScheduler = null == scheduler;
+        this.stickController = new VirtualStickController(aircraft);
+        this.commandExecutor = new FlightCommandExecutor(aircraft, new FlightCommandExecutor.ResultListener() {
+            @Override
+            public void onAccepted(FlightCommand command, long id, long submittedMillis) {
+                onFlightCommandAccepted(command, id, submittedMillis);
+            }
+
+            @Override
+            public void onResult(FlightCommandResult result) {
+                onFlightCommandResult(result);
+            }
+        });
+    }
+
+    public AircraftBackend getAircraftBackend() {
+        return this.aircraft;
+    }
+
+    /**
+     * @return the gimbal command path, null when the driver has no gimbal backend
+     */
+    public GimbalController getGimbalController() {
+        return gimbalController;
+    }
+
+    public int getGimbalRateHz() {
+        return gimbalRateHz;
+    }
+
+    /**
+     * Sets the maximum rate at which gimbal commands are sent, up to MAX_CONTROL_RATE_HZ.
+     * Can be called while the loop is running.
+     */
+    public void setGimbalRateHz(int rateHz) {
+        if (rateHz <= 0 || rateHz > MAX_CONTROL_RATE_HZ) {
+            throw new IllegalArgumentException("gimbal rate must be in (0, " + MAX_CONTROL_RATE_HZ + "] Hz");
+        }
+        this.gimbalRateHz = rateHz;
+        PeriodicScheduler.ScheduledTask loop = gimbalLoop;
+        if (null != loop) {
+            loop.setRateHz(rateHz);
+        }
+    }
+
     public java.lang.String getCommandsTopicName() {
         return this.commandsTopicName;
     }
@@ -123,23 +286,388 @@ public class DjiRosDriverNode implements NodeMain {
         this.commandsMessageType = messageType;
     }
 
+    public java.lang.String getCmdvelTopicName() {
+        return this.cmdvelTopicName;
+    }
+
+    /**
+     * Sets the topic of the movement commands. Must be called before the node is started.
+     */
+    public void setCmdvelTopicName(java.lang.String topicName) {
+        this.cmdvelTopicName = topicName;
+    }
+
+    public java.lang.String getCmdvelStampedTopicName() {
+        return this.cmdvelStampedTopicName;
+    }
+
+    /**
+     * Sets the topic of the stamped movement commands, whose age is checked. Must be called before the node is
+     * started.
+     */
+    public void setCmdvelStampedTopicName(java.lang.String topicName) {
+        this.cmdvelStampedTopicName = topicName;
+    }
+
+    public java.lang.String getStatusTopicName() {
+        return this.djiStatusTopicName;
+    }
+
+    /**
+     * Sets the topic of the status string. Must be called before the node is started.
+     */
+    public void setStatusTopicName(java.lang.String topicName) {
+        this.djiStatusTopicName = topicName;
+    }
+
+    public int getStatusPeriodMs() {
+        return statusPeriodMs;
+    }
+
+    /**
+     * Sets the period of the status heartbeat. Can be called while the loop is running.
+     */
+    public void setStatusPeriodMs(int periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("invalid status period: " + periodMs);
+        }
+        this.statusPeriodMs = periodMs;
+        PeriodicScheduler.ScheduledTask loop = droneStatusLoop;
+        if (null != loop) {
+            loop.setPeriodMs(periodMs);
+        }
+    }
+
+    public int getDiagnosticsPeriodMs() {
+        return diagnosticsPeriodMs;
+    }
+
+    /**
+     * Sets the period of the diagnostics. Can be called while the loop is running.
+     */
+    public void setDiagnosticsPeriodMs(int periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("invalid diagnostics period: " + periodMs);
+        }
+        this.diagnosticsPeriodMs = periodMs;
+        PeriodicScheduler.ScheduledTask loop = diagnosticsLoop;
+        if (null != loop) {
+            loop.setPeriodMs(periodMs);
+        }
+    }
+
+    public int getClockSyncPeriodMs() {
+        return clockSyncPeriodMs;
+    }
+
+    /**
+     * Sets the period of the clock offset pings. Can be called while the loop is running.
+     */
+    public void setClockSyncPeriodMs(int periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("invalid clock sync period: " + periodMs);
+        }
+        this.clockSyncPeriodMs = periodMs;
+        PeriodicScheduler.ScheduledTask loop = clockSyncLoop;
+        if (null != loop) {
+            loop.setPeriodMs(periodMs);
+        }
+    }
+
+    /**
+     * @return the offset and round trip to the ROS host clock, measured against the clock echo node
+     */
+    public ClockOffsetEstimator getClockOffsetEstimator() {
+        return clockOffsetEstimator;
+    }
+
+    /**
+     * @return the filter of the stamped movement commands, with their ages and drop counts
+     */
+    public CommandAgeFilter getCommandAgeFilter() {
+        return commandAgeFilter;
+    }
+
+    public int getCommandMaxAgeMs() {
+        return commandAgeFilter.getMaxAgeMs();
+    }
+
+    /**
+     * Sets the age after which a stamped movement command is dropped, 0 applies all of them. Commands whose age is
+     * not known (no clock offset yet, no stamp) are always applied.
+     */
+    public void setCommandMaxAgeMs(int maxAgeMs) {
+        commandAgeFilter.setMaxAgeMs(maxAgeMs);
+    }
+
+    public float getRotateYawRate() {
+        return rotateYawRate;
+    }
+
+    /**
+     * Sets the yaw rate of the rotate services, in degrees per second
+     */
+    public void setRotateYawRate(float degreesPerSecond) {
+        if (!(degreesPerSecond > 0) || degreesPerSecond > SetpointPipeline.MAX_YAW_RATE) {
+            throw new IllegalArgumentException("rotation rate must be in (0, " + SetpointPipeline.MAX_YAW_RATE + "] degrees per second");
+        }
+        this.rotateYawRate = degreesPerSecond;
+    }
+
+    public int getControlRateHz() {
+        return this.controlRateHz;
+    }
+
+    /**
+     * Sets the rate of the virtual stick control loop, up to MAX_CONTROL_RATE_HZ.
+     * Can be called while the loop is running.
+     */
+    public void setControlRateHz(int rateHz) {
+        if (rateHz <= 0 || rateHz > MAX_CONTROL_RATE_HZ) {
+            throw new IllegalArgumentException("control rate must be in (0, " + MAX_CONTROL_RATE_HZ + "] Hz");
+        }
+        this.controlRateHz = rateHz;
+        if (null != sendVirtualStickDataLoop) {
+            sendVirtualStickDataLoop.setRateHz(rateHz);
+        }
+    }
+
+    public ForwardingMode getForwardingMode() {
+        return this.forwardingMode;
+    }
+
+    /**
+     * Selects how commands are forwarded to the SDK. Must be called before the node is started.
+     */
+    public void setForwardingMode(ForwardingMode forwardingMode) {
+        this.forwardingMode = forwardingMode;
+    }
+
+    /**
+     * Sets the intervals used in EVENT_DRIVEN forwarding mode.
+     *
+     * @param minIntervalMs minimum time between two sends to the SDK, bursts in between are coalesced
+     * @param keepaliveMs   time without a new command after which the latest command is resent
+     */
+    public void setEventDrivenIntervals(int minIntervalMs, int keepaliveMs) {
+        if (minIntervalMs < 0 || keepaliveMs <= 0 || keepaliveMs < minIntervalMs) {
+            throw new IllegalArgumentException("invalid event driven intervals: min=" + minIntervalMs + " keepalive=" + keepaliveMs);
+        }
+        if (null != sendVirtualStickDataEventLoop) {
+            sendVirtualStickDataEventLoop.setIntervals(minIntervalMs, keepaliveMs);
+        }
+        this.eventMinIntervalMs = minIntervalMs;
+        this.eventKeepaliveMs = keepaliveMs;
+    }
+
+    public int getEventMinIntervalMs() {
+        return eventMinIntervalMs;
+    }
+
+    public int getEventKeepaliveMs() {
+        return eventKeepaliveMs;
+    }
+
+    /**
+     * @return timing statistics of the active virtual stick loop, null if no loop is running.
+     * In EVENT_DRIVEN mode the jitter is the delay between a command arriving and it being sent.
+     */
+    public LoopStats getControlLoopStats() {
+        if (null != sendVirtualStickDataLoop) {
+            return sendVirtualStickDataLoop.getStats();
+        }
+        return null != sendVirtualStickDataEventLoop ? sendVirtualStickDataEventLoop.getStats() : null;
+    }
+
+    /**
+     * @return how many runs of the tasks on the driver's scheduler threw, the periodic control loop included
+     */
+    public long getScheduledTaskFailures() {
+        PeriodicScheduler current = scheduler;
+        if (null == current) {
+            return 0;
+        }
+        long failures = 0;
+        for (PeriodicScheduler.ScheduledTask task : current.getTasks()) {
+            failures += task.getFailures();
+        }
+        return failures;
+    }
+
+    /**
+     * Configures the stale command watchdog. A cmd_vel command not refreshed within timeoutMs is decayed to hover
+     * over decayMs. A timeout of 0 disables the watchdog.
+     */
+    public void setCommandWatchdog(int timeoutMs, int decayMs) {
+        stickController.getCommandWatchdog().configure(timeoutMs, decayMs);
+    }
+
+    public CommandWatchdog getCommandWatchdog() {
+        return stickController.getCommandWatchdog();
+    }
+
+    /**
+     * @return the onboard position and altitude hold, e.g. to tune its gains
+     */
+    public PositionHoldController getPositionHold() {
+        return stickController.getPositionHold();
+    }
+
+    /**
+     * @return the filter stages applied to the commands before they are sent to the aircraft
+     */
+    public SetpointPipeline getSetpointPipeline() {
+        return stickController.getSetpointPipeline();
+    }
+
+    /**
+     * @return the latest received movement command
+     */
+    public VirtualStickCommand getLatestCommand() {
+        return stickController.getLatestCommand();
+    }
+
+    /**
+     * @return per stage latencies and SDK completion errors of the virtual stick commands
+     */
+    public CommandLatencyTracker getCommandLatencyTracker() {
+        return stickController.getLatencyTracker();
+    }
+
+    /**
+     * @return the executor running takeoff, landing and landing confirmation
+     */
+    public FlightCommandExecutor getFlightCommandExecutor() {
+        return commandExecutor;
+    }
+
+    public long getCommandWatchdogTrips() {
+        return stickController.getCommandWatchdog().getTrips();
+    }
+
+    /**
+     * Sets the minimum and maximum interval between two messages on the typed status topics
+     * (battery, gps, flight state and altitude).
+     */
+    public void setStatusPublishIntervals(int minIntervalMs, int maxIntervalMs) {
+        if (minIntervalMs < 0 || maxIntervalMs <= 0 || maxIntervalMs < minIntervalMs) {
+            throw new IllegalArgumentException("invalid status intervals: min=" + minIntervalMs + " max=" + maxIntervalMs);
+        }
+        this.statusMinIntervalMs = minIntervalMs;
+        this.statusMaxIntervalMs = maxIntervalMs;
+        if (null != statusPublisher) {
+            statusPublisher.setIntervals(minIntervalMs, maxIntervalMs);
+        }
+    }
+
+    public int getStatusMinIntervalMs() {
+        return statusMinIntervalMs;
+    }
+
+    public int getStatusMaxIntervalMs() {
+        return statusMaxIntervalMs;
+    }
+
+    /**
+     * Enables the black box flight recorder, writing segments into the given directory. Must be called before the
+     * node is started, null disables recording.
+     */
+    public void setFlightRecorderDirectory(File directory) {
+        this.flightRecorderDirectory = directory;
+    }
+
+    /**
+     * Enables the UDP fast path on the given port: movement commands are received next to cmd_vel and the
+     * telemetry is sent back to the host commanding the driver. Must be called before the node is started, 0
+     * disables it. The ~fast_path/port parameter takes precedence.
+     */
+    public void setFastPathPort(int port) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("invalid port: " + port);
+        }
+        this.fastPathPort = port;
+    }
+
+    /**
+     * Sets how long after a fast path command the twists received over TCPROS are ignored, so a backlog delivered
+     * after a stall does not override the fresher datagrams. Must be called before the node is started.
+     */
+    public void setFastPathHoldOffMs(int holdOffMs) {
+        if (holdOffMs < 0) {
+            throw new IllegalArgumentException("invalid fast path hold off: " + holdOffMs);
+        }
+        this.fastPathHoldOffMs = holdOffMs;
+    }
+
+    public int getFastPathHoldOffMs() {
+        return fastPathHoldOffMs;
+    }
+
+    /**
+     * @return the number of cmd_vel twists ignored because the fast path was commanding
+     */
+    public long getIgnoredTcpTwists() {
+        return ignoredTcpTwists.get();
+    }
+
+    /**
+     * @return the UDP fast path, null when it is not running
+     */
+    public FastPathEndpoint getFastPath() {
+        return fastPath;
+    }
+
+    /**
+     * @return the active flight recorder, null if recording is disabled
+     */
+    public FlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    public float getBatteryLevel() {
+        return batteryLevelAvg;
+    }
+
+    public boolean isAircraftConnected() {
+        return isConnected;
+    }
+
+    /**
+     * @return true once the connected aircraft is configured for virtual stick control
+     */
+    public boolean isAircraftReady() {
+        return aircraft.isReady();
+    }
+
+    public boolean areMotorsOn() {
+        return areMotorsOn;
+    }
+
+    public boolean isFlying() {
+        return isFlying;
+    }
+
+    /**
+     * @return the scheduler running the periodic tasks of the driver, e.g. to change their rates at runtime.
+     * Null before the node is started when the driver owns its scheduler.
+     */
+    public PeriodicScheduler getScheduler() {
+        return scheduler;
+    }
+
     @Override
     public GraphName getDefaultNodeName() {
         return GraphName.of(NODE_NAME);
     }
 
     public void StopVirtualSticks() {
-        final FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-        initializeIfNeeded(flightController);
-        flightController.setVirtualStickModeEnabled(false, null);
+        aircraft.setVirtualStickModeEnabled(false, null);
     }
 
 
     public void StartVirtualSticks() {
-        final FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-        initializeIfNeeded(flightController);
-        flightController.setVirtualStickModeEnabled(false, null);
-        flightController.setVirtualStickModeEnabled(true, null);
+        aircraft.setVirtualStickModeEnabled(false, null);
+        aircraft.setVirtualStickModeEnabled(true, null);
     }
 
     //***************************
@@ -147,25 +675,46 @@ public class DjiRosDriverNode implements NodeMain {
     //***************************
 
     @Override
-    public void onStart(ConnectedNode connectedNode) {
+    public void onStart(final ConnectedNode connectedNode) {
+
+        if (null != flightRecorderDirectory) {
+            try {
+                flightRecorder = new FlightRecorder(flightRecorderDirectory, FlightRecorder.DEFAULT_SEGMENT_SIZE);
+            }
+            catch (IOException e) {
+                connectedNode.getLog().error("Cannot start the flight recorder", e);
+            }
+        }
+        stickController.setFlightRecorder(flightRecorder);
+        final DriverParameters parameters = new DriverParameters(this, connectedNode.getParameterTree(), connectedNode.getLog());
+        parameters.loadStartup();
+        parameters.reloadAll();
+        parameters.subscribe();
+        startFastPath(connectedNode, parameters);
 
         //Setting up publishers
         pubDjiStatus = connectedNode.newPublisher(djiStatusTopicName, djiStatusMessageType);
         pubResult = connectedNode.newPublisher(commandsResTopicName, std_msgs.Empty._TYPE);
+        pubCommandResult = connectedNode.newPublisher(commandsResultTopicName, actionlib_msgs.GoalStatus._TYPE);
+        statusPublisher = new StatusPublisher(connectedNode, BATTERY_TOPIC_NAME, NAV_SAT_FIX_TOPIC_NAME,
+                FLIGHT_STATE_TOPIC_NAME, ALTITUDE_TOPIC_NAME);
+        statusPublisher.setIntervals(statusMinIntervalMs, statusMaxIntervalMs);
+        telemetryPublisher = new TelemetryPublisher(connectedNode, stickController.getLocalProjection(),
+                ODOMETRY_TOPIC_NAME, IMU_TOPIC_NAME, LOCAL_POSE_TOPIC_NAME);
+        tfBroadcaster = new TfBroadcaster(connectedNode, stickController.getLocalProjection(),
+                parameters.getGimbalOffset(), parameters.getCameraOffset());
+        diagnosticsPublisher = new DiagnosticsPublisher(connectedNode, DIAGNOSTICS_TOPIC_NAME, stickController.getLatencyTracker(),
+                commandAgeFilter, clockOffsetEstimator);
+        pubCommandAge = connectedNode.newPublisher(CMD_VEL_AGE_TOPIC_NAME, std_msgs.Float32._TYPE);
+        commandAgePool = new MessagePool<std_msgs.Float32>(pubCommandAge, MessagePool.DEFAULT_SIZE);
+        clockOffsetEstimator.reset();
+        clockSyncClient = new ClockSyncClient(connectedNode, CLOCK_PING_TOPIC_NAME, CLOCK_ECHO_TOPIC_NAME, clockOffsetEstimator);
 
         serverTakeOff = connectedNode.newServiceServer(
                 commandsTopicName + "/" + TAKE_OFF_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
                     @Override
                     public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
-                        final FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-                        initializeIfNeeded(flightController);
-                        flightController.startTakeoff(new CommonCallbacks.CompletionCallback() {
-                            @Override
-                            public void onResult(DJIError djiError) {
-                                pubResult.publish(pubResult.newMessage());
-                                StartVirtualSticks();
-                            }
-                        });
+                        commandExecutor.submit(FlightCommand.TAKEOFF);
                     }
                 });
 
@@ -173,15 +722,7 @@ public class DjiRosDriverNode implements NodeMain {
                 commandsTopicName + "/" + LAND_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
                     @Override
                     public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
-                        final FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-                        initializeIfNeeded(flightController);
-
-                        flightController.startLanding(new CommonCallbacks.CompletionCallback() {
-                            @Override
-                            public void onResult(DJIError djiError) {
-                                pubResult.publish(pubResult.newMessage());
-                            }
-                        });
+                        commandExecutor.submit(FlightCommand.LANDING);
                     }
                 });
 
@@ -189,10 +730,20 @@ public class DjiRosDriverNode implements NodeMain {
                 commandsTopicName + "/" + ROTATE_CLOCKWISE_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
                     @Override
                     public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
-                        final FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-                        initializeIfNeeded(flightController);
                         if (isFlying) {
-                            yaw = -20f;
+                            stickController.hold(0f, 0f, -rotateYawRate, 0f);
+                            onCommandUpdated();
+                        }
+                    }
+                });
+
+        serverRotateCcw = connectedNode.newServiceServer(
+                commandsTopicName + "/" + ROTATE_COUNTERCLOCKWISE_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
+                    @Override
+                    public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
+                        if (isFlying) {
+                            stickController.hold(0f, 0f, rotateYawRate, 0f);
+                            onCommandUpdated();
                         }
                     }
                 });
@@ -201,17 +752,61 @@ public class DjiRosDriverNode implements NodeMain {
                 commandsTopicName + "/" + STOP_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
                     @Override
                     public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
-                        final FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-                        initializeIfNeeded(flightController);
-
                         //Setting all control parameters to 0 and disable virtual sticks
 
-                        pitch = 0f;
-                        roll = 0f;
-                        yaw = 0f;
-                        throttle = 0f;
-                        flightController.setVirtualStickModeEnabled(false, null);
+                        stickController.hover();
+                        onCommandUpdated();
+                        aircraft.setVirtualStickModeEnabled(false, null);
+
+                    }
+                });
+
+        serverCancelTrajectory = connectedNode.newServiceServer(
+                commandsTopicName + "/" + CANCEL_TRAJECTORY_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
+                    @Override
+                    public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
+                        stickController.cancelTrajectory();
+                        onCommandUpdated();
+                    }
+                });
 
+        serverHoldPosition = connectedNode.newServiceServer(
+                commandsTopicName + "/" + HOLD_POSITION_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
+                    @Override
+                    public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
+                        if (isFlying) {
+                            stickController.holdCurrentPosition();
+                        }
+                    }
+                });
+
+        serverReleaseHold = connectedNode.newServiceServer(
+                commandsTopicName + "/" + RELEASE_HOLD_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
+                    @Override
+                    public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
+                        stickController.releaseHold();
+                        onCommandUpdated();
+                    }
+                });
+
+        serverSetOrigin = connectedNode.newServiceServer(
+                commandsTopicName + "/" + SET_ORIGIN_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
+                    @Override
+                    public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
+                        if (!setOrigin()) {
+                            throw new ServiceException("no GPS position to set the origin at");
+                        }
+                    }
+                });
+
+        // for parameter servers or clients which do not notify changes
+        serverReloadParameters = connectedNode.newServiceServer(
+                commandsTopicName + "/" + RELOAD_PARAMETERS_CMD, std_srvs.Empty._TYPE, new ServiceResponseBuilder<std_srvs.EmptyRequest, std_srvs.EmptyResponse>() {
+                    @Override
+                    public void build(std_srvs.EmptyRequest empty, std_srvs.EmptyResponse empty2) throws ServiceException {
+                        if (!parameters.reloadAll()) {
+                            throw new ServiceException("some parameters were rejected, see the log");
+                        }
                     }
                 });
 
@@ -222,37 +817,155 @@ public class DjiRosDriverNode implements NodeMain {
             @Override
             public void onNewMessage(Object o) {
 
-                // save commands in global fields which will be used in for the virtual sticks
+                // publish the command as one snapshot which will be used in for the virtual sticks
 
+                if (isFastPathCommanding()) {
+                    return;
+                }
                 geometry_msgs.Twist message = (geometry_msgs.Twist) o;
-                throttle = (float) message.getLinear().getZ(); // Movement along the Z axis
-                pitch = (float) message.getLinear().getY(); // Movement along the y axis
-                roll = (float) message.getLinear().getX(); // Movement along the x axis
-                yaw = ((float) message.getAngular().getZ() * 180) / M_PI; // Convert to degrees. ROS works with radians...
+                geometry_msgs.Vector3 linear = message.getLinear();
+                stickController.onTwist(linear.getX(), linear.getY(), linear.getZ(), message.getAngular().getZ());
+                onCommandUpdated();
 
             }
         });
 
+        // Same commands with the host stamp: the age of each one is published, and a command which waited too long
+        // (e.g. in a TCP buffer during a Wi-Fi stall) is dropped, leaving the previous one to the watchdog
+        Subscriber<geometry_msgs.TwistStamped> subCmdvelStamped =
+                connectedNode.newSubscriber(this.cmdvelStampedTopicName, geometry_msgs.TwistStamped._TYPE);
+        subCmdvelStamped.addMessageListener(new MessageListener<geometry_msgs.TwistStamped>() {
+            @Override
+            public void onNewMessage(geometry_msgs.TwistStamped message) {
+                long ageNanos = commandAgeFilter.ageNanos(message.getHeader().getStamp().totalNsecs(),
+                        System.currentTimeMillis() * 1000000L);
+                publishCommandAge(ageNanos);
+                if (!commandAgeFilter.accept(ageNanos) || isFastPathCommanding()) {
+                    return;
+                }
+                geometry_msgs.Twist twist = message.getTwist();
+                geometry_msgs.Vector3 linear = twist.getLinear();
+                stickController.onTwist(linear.getX(), linear.getY(), linear.getZ(), twist.getAngular().getZ());
+                onCommandUpdated();
+            }
+        });
+
+        Subscriber<trajectory_msgs.MultiDOFJointTrajectory> subTrajectory =
+                connectedNode.newSubscriber(TRAJECTORY_TOPIC_NAME, trajectory_msgs.MultiDOFJointTrajectory._TYPE);
+
+        subTrajectory.addMessageListener(new MessageListener<trajectory_msgs.MultiDOFJointTrajectory>() {
+            @Override
+            public void onNewMessage(trajectory_msgs.MultiDOFJointTrajectory message) {
+                int dropped = loadTrajectory(message);
+                if (dropped > 0) {
+                    connectedNode.getLog().warn("Dropped " + dropped + " of " + message.getPoints().size() + " trajectory points");
+                }
+                onCommandUpdated();
+            }
+        });
+
+        // Setpoints of the onboard hold: east, north and altitude relative to the hold origin, or altitude only
+        Subscriber<geometry_msgs.Point> subPositionSetpoint =
+                connectedNode.newSubscriber(POSITION_SETPOINT_TOPIC_NAME, geometry_msgs.Point._TYPE);
+        subPositionSetpoint.addMessageListener(new MessageListener<geometry_msgs.Point>() {
+            @Override
+            public void onNewMessage(geometry_msgs.Point message) {
+                stickController.holdPosition((float) message.getX(), (float) message.getY(), (float) message.getZ());
+            }
+        });
+
+        Subscriber<std_msgs.Float32> subAltitudeSetpoint =
+                connectedNode.newSubscriber(ALTITUDE_SETPOINT_TOPIC_NAME, std_msgs.Float32._TYPE);
+        subAltitudeSetpoint.addMessageListener(new MessageListener<std_msgs.Float32>() {
+            @Override
+            public void onNewMessage(std_msgs.Float32 message) {
+                stickController.holdAltitude(message.getData());
+            }
+        });
+
+        if (null != gimbalController) {
+            gimbalPublisher = new GimbalPublisher(connectedNode, GIMBAL_ATTITUDE_TOPIC_NAME);
+
+            // Gimbal commands, coalesced to the newest one and sent by the gimbal loop. The vectors hold roll (x),
+            // pitch (y) and yaw (z) in radians or radians per second, pitch positive up and yaw clockwise from north
+            Subscriber<geometry_msgs.Vector3> subGimbalRate =
+                    connectedNode.newSubscriber(GIMBAL_RATE_TOPIC_NAME, geometry_msgs.Vector3._TYPE);
+            subGimbalRate.addMessageListener(new MessageListener<geometry_msgs.Vector3>() {
+                @Override
+                public void onNewMessage(geometry_msgs.Vector3 message) {
+                    gimbalController.onRate(message.getY(), message.getX(), message.getZ());
+                }
+            });
+
+            Subscriber<geometry_msgs.Vector3> subGimbalAngle =
+                    connectedNode.newSubscriber(GIMBAL_ANGLE_TOPIC_NAME, geometry_msgs.Vector3._TYPE);
+            subGimbalAngle.addMessageListener(new MessageListener<geometry_msgs.Vector3>() {
+                @Override
+                public void onNewMessage(geometry_msgs.Vector3 message) {
+                    gimbalController.onAngle(message.getY(), message.getX(), message.getZ());
+                }
+            });
+        }
+
         //Running threads
         runVirtualStickThread();
+        runGimbalThread();
         runDroneStatusThread();
+        runClockSyncThread();
     }
 
     @Override
     public void onShutdown(Node node) {
-        if (null != sendVirtualStickDataTimer) {
-            sendVirtualStickDataTimer.cancel();
-            sendVirtualStickDataTimer.purge();
-            sendVirtualStickDataTimer = null;
-            sendVirtualStickDataTask = null;
+        if (null != sendVirtualStickDataLoop) {
+            sendVirtualStickDataLoop.cancel();
+            sendVirtualStickDataLoop = null;
+        }
+
+        if (null != sendVirtualStickDataEventLoop) {
+            sendVirtualStickDataEventLoop.stop();
+            sendVirtualStickDataEventLoop = null;
         }
+        sendVirtualStickDataTask = null;
 
-        if (null != droneStatusTimer) {
-            droneStatusTimer.cancel();
-            droneStatusTimer.purge();
-            droneStatusTimer = null;
+        if (null != fastPath) {
+            fastPath.stop();
+            fastPath = null;
+        }
+
+        if (null != gimbalLoop) {
+            gimbalLoop.cancel();
+            gimbalLoop = null;
+        }
+        gimbalPublisher = null;
+
+        stickController.setFlightRecorder(null);
+        if (null != flightRecorder) {
+            flightRecorder.close();
+            flightRecorder = null;
+        }
+
+        if (null != droneStatusLoop) {
+            droneStatusLoop.cancel();
+            droneStatusLoop = null;
             droneStatusTask = null;
         }
+
+        if (null != diagnosticsLoop) {
+            diagnosticsLoop.cancel();
+            diagnosticsLoop = null;
+        }
+
+        if (null != clockSyncLoop) {
+            clockSyncLoop.cancel();
+            clockSyncLoop = null;
+        }
+        clockSyncClient = null;
+        commandExecutor.shutdown();
+
+        if (ownsScheduler && null != scheduler) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
     }
 
     @Override
@@ -270,37 +983,239 @@ public class DjiRosDriverNode implements NodeMain {
     // Private Methods
     //***************************
 
+    private PeriodicScheduler getOrCreateScheduler() {
+        if (null == scheduler) {
+            scheduler = new PeriodicScheduler(NODE_NAME);
+        }
+        return scheduler;
+    }
+
     private void runVirtualStickThread() {
-        if (null == sendVirtualStickDataTimer) {
+        if (null == sendVirtualStickDataLoop && null == sendVirtualStickDataEventLoop) {
             sendVirtualStickDataTask = new SendVirtualStickDataTask();
-            sendVirtualStickDataTimer = new Timer();
-            sendVirtualStickDataTimer.schedule(sendVirtualStickDataTask, 0, PERIOD);
+
+            if (forwardingMode == ForwardingMode.EVENT_DRIVEN) {
+                sendVirtualStickDataEventLoop = new EventDrivenLoop(CONTROL_TASK_NAME, sendVirtualStickDataTask);
+                sendVirtualStickDataEventLoop.setIntervals(eventMinIntervalMs, eventKeepaliveMs);
+                sendVirtualStickDataEventLoop.start();
+            }
+            else {
+                sendVirtualStickDataLoop = getOrCreateScheduler().scheduleAtRate(CONTROL_TASK_NAME,
+                        PeriodicScheduler.Priority.CONTROL, controlRateHz, sendVirtualStickDataTask);
+            }
+        }
+    }
+
+    private void runGimbalThread() {
+        if (null != gimbalController && null == gimbalLoop) {
+            // registered once, the backend registers it again whenever the gimbal reconnects
+            gimbal.setStateListener(new GimbalBackend.StateListener() {
+                @Override
+                public void onGimbalUpdate(GimbalAttitude attitude) {
+                    GimbalPublisher publisher = gimbalPublisher;
+                    if (null != publisher) {
+                        publisher.onGimbalState(attitude);
+                    }
+                }
+            });
+            gimbalLoop = getOrCreateScheduler().scheduleAtRate(GIMBAL_TASK_NAME,
+                    PeriodicScheduler.Priority.CONTROL, gimbalRateHz, new SendGimbalDataTask());
         }
     }
 
     private void runDroneStatusThread() {
-        if (null == droneStatusTimer) {
+        if (null == droneStatusLoop) {
             droneStatusTask = new DroneStatusTask();
-            droneStatusTimer = new Timer();
-            droneStatusTimer.schedule(droneStatusTask, 0, STATUS_PERIOD);
+            // registered once, the backend registers them again whenever the aircraft reconnects
+            aircraft.setBatteryListener(droneStatusTask.batteryListener);
+            aircraft.setStateListener(droneStatusTask.stateListener);
+            droneStatusLoop = getOrCreateScheduler().scheduleAtFixedRate(STATUS_TASK_NAME,
+                    PeriodicScheduler.Priority.TELEMETRY, 0, statusPeriodMs, droneStatusTask);
+            diagnosticsLoop = getOrCreateScheduler().scheduleAtFixedRate(DIAGNOSTICS_TASK_NAME,
+                    PeriodicScheduler.Priority.HEALTH, diagnosticsPeriodMs, diagnosticsPeriodMs, new DiagnosticsTask());
+        }
+    }
+
+    private void runClockSyncThread() {
+        if (null == clockSyncLoop && null != clockSyncClient) {
+            clockSyncLoop = getOrCreateScheduler().scheduleAtFixedRate(CLOCK_SYNC_TASK_NAME,
+                    PeriodicScheduler.Priority.HEALTH, 0, clockSyncPeriodMs, clockSyncClient);
+        }
+    }
+
+    /**
+     * Publishes the age of a stamped movement command in seconds, NaN when it is not known
+     */
+    private void publishCommandAge(long ageNanos) {
+        std_msgs.Float32 message = commandAgePool.next();
+        message.setData(ageNanos == CommandAgeFilter.UNKNOWN_AGE ? Float.NaN : ageNanos / 1e9f);
+        pubCommandAge.publish(message);
+    }
+
+    /**
+     * Publishes the id of a new flight command execution as an ACTIVE goal, the Empty services cannot return it.
+     * Its result is later published with the same goal id.
+     */
+    private void onFlightCommandAccepted(FlightCommand command, long id, long submittedMillis) {
+        Publisher<actionlib_msgs.GoalStatus> publisher = pubCommandResult;
+        if (null != publisher) {
+            actionlib_msgs.GoalStatus status = newGoalStatus(publisher, command, id, submittedMillis);
+            status.setStatus(actionlib_msgs.GoalStatus.ACTIVE);
+            status.setText("command=" + command.label + ";id=" + id + ";status=ACTIVE");
+            publisher.publish(status);
+        }
+    }
+
+    /**
+     * Reports the completion of a flight command: recorded, published as a typed result and, for existing
+     * consumers, as an Empty message on the done topic
+     */
+    private void onFlightCommandResult(FlightCommandResult result) {
+        FlightRecorder recorder = flightRecorder;
+        if (null != recorder) {
+            recorder.recordSdkResult(result.command.recorderOperation, result.errorCode);
+        }
+
+        Publisher<actionlib_msgs.GoalStatus> publisher = pubCommandResult;
+        if (null != publisher) {
+            actionlib_msgs.GoalStatus status = newGoalStatus(publisher, result.command, result.id, result.submittedMillis);
+            status.setStatus(toGoalStatus(result.status));
+            status.setText(result.toString());
+            publisher.publish(status);
+        }
+
+        if (null != pubResult) {
+            pubResult.publish(pubResult.newMessage());
+        }
+
+        // an aborted takeoff was cut short by the shutdown of the node
+        if (result.command == FlightCommand.TAKEOFF && result.status != FlightCommandResult.Status.ABORTED) {
+            StartVirtualSticks();
+        }
+    }
+
+    /**
+     * @return a status whose goal id is "label/id", stamped with the submission time
+     */
+    private static actionlib_msgs.GoalStatus newGoalStatus(Publisher<actionlib_msgs.GoalStatus> publisher,
+                                                           FlightCommand command, long id, long submittedMillis) {
+        actionlib_msgs.GoalStatus status = publisher.newMessage();
+        actionlib_msgs.GoalID goalId = status.getGoalId();
+        goalId.setId(command.label + "/" + id);
+        goalId.getStamp().secs = (int) (submittedMillis / 1000);
+        goalId.getStamp().nsecs = (int) ((submittedMillis % 1000) * 1000000);
+        return status;
+    }
+
+    private static byte toGoalStatus(FlightCommandResult.Status status) {
+        switch (status) {
+            case SUCCEEDED:
+                return actionlib_msgs.GoalStatus.SUCCEEDED;
+            case REJECTED:
+                return actionlib_msgs.GoalStatus.REJECTED;
+            default:
+                return actionlib_msgs.GoalStatus.ABORTED;
+        }
+    }
+
+    /**
+     * Copies a velocity trajectory into the trajectory buffer of the stick controller, which plays it back at the
+     * control loop rate. The first velocity of each point is used, in the same body frame and units as cmd_vel,
+     * transforms are ignored. Playback starts at the header stamp, a host time converted to the phone clock with the
+     * clock offset estimate. Without an estimate the host clock cannot be compared with the phone clock, so playback
+     * then starts on receipt, as it does when the stamp is not set.
+     *
+     * @return the number of points which were dropped
+     */
+    private int loadTrajectory(trajectory_msgs.MultiDOFJointTrajectory message) {
+        long nowNanos = System.nanoTime();
+        org.ros.message.Time stamp = message.getHeader().getStamp();
+        long startNanos = nowNanos;
+        if ((stamp.secs != 0 || stamp.nsecs != 0) && clockOffsetEstimator.hasEstimate()) {
+            startNanos += clockOffsetEstimator.toLocalNanos(stamp.totalNsecs()) - System.currentTimeMillis() * 1000000L;
+        }
+
+        TrajectoryBuffer trajectory = stickController.getTrajectory();
+        trajectory.beginBatch(startNanos);
+        int skipped = 0;
+        for (trajectory_msgs.MultiDOFJointTrajectoryPoint point : message.getPoints()) {
+            if (point.getVelocities().isEmpty()) {
+                skipped++;
+                continue;
+            }
+            geometry_msgs.Twist velocity = point.getVelocities().get(0);
+            geometry_msgs.Vector3 linear = velocity.getLinear();
+            trajectory.addPoint(point.getTimeFromStart().totalNsecs(),
+                    TwistConversion.pitch(linear.getX(), linear.getY()),
+                    TwistConversion.roll(linear.getX(), linear.getY()),
+                    TwistConversion.yaw(velocity.getAngular().getZ()),
+                    TwistConversion.throttle(linear.getZ()));
+        }
+        return stickController.commitTrajectory() + skipped;
+    }
+
+    /**
+     * Moves the local origin (odometry, position hold, geofence) to the current position
+     *
+     * @return false if the position is not known
+     */
+    private boolean setOrigin() {
+        double lat = latitude;
+        double lon = longitude;
+        if (Double.isNaN(lat) || Double.isNaN(lon)) {
+            return false;
         }
+        stickController.getLocalProjection().setOrigin(lat, lon);
+        return true;
     }
 
-    private void initializeIfNeeded(FlightController flightController) {
+    private void startFastPath(ConnectedNode connectedNode, DriverParameters parameters) {
+        int port = parameters.getFastPathPort(fastPathPort);
+        if (port <= 0) {
+            return;
+        }
 
-        if (!initialized) {
+        FastPathEndpoint endpoint = new FastPathEndpoint(port, new FastPathEndpoint.Listener() {
+            @Override
+            public void onPacket(FastPathPacket packet) {
+                if (packet.type == FastPathPacket.TYPE_TWIST) {
+                    fastPathTwistNanos = System.nanoTime();
+                    stickController.onTwist(packet.linearX, packet.linearY, packet.linearZ, packet.angularZ);
+                    onCommandUpdated();
+                }
+            }
+        });
+        endpoint.getFilter().setMaxAgeMs(parameters.getFastPathMaxAgeMs());
+        fastPathHoldOffMs = parameters.getFastPathHoldOffMs(fastPathHoldOffMs);
+        try {
+            endpoint.start();
+            fastPath = endpoint;
+        }
+        catch (IOException e) {
+            connectedNode.getLog().error("Cannot start the UDP fast path on port " + port, e);
+        }
+    }
 
-            flightController.setVirtualStickModeEnabled(true, null);
-            flightController.setNoviceModeEnabled(false, null);
-            flightController.setYawControlMode(YawControlMode.ANGULAR_VELOCITY);
-            flightController.setVerticalControlMode(VerticalControlMode.VELOCITY);
-            flightController.setRollPitchControlMode(RollPitchControlMode.VELOCITY);
-            flightController.setRollPitchCoordinateSystem(FlightCoordinateSystem.BODY);
-            flightController.getFlightAssistant().setCollisionAvoidanceEnabled(false, null);
-            flightController.getFlightAssistant().setActiveObstacleAvoidanceEnabled(false, null);
-            flightController.setFlightOrientationMode(FlightOrientationMode.AIRCRAFT_HEADING, null);
+    /**
+     * @return true while the fast path delivers commands: twists arriving over TCPROS then are either duplicates or
+     * a backlog released by a stall, which would override the fresher datagrams
+     */
+    private boolean isFastPathCommanding() {
+        long lastNanos = fastPathTwistNanos;
+        if (null == fastPath || 0 == lastNanos || System.nanoTime() - lastNanos >= fastPathHoldOffMs * 1000000L) {
+            return false;
+        }
+        ignoredTcpTwists.incrementAndGet();
+        return true;
+    }
 
-            initialized = true;
+    /**
+     * Wakes up the event driven loop, if running, so a new command is sent without waiting for the next tick
+     */
+    private void onCommandUpdated() {
+        EventDrivenLoop eventLoop = sendVirtualStickDataEventLoop;
+        if (null != eventLoop) {
+            eventLoop.signal();
         }
     }
 
@@ -309,77 +1224,119 @@ public class DjiRosDriverNode implements NodeMain {
     //***************************
 
     /**
-     * A thread running a loop sending sticks inputs to the Drone
+     * A loop sending sticks inputs to the Drone. The sending path lives in VirtualStickController so it can be
+     * benchmarked without ROS and the SDK, and does not allocate in the steady state.
      */
-    private class SendVirtualStickDataTask extends TimerTask {
+    private class SendVirtualStickDataTask implements Runnable {
 
         @Override
         public void run() {
-            if (BaseDJIApplication.getProductInstance() != null) {
-                FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-                initializeIfNeeded(flightController);
-
-                //use the global fields and send as virtual sticks params.
-
-                flightController.sendVirtualStickFlightControlData(new FlightControlData(pitch,
-                                roll,
-                                yaw,
-                                throttle),
-                        new CommonCallbacks.CompletionCallback() {
-                            @Override
-                            public void onResult(DJIError djiError) {
-
-                            }
-                        });
+            stickController.sendLatest();
+
+            // an event driven loop is kept running while a trajectory plays
+            EventDrivenLoop eventLoop = sendVirtualStickDataEventLoop;
+            if (null != eventLoop && stickController.getTrajectory().isActive()) {
+                eventLoop.signal();
             }
         }
     }
 
     /**
-     * A thread running status checks from the drone and send as a topic to ROS
+     * A loop sending the newest gimbal command, the gimbal counterpart of SendVirtualStickDataTask
      */
-    private class DroneStatusTask extends TimerTask {
+    private class SendGimbalDataTask implements Runnable {
 
         @Override
         public void run() {
-            if (BaseDJIApplication.getProductInstance() != null) {
-                isConnected = BaseDJIApplication.getProductInstance().isConnected();
-
-                if (!isCallbackSetup) {
-                    BaseDJIApplication.getProductInstance().getBattery().setStateCallback(new BatteryState.Callback() {
-                        @Override
-                        public void onUpdate(BatteryState batteryState) {
-                            batteryLevelAvg = batteryState.getChargeRemainingInPercent();
-                        }
-                    });
-
-
-                    ((Aircraft) BaseDJIApplication.getProductInstance()).getFlightController().setStateCallback(new FlightControllerState.Callback() {
-                        @Override
-                        public void onUpdate(FlightControllerState flightControllerState) {
-                            areMotorsOn = flightControllerState.areMotorsOn();
-                            isFlying = flightControllerState.isFlying();
-                            altitude = flightControllerState.getAircraftLocation().getAltitude();
-                            latitude = flightControllerState.getAircraftLocation().getLatitude();
-                            longitude = flightControllerState.getAircraftLocation().getLongitude();
-                            landConfirmNeeded = flightControllerState.isLandingConfirmationNeeded();
-
-                            if (landConfirmNeeded) {
-                                FlightController flightController = ((Aircraft) (BaseDJIApplication.getProductInstance())).getFlightController();
-                                flightController.confirmLanding(new CommonCallbacks.CompletionCallback() {
-                                    @Override
-                                    public void onResult(DJIError djiError) {
-                                        pubResult.publish(pubResult.newMessage());
-                                    }
-                                });
-                            }
-                        }
-                    });
+            gimbalController.sendLatest();
+        }
+    }
+
+    /**
+     * Publishes the command path diagnostics
+     */
+    private class DiagnosticsTask implements Runnable {
+
+        @Override
+        public void run() {
+            diagnosticsPublisher.publish(getControlLoopStats(), stickController.getCommandWatchdog().getTrips(),
+                    getScheduledTaskFailures());
+        }
+    }
+
+    /**
+     * A thread running status checks from the drone and send as a topic to ROS.
+     * The typed status topics are published from the state callbacks registered here, this task only republishes
+     * them when they were not updated for their maximum interval. The string on /dji/status is kept for existing
+     * consumers.
+     */
+    private class DroneStatusTask implements Runnable {
+
+        private final StringBuilder statusBuilder = new StringBuilder(128);
+
+        private final AircraftBackend.BatteryListener batteryListener = new AircraftBackend.BatteryListener() {
+            @Override
+            public void onBatteryUpdate(BatteryInfo battery) {
+                batteryLevelAvg = battery.chargeRemainingInPercent;
+                statusPublisher.onBatteryState(battery);
+
+                FlightRecorder recorder = flightRecorder;
+                if (null != recorder) {
+                    recorder.recordBattery(battery.chargeRemainingInPercent, battery.voltageMv / 1000.0,
+                            battery.currentMa / 1000.0, battery.temperature);
                 }
             }
+        };
+
+        private final AircraftBackend.StateListener stateListener = new AircraftBackend.StateListener() {
+            @Override
+            public void onStateUpdate(AircraftState state) {
+                boolean tookOff = state.isFlying && !isFlying;
+                areMotorsOn = state.areMotorsOn;
+                isFlying = state.isFlying;
+                altitude = state.altitude;
+                latitude = state.latitude;
+                longitude = state.longitude;
+                if (tookOff) {
+                    // the local frame starts at the take off point, as the altitude does
+                    setOrigin();
+                }
+                landConfirmNeeded = state.isLandingConfirmationNeeded;
+                statusPublisher.onFlightControllerState(state, isConnected);
+                telemetryPublisher.onFlightControllerState(state);
+                tfBroadcaster.onFlightControllerState(state);
+                if (stickController.onAircraftState(state)) {
+                    // the new hold output goes out with the next send
+                    onCommandUpdated();
+                }
+
+                FastPathEndpoint endpoint = fastPath;
+                if (null != endpoint) {
+                    endpoint.sendTelemetry(StatusPublisher.buildFlags(isConnected, areMotorsOn, isFlying, landConfirmNeeded), state);
+                }
+
+                FlightRecorder recorder = flightRecorder;
+                if (null != recorder) {
+                    recorder.recordState(StatusPublisher.buildFlags(isConnected, areMotorsOn, isFlying, landConfirmNeeded),
+                            latitude, longitude, altitude, state.velocityX, state.velocityY, state.velocityZ,
+                            state.roll, state.pitch, state.yaw);
+                }
+
+                if (landConfirmNeeded) {
+                    // requested on every update while needed, collapsed by the executor until it completes
+                    commandExecutor.submit(FlightCommand.CONFIRM_LANDING);
+                }
+            }
+        };
+
+        @Override
+        public void run() {
+            isConnected = aircraft.isConnected();
+
+            statusPublisher.onHeartbeat(isConnected);
 
             std_msgs.String msg = pubDjiStatus.newMessage();
-            msg.setData("battery=" + batteryLevelAvg + ";isConnected=" + isConnected + ";areMotorsOn=" + areMotorsOn + ";isFlying=" + isFlying + ";altitude=" + altitude);
+            msg.setData(StatusFormatter.format(statusBuilder, batteryLevelAvg, isConnected, areMotorsOn, isFlying, altitude));
             pubDjiStatus.publish(msg);
         }
     }
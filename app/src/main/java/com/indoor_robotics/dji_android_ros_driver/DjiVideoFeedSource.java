@@ -0,0 +1,43 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import dji.sdk.camera.VideoFeeder;
+
+/**
+ * The primary video feed of the connected DJI product
+ */
+public class DjiVideoFeedSource implements VideoFeedSource {
+
+    private VideoFeeder.VideoFeed videoFeed = null;
+
+    @Override
+    public synchronized boolean start(final VideoFrameSink sink) {
+        if (null != videoFeed) {
+            return true;
+        }
+        if (null == VideoFeeder.getInstance() || null == VideoFeeder.getInstance().getPrimaryVideoFeed()) {
+            return false;
+        }
+
+        videoFeed = VideoFeeder.getInstance().getPrimaryVideoFeed();
+        videoFeed.setCallback(new VideoFeeder.VideoDataCallback() {
+            @Override
+            public void onReceive(byte[] videoBuffer, int size) {
+                sink.onFrame(videoBuffer, 0, size);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (null != videoFeed) {
+            videoFeed.setCallback(null);
+            videoFeed = null;
+        }
+    }
+}
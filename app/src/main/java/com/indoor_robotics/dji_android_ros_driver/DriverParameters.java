@@ -0,0 +1,368 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.apache.commons.logging.Log;
+import org.ros.node.parameter.ParameterListener;
+import org.ros.node.parameter.ParameterTree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The private parameters of the driver node, read from the parameter server when the node starts.
+ *
+ * Topic names, the forwarding mode, the UDP fast path and the mounting offsets are only read on start, they shape
+ * the node. All the other parameters (loop rates, intervals, watchdog, rotation rate, command age, clock sync,
+ * position hold gains, setpoint stages and geofence) are hot reloadable: they are grouped, and a change of any parameter of a group, reported by
+ * a parameter server subscription or requested with reloadAll(), applies the whole group again to the running
+ * driver. Loop rates change in place on the running tasks, without restarting them.
+ *
+ * A parameter which is not set keeps the value the driver was configured with, except for the gains and stages
+ * which fall back to their defaults. An invalid value is logged, the rest of its group is then not applied.
+ */
+public class DriverParameters {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final java.lang.String PREFIX = "~";
+    private static final java.lang.String STATUS_PREFIX = "~status/";
+    private static final java.lang.String WATCHDOG_PREFIX = "~watchdog/";
+    private static final java.lang.String EVENT_DRIVEN_PREFIX = "~event_driven/";
+    private static final java.lang.String POSITION_HOLD_PREFIX = "~position_hold/";
+    private static final java.lang.String SETPOINT_PREFIX = "~setpoint/";
+    private static final java.lang.String GEOFENCE_PREFIX = "~geofence/";
+    private static final java.lang.String CLOCK_PREFIX = "~clock/";
+    private static final java.lang.String FAST_PATH_PREFIX = "~fast_path/";
+    private static final java.lang.String TF_PREFIX = "~tf/";
+    private static final int OFFSET_LENGTH = 6;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final DjiRosDriverNode driver;
+    private final ParameterTree params;
+    private final Log log;
+    private final List<Group> groups = new ArrayList<Group>();
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public DriverParameters(DjiRosDriverNode driver, ParameterTree params, Log log) {
+        this.driver = driver;
+        this.params = params;
+        this.log = log;
+
+        groups.add(new Group("rates", PREFIX + "control_rate_hz", PREFIX + "gimbal_rate_hz",
+                PREFIX + "status_period_ms", PREFIX + "diagnostics_period_ms") {
+            @Override
+            void load() {
+                driver.setControlRateHz(getInteger(PREFIX + "control_rate_hz", driver.getControlRateHz()));
+                driver.setGimbalRateHz(getInteger(PREFIX + "gimbal_rate_hz", driver.getGimbalRateHz()));
+                driver.setStatusPeriodMs(getInteger(PREFIX + "status_period_ms", driver.getStatusPeriodMs()));
+                driver.setDiagnosticsPeriodMs(getInteger(PREFIX + "diagnostics_period_ms", driver.getDiagnosticsPeriodMs()));
+            }
+        });
+        groups.add(new Group("status", STATUS_PREFIX + "min_interval_ms", STATUS_PREFIX + "max_interval_ms") {
+            @Override
+            void load() {
+                driver.setStatusPublishIntervals(
+                        getInteger(STATUS_PREFIX + "min_interval_ms", driver.getStatusMinIntervalMs()),
+                        getInteger(STATUS_PREFIX + "max_interval_ms", driver.getStatusMaxIntervalMs()));
+            }
+        });
+        groups.add(new Group("watchdog", WATCHDOG_PREFIX + "timeout_ms", WATCHDOG_PREFIX + "decay_ms") {
+            @Override
+            void load() {
+                CommandWatchdog watchdog = driver.getCommandWatchdog();
+                driver.setCommandWatchdog(
+                        getInteger(WATCHDOG_PREFIX + "timeout_ms", watchdog.getTimeoutMs()),
+                        getInteger(WATCHDOG_PREFIX + "decay_ms", watchdog.getDecayMs()));
+            }
+        });
+        groups.add(new Group("event_driven", EVENT_DRIVEN_PREFIX + "min_interval_ms", EVENT_DRIVEN_PREFIX + "keepalive_ms") {
+            @Override
+            void load() {
+                driver.setEventDrivenIntervals(
+                        getInteger(EVENT_DRIVEN_PREFIX + "min_interval_ms", driver.getEventMinIntervalMs()),
+                        getInteger(EVENT_DRIVEN_PREFIX + "keepalive_ms", driver.getEventKeepaliveMs()));
+            }
+        });
+        groups.add(new Group("commands", PREFIX + "rotate_yaw_rate", PREFIX + "command_max_age_ms") {
+            @Override
+            void load() {
+                driver.setRotateYawRate(getFloat(PREFIX + "rotate_yaw_rate", driver.getRotateYawRate()));
+                driver.setCommandMaxAgeMs(getInteger(PREFIX + "command_max_age_ms", driver.getCommandMaxAgeMs()));
+            }
+        });
+        groups.add(new Group("clock", CLOCK_PREFIX + "ping_period_ms", CLOCK_PREFIX + "max_rtt_ms") {
+            @Override
+            void load() {
+                driver.setClockSyncPeriodMs(getInteger(CLOCK_PREFIX + "ping_period_ms", driver.getClockSyncPeriodMs()));
+                ClockOffsetEstimator clock = driver.getClockOffsetEstimator();
+                clock.setMaxRttMs(getInteger(CLOCK_PREFIX + "max_rtt_ms", clock.getMaxRttMs()));
+            }
+        });
+        groups.add(new Group("position_hold", POSITION_HOLD_PREFIX + "kp_xy", POSITION_HOLD_PREFIX + "ki_xy",
+                POSITION_HOLD_PREFIX + "kd_xy", POSITION_HOLD_PREFIX + "max_speed_xy", POSITION_HOLD_PREFIX + "kp_z",
+                POSITION_HOLD_PREFIX + "ki_z", POSITION_HOLD_PREFIX + "kd_z", POSITION_HOLD_PREFIX + "max_speed_z",
+                POSITION_HOLD_PREFIX + "kp_yaw", POSITION_HOLD_PREFIX + "max_yaw_rate") {
+            @Override
+            void load() {
+                loadPositionHold();
+            }
+        });
+        groups.add(new Group("setpoint", SETPOINT_PREFIX + "scale_xy", SETPOINT_PREFIX + "scale_yaw",
+                SETPOINT_PREFIX + "scale_z", SETPOINT_PREFIX + "frame", SETPOINT_PREFIX + "deadband_xy",
+                SETPOINT_PREFIX + "deadband_yaw", SETPOINT_PREFIX + "deadband_z", SETPOINT_PREFIX + "max_speed_xy",
+                SETPOINT_PREFIX + "max_yaw_rate", SETPOINT_PREFIX + "max_speed_z", SETPOINT_PREFIX + "slew_xy",
+                SETPOINT_PREFIX + "slew_yaw", SETPOINT_PREFIX + "slew_z", SETPOINT_PREFIX + "lowpass_hz") {
+            @Override
+            void load() {
+                loadSetpoint();
+            }
+        });
+        groups.add(new Group("geofence", GEOFENCE_PREFIX + "radius", GEOFENCE_PREFIX + "max_altitude",
+                GEOFENCE_PREFIX + "margin") {
+            @Override
+            void load() {
+                SetpointPipeline.Geofence geofence = driver.getSetpointPipeline().getStage(SetpointPipeline.Geofence.class);
+                if (null != geofence) {
+                    geofence.configure(
+                            getFloat(GEOFENCE_PREFIX + "radius", 0f),
+                            getFloat(GEOFENCE_PREFIX + "max_altitude", 0f),
+                            getFloat(GEOFENCE_PREFIX + "margin", SetpointPipeline.Geofence.DEFAULT_MARGIN));
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the parameters which shape the node: topic names and forwarding mode. Called before the topics are
+     * set up.
+     */
+    public void loadStartup() {
+        driver.setCommandsTopicName(params.getString(PREFIX + "commands_topic", driver.getCommandsTopicName()));
+        driver.setCmdvelTopicName(params.getString(PREFIX + "cmd_vel_topic", driver.getCmdvelTopicName()));
+        driver.setCmdvelStampedTopicName(params.getString(PREFIX + "cmd_vel_stamped_topic", driver.getCmdvelStampedTopicName()));
+        driver.setStatusTopicName(params.getString(PREFIX + "status_topic", driver.getStatusTopicName()));
+
+        java.lang.String mode = params.getString(PREFIX + "forwarding_mode", driver.getForwardingMode().name());
+        try {
+            driver.setForwardingMode(DjiRosDriverNode.ForwardingMode.valueOf(mode.toUpperCase()));
+        }
+        catch (IllegalArgumentException e) {
+            log.error("Unknown forwarding mode " + mode + ", keeping " + driver.getForwardingMode());
+        }
+    }
+
+    /**
+     * Applies all the hot reloadable groups
+     *
+     * @return false if a group was invalid
+     */
+    public synchronized boolean reloadAll() {
+        boolean valid = true;
+        for (Group group : groups) {
+            valid &= group.reload();
+        }
+        return valid;
+    }
+
+    /**
+     * Subscribes to the parameters of every group, a change applies its group again
+     */
+    public void subscribe() {
+        for (final Group group : groups) {
+            ParameterListener listener = new ParameterListener() {
+                @Override
+                public void onNewValue(Object value) {
+                    synchronized (DriverParameters.this) {
+                        group.reload();
+                    }
+                }
+            };
+            for (java.lang.String name : group.names) {
+                params.addParameterListener(name, listener);
+            }
+        }
+    }
+
+    /**
+     * @return the UDP fast path port, the given default when not set
+     */
+    public int getFastPathPort(int defaultPort) {
+        return params.getInteger(FAST_PATH_PREFIX + "port", defaultPort);
+    }
+
+    /**
+     * @return how long TCPROS twists are ignored after a fast path command, the given default when not set
+     */
+    public int getFastPathHoldOffMs(int defaultHoldOffMs) {
+        return params.getInteger(FAST_PATH_PREFIX + "hold_off_ms", defaultHoldOffMs);
+    }
+
+    public int getFastPathMaxAgeMs() {
+        return params.getInteger(FAST_PATH_PREFIX + "max_age_ms", SequenceFilter.DEFAULT_MAX_AGE_MS);
+    }
+
+    /**
+     * @return the mounting offset of the gimbal in the body frame: x, y, z in meters, roll, pitch, yaw in radians
+     */
+    public double[] getGimbalOffset() {
+        return readOffset(TF_PREFIX + "gimbal_offset");
+    }
+
+    /**
+     * @return the mounting offset of the camera in the body frame, same layout as the gimbal offset
+     */
+    public double[] getCameraOffset() {
+        return readOffset(TF_PREFIX + "camera_offset");
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private int getInteger(java.lang.String name, int defaultValue) {
+        return params.getInteger(name, defaultValue);
+    }
+
+    private float getFloat(java.lang.String name, float defaultValue) {
+        return (float) params.getDouble(name, defaultValue);
+    }
+
+    /**
+     * Reads the gains of the position hold, the defaults are used for those which are not set
+     */
+    private void loadPositionHold() {
+        PositionHoldController hold = driver.getPositionHold();
+        hold.setHorizontalGains(
+                getFloat(POSITION_HOLD_PREFIX + "kp_xy", PositionHoldController.DEFAULT_HORIZONTAL_KP),
+                getFloat(POSITION_HOLD_PREFIX + "ki_xy", PositionHoldController.DEFAULT_HORIZONTAL_KI),
+                getFloat(POSITION_HOLD_PREFIX + "kd_xy", PositionHoldController.DEFAULT_HORIZONTAL_KD),
+                getFloat(POSITION_HOLD_PREFIX + "max_speed_xy", PositionHoldController.DEFAULT_MAX_HORIZONTAL_SPEED));
+        hold.setVerticalGains(
+                getFloat(POSITION_HOLD_PREFIX + "kp_z", PositionHoldController.DEFAULT_VERTICAL_KP),
+                getFloat(POSITION_HOLD_PREFIX + "ki_z", PositionHoldController.DEFAULT_VERTICAL_KI),
+                getFloat(POSITION_HOLD_PREFIX + "kd_z", PositionHoldController.DEFAULT_VERTICAL_KD),
+                getFloat(POSITION_HOLD_PREFIX + "max_speed_z", PositionHoldController.DEFAULT_MAX_VERTICAL_SPEED));
+        hold.setYawGains(
+                getFloat(POSITION_HOLD_PREFIX + "kp_yaw", PositionHoldController.DEFAULT_YAW_KP),
+                getFloat(POSITION_HOLD_PREFIX + "max_yaw_rate", PositionHoldController.DEFAULT_MAX_YAW_RATE));
+    }
+
+    /**
+     * Configures the stages of the default setpoint pipeline. Horizontal values apply to pitch and roll, in m/s,
+     * yaw values are in degrees per second.
+     */
+    private void loadSetpoint() {
+        SetpointPipeline pipeline = driver.getSetpointPipeline();
+
+        SetpointPipeline.Scale scale = pipeline.getStage(SetpointPipeline.Scale.class);
+        if (null != scale) {
+            setHorizontal(scale, "scale_xy", 1f);
+            scale.set(SetpointPipeline.YAW, getFloat(SETPOINT_PREFIX + "scale_yaw", 1f));
+            scale.set(SetpointPipeline.THROTTLE, getFloat(SETPOINT_PREFIX + "scale_z", 1f));
+        }
+
+        SetpointPipeline.FrameTransform frameTransform = pipeline.getStage(SetpointPipeline.FrameTransform.class);
+        if (null != frameTransform) {
+            java.lang.String frame = params.getString(SETPOINT_PREFIX + "frame", "body");
+            frameTransform.setFrame("ground".equalsIgnoreCase(frame) ? SetpointPipeline.Frame.GROUND : SetpointPipeline.Frame.BODY);
+        }
+
+        SetpointPipeline.Deadband deadband = pipeline.getStage(SetpointPipeline.Deadband.class);
+        if (null != deadband) {
+            setHorizontal(deadband, "deadband_xy", 0f);
+            deadband.set(SetpointPipeline.YAW, getFloat(SETPOINT_PREFIX + "deadband_yaw", 0f));
+            deadband.set(SetpointPipeline.THROTTLE, getFloat(SETPOINT_PREFIX + "deadband_z", 0f));
+        }
+
+        SetpointPipeline.Clamp clamp = pipeline.getStage(SetpointPipeline.Clamp.class);
+        if (null != clamp) {
+            setHorizontal(clamp, "max_speed_xy", SetpointPipeline.MAX_HORIZONTAL_SPEED);
+            clamp.set(SetpointPipeline.YAW, getFloat(SETPOINT_PREFIX + "max_yaw_rate", SetpointPipeline.MAX_YAW_RATE));
+            clamp.set(SetpointPipeline.THROTTLE, getFloat(SETPOINT_PREFIX + "max_speed_z", SetpointPipeline.MAX_VERTICAL_SPEED));
+        }
+
+        SetpointPipeline.SlewLimit slewLimit = pipeline.getStage(SetpointPipeline.SlewLimit.class);
+        if (null != slewLimit) {
+            setHorizontal(slewLimit, "slew_xy", 0f);
+            slewLimit.set(SetpointPipeline.YAW, getFloat(SETPOINT_PREFIX + "slew_yaw", 0f));
+            slewLimit.set(SetpointPipeline.THROTTLE, getFloat(SETPOINT_PREFIX + "slew_z", 0f));
+        }
+
+        SetpointPipeline.LowPass lowPass = pipeline.getStage(SetpointPipeline.LowPass.class);
+        if (null != lowPass) {
+            lowPass.setCutoffHz(getFloat(SETPOINT_PREFIX + "lowpass_hz", 0f));
+        }
+    }
+
+    private void setHorizontal(SetpointPipeline.AxisStage stage, java.lang.String name, float defaultValue) {
+        float value = getFloat(SETPOINT_PREFIX + name, defaultValue);
+        stage.set(SetpointPipeline.PITCH, value);
+        stage.set(SetpointPipeline.ROLL, value);
+    }
+
+    /**
+     * Reads a mounting offset parameter, a list of x, y, z in meters and roll, pitch, yaw in radians.
+     * Missing or malformed offsets are all zeros.
+     */
+    private double[] readOffset(java.lang.String name) {
+        double[] offset = new double[OFFSET_LENGTH];
+        List<?> values = params.getList(name, Collections.emptyList());
+        if (values.size() == OFFSET_LENGTH) {
+            for (int i = 0; i < OFFSET_LENGTH; i++) {
+                Object value = values.get(i);
+                if (value instanceof Number) {
+                    offset[i] = ((Number) value).doubleValue();
+                }
+            }
+        }
+        return offset;
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    /**
+     * Parameters applied together, e.g. the min and max of an interval which are validated as a pair
+     */
+    private abstract class Group {
+
+        final java.lang.String name;
+        final java.lang.String[] names;
+
+        Group(java.lang.String name, java.lang.String... names) {
+            this.name = name;
+            this.names = names;
+        }
+
+        abstract void load();
+
+        /**
+         * @return false if the parameters were rejected
+         */
+        boolean reload() {
+            try {
+                load();
+                return true;
+            }
+            catch (RuntimeException e) {
+                // invalid values, or the parameter server could not be reached
+                log.error("Cannot apply the " + name + " parameters", e);
+                return false;
+            }
+        }
+    }
+}
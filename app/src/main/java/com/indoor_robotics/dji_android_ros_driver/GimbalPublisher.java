@@ -0,0 +1,55 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+
+/**
+ * Publishes the gimbal attitude from the gimbal state callback, using preallocated messages.
+ * The vector holds roll (x), pitch (y) and yaw (z) in radians, in the DJI conventions: pitch positive up and yaw
+ * clockwise from north. Must only be called from the gimbal state callback thread.
+ */
+public class GimbalPublisher {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final java.lang.String GIMBAL_FRAME_ID = "gimbal";
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Publisher<geometry_msgs.Vector3Stamped> pubAttitude;
+    private final MessagePool<geometry_msgs.Vector3Stamped> attitudePool;
+    private int seq = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public GimbalPublisher(ConnectedNode connectedNode, java.lang.String attitudeTopicName) {
+        pubAttitude = connectedNode.newPublisher(attitudeTopicName, geometry_msgs.Vector3Stamped._TYPE);
+        attitudePool = new MessagePool<geometry_msgs.Vector3Stamped>(pubAttitude, MessagePool.DEFAULT_SIZE);
+        for (geometry_msgs.Vector3Stamped message : attitudePool.all()) {
+            message.getHeader().setFrameId(GIMBAL_FRAME_ID);
+        }
+    }
+
+    public void onGimbalState(GimbalAttitude attitude) {
+        seq++;
+        geometry_msgs.Vector3Stamped message = attitudePool.next();
+        message.getHeader().setSeq(seq);
+        RosTime.setNow(message.getHeader().getStamp());
+        geometry_msgs.Vector3 vector = message.getVector();
+        vector.setX(Math.toRadians(attitude.roll));
+        vector.setY(Math.toRadians(attitude.pitch));
+        vector.setZ(Math.toRadians(attitude.yaw));
+        pubAttitude.publish(message);
+    }
+}
@@ -9,10 +9,15 @@
 package com.indoor_robotics.dji_android_ros_driver;
 
 import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ActivityInfo;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.ActivityCompat;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ProgressBar;
@@ -22,33 +27,108 @@ import android.widget.TextView;
 import org.ros.android.MessageCallable;
 import org.ros.android.RosActivity;
 import org.ros.android.view.RosTextView;
+import org.ros.node.ConnectedNode;
+import org.ros.node.Node;
 import org.ros.node.NodeConfiguration;
+import org.ros.node.NodeListener;
 import org.ros.node.NodeMainExecutor;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public class MainROSActivity extends RosActivity {
 
+    private static final String FLIGHT_RECORDS_DIR = "flight_records";
+    private static final String SCHEDULER_NAME = "dji_ros_app";
+    private static final String DASHBOARD_TASK_NAME = "ui_dashboard";
+    private static final String ACTIVITY_TITLE = "DJI-Ros Driver Activity";
+    private static final int NODE_COUNT = 2; // driver and video bridge
+
     private TextView textView;
     private Switch connectedSwitch,connectedROSSwitch;
     private ProgressBar connectedProgress;
 
-    private DjiRosDriverNode rosDriver = new DjiRosDriverNode();
-    private IsRosConnectedNode isRosConnectedNode = new IsRosConnectedNode();
+    // all periodic work of the app, control outranking telemetry outranking health checks and UI
+    private final PeriodicScheduler scheduler = new PeriodicScheduler(SCHEDULER_NAME);
+
+    private final DjiAircraftBackend aircraftBackend = new DjiAircraftBackend();
+    private final DjiGimbalBackend gimbalBackend = new DjiGimbalBackend();
+    private DjiRosDriverNode rosDriver = new DjiRosDriverNode(aircraftBackend, gimbalBackend, scheduler);
+    private VideoBridgeNode videoBridgeNode = new VideoBridgeNode(new DjiVideoFeedSource());
+
+    // probes the ROS master and moves the nodes to a fallback master when it is lost
+    private volatile MasterHealthMonitor masterHealthMonitor = null;
+    private NodeMainExecutor nodeMainExecutor = null;
 
-    private Timer checkConnectionToDroneTimer = null;
-    private CheckConnectionToDroneTask checkConnectionToDroneTask;
+    // nodes not completely shut down yet, and the master to run them on once they are. Guarded by nodeLock
+    private final Object nodeLock = new Object();
+    private int runningNodes = 0;
+    private URI pendingMasterUri = null;
+
+    private final Collection<NodeListener> nodeListeners = Collections.<NodeListener>singletonList(new NodeListener() {
+        @Override
+        public void onStart(ConnectedNode connectedNode) {
+        }
+
+        @Override
+        public void onShutdown(Node node) {
+        }
+
+        @Override
+        public void onShutdownComplete(Node node) {
+            onNodeShutdownComplete();
+        }
+
+        @Override
+        public void onError(Node node, Throwable throwable) {
+            Log.e("ros_node", "node error", throwable);
+        }
+    });
+
+    private TelemetryDashboard dashboard;
+    private PeriodicScheduler.ScheduledTask dashboardLoop = null;
     private Button btn;
 
-    private boolean isDroneConnected = false;
+    // connection state shown by the UI, only changes are applied to the widgets
+    private Boolean shownDroneConnected = null;
+    private Boolean shownROSConnected = null;
+    private Boolean shownDroneReady = null;
 
-    public MainROSActivity() {
-        super("DJI-Ros Driver Activity", "DJI-Ros Driver Activity");
+    private final BroadcastReceiver connectionChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            updateConnectionState();
+        }
+    };
 
-        // If you know the IP/Port of the ROS Master, you can set it as follows and avoid having the Master Chooser activity:
+    private final ControllerWarmUp.Listener warmUpListener = new ControllerWarmUp.Listener() {
+        @Override
+        public void onStateChange(ControllerWarmUp.State state) {
+            Log.i("aircraft", "flight controller configuration " + state);
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    updateConnectionState();
+                }
+            });
+        }
+    };
 
-        //super("DJI-Ros Driver Activity", "DJI-Ros Driver Activity", URI.create("http://10.42.0.1:11311");
+    public MainROSActivity() {
+        // If the IP/Port of the ROS Master is known at build time (gradle property rosMasterUri, e.g.
+        // -ProsMasterUri=http://10.42.0.1:11311), the nodes connect to it right away without the Master Chooser activity
+        super(ACTIVITY_TITLE, ACTIVITY_TITLE, getFixedMasterUri());
+    }
+
+    /**
+     * @return the master URI set at build time, null to let the user choose one
+     */
+    private static URI getFixedMasterUri() {
+        return BuildConfig.ROS_MASTER_URI.isEmpty() ? null : URI.create(BuildConfig.ROS_MASTER_URI);
     }
 
     @SuppressWarnings("unchecked")
@@ -71,6 +151,7 @@ public class MainROSActivity extends RosActivity {
                     , 1);
         }
         setContentView(R.layout.dji_ros_driver_activity_main);
+        rosDriver.setFlightRecorderDirectory(new File(getExternalFilesDir(null), FLIGHT_RECORDS_DIR));
         setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_REVERSE_LANDSCAPE);
 
         //setting the debug view:
@@ -81,11 +162,21 @@ public class MainROSActivity extends RosActivity {
         connectedROSSwitch = (Switch)findViewById(R.id.switch_ros_conn);
         connectedProgress = (ProgressBar) findViewById(R.id.connected_progressBar);
 
-        checkConnectionToDroneTask = new CheckConnectionToDroneTask();
-        checkConnectionToDroneTimer = new Timer();
-        checkConnectionToDroneTimer.schedule( checkConnectionToDroneTask, 0, 500);
+        // the connection widgets follow the connection events of the SDK and of the master health monitor
+        registerReceiver(connectionChangeReceiver, new IntentFilter(BaseDJIApplication.FLAG_CONNECTION_CHANGE));
+        aircraftBackend.getWarmUp().addListener(warmUpListener);
 
-        // in order to start the ROS control, user must press on this button. From some reason it is not working straight away
+        dashboard = new TelemetryDashboard(this, rosDriver,
+                (TextView) findViewById(R.id.text_loop_rate),
+                (TextView) findViewById(R.id.text_latency),
+                (TextView) findViewById(R.id.text_battery),
+                (TextView) findViewById(R.id.text_flight_state),
+                (TextView) findViewById(R.id.text_master_rtt));
+        dashboardLoop = scheduler.scheduleAtFixedRate(DASHBOARD_TASK_NAME, PeriodicScheduler.Priority.HEALTH,
+                0, TelemetryDashboard.FRAME_PERIOD_MS, dashboard);
+
+        // virtual sticks are enabled when the aircraft connects. This button enables them again after the RC took over
+        // (e.g. switching the flight mode), which disables them
         btn = (Button)findViewById(R.id.button_start_vsticks);
         btn.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -95,38 +186,159 @@ public class MainROSActivity extends RosActivity {
             }
         });
 
+        updateConnectionState();
+
+    }
+
+    @Override
+    protected void onDestroy() {
+        unregisterReceiver(connectionChangeReceiver);
+        aircraftBackend.getWarmUp().removeListener(warmUpListener);
+        // the registry belongs to the application and outlives the activity
+        aircraftBackend.close();
+        gimbalBackend.close();
+        if (null != dashboardLoop) {
+            dashboardLoop.cancel();
+            dashboardLoop = null;
+        }
+        if (null != masterHealthMonitor) {
+            masterHealthMonitor.stop();
+        }
+        super.onDestroy();
+        scheduler.shutdown();
     }
 
     /**
-     * A thread running a contant check that the connection to the Drone and to ROS is available
+     * Applies the connection state of the Drone and of ROS to the widgets, if it changed. Runs on the main thread.
      */
-    private class CheckConnectionToDroneTask extends TimerTask {
+    private void updateConnectionState() {
+        boolean isDroneConnected = BaseDJIApplication.getProductRegistry().get().connected;
+        boolean isDroneReady = aircraftBackend.isReady();
+        MasterHealthMonitor monitor = masterHealthMonitor;
+        boolean isROSConnected = null != monitor && monitor.isConnected();
 
-        @Override
-        public void run() {
-            final boolean isDroneConnected = BaseDJIApplication.getProductInstance() != null ? BaseDJIApplication.getProductInstance().isConnected() : false;
-            final boolean isROSConnected = isRosConnectedNode.IsConnected();
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    connectedSwitch.setChecked(isDroneConnected);
-                    connectedROSSwitch.setChecked(isROSConnected);
-                    btn.setEnabled(isDroneConnected);
-                    connectedProgress.setVisibility(isDroneConnected && isROSConnected ? View.GONE : View.VISIBLE);
-                }
-            });
+        boolean changed = false;
+        if (null == shownDroneConnected || shownDroneConnected != isDroneConnected) {
+            connectedSwitch.setChecked(isDroneConnected);
+            btn.setEnabled(isDroneConnected);
+            shownDroneConnected = isDroneConnected;
+            changed = true;
+        }
+        if (null == shownROSConnected || shownROSConnected != isROSConnected) {
+            connectedROSSwitch.setChecked(isROSConnected);
+            shownROSConnected = isROSConnected;
+            changed = true;
+        }
+        if (null == shownDroneReady || shownDroneReady != isDroneReady) {
+            shownDroneReady = isDroneReady;
+            changed = true;
+        }
+        if (changed) {
+            connectedProgress.setVisibility(isDroneReady && isROSConnected ? View.GONE : View.VISIBLE);
         }
     }
 
     @Override
     protected void init(NodeMainExecutor nodeMainExecutor) {
 
-        NodeConfiguration nodeConfiguration = NodeConfiguration.newPublic(getRosHostname());
-        nodeConfiguration.setMasterUri(getMasterUri());
+        this.nodeMainExecutor = nodeMainExecutor;
+
+        // the chosen master first, then the fallbacks in order of preference
+        List<URI> masterUris = new ArrayList<URI>();
+        masterUris.add(getMasterUri());
+        for (String uri : getResources().getStringArray(R.array.ros_master_fallback_uris)) {
+            URI fallback = URI.create(uri);
+            if (!masterUris.contains(fallback)) {
+                masterUris.add(fallback);
+            }
+        }
 
         //Running nodes
-        nodeMainExecutor.execute(isRosConnectedNode, nodeConfiguration);
-        nodeMainExecutor.execute(rosDriver, nodeConfiguration);
+        runNodes(getMasterUri());
+
+        // an unreachable master fails a probe within the degraded probe interval
+        MasterClientProber prober = new MasterClientProber(MasterHealthMonitor.DEFAULT_DEGRADED_INTERVAL_MS);
+        masterHealthMonitor = new MasterHealthMonitor(masterUris, prober, new MasterHealthMonitor.Listener() {
+            @Override
+            public void onHealthChange(MasterHealthMonitor.Health health, URI masterUri) {
+                Log.i("ros_master", masterUri + " is " + health);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateConnectionState();
+                    }
+                });
+            }
+
+            @Override
+            public void onMasterChange(URI previousUri, URI currentUri) {
+                // reconnect the nodes to the master which answered
+                runNodes(currentUri);
+            }
+
+            @Override
+            public void onMasterRecovered(URI masterUri) {
+                // a restarted master does not know the nodes anymore
+                runNodes(masterUri);
+            }
+        });
+        dashboard.setMasterHealthMonitor(masterHealthMonitor);
+        masterHealthMonitor.start();
+    }
+
+    /**
+     * Runs the nodes connected to the given master. Running nodes are shut down first: the node mains are reused, so
+     * they are executed again only once their shutdown completed, otherwise a late onShutdown() would stop the tasks
+     * of the new onStart().
+     */
+    private void runNodes(URI masterUri) {
+        boolean shutdown;
+        synchronized (nodeLock) {
+            shutdown = runningNodes > 0;
+            if (shutdown) {
+                boolean shuttingDown = null != pendingMasterUri;
+                pendingMasterUri = masterUri;
+                if (shuttingDown) {
+                    // the nodes will run on the latest master
+                    return;
+                }
+            }
+            else {
+                runningNodes = NODE_COUNT;
+            }
+        }
+
+        if (shutdown) {
+            nodeMainExecutor.shutdownNodeMain(rosDriver);
+            nodeMainExecutor.shutdownNodeMain(videoBridgeNode);
+        }
+        else {
+            executeNodes(masterUri);
+        }
+    }
+
+    /**
+     * Runs the nodes on the pending master once all of them are down
+     */
+    private void onNodeShutdownComplete() {
+        URI masterUri;
+        synchronized (nodeLock) {
+            runningNodes--;
+            if (runningNodes > 0 || null == pendingMasterUri) {
+                return;
+            }
+            masterUri = pendingMasterUri;
+            pendingMasterUri = null;
+            runningNodes = NODE_COUNT;
+        }
+        executeNodes(masterUri);
+    }
+
+    private void executeNodes(URI masterUri) {
+        NodeConfiguration nodeConfiguration = NodeConfiguration.newPublic(getRosHostname());
+        nodeConfiguration.setMasterUri(masterUri);
 
+        nodeMainExecutor.execute(rosDriver, nodeConfiguration, nodeListeners);
+        nodeMainExecutor.execute(videoBridgeNode, nodeConfiguration, nodeListeners);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.apache.xmlrpc.client.XmlRpcClient;
+import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Probes a ROS master with the getUri XML-RPC call. The rosjava MasterClient waits up to a minute for a connection
+ * and for a reply, so the probes use their own XML-RPC client, with connection and reply timeouts on the order of the
+ * probe interval: an unreachable master fails a probe in that time. One client is kept per master and reused by
+ * every probe. Called from the probing thread only.
+ */
+public class MasterClientProber implements MasterHealthMonitor.Prober {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final java.lang.String CALLER_ID = "/dji_ros_driver/master_health";
+    private static final java.lang.String GET_URI_METHOD = "getUri";
+    private static final int STATUS_SUCCESS = 1;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final int timeoutMs;
+    private final Map<URI, XmlRpcClient> clients = new HashMap<URI, XmlRpcClient>();
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param timeoutMs connection timeout, and reply timeout once connected
+     */
+    public MasterClientProber(int timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("invalid probe timeout: " + timeoutMs);
+        }
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public void probe(URI masterUri) throws Exception {
+        XmlRpcClient client = clients.get(masterUri);
+        if (null == client) {
+            client = newClient(masterUri);
+            clients.put(masterUri, client);
+        }
+
+        // the master answers {code, status message, uri}
+        Object response = client.execute(GET_URI_METHOD, new Object[]{CALLER_ID});
+        if (!(response instanceof Object[]) || ((Object[]) response).length == 0
+                || !Integer.valueOf(STATUS_SUCCESS).equals(((Object[]) response)[0])) {
+            throw new IllegalStateException("getUri failed on " + masterUri);
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private XmlRpcClient newClient(URI masterUri) throws Exception {
+        XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
+        config.setServerURL(masterUri.toURL());
+        config.setConnectionTimeout(timeoutMs);
+        config.setReplyTimeout(timeoutMs);
+        XmlRpcClient client = new XmlRpcClient();
+        client.setConfig(config);
+        return client;
+    }
+}
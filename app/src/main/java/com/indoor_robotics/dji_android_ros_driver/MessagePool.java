@@ -0,0 +1,68 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.node.topic.Publisher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed ring of preallocated messages for a publisher, so high rate publishing does not allocate a message
+ * per update. Publisher.publish() only queues the message and serializes it later on another thread, so a message
+ * must not be modified right after it was published: the ring has to be larger than the outgoing queue of the
+ * publisher. rosjava's queue holds ROSJAVA_QUEUE_CAPACITY messages, dropping the oldest one when a slow subscriber
+ * lets it fill up, plus the one being serialized; DEFAULT_SIZE covers twice that, so a slot is reused only after its
+ * message was serialized or dropped.
+ * Not thread safe, each pool must be used by a single thread.
+ */
+public class MessagePool<T> {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    /** Capacity of the outgoing message queue of a rosjava publisher */
+    public static final int ROSJAVA_QUEUE_CAPACITY = 16;
+    public static final int DEFAULT_SIZE = 2 * ROSJAVA_QUEUE_CAPACITY;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final List<T> messages;
+    private int next = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public MessagePool(Publisher<T> publisher, int size) {
+        if (size <= ROSJAVA_QUEUE_CAPACITY + 1) {
+            throw new IllegalArgumentException("pool size must exceed the outgoing queue: " + size);
+        }
+        messages = new ArrayList<T>(size);
+        for (int i = 0; i < size; i++) {
+            messages.add(publisher.newMessage());
+        }
+    }
+
+    /**
+     * @return the next message of the ring, still holding the values it was last published with
+     */
+    public T next() {
+        T message = messages.get(next);
+        next = (next + 1) % messages.size();
+        return message;
+    }
+
+    /**
+     * @return all messages of the ring, for initializing fields that never change
+     */
+    public List<T> all() {
+        return messages;
+    }
+}
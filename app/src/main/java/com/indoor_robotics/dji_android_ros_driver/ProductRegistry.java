@@ -0,0 +1,130 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import dji.sdk.base.BaseProduct;
+import dji.sdk.battery.Battery;
+import dji.sdk.camera.Camera;
+import dji.sdk.flightcontroller.FlightController;
+import dji.sdk.gimbal.Gimbal;
+import dji.sdk.products.Aircraft;
+
+/**
+ * The connected DJI product and its components, kept up to date by the product and component listeners of
+ * BaseDJIApplication. Readers get an immutable snapshot of typed handles through a volatile reference, without
+ * locking and without calling into the SDK, so it can be read on every control loop tick.
+ * Listeners are notified when a handle or the connectivity changes, e.g. to register state callbacks again on the
+ * components of a reconnected aircraft. They are called outside the registry lock, so they may use the registry.
+ */
+public class ProductRegistry {
+
+    /**
+     * Notified with the new handles on every change. Called from the SDK threads, so it must return quickly.
+     * Racing updates may notify concurrently, and the handles of an older change may arrive after newer ones:
+     * listeners ignore handles whose generation is below the last one they got.
+     */
+    public interface Listener {
+        void onProductChange(Handles handles);
+    }
+
+    /**
+     * An immutable snapshot of the product handles, any of them null when not present
+     */
+    public static final class Handles {
+
+        public static final Handles NONE = new Handles(null, false, 0);
+
+        public final BaseProduct product;
+        /** The product as an aircraft, null for other products (e.g. a handheld) */
+        public final Aircraft aircraft;
+        public final FlightController flightController;
+        public final Battery battery;
+        public final Gimbal gimbal;
+        public final Camera camera;
+        public final boolean connected;
+        /** Incremented on every change */
+        public final long generation;
+
+        private Handles(BaseProduct product, boolean connected, long generation) {
+            this.product = product;
+            this.aircraft = product instanceof Aircraft ? (Aircraft) product : null;
+            this.flightController = null != aircraft ? aircraft.getFlightController() : null;
+            this.battery = null != product ? product.getBattery() : null;
+            this.gimbal = null != product ? product.getGimbal() : null;
+            this.camera = null != product ? product.getCamera() : null;
+            this.connected = connected;
+            this.generation = generation;
+        }
+
+        private boolean sameAs(Handles other) {
+            return product == other.product && flightController == other.flightController && battery == other.battery
+                    && gimbal == other.gimbal && camera == other.camera && connected == other.connected;
+        }
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile Handles handles = Handles.NONE;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @return the current handles, never null
+     */
+    public Handles get() {
+        return handles;
+    }
+
+    /**
+     * Adds a listener and notifies it with the current handles
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        listener.onProductChange(handles);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the connected product, null when it disconnected
+     */
+    public void update(BaseProduct product) {
+        Handles updated;
+        synchronized (this) {
+            Handles current = handles;
+            updated = new Handles(product, null != product && product.isConnected(), current.generation + 1);
+            if (updated.sameAs(current)) {
+                return;
+            }
+            handles = updated;
+        }
+
+        // the list iterates over a snapshot, listeners may be added or removed meanwhile
+        for (Listener listener : listeners) {
+            if (handles != updated) {
+                // a newer change is being notified
+                return;
+            }
+            listener.onProductChange(updated);
+        }
+    }
+
+    /**
+     * Reads the components and connectivity of the current product again, after they changed
+     */
+    public void refresh() {
+        update(handles.product);
+    }
+}
@@ -0,0 +1,24 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.message.Time;
+
+/**
+ * Writes the current wall time into an existing ROS Time, avoiding the allocation of
+ * ConnectedNode.getCurrentTime() on hot paths. The driver always runs on wall time.
+ */
+public final class RosTime {
+
+    private RosTime() {
+    }
+
+    public static void setNow(Time time) {
+        long millis = System.currentTimeMillis();
+        time.secs = (int) (millis / 1000);
+        time.nsecs = (int) ((millis % 1000) * 1000000);
+    }
+}
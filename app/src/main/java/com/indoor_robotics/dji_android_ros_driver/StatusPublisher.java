@@ -0,0 +1,228 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+
+/**
+ * Publishes the drone status as typed topics, straight from the SDK state callbacks.
+ * Each topic is published when its values change, rate limited by a minimum interval, and republished after a
+ * maximum interval when nothing changed so consumers can detect a dead link.
+ */
+public class StatusPublisher {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_MIN_INTERVAL_MS = 100;
+    public static final int DEFAULT_MAX_INTERVAL_MS = 1000;
+
+    /** Bits of the flight state message */
+    public static final byte FLAG_CONNECTED = 0x01;
+    public static final byte FLAG_MOTORS_ON = 0x02;
+    public static final byte FLAG_FLYING = 0x04;
+    public static final byte FLAG_LANDING_CONFIRMATION_NEEDED = 0x08;
+
+    private static final java.lang.String GPS_FRAME_ID = "gps";
+    private static final int BATTERY_VOLTAGE_CHANGE_MV = 100;
+    private static final float ALTITUDE_CHANGE_M = 0.05f;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ConnectedNode connectedNode;
+
+    private final Publisher<sensor_msgs.BatteryState> pubBattery;
+    private final Publisher<sensor_msgs.NavSatFix> pubNavSatFix;
+    private final Publisher<std_msgs.UInt8> pubFlightState;
+    private final Publisher<std_msgs.Float32> pubAltitude;
+
+    private final PublishThrottle batteryThrottle;
+    private final PublishThrottle navSatFixThrottle;
+    private final PublishThrottle flightStateThrottle;
+
+    // Last known values, guarded by this
+    private boolean hasBattery = false;
+    private int batteryPercent = -1;
+    private int batteryVoltageMv = 0;
+    private int batteryCurrentMa = 0;
+    private int batteryChargeMah = 0;
+    private int batteryFullChargeMah = 0;
+    private int batteryDesignCapacityMah = 0;
+    private float batteryTemperature = 0f;
+
+    private boolean hasLocation = false;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private float altitude = 0f;
+
+    private byte flightStateFlags = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public StatusPublisher(ConnectedNode connectedNode, java.lang.String batteryTopicName, java.lang.String navSatFixTopicName,
+                           java.lang.String flightStateTopicName, java.lang.String altitudeTopicName) {
+        this.connectedNode = connectedNode;
+
+        pubBattery = connectedNode.newPublisher(batteryTopicName, sensor_msgs.BatteryState._TYPE);
+        pubNavSatFix = connectedNode.newPublisher(navSatFixTopicName, sensor_msgs.NavSatFix._TYPE);
+        pubFlightState = connectedNode.newPublisher(flightStateTopicName, std_msgs.UInt8._TYPE);
+        pubAltitude = connectedNode.newPublisher(altitudeTopicName, std_msgs.Float32._TYPE);
+
+        batteryThrottle = new PublishThrottle(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS);
+        navSatFixThrottle = new PublishThrottle(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS);
+        flightStateThrottle = new PublishThrottle(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS);
+    }
+
+    /**
+     * Sets the minimum and maximum interval between two messages on each of the status topics
+     */
+    public void setIntervals(int minIntervalMs, int maxIntervalMs) {
+        batteryThrottle.setIntervals(minIntervalMs, maxIntervalMs);
+        navSatFixThrottle.setIntervals(minIntervalMs, maxIntervalMs);
+        flightStateThrottle.setIntervals(minIntervalMs, maxIntervalMs);
+    }
+
+    /**
+     * Called from the battery state callback
+     */
+    public synchronized void onBatteryState(BatteryInfo battery) {
+        boolean changed = !hasBattery
+                || battery.chargeRemainingInPercent != batteryPercent
+                || Math.abs(battery.voltageMv - batteryVoltageMv) >= BATTERY_VOLTAGE_CHANGE_MV;
+
+        hasBattery = true;
+        batteryPercent = battery.chargeRemainingInPercent;
+        batteryVoltageMv = battery.voltageMv;
+        batteryCurrentMa = battery.currentMa;
+        batteryChargeMah = battery.chargeRemainingMah;
+        batteryFullChargeMah = battery.fullChargeCapacityMah;
+        batteryDesignCapacityMah = battery.designCapacityMah;
+        batteryTemperature = battery.temperature;
+
+        if (batteryThrottle.shouldPublish(changed, System.nanoTime())) {
+            publishBattery();
+        }
+    }
+
+    /**
+     * Called from the flight controller state callback
+     */
+    public synchronized void onFlightControllerState(AircraftState state, boolean isConnected) {
+        long now = System.nanoTime();
+
+        boolean locationChanged = !hasLocation
+                || state.latitude != latitude
+                || state.longitude != longitude
+                || Math.abs(state.altitude - altitude) >= ALTITUDE_CHANGE_M;
+
+        hasLocation = true;
+        latitude = state.latitude;
+        longitude = state.longitude;
+        altitude = state.altitude;
+
+        byte flags = buildFlags(isConnected, state.areMotorsOn, state.isFlying, state.isLandingConfirmationNeeded);
+        boolean flagsChanged = flags != flightStateFlags;
+        flightStateFlags = flags;
+
+        if (navSatFixThrottle.shouldPublish(locationChanged, now)) {
+            publishNavSatFix();
+        }
+        if (flightStateThrottle.shouldPublish(flagsChanged || locationChanged, now)) {
+            publishFlightState();
+        }
+    }
+
+    /**
+     * Called periodically, republishes the topics whose maximum interval elapsed without an update.
+     * Also catches connection changes which do not come with a state callback.
+     */
+    public synchronized void onHeartbeat(boolean isConnected) {
+        long now = System.nanoTime();
+
+        byte flags = (byte) ((flightStateFlags & ~FLAG_CONNECTED) | (isConnected ? FLAG_CONNECTED : 0));
+        boolean flagsChanged = flags != flightStateFlags;
+        flightStateFlags = flags;
+
+        if (hasBattery && batteryThrottle.shouldPublish(false, now)) {
+            publishBattery();
+        }
+        if (hasLocation && navSatFixThrottle.shouldPublish(false, now)) {
+            publishNavSatFix();
+        }
+        if (flightStateThrottle.shouldPublish(flagsChanged, now)) {
+            publishFlightState();
+        }
+    }
+
+    public static byte buildFlags(boolean isConnected, boolean areMotorsOn, boolean isFlying, boolean landConfirmNeeded) {
+        int flags = 0;
+        if (isConnected) {
+            flags |= FLAG_CONNECTED;
+        }
+        if (areMotorsOn) {
+            flags |= FLAG_MOTORS_ON;
+        }
+        if (isFlying) {
+            flags |= FLAG_FLYING;
+        }
+        if (landConfirmNeeded) {
+            flags |= FLAG_LANDING_CONFIRMATION_NEEDED;
+        }
+        return (byte) flags;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void publishBattery() {
+        sensor_msgs.BatteryState msg = pubBattery.newMessage();
+        msg.getHeader().setStamp(connectedNode.getCurrentTime());
+        msg.setPercentage(batteryPercent / 100f);
+        msg.setVoltage(batteryVoltageMv / 1000f);
+        msg.setCurrent(batteryCurrentMa / 1000f); // negative while discharging
+        msg.setCharge(batteryChargeMah / 1000f);
+        msg.setCapacity(batteryFullChargeMah / 1000f);
+        msg.setDesignCapacity(batteryDesignCapacityMah / 1000f);
+        msg.setTemperature(batteryTemperature);
+        msg.setPowerSupplyStatus(batteryCurrentMa < 0 ? sensor_msgs.BatteryState.POWER_SUPPLY_STATUS_DISCHARGING
+                : sensor_msgs.BatteryState.POWER_SUPPLY_STATUS_UNKNOWN);
+        msg.setPowerSupplyHealth(sensor_msgs.BatteryState.POWER_SUPPLY_HEALTH_UNKNOWN);
+        msg.setPowerSupplyTechnology(sensor_msgs.BatteryState.POWER_SUPPLY_TECHNOLOGY_LIPO);
+        msg.setPresent(true);
+        pubBattery.publish(msg);
+    }
+
+    private void publishNavSatFix() {
+        sensor_msgs.NavSatFix msg = pubNavSatFix.newMessage();
+        msg.getHeader().setStamp(connectedNode.getCurrentTime());
+        msg.getHeader().setFrameId(GPS_FRAME_ID);
+        boolean hasFix = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+        msg.getStatus().setStatus(hasFix ? sensor_msgs.NavSatStatus.STATUS_FIX : sensor_msgs.NavSatStatus.STATUS_NO_FIX);
+        msg.getStatus().setService(sensor_msgs.NavSatStatus.SERVICE_GPS);
+        msg.setLatitude(latitude);
+        msg.setLongitude(longitude);
+        msg.setAltitude(altitude); // DJI reports the altitude relative to the take off point
+        msg.setPositionCovarianceType(sensor_msgs.NavSatFix.COVARIANCE_TYPE_UNKNOWN);
+        pubNavSatFix.publish(msg);
+    }
+
+    private void publishFlightState() {
+        std_msgs.UInt8 flagsMsg = pubFlightState.newMessage();
+        flagsMsg.setData(flightStateFlags);
+        pubFlightState.publish(flagsMsg);
+
+        std_msgs.Float32 altitudeMsg = pubAltitude.newMessage();
+        altitudeMsg.setData(altitude);
+        pubAltitude.publish(altitudeMsg);
+    }
+}
@@ -0,0 +1,162 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import android.app.Activity;
+import android.widget.TextView;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The live telemetry dashboard of the main activity: control loop rate, command latency, battery, flight state
+ * and master round trip time. Runs as a low priority scheduler task at a fixed frame budget, samples the values
+ * off the main thread and only posts to the main thread when a displayed value changed, with at most one post
+ * pending at a time. Only the changed views are updated.
+ */
+public class TelemetryDashboard implements Runnable {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    /** At most 4 frames a second, plenty for a human and cheap for the main thread */
+    public static final int FRAME_PERIOD_MS = 250;
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+    private static final int FLAG_READY = 0x10; // next to the flight state flags
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Activity activity;
+    private final DjiRosDriverNode driver;
+    private final LatencyHistogram.Interval latency;
+    private volatile MasterHealthMonitor masterHealthMonitor = null;
+
+    private final TextView textLoopRate;
+    private final TextView textLatency;
+    private final TextView textBattery;
+    private final TextView textFlightState;
+    private final TextView textMasterRtt;
+
+    // values of the last frame, owned by the scheduler thread
+    private int loopRateTenths = UNKNOWN;
+    private int latencyP50Ms = UNKNOWN;
+    private int latencyP99Ms = UNKNOWN;
+    private int batteryPercent = UNKNOWN;
+    private int flightState = UNKNOWN;
+    private int masterRttMs = UNKNOWN;
+
+    // texts to apply on the main thread, null when unchanged since the last frame
+    private final AtomicReference<String> pendingLoopRate = new AtomicReference<String>();
+    private final AtomicReference<String> pendingLatency = new AtomicReference<String>();
+    private final AtomicReference<String> pendingBattery = new AtomicReference<String>();
+    private final AtomicReference<String> pendingFlightState = new AtomicReference<String>();
+    private final AtomicReference<String> pendingMasterRtt = new AtomicReference<String>();
+    private volatile boolean postPending = false;
+
+    private final Runnable applyFrame = new Runnable() {
+        @Override
+        public void run() {
+            postPending = false;
+            apply(textLoopRate, pendingLoopRate.getAndSet(null));
+            apply(textLatency, pendingLatency.getAndSet(null));
+            apply(textBattery, pendingBattery.getAndSet(null));
+            apply(textFlightState, pendingFlightState.getAndSet(null));
+            apply(textMasterRtt, pendingMasterRtt.getAndSet(null));
+        }
+    };
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public TelemetryDashboard(Activity activity, DjiRosDriverNode driver, TextView textLoopRate, TextView textLatency,
+                              TextView textBattery, TextView textFlightState, TextView textMasterRtt) {
+        this.activity = activity;
+        this.driver = driver;
+        this.latency = driver.getCommandLatencyTracker().getReceiveToCompletion().newInterval();
+        this.textLoopRate = textLoopRate;
+        this.textLatency = textLatency;
+        this.textBattery = textBattery;
+        this.textFlightState = textFlightState;
+        this.textMasterRtt = textMasterRtt;
+    }
+
+    public void setMasterHealthMonitor(MasterHealthMonitor masterHealthMonitor) {
+        this.masterHealthMonitor = masterHealthMonitor;
+    }
+
+    /**
+     * Samples the values and posts the changed ones. Called by the scheduler every FRAME_PERIOD_MS.
+     */
+    @Override
+    public void run() {
+        boolean changed = false;
+
+        LoopStats loopStats = driver.getControlLoopStats();
+        int rate = null == loopStats ? UNKNOWN : Math.round(loopStats.getMeasuredRateHz() * 10);
+        if (rate != loopRateTenths) {
+            loopRateTenths = rate;
+            pendingLoopRate.set(rate == UNKNOWN ? "Loop: -" : "Loop: " + (rate / 10) + "." + (rate % 10) + " Hz");
+            changed = true;
+        }
+
+        // latency over the last frame, the previous value is kept while no command arrives
+        latency.update();
+        if (latency.getCount() > 0) {
+            int p50 = (int) (latency.getPercentileMicros(50) / 1000);
+            int p99 = (int) (latency.getPercentileMicros(99) / 1000);
+            if (p50 != latencyP50Ms || p99 != latencyP99Ms) {
+                latencyP50Ms = p50;
+                latencyP99Ms = p99;
+                pendingLatency.set("Latency: " + p50 + " ms (p99 " + p99 + " ms)");
+                changed = true;
+            }
+        }
+
+        int battery = Math.round(driver.getBatteryLevel());
+        if (battery != batteryPercent) {
+            batteryPercent = battery;
+            pendingBattery.set("Battery: " + battery + "%");
+            changed = true;
+        }
+
+        boolean ready = driver.isAircraftReady();
+        int state = StatusPublisher.buildFlags(driver.isAircraftConnected(), driver.areMotorsOn(), driver.isFlying(), false)
+                | (ready ? FLAG_READY : 0);
+        if (state != flightState) {
+            flightState = state;
+            pendingFlightState.set(!driver.isAircraftConnected() ? "Disconnected"
+                    : driver.isFlying() ? "Flying" : !ready ? "Configuring" : driver.areMotorsOn() ? "Motors on" : "Landed");
+            changed = true;
+        }
+
+        MasterHealthMonitor monitor = masterHealthMonitor;
+        int rtt = null == monitor || !monitor.isConnected() ? UNKNOWN : (int) (monitor.getRttMicros().getLast() / 1000);
+        if (rtt != masterRttMs) {
+            masterRttMs = rtt;
+            pendingMasterRtt.set(rtt == UNKNOWN ? "Master: -" : "Master RTT: " + rtt + " ms");
+            changed = true;
+        }
+
+        if (changed && !postPending) {
+            postPending = true;
+            activity.runOnUiThread(applyFrame);
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private static void apply(TextView view, String text) {
+        if (null != text) {
+            view.setText(text);
+        }
+    }
+}
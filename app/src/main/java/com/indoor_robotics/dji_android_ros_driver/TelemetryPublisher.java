@@ -0,0 +1,166 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+
+/**
+ * Publishes odometry, attitude and the local pose at the rate of the flight controller state callback (about 10 Hz).
+ * Messages come from preallocated pools and all intermediate values live in reused arrays, so an update does not
+ * allocate. Must only be called from the flight controller state callback thread.
+ *
+ * The odometry pose holds the GPS position projected to east (x) and north (y) meters from the local origin, the
+ * altitude above the take off point and the attitude. Until there is an origin and a fix, x and y are reported as 0
+ * with a very large covariance. The twist is in the body frame. The local pose topic carries the same pose, and is
+ * only published while the position is known.
+ */
+public class TelemetryPublisher {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final java.lang.String ODOM_FRAME_ID = "odom";
+    public static final java.lang.String BASE_FRAME_ID = "base_link";
+
+    private static final double UNKNOWN_VARIANCE = 1e6;
+    private static final double GPS_VARIANCE = 4.0; // ~2 m, the SDK does not report the accuracy
+    private static final double ATTITUDE_VARIANCE = 0.0003; // ~1 degree
+    private static final double ALTITUDE_VARIANCE = 0.01;
+    private static final double VELOCITY_VARIANCE = 0.01;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Publisher<nav_msgs.Odometry> pubOdometry;
+    private final Publisher<sensor_msgs.Imu> pubImu;
+    private final Publisher<geometry_msgs.PoseStamped> pubLocalPose;
+    private final MessagePool<nav_msgs.Odometry> odometryPool;
+    private final MessagePool<sensor_msgs.Imu> imuPool;
+    private final MessagePool<geometry_msgs.PoseStamped> localPosePool;
+    private final LocalProjection projection;
+
+    private final double[] quaternion = new double[4];
+    private final double[] velocityEnu = new double[3];
+    private final double[] velocityBody = new double[3];
+    private final float[] local = new float[2];
+
+    private int seq = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public TelemetryPublisher(ConnectedNode connectedNode, LocalProjection projection, java.lang.String odometryTopicName,
+                              java.lang.String imuTopicName, java.lang.String localPoseTopicName) {
+        this.projection = projection;
+        pubOdometry = connectedNode.newPublisher(odometryTopicName, nav_msgs.Odometry._TYPE);
+        pubImu = connectedNode.newPublisher(imuTopicName, sensor_msgs.Imu._TYPE);
+        pubLocalPose = connectedNode.newPublisher(localPoseTopicName, geometry_msgs.PoseStamped._TYPE);
+        odometryPool = new MessagePool<nav_msgs.Odometry>(pubOdometry, MessagePool.DEFAULT_SIZE);
+        imuPool = new MessagePool<sensor_msgs.Imu>(pubImu, MessagePool.DEFAULT_SIZE);
+        localPosePool = new MessagePool<geometry_msgs.PoseStamped>(pubLocalPose, MessagePool.DEFAULT_SIZE);
+
+        // Fields which never change are set once on every pooled message
+        for (nav_msgs.Odometry odometry : odometryPool.all()) {
+            odometry.getHeader().setFrameId(ODOM_FRAME_ID);
+            odometry.setChildFrameId(BASE_FRAME_ID);
+            double[] poseCovariance = new double[36];
+            poseCovariance[0] = UNKNOWN_VARIANCE;
+            poseCovariance[7] = UNKNOWN_VARIANCE;
+            poseCovariance[14] = ALTITUDE_VARIANCE;
+            poseCovariance[21] = ATTITUDE_VARIANCE;
+            poseCovariance[28] = ATTITUDE_VARIANCE;
+            poseCovariance[35] = ATTITUDE_VARIANCE;
+            odometry.getPose().setCovariance(poseCovariance);
+            double[] twistCovariance = new double[36];
+            twistCovariance[0] = VELOCITY_VARIANCE;
+            twistCovariance[7] = VELOCITY_VARIANCE;
+            twistCovariance[14] = VELOCITY_VARIANCE;
+            twistCovariance[21] = UNKNOWN_VARIANCE;
+            twistCovariance[28] = UNKNOWN_VARIANCE;
+            twistCovariance[35] = UNKNOWN_VARIANCE;
+            odometry.getTwist().setCovariance(twistCovariance);
+        }
+        for (sensor_msgs.Imu imu : imuPool.all()) {
+            imu.getHeader().setFrameId(BASE_FRAME_ID);
+            double[] orientationCovariance = new double[9];
+            orientationCovariance[0] = ATTITUDE_VARIANCE;
+            orientationCovariance[4] = ATTITUDE_VARIANCE;
+            orientationCovariance[8] = ATTITUDE_VARIANCE;
+            imu.setOrientationCovariance(orientationCovariance);
+            // angular velocity and linear acceleration are not provided by the SDK, marked as unknown (REP 145)
+            double[] unknown = new double[9];
+            unknown[0] = -1;
+            imu.setAngularVelocityCovariance(unknown);
+            imu.setLinearAccelerationCovariance(unknown.clone());
+        }
+        for (geometry_msgs.PoseStamped localPose : localPosePool.all()) {
+            localPose.getHeader().setFrameId(ODOM_FRAME_ID);
+        }
+    }
+
+    public LocalProjection getProjection() {
+        return projection;
+    }
+
+    public void onFlightControllerState(AircraftState state) {
+        FrameMath.djiAttitudeToQuaternion(state.roll, state.pitch, state.yaw, quaternion);
+        FrameMath.nedToEnu(state.velocityX, state.velocityY, state.velocityZ, velocityEnu);
+        FrameMath.worldToBody(quaternion, velocityEnu[0], velocityEnu[1], velocityEnu[2], velocityBody);
+        boolean hasPosition = projection.toEnu(state.latitude, state.longitude, local);
+        seq++;
+
+        nav_msgs.Odometry odometry = odometryPool.next();
+        odometry.getHeader().setSeq(seq);
+        RosTime.setNow(odometry.getHeader().getStamp());
+        geometry_msgs.Pose pose = odometry.getPose().getPose();
+        setPose(pose, state.altitude);
+        // the pooled message keeps its covariance array, only the horizontal variances change
+        double[] poseCovariance = odometry.getPose().getCovariance();
+        poseCovariance[0] = hasPosition ? GPS_VARIANCE : UNKNOWN_VARIANCE;
+        poseCovariance[7] = poseCovariance[0];
+        geometry_msgs.Vector3 linear = odometry.getTwist().getTwist().getLinear();
+        linear.setX(velocityBody[0]);
+        linear.setY(velocityBody[1]);
+        linear.setZ(velocityBody[2]);
+        pubOdometry.publish(odometry);
+
+        sensor_msgs.Imu imu = imuPool.next();
+        imu.getHeader().setSeq(seq);
+        RosTime.setNow(imu.getHeader().getStamp());
+        setQuaternion(imu.getOrientation());
+        pubImu.publish(imu);
+
+        if (hasPosition) {
+            geometry_msgs.PoseStamped localPose = localPosePool.next();
+            localPose.getHeader().setSeq(seq);
+            RosTime.setNow(localPose.getHeader().getStamp());
+            setPose(localPose.getPose(), state.altitude);
+            pubLocalPose.publish(localPose);
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void setPose(geometry_msgs.Pose pose, float altitude) {
+        pose.getPosition().setX(local[0]);
+        pose.getPosition().setY(local[1]);
+        pose.getPosition().setZ(altitude);
+        setQuaternion(pose.getOrientation());
+    }
+
+    private void setQuaternion(geometry_msgs.Quaternion orientation) {
+        orientation.setX(quaternion[0]);
+        orientation.setY(quaternion[1]);
+        orientation.setZ(quaternion[2]);
+        orientation.setW(quaternion[3]);
+    }
+}
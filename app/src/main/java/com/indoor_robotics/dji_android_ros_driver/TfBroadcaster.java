@@ -0,0 +1,119 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.ros.message.MessageFactory;
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Broadcasts the aircraft pose on /tf at the rate of the flight controller state callback, and the mounting
+ * transforms of the gimbal and the camera, computed once, in a single message on the latched /tf_static so late
+ * joining tf listeners get them as static transforms without them being resent on every update.
+ *
+ * The odom to base_link transform holds the same pose as the odometry of TelemetryPublisher: east and north meters
+ * from the local origin (0 until they are known), the altitude above the take off point and the attitude. Its
+ * TFMessages come from a preallocated pool, each holding its own transform, so an update does not allocate.
+ * onFlightControllerState() must only be called from the state callback thread.
+ */
+public class TfBroadcaster {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final java.lang.String TF_TOPIC_NAME = "/tf";
+    public static final java.lang.String TF_STATIC_TOPIC_NAME = "/tf_static";
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Publisher<tf2_msgs.TFMessage> pubTf;
+    private final Publisher<tf2_msgs.TFMessage> pubTfStatic;
+    private final MessagePool<tf2_msgs.TFMessage> tfPool;
+    private final LocalProjection projection;
+
+    private final double[] quaternion = new double[4];
+    private final float[] local = new float[2];
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param gimbalOffset mounting of the gimbal in the body frame: x, y, z in meters, roll, pitch, yaw in radians
+     * @param cameraOffset mounting of the camera in the body frame, same layout
+     */
+    public TfBroadcaster(ConnectedNode connectedNode, LocalProjection projection, double[] gimbalOffset, double[] cameraOffset) {
+        this.projection = projection;
+        MessageFactory messageFactory = connectedNode.getTopicMessageFactory();
+
+        pubTf = connectedNode.newPublisher(TF_TOPIC_NAME, tf2_msgs.TFMessage._TYPE);
+        tfPool = new MessagePool<tf2_msgs.TFMessage>(pubTf, MessagePool.DEFAULT_SIZE);
+        for (tf2_msgs.TFMessage message : tfPool.all()) {
+            geometry_msgs.TransformStamped transform = messageFactory.newFromType(geometry_msgs.TransformStamped._TYPE);
+            transform.getHeader().setFrameId(TelemetryPublisher.ODOM_FRAME_ID);
+            transform.setChildFrameId(TelemetryPublisher.BASE_FRAME_ID);
+            message.setTransforms(Collections.singletonList(transform));
+        }
+
+        // computed once, both in one latched message
+        pubTfStatic = connectedNode.newPublisher(TF_STATIC_TOPIC_NAME, tf2_msgs.TFMessage._TYPE);
+        pubTfStatic.setLatchMode(true);
+        tf2_msgs.TFMessage staticMessage = pubTfStatic.newMessage();
+        List<geometry_msgs.TransformStamped> staticTransforms = new ArrayList<geometry_msgs.TransformStamped>(2);
+        staticTransforms.add(newStaticTransform(messageFactory, GimbalPublisher.GIMBAL_FRAME_ID, gimbalOffset));
+        staticTransforms.add(newStaticTransform(messageFactory, VideoBridgeNode.CAMERA_FRAME_ID, cameraOffset));
+        staticMessage.setTransforms(staticTransforms);
+        pubTfStatic.publish(staticMessage);
+    }
+
+    public void onFlightControllerState(AircraftState state) {
+        FrameMath.djiAttitudeToQuaternion(state.roll, state.pitch, state.yaw, quaternion);
+        projection.toEnu(state.latitude, state.longitude, local);
+
+        tf2_msgs.TFMessage message = tfPool.next();
+        geometry_msgs.TransformStamped transform = message.getTransforms().get(0);
+        RosTime.setNow(transform.getHeader().getStamp());
+        geometry_msgs.Vector3 translation = transform.getTransform().getTranslation();
+        translation.setX(local[0]);
+        translation.setY(local[1]);
+        translation.setZ(state.altitude);
+        setRotation(transform.getTransform().getRotation(), quaternion);
+        pubTf.publish(message);
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private geometry_msgs.TransformStamped newStaticTransform(MessageFactory messageFactory, java.lang.String childFrameId, double[] offset) {
+        geometry_msgs.TransformStamped transform = messageFactory.newFromType(geometry_msgs.TransformStamped._TYPE);
+        RosTime.setNow(transform.getHeader().getStamp());
+        transform.getHeader().setFrameId(TelemetryPublisher.BASE_FRAME_ID);
+        transform.setChildFrameId(childFrameId);
+        geometry_msgs.Vector3 translation = transform.getTransform().getTranslation();
+        translation.setX(offset[0]);
+        translation.setY(offset[1]);
+        translation.setZ(offset[2]);
+        double[] rotation = new double[4];
+        FrameMath.eulerToQuaternion(offset[3], offset[4], offset[5], rotation);
+        setRotation(transform.getTransform().getRotation(), rotation);
+        return transform;
+    }
+
+    private static void setRotation(geometry_msgs.Quaternion orientation, double[] q) {
+        orientation.setX(q[0]);
+        orientation.setY(q[1]);
+        orientation.setZ(q[2]);
+        orientation.setW(q[3]);
+    }
+}
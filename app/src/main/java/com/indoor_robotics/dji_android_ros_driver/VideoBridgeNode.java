@@ -0,0 +1,283 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.ros.message.MessageFactory;
+import org.ros.namespace.GraphName;
+import org.ros.node.ConnectedNode;
+import org.ros.node.Node;
+import org.ros.node.NodeMain;
+import org.ros.node.topic.Publisher;
+
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bridges a raw H.264 video feed to ROS as sensor_msgs/CompressedImage with format "h264".
+ * The feed copies each packet once into a preallocated direct buffer of a H264FrameRing, every ring slot has its
+ * own message whose data wraps that buffer, so publishing does not copy or allocate again.
+ * If the publisher falls behind the oldest frames are dropped.
+ *
+ * rosjava serializes published messages later on its own threads, so a published slot is kept from the feed until
+ * IN_FLIGHT_FRAMES more frames were published: by then rosjava's outgoing queue has written or dropped it (see
+ * MessagePool). A stalled subscriber makes the feed drop new frames rather than overwrite queued ones.
+ *
+ * The frame counters and the queue depth of the ring are published once per DIAGNOSTICS_PERIOD_MS from the publish
+ * thread as a diagnostic status on /diagnostics, raised to WARN when frames were dropped during the period.
+ */
+public class VideoBridgeNode implements NodeMain {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_SLOTS = 32;
+    public static final int DEFAULT_SLOT_CAPACITY = 256 * 1024;
+    public static final int DEFAULT_MAX_QUEUED = 8;
+    public static final java.lang.String CAMERA_FRAME_ID = "camera";
+
+    private static final java.lang.String NODE_NAME = "dji_video_bridge";
+    private static final java.lang.String VIDEO_TOPIC_NAME = "/dji/video/h264";
+    private static final java.lang.String VIDEO_FORMAT = "h264";
+    private static final long TAKE_TIMEOUT_MS = 1000;
+    private static final int IN_FLIGHT_FRAMES = MessagePool.ROSJAVA_QUEUE_CAPACITY + 2;
+    private static final java.lang.String DIAGNOSTICS_TOPIC_NAME = "/diagnostics";
+    private static final java.lang.String DIAGNOSTICS_STATUS_NAME = "dji_ros_driver: video";
+    private static final long DIAGNOSTICS_PERIOD_MS = 1000;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final VideoFeedSource source;
+    private final H264FrameRing ring;
+
+    private java.lang.String videoTopicName = VIDEO_TOPIC_NAME;
+    private Publisher<sensor_msgs.CompressedImage> pubVideo;
+    private Publisher<diagnostic_msgs.DiagnosticArray> pubDiagnostics;
+    private MessageFactory messageFactory;
+    private List<sensor_msgs.CompressedImage> slotMessages;
+    private List<ChannelBuffer> slotData;
+
+    private volatile boolean running = false;
+    private volatile boolean sourceStarted = false;
+    private volatile long published = 0;
+    private Thread publishThread = null;
+
+    // publish thread only
+    private long lastDiagnosticsNanos;
+    private long lastDropped = 0;
+    private long lastBlocked = 0;
+    private long lastOversized = 0;
+    private int diagnosticsSeq = 0;
+
+    private final VideoFrameSink sink = new VideoFrameSink() {
+        @Override
+        public void onFrame(byte[] data, int offset, int length) {
+            ring.offer(data, offset, length);
+        }
+    };
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public VideoBridgeNode(VideoFeedSource source) {
+        this(source, new H264FrameRing(DEFAULT_SLOTS, DEFAULT_SLOT_CAPACITY, DEFAULT_MAX_QUEUED));
+    }
+
+    public VideoBridgeNode(VideoFeedSource source, H264FrameRing ring) {
+        if (ring.getSlotCount() <= IN_FLIGHT_FRAMES + ring.getMaxQueued()) {
+            throw new IllegalArgumentException("the ring needs more than " + (IN_FLIGHT_FRAMES + ring.getMaxQueued())
+                    + " slots, it has " + ring.getSlotCount());
+        }
+        this.source = source;
+        this.ring = ring;
+    }
+
+    public void setVideoTopicName(java.lang.String topicName) {
+        this.videoTopicName = topicName;
+    }
+
+    public H264FrameRing getRing() {
+        return ring;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    @Override
+    public GraphName getDefaultNodeName() {
+        return GraphName.of(NODE_NAME);
+    }
+
+    //***************************
+    // Public callbacks
+    //***************************
+
+    @Override
+    public void onStart(ConnectedNode connectedNode) {
+        pubVideo = connectedNode.newPublisher(videoTopicName, sensor_msgs.CompressedImage._TYPE);
+        pubDiagnostics = connectedNode.newPublisher(DIAGNOSTICS_TOPIC_NAME, diagnostic_msgs.DiagnosticArray._TYPE);
+        messageFactory = connectedNode.getTopicMessageFactory();
+
+        // one message per ring slot, its data permanently wraps the slot buffer (ROS requires little endian buffers)
+        slotMessages = new ArrayList<sensor_msgs.CompressedImage>(ring.getSlotCount());
+        slotData = new ArrayList<ChannelBuffer>(ring.getSlotCount());
+        for (int i = 0; i < ring.getSlotCount(); i++) {
+            ChannelBuffer data = ChannelBuffers.wrappedBuffer(ring.getBuffer(i).duplicate().order(ByteOrder.LITTLE_ENDIAN));
+            sensor_msgs.CompressedImage msg = pubVideo.newMessage();
+            msg.setFormat(VIDEO_FORMAT);
+            msg.getHeader().setFrameId(CAMERA_FRAME_ID);
+            msg.setData(data);
+            slotMessages.add(msg);
+            slotData.add(data);
+        }
+
+        running = true;
+        publishThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                publishLoop();
+            }
+        }, NODE_NAME);
+        publishThread.setDaemon(true);
+        publishThread.start();
+    }
+
+    @Override
+    public void onShutdown(Node node) {
+        running = false;
+        source.stop();
+        sourceStarted = false;
+        if (null != publishThread) {
+            publishThread.interrupt();
+            publishThread = null;
+        }
+    }
+
+    @Override
+    public void onShutdownComplete(Node node) {
+
+    }
+
+    @Override
+    public void onError(Node node, Throwable throwable) {
+
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void publishLoop() {
+        // slots published and possibly not yet serialized by rosjava, oldest first
+        int[] inFlight = new int[IN_FLIGHT_FRAMES + 1];
+        int inFlightCount = 0;
+        int inFlightHead = 0;
+        int seq = 0;
+        lastDiagnosticsNanos = System.nanoTime();
+        try {
+            while (running) {
+                // the feed is only available once a product is connected, keep trying until it starts
+                if (!sourceStarted) {
+                    sourceStarted = source.start(sink);
+                }
+
+                long now = System.nanoTime();
+                if (now - lastDiagnosticsNanos >= DIAGNOSTICS_PERIOD_MS * NANOS_PER_MILLI) {
+                    lastDiagnosticsNanos = now;
+                    publishDiagnostics();
+                }
+
+                int slot;
+                try {
+                    slot = ring.take(TAKE_TIMEOUT_MS);
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                if (slot < 0) {
+                    continue;
+                }
+
+                sensor_msgs.CompressedImage msg = slotMessages.get(slot);
+                slotData.get(slot).setIndex(0, ring.getLength(slot));
+                long receivedMillis = ring.getReceivedMillis(slot);
+                msg.getHeader().setSeq(seq++);
+                msg.getHeader().getStamp().secs = (int) (receivedMillis / 1000);
+                msg.getHeader().getStamp().nsecs = (int) ((receivedMillis % 1000) * 1000000);
+                pubVideo.publish(msg);
+                published++;
+
+                inFlight[(inFlightHead + inFlightCount) % inFlight.length] = slot;
+                inFlightCount++;
+                if (inFlightCount > IN_FLIGHT_FRAMES) {
+                    ring.release(inFlight[inFlightHead]);
+                    inFlightHead = (inFlightHead + 1) % inFlight.length;
+                    inFlightCount--;
+                }
+            }
+        }
+        finally {
+            // the node may be started again, give the slots back to the feed
+            for (int i = 0; i < inFlightCount; i++) {
+                ring.release(inFlight[(inFlightHead + i) % inFlight.length]);
+            }
+        }
+    }
+
+    /**
+     * Publishes the frame counters of the ring, totals since start, and its queue depth
+     */
+    private void publishDiagnostics() {
+        long dropped = ring.getDropped();
+        long blocked = ring.getBlocked();
+        long oversized = ring.getOversized();
+
+        diagnostic_msgs.DiagnosticArray array = pubDiagnostics.newMessage();
+        array.getHeader().setSeq(diagnosticsSeq++);
+        RosTime.setNow(array.getHeader().getStamp());
+        diagnostic_msgs.DiagnosticStatus status = messageFactory.newFromType(diagnostic_msgs.DiagnosticStatus._TYPE);
+        status.setName(DIAGNOSTICS_STATUS_NAME);
+        status.setHardwareId(DiagnosticsPublisher.HARDWARE_ID);
+        addValue(status, "source_started", Boolean.toString(sourceStarted));
+        addValue(status, "offered", Long.toString(ring.getOffered()));
+        addValue(status, "published", Long.toString(published));
+        addValue(status, "dropped", Long.toString(dropped));
+        addValue(status, "blocked", Long.toString(blocked));
+        addValue(status, "oversized", Long.toString(oversized));
+        addValue(status, "depth", Integer.toString(ring.getDepth()));
+        addValue(status, "max_depth", Integer.toString(ring.getMaxDepth()));
+        addValue(status, "max_queued", Integer.toString(ring.getMaxQueued()));
+        if (dropped > lastDropped || blocked > lastBlocked || oversized > lastOversized) {
+            status.setLevel(diagnostic_msgs.DiagnosticStatus.WARN);
+            status.setMessage((dropped - lastDropped) + " dropped, " + (blocked - lastBlocked) + " blocked, "
+                    + (oversized - lastOversized) + " oversized frames");
+        }
+        else {
+            status.setLevel(diagnostic_msgs.DiagnosticStatus.OK);
+            status.setMessage("ok");
+        }
+        lastDropped = dropped;
+        lastBlocked = blocked;
+        lastOversized = oversized;
+        array.getStatus().add(status);
+        pubDiagnostics.publish(array);
+    }
+
+    private void addValue(diagnostic_msgs.DiagnosticStatus status, java.lang.String key, java.lang.String value) {
+        diagnostic_msgs.KeyValue keyValue = messageFactory.newFromType(diagnostic_msgs.KeyValue._TYPE);
+        keyValue.setKey(key);
+        keyValue.setValue(value);
+        status.getValues().add(keyValue);
+    }
+}
@@ -0,0 +1,118 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.benchmarks;
+
+import com.indoor_robotics.dji_android_ros_driver.EventDrivenLoop;
+import com.indoor_robotics.dji_android_ros_driver.PeriodicScheduler;
+import com.indoor_robotics.dji_android_ros_driver.SimulatedAircraftBackend;
+import com.indoor_robotics.dji_android_ros_driver.VirtualStickController;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End to end cmd_vel to actuation latency against the simulated aircraft, as sampled latency percentiles: a twist
+ * goes through the VirtualStickController, is sent by the control loop (event driven or periodic, with the
+ * driver's default intervals and rate) and ends when the SimulatedAircraftBackend applies it. The simulation steps
+ * at 100 Hz, so the results include up to 10 ms of step quantization on top of the configured SDK latency, like
+ * the flight controller's own command period.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ActuationLatencyBenchmark {
+
+    private static final String CONTROL_TASK_NAME = "bench_control";
+    private static final double CONTROL_RATE_HZ = 25; // DjiRosDriverNode.DEFAULT_CONTROL_RATE_HZ
+
+    @Param({"event", "periodic"})
+    public String forwarding;
+
+    @Param({"0", "20"})
+    public int sdkLatencyMs;
+
+    private SimulatedAircraftBackend aircraft;
+    private VirtualStickController controller;
+    private EventDrivenLoop eventLoop;
+    private PeriodicScheduler scheduler;
+    private double linearX = 0.5;
+
+    // submission time of the latest command applied by the simulation
+    private volatile long actuatedSubmittedNanos = 0;
+
+    @Setup
+    public void setup() {
+        aircraft = new SimulatedAircraftBackend(sdkLatencyMs);
+        aircraft.setActuationListener(new SimulatedAircraftBackend.ActuationListener() {
+            @Override
+            public void onActuation(float pitch, float roll, float yaw, float throttle, long submittedNanos,
+                                    long appliedNanos) {
+                actuatedSubmittedNanos = submittedNanos;
+            }
+        });
+        controller = new VirtualStickController(aircraft);
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                controller.sendLatest();
+            }
+        };
+        if ("event".equals(forwarding)) {
+            eventLoop = new EventDrivenLoop(CONTROL_TASK_NAME, task);
+            eventLoop.setIntervals(EventDrivenLoop.DEFAULT_MIN_INTERVAL_MS, EventDrivenLoop.DEFAULT_KEEPALIVE_MS);
+            eventLoop.start();
+        }
+        else {
+            scheduler = new PeriodicScheduler(CONTROL_TASK_NAME);
+            scheduler.scheduleAtRate(CONTROL_TASK_NAME, PeriodicScheduler.Priority.CONTROL, CONTROL_RATE_HZ, task);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (null != eventLoop) {
+            eventLoop.stop();
+        }
+        if (null != scheduler) {
+            scheduler.shutdown();
+        }
+        aircraft.shutdown();
+    }
+
+    @Benchmark
+    public long twistToActuation() {
+        long receivedNanos = System.nanoTime();
+        linearX = -linearX;
+        controller.onTwist(linearX, 0.2, 0.1, 0.3);
+        if (null != eventLoop) {
+            eventLoop.signal();
+        }
+
+        // done once a command sent after the twist took effect
+        long actuated;
+        while ((actuated = actuatedSubmittedNanos) - receivedNanos < 0) {
+            LockSupport.parkNanos(1000);
+        }
+        return actuated;
+    }
+}
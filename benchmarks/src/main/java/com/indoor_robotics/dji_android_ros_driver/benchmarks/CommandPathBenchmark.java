@@ -0,0 +1,97 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.benchmarks;
+
+import com.indoor_robotics.dji_android_ros_driver.FlightRecorder;
+import com.indoor_robotics.dji_android_ros_driver.VirtualStickCommand;
+import com.indoor_robotics.dji_android_ros_driver.VirtualStickController;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cmd_vel path: twist conversion into a command snapshot (listener thread) and the send of the latest
+ * snapshot to the aircraft (control loop), with and without the flight recorder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CommandPathBenchmark {
+
+    @Param({"false", "true"})
+    public boolean recording;
+
+    private NoopAircraftBackend aircraft;
+    private VirtualStickController controller;
+    private FlightRecorder recorder;
+    private File recordDirectory;
+    private double linearX = 0.5;
+
+    @Setup
+    public void setup() throws IOException {
+        aircraft = new NoopAircraftBackend();
+        controller = new VirtualStickController(aircraft);
+        if (recording) {
+            recordDirectory = File.createTempFile("bench", "");
+            if (!recordDirectory.delete() || !recordDirectory.mkdir()) {
+                throw new IOException("cannot create " + recordDirectory);
+            }
+            recorder = new FlightRecorder(recordDirectory, FlightRecorder.DEFAULT_SEGMENT_SIZE);
+            controller.setFlightRecorder(recorder);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (null != recorder) {
+            controller.setFlightRecorder(null);
+            recorder.close();
+            File[] segments = recordDirectory.listFiles();
+            if (null != segments) {
+                for (File segment : segments) {
+                    segment.delete();
+                }
+            }
+            recordDirectory.delete();
+        }
+    }
+
+    @Benchmark
+    public VirtualStickCommand twistToSnapshot() {
+        linearX = -linearX;
+        return controller.onTwist(linearX, 0.2, 0.1, 0.3);
+    }
+
+    @Benchmark
+    public void sendLatest() {
+        controller.sendLatest();
+    }
+
+    @Benchmark
+    public long twistToSend() {
+        linearX = -linearX;
+        controller.onTwist(linearX, 0.2, 0.1, 0.3);
+        controller.sendLatest();
+        return aircraft.sent;
+    }
+}
@@ -0,0 +1,96 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.benchmarks;
+
+import com.indoor_robotics.dji_android_ros_driver.FastPathEndpoint;
+import com.indoor_robotics.dji_android_ros_driver.FastPathPacket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The UDP fast path over loopback: the cost of encoding and decoding a datagram (should not allocate) and the
+ * delivery latency of a twist from one endpoint to the listener of another, as sampled latency percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FastPathBenchmark {
+
+    private final FastPathPacket packet = new FastPathPacket();
+    private final ByteBuffer buffer = ByteBuffer.allocate(FastPathPacket.PACKET_SIZE);
+
+    private FastPathEndpoint sender;
+    private FastPathEndpoint receiver;
+    private volatile long delivered = 0;
+
+    @Setup
+    public void setup() throws SocketException {
+        receiver = new FastPathEndpoint(0, new FastPathEndpoint.Listener() {
+            @Override
+            public void onPacket(FastPathPacket packet) {
+                delivered++;
+            }
+        });
+        receiver.start();
+        sender = new FastPathEndpoint(0, new FastPathEndpoint.Listener() {
+            @Override
+            public void onPacket(FastPathPacket packet) {
+            }
+        });
+        sender.setPeer(new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.getLocalPort()));
+        sender.start();
+
+        packet.type = FastPathPacket.TYPE_TWIST;
+        packet.linearX = 1f;
+        packet.angularZ = 0.5f;
+    }
+
+    @TearDown
+    public void tearDown() {
+        sender.stop();
+        receiver.stop();
+    }
+
+    @Benchmark
+    public boolean encodeDecode() {
+        packet.sequence++;
+        packet.encode(buffer);
+        return packet.decode(buffer, FastPathPacket.PACKET_SIZE);
+    }
+
+    @Benchmark
+    public long loopbackDelivery() {
+        long target = delivered + 1;
+        sender.sendTwist(1, 0, 0, 0, 0, 0.5);
+        long current;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        // a datagram lost on loopback must not hang the benchmark
+        while ((current = delivered) < target && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1000);
+        }
+        return current;
+    }
+}
@@ -0,0 +1,73 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.benchmarks;
+
+import com.indoor_robotics.dji_android_ros_driver.AircraftBackend;
+
+/**
+ * An always connected aircraft completing every call immediately, so the benchmarks measure the driver alone
+ */
+public class NoopAircraftBackend implements AircraftBackend {
+
+    public long sent = 0;
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setVirtualStickModeEnabled(boolean enabled, ResultCallback callback) {
+        complete(callback);
+    }
+
+    @Override
+    public void sendVirtualStickData(float pitch, float roll, float yaw, float throttle, ResultCallback callback) {
+        sent++;
+        complete(callback);
+    }
+
+    @Override
+    public void startTakeoff(ResultCallback callback) {
+        complete(callback);
+    }
+
+    @Override
+    public void startLanding(ResultCallback callback) {
+        complete(callback);
+    }
+
+    @Override
+    public void confirmLanding(ResultCallback callback) {
+        complete(callback);
+    }
+
+    @Override
+    public boolean setStateListener(StateListener listener) {
+        return true;
+    }
+
+    @Override
+    public boolean setBatteryListener(BatteryListener listener) {
+        return true;
+    }
+
+    private static void complete(ResultCallback callback) {
+        if (null != callback) {
+            callback.onResult(null);
+        }
+    }
+}
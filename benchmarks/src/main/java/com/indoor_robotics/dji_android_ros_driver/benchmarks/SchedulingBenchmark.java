@@ -0,0 +1,103 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.benchmarks;
+
+import com.indoor_robotics.dji_android_ros_driver.EventDrivenLoop;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hand-off latency from a producer thread to a scheduled task, as sampled latency percentiles:
+ * java.util.Timer (the driver's former status and control timers), a ScheduledThreadPoolExecutor and the
+ * EventDrivenLoop used for event driven forwarding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SchedulingBenchmark {
+
+    private Timer timer;
+    private ScheduledThreadPoolExecutor executor;
+    private EventDrivenLoop eventLoop;
+
+    private volatile long runs = 0;
+    private final Runnable task = new Runnable() {
+        @Override
+        public void run() {
+            runs++;
+        }
+    };
+
+    @Setup
+    public void setup() {
+        timer = new Timer("bench_timer", true);
+        executor = new ScheduledThreadPoolExecutor(1);
+        eventLoop = new EventDrivenLoop("bench_event_loop", task);
+        eventLoop.setIntervals(0, 1000);
+        eventLoop.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        timer.cancel();
+        executor.shutdownNow();
+        eventLoop.stop();
+    }
+
+    @Benchmark
+    public long timer() {
+        long target = runs + 1;
+        // a TimerTask cannot be rescheduled, so the Timer needs a new one per run
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                task.run();
+            }
+        }, 0);
+        return awaitRuns(target);
+    }
+
+    @Benchmark
+    public long scheduledExecutor() {
+        long target = runs + 1;
+        executor.schedule(task, 0, TimeUnit.NANOSECONDS);
+        return awaitRuns(target);
+    }
+
+    @Benchmark
+    public long eventDrivenLoop() {
+        long target = runs + 1;
+        eventLoop.signal();
+        return awaitRuns(target);
+    }
+
+    private long awaitRuns(long target) {
+        long current;
+        while ((current = runs) < target) {
+            LockSupport.parkNanos(1000);
+        }
+        return current;
+    }
+}
@@ -0,0 +1,50 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.benchmarks;
+
+import com.indoor_robotics.dji_android_ros_driver.StatusFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the legacy /dji/status string, as DroneStatusTask did with concatenation and with StatusFormatter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StatusFormatBenchmark {
+
+    private final StringBuilder builder = new StringBuilder(128);
+
+    public float batteryLevel = 87.0f;
+    public boolean isConnected = true;
+    public boolean areMotorsOn = true;
+    public boolean isFlying = true;
+    public float altitude = 1.2f;
+
+    @Benchmark
+    public String concatenation() {
+        return "battery=" + batteryLevel + ";isConnected=" + isConnected + ";areMotorsOn=" + areMotorsOn + ";isFlying=" + isFlying + ";altitude=" + altitude;
+    }
+
+    @Benchmark
+    public String reusedBuilder() {
+        return StatusFormatter.format(builder, batteryLevel, isConnected, areMotorsOn, isFlying, altitude);
+    }
+}
@@ -0,0 +1,83 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The flight controller operations used by the driver. DjiAircraftBackend talks to a real aircraft through the
+ * DJI SDK, SimulatedAircraftBackend runs on a plain JVM for testing and benchmarking the control path.
+ *
+ * All operations are asynchronous. Operations called while no aircraft is available report
+ * AircraftError.NOT_AVAILABLE to their callback.
+ */
+public interface AircraftBackend {
+
+    /**
+     * Result of an asynchronous operation, error is null on success
+     */
+    interface ResultCallback {
+        void onResult(AircraftError error);
+    }
+
+    /**
+     * Receives the flight controller state, about 10 times a second. The state instance is reused by the backend,
+     * listeners must copy what they keep.
+     */
+    interface StateListener {
+        void onStateUpdate(AircraftState state);
+    }
+
+    /**
+     * Receives the battery state. The state instance is reused by the backend, listeners must copy what they keep.
+     */
+    interface BatteryListener {
+        void onBatteryUpdate(BatteryInfo battery);
+    }
+
+    /**
+     * @return true if an aircraft is present, even if its link is currently down
+     */
+    boolean isAvailable();
+
+    /**
+     * @return true if an aircraft is present and connected
+     */
+    boolean isConnected();
+
+    /**
+     * @return true once the connected aircraft was configured for virtual stick control, commands sent before may
+     * be rejected or interpreted in other control modes
+     */
+    boolean isReady();
+
+    void setVirtualStickModeEnabled(boolean enabled, ResultCallback callback);
+
+    /**
+     * Sends one virtual stick command. Called at the control loop rate, implementations must not allocate here.
+     */
+    void sendVirtualStickData(float pitch, float roll, float yaw, float throttle, ResultCallback callback);
+
+    void startTakeoff(ResultCallback callback);
+
+    void startLanding(ResultCallback callback);
+
+    void confirmLanding(ResultCallback callback);
+
+    /**
+     * Registers the state listener, replacing a previous one. The listener is kept by the backend and registered
+     * again whenever an aircraft (re)connects.
+     *
+     * @return false if no aircraft is available yet, the listener then starts receiving once one connects
+     */
+    boolean setStateListener(StateListener listener);
+
+    /**
+     * Registers the battery listener, replacing a previous one. The listener is kept by the backend and registered
+     * again whenever an aircraft (re)connects.
+     *
+     * @return false if no aircraft is available yet, the listener then starts receiving once one connects
+     */
+    boolean setBatteryListener(BatteryListener listener);
+}
@@ -0,0 +1,30 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * An error reported by an AircraftBackend operation
+ */
+public final class AircraftError {
+
+    /** Code used when the backend has no error code of its own */
+    public static final int CODE_UNKNOWN = -1;
+
+    public static final AircraftError NOT_AVAILABLE = new AircraftError(-2, "No aircraft available");
+
+    public final int code;
+    public final String description;
+
+    public AircraftError(int code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    @Override
+    public String toString() {
+        return description + " (" + code + ")";
+    }
+}
@@ -0,0 +1,29 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The flight controller state, in the DJI conventions: velocities in the NED frame in m/s, attitude in degrees,
+ * altitude in meters above the take off point. Instances are filled and reused by the backend.
+ */
+public class AircraftState {
+
+    public boolean areMotorsOn;
+    public boolean isFlying;
+    public boolean isLandingConfirmationNeeded;
+
+    public double latitude = Double.NaN;
+    public double longitude = Double.NaN;
+    public float altitude;
+
+    public float velocityX;
+    public float velocityY;
+    public float velocityZ;
+
+    public double roll;
+    public double pitch;
+    public double yaw;
+}
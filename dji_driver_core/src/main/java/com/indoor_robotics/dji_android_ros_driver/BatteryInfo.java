@@ -0,0 +1,21 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The battery state, in the DJI units. Instances are filled and reused by the backend.
+ */
+public class BatteryInfo {
+
+    public int chargeRemainingInPercent;
+    public int voltageMv;
+    /** negative while discharging */
+    public int currentMa;
+    public int chargeRemainingMah;
+    public int fullChargeCapacityMah;
+    public int designCapacityMah;
+    public float temperature;
+}
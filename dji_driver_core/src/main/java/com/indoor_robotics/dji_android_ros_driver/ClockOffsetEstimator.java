@@ -0,0 +1,162 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Estimates the offset between the clock of the ROS host and the clock of the phone from ping/echo exchanges:
+ * the phone sends its time, the host echoes it with its own time, and the phone notes when the echo arrived.
+ * Assuming a symmetric path, the host time was taken halfway through the round trip.
+ *
+ * Wi-Fi delays are anything but symmetric under load, so the estimate comes from the sample with the shortest
+ * round trip of the latest ones (the one least inflated by queueing), as NTP does. Exchanges slower than the
+ * maximum round trip are rejected.
+ *
+ * onEcho() may be called from any thread, the estimate is read without locking.
+ */
+public class ClockOffsetEstimator {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_WINDOW = 8;
+    public static final int DEFAULT_MAX_RTT_MS = 500;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    // latest samples, guarded by this
+    private final long[] offsets;
+    private final long[] rtts;
+    private int next = 0;
+    private int size = 0;
+
+    private volatile long maxRttNanos = DEFAULT_MAX_RTT_MS * NANOS_PER_MILLI;
+    private volatile boolean hasEstimate = false;
+    private volatile long offsetNanos = 0;
+    private volatile long rttNanos = 0;
+    private volatile long lastRttNanos = 0;
+    private volatile long samples = 0;
+    private volatile long rejected = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public ClockOffsetEstimator() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window the number of latest samples the best one is chosen from
+     */
+    public ClockOffsetEstimator(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("invalid window: " + window);
+        }
+        offsets = new long[window];
+        rtts = new long[window];
+    }
+
+    public void setMaxRttMs(int maxRttMs) {
+        if (maxRttMs <= 0) {
+            throw new IllegalArgumentException("invalid maximum round trip: " + maxRttMs);
+        }
+        this.maxRttNanos = maxRttMs * NANOS_PER_MILLI;
+    }
+
+    public int getMaxRttMs() {
+        return (int) (maxRttNanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Adds the result of one exchange
+     *
+     * @param sentNanos     phone time when the ping was sent
+     * @param hostNanos     host time when it was echoed
+     * @param receivedNanos phone time when the echo arrived
+     * @return false if the exchange was rejected
+     */
+    public synchronized boolean onEcho(long sentNanos, long hostNanos, long receivedNanos) {
+        long rtt = receivedNanos - sentNanos;
+        lastRttNanos = rtt;
+        if (rtt < 0 || rtt > maxRttNanos) {
+            rejected++;
+            return false;
+        }
+
+        offsets[next] = hostNanos - (sentNanos + rtt / 2);
+        rtts[next] = rtt;
+        next = (next + 1) % offsets.length;
+        if (size < offsets.length) {
+            size++;
+        }
+
+        int best = 0;
+        for (int i = 1; i < size; i++) {
+            if (rtts[i] < rtts[best]) {
+                best = i;
+            }
+        }
+        offsetNanos = offsets[best];
+        rttNanos = rtts[best];
+        hasEstimate = true;
+        samples++;
+        return true;
+    }
+
+    /**
+     * Forgets the samples, e.g. after a reconnection to another host
+     */
+    public synchronized void reset() {
+        next = 0;
+        size = 0;
+        hasEstimate = false;
+    }
+
+    public boolean hasEstimate() {
+        return hasEstimate;
+    }
+
+    /**
+     * @return host time minus phone time, 0 without an estimate
+     */
+    public long getOffsetNanos() {
+        return offsetNanos;
+    }
+
+    /**
+     * @return the round trip of the sample the estimate comes from
+     */
+    public long getRttNanos() {
+        return rttNanos;
+    }
+
+    /**
+     * @return the round trip of the latest exchange, accepted or not
+     */
+    public long getLastRttNanos() {
+        return lastRttNanos;
+    }
+
+    /**
+     * Converts a host time to the phone clock
+     */
+    public long toLocalNanos(long hostNanos) {
+        return hostNanos - offsetNanos;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,117 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Rejects stamped commands which are too old to be applied, e.g. velocities held in a TCP buffer during a Wi-Fi
+ * stall. The age is the time from the stamp, set on the host, to the reception on the phone, with the stamp moved
+ * to the phone clock by the ClockOffsetEstimator.
+ *
+ * The age of a command without a stamp, or received before the clock offset is known, is UNKNOWN_AGE and the
+ * command is accepted: the filter never drops commands just because the clock sync is not running.
+ * accept() must be called from a single thread, the receiving one.
+ */
+public class CommandAgeFilter {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_MAX_AGE_MS = 200;
+    public static final long UNKNOWN_AGE = Long.MIN_VALUE;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ClockOffsetEstimator clock;
+    private final LatencyHistogram ages = new LatencyHistogram();
+
+    private volatile long maxAgeNanos = DEFAULT_MAX_AGE_MS * NANOS_PER_MILLI;
+    private volatile long accepted = 0;
+    private volatile long dropped = 0;
+    private volatile long unknown = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public CommandAgeFilter(ClockOffsetEstimator clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @param maxAgeMs commands older than this are dropped, 0 accepts all of them
+     */
+    public void setMaxAgeMs(int maxAgeMs) {
+        if (maxAgeMs < 0) {
+            throw new IllegalArgumentException("maximum age must not be negative: " + maxAgeMs);
+        }
+        this.maxAgeNanos = maxAgeMs * NANOS_PER_MILLI;
+    }
+
+    public int getMaxAgeMs() {
+        return (int) (maxAgeNanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * @param stampNanos host time of the command, 0 if it is not stamped
+     * @param nowNanos   phone time, on the same clock as the clock estimator
+     * @return the age of the command, UNKNOWN_AGE if it cannot be known. Small negative ages are estimation errors.
+     */
+    public long ageNanos(long stampNanos, long nowNanos) {
+        if (stampNanos == 0 || !clock.hasEstimate()) {
+            return UNKNOWN_AGE;
+        }
+        return nowNanos - clock.toLocalNanos(stampNanos);
+    }
+
+    /**
+     * Counts the command and records its age
+     *
+     * @param ageNanos the age returned by ageNanos()
+     * @return false if the command is too old to be applied
+     */
+    public boolean accept(long ageNanos) {
+        if (ageNanos == UNKNOWN_AGE) {
+            unknown++;
+            accepted++;
+            return true;
+        }
+        ages.record(ageNanos);
+        long maxAge = maxAgeNanos;
+        if (maxAge > 0 && ageNanos > maxAge) {
+            dropped++;
+            return false;
+        }
+        accepted++;
+        return true;
+    }
+
+    /**
+     * @return the ages of the commands whose age was known, dropped ones included
+     */
+    public LatencyHistogram getAges() {
+        return ages;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of accepted commands whose age was not known
+     */
+    public long getUnknown() {
+        return unknown;
+    }
+}
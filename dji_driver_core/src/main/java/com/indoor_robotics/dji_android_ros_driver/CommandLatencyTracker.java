@@ -0,0 +1,156 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Latency of the virtual stick command path, per stage:
+ * receive (cmd_vel listener) -> pickup (control loop) -> submit (call to the SDK) -> completion (SDK callback).
+ * The receive based stages are recorded for streamed commands only, and only the first time a command is sent,
+ * as resending a held command says nothing about the path. Completion times are measured for one send at a time:
+ * a send submitted while the previous one did not complete yet is only counted as overlapped.
+ * on* methods are called by the control loop, except onCompletion which is called by the SDK callback thread.
+ */
+public class CommandLatencyTracker {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    /** A submitted send not completed within this time is counted as lost and no longer waited for */
+    public static final long COMPLETION_TIMEOUT_NANOS = 1000000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final LatencyHistogram receiveToPickup = new LatencyHistogram();
+    private final LatencyHistogram pickupToSubmit = new LatencyHistogram();
+    private final LatencyHistogram submitToCompletion = new LatencyHistogram();
+    private final LatencyHistogram receiveToCompletion = new LatencyHistogram();
+
+    // written by the control loop
+    private long lastPickedSequence = -1;
+    private boolean firstPickup = false;
+    private volatile long submitted = 0;
+    private volatile long overlapped = 0;
+    private volatile long lost = 0;
+
+    // handed over to the completion callback, pendingSubmitNanos is 0 when no send is timed
+    private volatile long pendingSubmitNanos = 0;
+    private volatile long pendingReceivedNanos = 0;
+
+    // written by the completion callback
+    private volatile long completed = 0;
+    private volatile long errors = 0;
+    private volatile AircraftError lastError = null;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * The control loop picked up the given command for sending
+     */
+    public void onPickup(VirtualStickCommand command, long nowNanos) {
+        firstPickup = command.sequence != lastPickedSequence;
+        lastPickedSequence = command.sequence;
+        if (firstPickup && command.streamed) {
+            receiveToPickup.record(nowNanos - command.receivedNanos);
+        }
+    }
+
+    /**
+     * The command picked up at pickupNanos is about to be submitted to the SDK
+     */
+    public void onSubmit(VirtualStickCommand command, long pickupNanos, long nowNanos) {
+        submitted++;
+        pickupToSubmit.record(nowNanos - pickupNanos);
+
+        long pending = pendingSubmitNanos;
+        if (pending != 0) {
+            if (nowNanos - pending < COMPLETION_TIMEOUT_NANOS) {
+                overlapped++;
+                return;
+            }
+            lost++;
+        }
+        pendingReceivedNanos = firstPickup && command.streamed ? command.receivedNanos : 0;
+        pendingSubmitNanos = nowNanos;
+    }
+
+    /**
+     * The SDK completed a send, error is null on success
+     */
+    public void onCompletion(AircraftError error, long nowNanos) {
+        long submit = pendingSubmitNanos;
+        if (submit != 0) {
+            long received = pendingReceivedNanos;
+            submitToCompletion.record(nowNanos - submit);
+            if (received != 0) {
+                receiveToCompletion.record(nowNanos - received);
+            }
+            pendingSubmitNanos = 0;
+        }
+
+        if (null != error) {
+            lastError = error;
+            errors++;
+        }
+        completed++;
+    }
+
+    public LatencyHistogram getReceiveToPickup() {
+        return receiveToPickup;
+    }
+
+    public LatencyHistogram getPickupToSubmit() {
+        return pickupToSubmit;
+    }
+
+    public LatencyHistogram getSubmitToCompletion() {
+        return submitToCompletion;
+    }
+
+    public LatencyHistogram getReceiveToCompletion() {
+        return receiveToCompletion;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return how many completions reported an error
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the latest error reported by a completion, null if there was none
+     */
+    public AircraftError getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return how many sends were not timed because the previous send did not complete yet
+     */
+    public long getOverlapped() {
+        return overlapped;
+    }
+
+    /**
+     * @return how many timed sends did not complete within COMPLETION_TIMEOUT_NANOS
+     */
+    public long getLost() {
+        return lost;
+    }
+}
@@ -0,0 +1,87 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Decays streamed commands to hover when they are not refreshed in time.
+ * Up to the timeout the command is applied as is, then it is linearly scaled down to zero over the decay time.
+ */
+public class CommandWatchdog {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_TIMEOUT_MS = 500;
+    public static final int DEFAULT_DECAY_MS = 500;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile long timeoutNanos = DEFAULT_TIMEOUT_MS * NANOS_PER_MILLI;
+    private volatile long decayNanos = DEFAULT_DECAY_MS * NANOS_PER_MILLI;
+    private volatile long trips = 0;
+    private long lastTrippedSequence = -1;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param timeoutMs time without a new command after which the command starts decaying, 0 disables the watchdog
+     * @param decayMs   time over which the command is scaled down to hover, 0 stops immediately
+     */
+    public void configure(int timeoutMs, int decayMs) {
+        if (timeoutMs < 0 || decayMs < 0) {
+            throw new IllegalArgumentException("watchdog times must not be negative");
+        }
+        this.timeoutNanos = timeoutMs * NANOS_PER_MILLI;
+        this.decayNanos = decayMs * NANOS_PER_MILLI;
+    }
+
+    public int getTimeoutMs() {
+        return (int) (timeoutNanos / NANOS_PER_MILLI);
+    }
+
+    public int getDecayMs() {
+        return (int) (decayNanos / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Computes the factor the command axes should be multiplied with. Called from the control loop only.
+     *
+     * @return 1 for a fresh command, 0 for a stale one and a value in between while decaying
+     */
+    public float scale(VirtualStickCommand command, long nowNanos) {
+        long timeout = timeoutNanos;
+        if (!command.streamed || timeout == 0) {
+            return 1f;
+        }
+
+        long overdue = nowNanos - command.receivedNanos - timeout;
+        if (overdue <= 0) {
+            return 1f;
+        }
+
+        if (lastTrippedSequence != command.sequence) {
+            lastTrippedSequence = command.sequence;
+            trips++;
+        }
+
+        long decay = decayNanos;
+        return overdue >= decay ? 0f : 1f - (float) overdue / decay;
+    }
+
+    /**
+     * @return how many commands went stale so far
+     */
+    public long getTrips() {
+        return trips;
+    }
+}
@@ -0,0 +1,291 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings a freshly connected flight controller to a known configuration before the first command: all the
+ * configuration steps are started at once, each one must be confirmed by its completion callback, and a step which
+ * fails or does not complete within its timeout is retried after a delay. The aircraft is READY when every step
+ * was confirmed, FAILED when a step ran out of attempts.
+ *
+ * A new start() (e.g. on a reconnection) or a reset() abandons the running warm-up, late completions of its steps are
+ * ignored. Thread safe, listeners are called from the completion callback threads and the retry thread.
+ */
+public class ControllerWarmUp {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final int DEFAULT_RETRY_DELAY_MS = 500;
+    public static final int DEFAULT_STEP_TIMEOUT_MS = 3000;
+
+    public enum State {
+        /** No flight controller to configure */
+        IDLE,
+        CONFIGURING,
+        READY,
+        FAILED
+    }
+
+    /**
+     * One configuration step, which reports its confirmation to the callback
+     */
+    public interface Step {
+
+        java.lang.String getName();
+
+        void run(AircraftBackend.ResultCallback callback);
+    }
+
+    /**
+     * Notified on every state change
+     */
+    public interface Listener {
+        void onStateChange(State state);
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ScheduledExecutorService executor;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile int retryDelayMs = DEFAULT_RETRY_DELAY_MS;
+    private volatile int stepTimeoutMs = DEFAULT_STEP_TIMEOUT_MS;
+
+    // guarded by this
+    private long generation = 0;
+    private int pending = 0;
+    private State state = State.IDLE;
+    private long startedNanos = 0;
+    private long readyNanos = 0;
+    private long retries = 0;
+    private java.lang.String failedStep = null;
+    private AircraftError lastError = null;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public ControllerWarmUp() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "controller_warm_up");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param maxAttempts   attempts of each step before the warm-up fails
+     * @param retryDelayMs  delay before a failed step is run again
+     * @param stepTimeoutMs time after which a step which did not complete counts as failed
+     */
+    public void configure(int maxAttempts, int retryDelayMs, int stepTimeoutMs) {
+        if (maxAttempts <= 0 || retryDelayMs < 0 || stepTimeoutMs <= 0) {
+            throw new IllegalArgumentException("invalid warm-up: attempts=" + maxAttempts + " retry delay="
+                    + retryDelayMs + " timeout=" + stepTimeoutMs);
+        }
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMs = retryDelayMs;
+        this.stepTimeoutMs = stepTimeoutMs;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Runs all the steps in parallel, abandoning a running warm-up
+     */
+    public void start(List<? extends Step> steps) {
+        long current;
+        synchronized (this) {
+            current = ++generation;
+            pending = steps.size();
+            startedNanos = System.nanoTime();
+            readyNanos = 0;
+            failedStep = null;
+            lastError = null;
+        }
+        setState(current, steps.isEmpty() ? State.READY : State.CONFIGURING);
+        for (Step step : steps) {
+            new Attempt(current, step, 1).run();
+        }
+    }
+
+    /**
+     * Abandons the running warm-up, e.g. when the flight controller disconnected
+     */
+    public void reset() {
+        long current;
+        synchronized (this) {
+            current = ++generation;
+            pending = 0;
+        }
+        setState(current, State.IDLE);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public boolean isReady() {
+        return getState() == State.READY;
+    }
+
+    /**
+     * @return the time it took to confirm all the steps, -1 if the aircraft is not ready
+     */
+    public synchronized long getWarmUpMillis() {
+        return state == State.READY ? (readyNanos - startedNanos) / 1000000L : -1;
+    }
+
+    /**
+     * @return the number of step attempts which were retried, since the creation
+     */
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the name of the step which ran out of attempts, null unless FAILED
+     */
+    public synchronized java.lang.String getFailedStep() {
+        return failedStep;
+    }
+
+    /**
+     * @return the latest error reported by a step of the current warm-up, null if none
+     */
+    public synchronized AircraftError getLastError() {
+        return lastError;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void setState(long expectedGeneration, State newState) {
+        synchronized (this) {
+            if (expectedGeneration != generation || newState == state) {
+                return;
+            }
+            state = newState;
+            if (newState == State.READY) {
+                readyNanos = System.nanoTime();
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.onStateChange(newState);
+        }
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    /**
+     * One attempt of a step. Completes once, with the callback of the step or with its timeout.
+     */
+    private class Attempt implements Runnable, AircraftBackend.ResultCallback {
+
+        private final long generation;
+        private final Step step;
+        private final int number;
+        private boolean completed = false; // guarded by this
+
+        Attempt(long generation, Step step, int number) {
+            this.generation = generation;
+            this.step = step;
+            this.number = number;
+        }
+
+        @Override
+        public void run() {
+            synchronized (ControllerWarmUp.this) {
+                if (generation != ControllerWarmUp.this.generation) {
+                    return;
+                }
+            }
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onResult(new AircraftError(AircraftError.CODE_UNKNOWN, step.getName() + " timed out"));
+                }
+            }, stepTimeoutMs, TimeUnit.MILLISECONDS);
+            try {
+                step.run(this);
+            }
+            catch (RuntimeException e) {
+                onResult(new AircraftError(AircraftError.CODE_UNKNOWN, step.getName() + " failed: " + e));
+            }
+        }
+
+        @Override
+        public void onResult(AircraftError error) {
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+            }
+
+            State next = null;
+            boolean retry = false;
+            synchronized (ControllerWarmUp.this) {
+                if (generation != ControllerWarmUp.this.generation) {
+                    return;
+                }
+                if (null == error) {
+                    pending--;
+                    if (pending == 0) {
+                        next = State.READY;
+                    }
+                }
+                else {
+                    lastError = error;
+                    if (number < maxAttempts) {
+                        retries++;
+                        retry = true;
+                    }
+                    else if (null == failedStep) {
+                        failedStep = step.getName();
+                        next = State.FAILED;
+                    }
+                }
+            }
+
+            if (retry) {
+                executor.schedule(new Attempt(generation, step, number + 1), retryDelayMs, TimeUnit.MILLISECONDS);
+            }
+            if (null != next) {
+                setState(generation, next);
+            }
+        }
+    }
+}
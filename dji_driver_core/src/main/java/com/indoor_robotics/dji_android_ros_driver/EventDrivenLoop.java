@@ -0,0 +1,171 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A dedicated thread running a task as soon as it is signaled, at most once per minimum interval.
+ * Signals arriving while a run is pending are coalesced into that run, so the task should always pick up the
+ * newest data. When no signal arrives for the keepalive interval the task is run anyway.
+ * The jitter recorded in the stats is the delay between a signal (or keepalive deadline) and the run. A run which
+ * throws is counted in the stats as a failure and logged through a TaskFailureLog, the loop keeps running.
+ */
+public class EventDrivenLoop {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_MIN_INTERVAL_MS = 20;
+    public static final int DEFAULT_KEEPALIVE_MS = 200;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final String name;
+    private final Runnable task;
+    private final LoopStats stats = new LoopStats();
+    private final TaskFailureLog failureLog;
+
+    private volatile long minIntervalNanos = DEFAULT_MIN_INTERVAL_MS * NANOS_PER_MILLI;
+    private volatile long keepaliveNanos = DEFAULT_KEEPALIVE_MS * NANOS_PER_MILLI;
+    private volatile boolean running = false;
+    private volatile boolean pending = false;
+    private volatile long signalNanos = 0;
+    private volatile long coalesced = 0;
+    private volatile long keepalives = 0;
+    private Thread thread = null;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public EventDrivenLoop(String name, Runnable task) {
+        this.name = name;
+        this.task = task;
+        this.failureLog = new TaskFailureLog(name);
+    }
+
+    /**
+     * @param minIntervalMs minimum time between two runs of the task
+     * @param keepaliveMs   time without signals after which the task is run anyway, must not be below minIntervalMs
+     */
+    public void setIntervals(int minIntervalMs, int keepaliveMs) {
+        if (minIntervalMs < 0 || keepaliveMs <= 0 || keepaliveMs < minIntervalMs) {
+            throw new IllegalArgumentException("invalid intervals: min=" + minIntervalMs + " keepalive=" + keepaliveMs);
+        }
+        this.minIntervalNanos = minIntervalMs * NANOS_PER_MILLI;
+        this.keepaliveNanos = keepaliveMs * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Requests a run of the task. Called by the producer of new data.
+     */
+    public void signal() {
+        if (pending) {
+            coalesced++;
+            return;
+        }
+        signalNanos = System.nanoTime();
+        pending = true;
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    public LoopStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return how many signals were merged into an already pending run
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return how many runs were triggered by the keepalive and not by a signal
+     */
+    public long getKeepalives() {
+        return keepalives;
+    }
+
+    public synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, name);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        if (thread != null) {
+            running = false;
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void loop() {
+        long lastRun = System.nanoTime() - keepaliveNanos;
+
+        while (running) {
+            // wait for a signal or for the keepalive deadline
+            long keepaliveDeadline = lastRun + keepaliveNanos;
+            long wait = keepaliveDeadline - System.nanoTime();
+            while (!pending && wait > 0 && running) {
+                LockSupport.parkNanos(this, wait);
+                wait = keepaliveDeadline - System.nanoTime();
+            }
+
+            // respect the minimum interval, more signals arriving meanwhile are coalesced
+            long earliest = lastRun + minIntervalNanos;
+            wait = earliest - System.nanoTime();
+            while (wait > 0 && running) {
+                LockSupport.parkNanos(this, wait);
+                wait = earliest - System.nanoTime();
+            }
+            if (!running) {
+                break;
+            }
+
+            long now = System.nanoTime();
+            boolean signaled = pending;
+            long requested = signaled ? signalNanos : keepaliveDeadline;
+            if (!signaled) {
+                keepalives++;
+            }
+            pending = false;
+            stats.record(now, now - requested, false);
+
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                // a failing run must not kill the loop
+                failureLog.onFailure(e, stats.recordFailure());
+            }
+            lastRun = now;
+        }
+    }
+}
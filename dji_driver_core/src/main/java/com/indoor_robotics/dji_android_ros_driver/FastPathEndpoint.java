@@ -0,0 +1,265 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * One end of the UDP fast path, a side channel next to TCPROS for data where the newest value is all that matters:
+ * movement commands one way and compact telemetry the other way. A lost datagram is simply replaced by the next one,
+ * nothing waits for a retransmission as on a TCP stream.
+ *
+ * A receive thread decodes the datagrams into a reused packet and hands those accepted by the SequenceFilter to the
+ * listener. Datagrams are sent to the configured peer, or else to the sender of the last accepted datagram, so the
+ * phone answers whichever host commands it. Sending and receiving do not allocate.
+ */
+public class FastPathEndpoint {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_PORT = 9750;
+
+    /**
+     * Receives the accepted packets, on the receive thread. The packet is reused, listeners must copy what they keep.
+     */
+    public interface Listener {
+        void onPacket(FastPathPacket packet);
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final int localPort;
+    private final Listener listener;
+    private final SequenceFilter filter = new SequenceFilter();
+    private final int session = new Random().nextInt();
+
+    private DatagramSocket socket = null;
+    private Thread thread = null;
+    private volatile boolean running = false;
+
+    // receive thread only
+    private final byte[] receiveData = new byte[FastPathPacket.PACKET_SIZE + 1];
+    private final ByteBuffer receiveBuffer = ByteBuffer.wrap(receiveData);
+    private final DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
+    private final FastPathPacket received = new FastPathPacket();
+
+    // guarded by sendLock
+    private final Object sendLock = new Object();
+    private final byte[] sendData = new byte[FastPathPacket.PACKET_SIZE];
+    private final ByteBuffer sendBuffer = ByteBuffer.wrap(sendData);
+    private final DatagramPacket sendPacket = new DatagramPacket(sendData, sendData.length);
+    private final FastPathPacket outgoing = new FastPathPacket();
+    private int sequence = 0;
+
+    private volatile InetSocketAddress configuredPeer = null;
+    private volatile InetSocketAddress learnedPeer = null;
+
+    private volatile long sent = 0;
+    private volatile long sendFailures = 0;
+    private volatile long malformed = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param localPort port to receive on, 0 for any free port
+     */
+    public FastPathEndpoint(int localPort, Listener listener) {
+        this.localPort = localPort;
+        this.listener = listener;
+    }
+
+    /**
+     * Sends to the given peer instead of the sender of the last accepted datagram, null to go back to the latter
+     */
+    public void setPeer(InetSocketAddress peer) {
+        this.configuredPeer = peer;
+    }
+
+    public SequenceFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the port the endpoint receives on, once started
+     */
+    public synchronized int getLocalPort() {
+        return null != socket ? socket.getLocalPort() : localPort;
+    }
+
+    public synchronized void start() throws SocketException {
+        if (null != thread) {
+            return;
+        }
+        socket = new DatagramSocket(localPort);
+        running = true;
+        final DatagramSocket receiveSocket = socket;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receiveLoop(receiveSocket);
+            }
+        }, "fast_path_" + localPort);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (null == thread) {
+            return;
+        }
+        running = false;
+        // unblocks the receive
+        socket.close();
+        socket = null;
+        thread = null;
+    }
+
+    /**
+     * Sends a movement command
+     *
+     * @return false if there is no peer to send to or the send failed
+     */
+    public boolean sendTwist(double linearX, double linearY, double linearZ,
+                             double angularX, double angularY, double angularZ) {
+        synchronized (sendLock) {
+            outgoing.type = FastPathPacket.TYPE_TWIST;
+            outgoing.linearX = (float) linearX;
+            outgoing.linearY = (float) linearY;
+            outgoing.linearZ = (float) linearZ;
+            outgoing.angularX = (float) angularX;
+            outgoing.angularY = (float) angularY;
+            outgoing.angularZ = (float) angularZ;
+            return sendOutgoing();
+        }
+    }
+
+    /**
+     * Sends the flight controller state
+     *
+     * @param flags the StatusPublisher flags
+     * @return false if there is no peer to send to or the send failed
+     */
+    public boolean sendTelemetry(int flags, AircraftState state) {
+        synchronized (sendLock) {
+            outgoing.type = FastPathPacket.TYPE_TELEMETRY;
+            outgoing.flags = flags;
+            outgoing.latitude = state.latitude;
+            outgoing.longitude = state.longitude;
+            outgoing.altitude = state.altitude;
+            outgoing.velocityX = state.velocityX;
+            outgoing.velocityY = state.velocityY;
+            outgoing.velocityZ = state.velocityZ;
+            outgoing.roll = (float) state.roll;
+            outgoing.pitch = (float) state.pitch;
+            outgoing.yaw = (float) state.yaw;
+            return sendOutgoing();
+        }
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getSendFailures() {
+        return sendFailures;
+    }
+
+    /**
+     * @return how many datagrams were not valid packets
+     */
+    public long getMalformed() {
+        return malformed;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private boolean sendOutgoing() {
+        DatagramSocket s;
+        synchronized (this) {
+            s = socket;
+        }
+        if (null == s) {
+            return false;
+        }
+
+        InetSocketAddress peer = configuredPeer;
+        if (null == peer) {
+            peer = learnedPeer;
+            if (null == peer) {
+                return false;
+            }
+        }
+        sendPacket.setAddress(peer.getAddress());
+        sendPacket.setPort(peer.getPort());
+
+        outgoing.session = session;
+        outgoing.sequence = ++sequence;
+        outgoing.senderMillis = System.currentTimeMillis();
+        outgoing.encode(sendBuffer);
+        try {
+            s.send(sendPacket);
+            sent++;
+            return true;
+        }
+        catch (IOException e) {
+            sendFailures++;
+            return false;
+        }
+    }
+
+    private void receiveLoop(DatagramSocket receiveSocket) {
+        while (running) {
+            try {
+                receivePacket.setLength(receiveData.length);
+                receiveSocket.receive(receivePacket);
+            }
+            catch (IOException e) {
+                // closed by stop(), or a transient error
+                continue;
+            }
+
+            if (!received.decode(receiveBuffer, receivePacket.getLength())) {
+                malformed++;
+                continue;
+            }
+            if (filter.accept(received.session, received.sequence, received.senderMillis,
+                    System.currentTimeMillis()) != SequenceFilter.Result.ACCEPTED) {
+                continue;
+            }
+
+            // only allocated when the peer changes
+            InetAddress address = receivePacket.getAddress();
+            int port = receivePacket.getPort();
+            InetSocketAddress learned = learnedPeer;
+            if (null == learned || port != learned.getPort() || !address.equals(learned.getAddress())) {
+                learnedPeer = new InetSocketAddress(address, port);
+            }
+
+            try {
+                listener.onPacket(received);
+            }
+            catch (RuntimeException e) {
+                // a failing listener must not kill the receive thread
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One datagram of the UDP fast path, a mutable holder which is encoded to and decoded from a reused buffer.
+ *
+ * All datagrams are PACKET_SIZE bytes, big endian: magic (short), version (byte), type (byte), session (int),
+ * sequence (int), sender wall time in ms (long), followed by the payload of the type, zero padded.
+ * The session is chosen randomly by the sender on start, so a restarted sender is recognized and its sequence
+ * numbers are not taken for old ones.
+ *
+ * TYPE_TWIST: linear x, y, z and angular x, y, z as floats, as in geometry_msgs/Twist.
+ * TYPE_TELEMETRY: flags (int, the StatusPublisher flags), latitude, longitude (doubles), altitude, velocity x, y, z
+ * (NED), roll, pitch, yaw (degrees) as floats, as in AircraftState.
+ */
+public class FastPathPacket {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final short MAGIC = 0x444a; // "DJ"
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 20;
+    public static final int PACKET_SIZE = 80;
+
+    public static final byte TYPE_TWIST = 1;
+    public static final byte TYPE_TELEMETRY = 2;
+
+    //***************************
+    // Public Fields
+    //***************************
+
+    public byte type;
+    public int session;
+    public int sequence;
+    public long senderMillis;
+
+    // TYPE_TWIST
+    public float linearX;
+    public float linearY;
+    public float linearZ;
+    public float angularX;
+    public float angularY;
+    public float angularZ;
+
+    // TYPE_TELEMETRY
+    public int flags;
+    public double latitude;
+    public double longitude;
+    public float altitude;
+    public float velocityX;
+    public float velocityY;
+    public float velocityZ;
+    public float roll;
+    public float pitch;
+    public float yaw;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Writes the packet at the start of the buffer, which must hold at least PACKET_SIZE bytes
+     */
+    public void encode(ByteBuffer buffer) {
+        buffer.putShort(0, MAGIC);
+        buffer.put(2, VERSION);
+        buffer.put(3, type);
+        buffer.putInt(4, session);
+        buffer.putInt(8, sequence);
+        buffer.putLong(12, senderMillis);
+
+        int p = HEADER_SIZE;
+        if (type == TYPE_TWIST) {
+            buffer.putFloat(p, linearX);
+            buffer.putFloat(p + 4, linearY);
+            buffer.putFloat(p + 8, linearZ);
+            buffer.putFloat(p + 12, angularX);
+            buffer.putFloat(p + 16, angularY);
+            buffer.putFloat(p + 20, angularZ);
+            p += 24;
+        }
+        else if (type == TYPE_TELEMETRY) {
+            buffer.putInt(p, flags);
+            buffer.putDouble(p + 4, latitude);
+            buffer.putDouble(p + 12, longitude);
+            buffer.putFloat(p + 20, altitude);
+            buffer.putFloat(p + 24, velocityX);
+            buffer.putFloat(p + 28, velocityY);
+            buffer.putFloat(p + 32, velocityZ);
+            buffer.putFloat(p + 36, roll);
+            buffer.putFloat(p + 40, pitch);
+            buffer.putFloat(p + 44, yaw);
+            p += 48;
+        }
+        for (; p < PACKET_SIZE; p++) {
+            buffer.put(p, (byte) 0);
+        }
+    }
+
+    /**
+     * Reads a packet from the start of the buffer
+     *
+     * @param length number of bytes received
+     * @return false if this is not a valid packet, the fields are then undefined
+     */
+    public boolean decode(ByteBuffer buffer, int length) {
+        if (length != PACKET_SIZE || buffer.getShort(0) != MAGIC || buffer.get(2) != VERSION) {
+            return false;
+        }
+        type = buffer.get(3);
+        session = buffer.getInt(4);
+        sequence = buffer.getInt(8);
+        senderMillis = buffer.getLong(12);
+
+        int p = HEADER_SIZE;
+        if (type == TYPE_TWIST) {
+            linearX = buffer.getFloat(p);
+            linearY = buffer.getFloat(p + 4);
+            linearZ = buffer.getFloat(p + 8);
+            angularX = buffer.getFloat(p + 12);
+            angularY = buffer.getFloat(p + 16);
+            angularZ = buffer.getFloat(p + 20);
+            return true;
+        }
+        if (type == TYPE_TELEMETRY) {
+            flags = buffer.getInt(p);
+            latitude = buffer.getDouble(p + 4);
+            longitude = buffer.getDouble(p + 12);
+            altitude = buffer.getFloat(p + 20);
+            velocityX = buffer.getFloat(p + 24);
+            velocityY = buffer.getFloat(p + 28);
+            velocityZ = buffer.getFloat(p + 32);
+            roll = buffer.getFloat(p + 36);
+            pitch = buffer.getFloat(p + 40);
+            yaw = buffer.getFloat(p + 44);
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,26 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The one-shot flight controller commands run by the FlightCommandExecutor
+ */
+public enum FlightCommand {
+    TAKEOFF("takeoff", FlightRecorder.OP_TAKEOFF),
+    LANDING("landing", FlightRecorder.OP_LANDING),
+    CONFIRM_LANDING("confirm_landing", FlightRecorder.OP_CONFIRM_LANDING);
+
+    /** Name used in results and logs */
+    public final String label;
+
+    /** Operation code used by the flight recorder */
+    public final int recorderOperation;
+
+    FlightCommand(String label, int recorderOperation) {
+        this.label = label;
+        this.recorderOperation = recorderOperation;
+    }
+}
@@ -0,0 +1,256 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs one-shot flight controller commands asynchronously. submit() returns at once with the id of the execution,
+ * which is also reported to the listener as accepted, the result is reported from the completion callback of the
+ * aircraft.
+ * A command requested again while it is still in flight (e.g. repeated takeoff calls, or the landing confirmation
+ * requested on every state update) is collapsed into the running execution and gets its id.
+ * If the aircraft never completes a command, the execution is reported as TIMED_OUT when the timeout expires, from a
+ * timer thread started with the first submission. shutdown() stops it and reports the executions still in flight as
+ * ABORTED, so the executor can be used again, e.g. when the node is restarted after a master failover.
+ * Thread safe.
+ */
+public class FlightCommandExecutor {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_TIMEOUT_MS = 30000;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Receives the executions. onAccepted() is called from the submitting thread before the command is sent, once per
+     * execution. onResult() is called from the aircraft callback thread (the submitting thread for rejected commands,
+     * the timer thread for timed out ones, the thread calling shutdown() for aborted ones).
+     */
+    public interface ResultListener {
+        void onAccepted(FlightCommand command, long id, long submittedMillis);
+
+        void onResult(FlightCommandResult result);
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final AircraftBackend aircraft;
+    private final ResultListener listener;
+    private final Execution[] inFlight = new Execution[FlightCommand.values().length];
+
+    private ScheduledExecutorService timer = null;
+    private long nextId = 1;
+    private long timeoutNanos = DEFAULT_TIMEOUT_MS * NANOS_PER_MILLI;
+    private long duplicates = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public FlightCommandExecutor(AircraftBackend aircraft, ResultListener listener) {
+        this.aircraft = aircraft;
+        this.listener = listener;
+    }
+
+    public synchronized void setTimeoutMs(int timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("invalid timeout: " + timeoutMs);
+        }
+        this.timeoutNanos = timeoutMs * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Sends the command to the aircraft, unless it is already in flight
+     *
+     * @return the id of the execution the request belongs to
+     */
+    public long submit(FlightCommand command) {
+        Execution execution;
+
+        synchronized (this) {
+            Execution running = inFlight[command.ordinal()];
+            if (null != running) {
+                running.duplicates++;
+                duplicates++;
+                return running.id;
+            }
+            execution = new Execution(nextId++, command, System.nanoTime());
+            inFlight[command.ordinal()] = execution;
+        }
+
+        listener.onAccepted(command, execution.id, execution.submittedMillis);
+
+        if (!aircraft.isAvailable()) {
+            execution.onResult(AircraftError.NOT_AVAILABLE);
+            return execution.id;
+        }
+
+        scheduleTimeout(execution);
+        switch (command) {
+            case TAKEOFF:
+                aircraft.startTakeoff(execution);
+                break;
+            case LANDING:
+                aircraft.startLanding(execution);
+                break;
+            case CONFIRM_LANDING:
+                aircraft.confirmLanding(execution);
+                break;
+        }
+        return execution.id;
+    }
+
+    /**
+     * @return true if the command was submitted and did not complete yet
+     */
+    public synchronized boolean isInFlight(FlightCommand command) {
+        return null != inFlight[command.ordinal()];
+    }
+
+    /**
+     * @return how many requests were collapsed into an execution in flight
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Stops the timer thread and reports the executions in flight as ABORTED, a completion the aircraft reports later
+     * is ignored. The next submission of any command is sent to the aircraft and starts a new timer.
+     */
+    public void shutdown() {
+        FlightCommandResult[] aborted = new FlightCommandResult[inFlight.length];
+
+        synchronized (this) {
+            if (null != timer) {
+                timer.shutdownNow();
+                timer = null;
+            }
+            long now = System.nanoTime();
+            for (int i = 0; i < inFlight.length; i++) {
+                if (null != inFlight[i]) {
+                    aborted[i] = inFlight[i].complete(FlightCommandResult.Status.ABORTED, FlightCommandResult.NO_ERROR,
+                            null, now);
+                    inFlight[i] = null;
+                }
+            }
+        }
+
+        for (FlightCommandResult result : aborted) {
+            if (null != result) {
+                listener.onResult(result);
+            }
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private synchronized void scheduleTimeout(final Execution execution) {
+        if (null == timer) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "flight_command_timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        if (!execution.done) {
+            execution.timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execution.onTimeout();
+                }
+            }, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    /**
+     * One execution of a command, which is also the completion callback given to the aircraft
+     */
+    private class Execution implements AircraftBackend.ResultCallback {
+
+        final long id;
+        final FlightCommand command;
+        final long submittedMillis = System.currentTimeMillis();
+        final long submittedNanos;
+        int duplicates = 0;
+        boolean done = false;
+        ScheduledFuture<?> timeout = null;
+
+        Execution(long id, FlightCommand command, long submittedNanos) {
+            this.id = id;
+            this.command = command;
+            this.submittedNanos = submittedNanos;
+        }
+
+        @Override
+        public void onResult(AircraftError error) {
+            FlightCommandResult result;
+            long now = System.nanoTime();
+
+            synchronized (FlightCommandExecutor.this) {
+                if (done) {
+                    // already reported as timed out or aborted
+                    return;
+                }
+                if (null == error) {
+                    result = complete(FlightCommandResult.Status.SUCCEEDED, FlightCommandResult.NO_ERROR, null, now);
+                }
+                else {
+                    result = complete(error == AircraftError.NOT_AVAILABLE ? FlightCommandResult.Status.REJECTED
+                            : FlightCommandResult.Status.FAILED, error.code, error.description, now);
+                }
+                if (inFlight[command.ordinal()] == this) {
+                    inFlight[command.ordinal()] = null;
+                }
+            }
+            listener.onResult(result);
+        }
+
+        void onTimeout() {
+            FlightCommandResult result;
+            synchronized (FlightCommandExecutor.this) {
+                if (done) {
+                    return;
+                }
+                result = complete(FlightCommandResult.Status.TIMED_OUT, FlightCommandResult.NO_ERROR, null,
+                        System.nanoTime());
+                if (inFlight[command.ordinal()] == this) {
+                    inFlight[command.ordinal()] = null;
+                }
+            }
+            listener.onResult(result);
+        }
+
+        FlightCommandResult complete(FlightCommandResult.Status status, int errorCode, String errorDescription, long now) {
+            done = true;
+            if (null != timeout) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+            return new FlightCommandResult(id, command, status, errorCode, errorDescription, submittedMillis,
+                    submittedNanos, now, duplicates);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The outcome of one execution of a FlightCommand
+ */
+public final class FlightCommandResult {
+
+    public enum Status {
+        /** The aircraft reported success */
+        SUCCEEDED,
+        /** The aircraft reported an error, see errorCode */
+        FAILED,
+        /** The command could not be sent, e.g. no aircraft is connected */
+        REJECTED,
+        /** No completion was reported within the executor timeout */
+        TIMED_OUT,
+        /** The executor was shut down before a completion was reported */
+        ABORTED
+    }
+
+    /** Error code used when the command did not fail on the aircraft */
+    public static final int NO_ERROR = 0;
+
+    /** Id of the execution, also returned to every request collapsed into it */
+    public final long id;
+    public final FlightCommand command;
+    public final Status status;
+    public final int errorCode;
+    public final String errorDescription;
+
+    /** Wall time at which the command was submitted */
+    public final long submittedMillis;
+    /** System.nanoTime() at submission and completion */
+    public final long submittedNanos;
+    public final long completedNanos;
+
+    /** Number of requests received while the command was in flight and collapsed into it */
+    public final int duplicates;
+
+    public FlightCommandResult(long id, FlightCommand command, Status status, int errorCode, String errorDescription,
+                               long submittedMillis, long submittedNanos, long completedNanos, int duplicates) {
+        this.id = id;
+        this.command = command;
+        this.status = status;
+        this.errorCode = errorCode;
+        this.errorDescription = errorDescription;
+        this.submittedMillis = submittedMillis;
+        this.submittedNanos = submittedNanos;
+        this.completedNanos = completedNanos;
+        this.duplicates = duplicates;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCEEDED;
+    }
+
+    public long getDurationMs() {
+        return (completedNanos - submittedNanos) / 1000000L;
+    }
+
+    @Override
+    public String toString() {
+        return "command=" + command.label + ";id=" + id + ";status=" + status + ";error_code=" + errorCode
+                + ";error=" + (null == errorDescription ? "" : errorDescription)
+                + ";duration_ms=" + getDurationMs() + ";duplicates=" + duplicates;
+    }
+}
@@ -0,0 +1,83 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Offline exporter of flight recordings to CSV, one row per record.
+ * Run on a desktop after pulling the recording from the phone:
+ *
+ *   java -cp dji_driver_core.jar com.indoor_robotics.dji_android_ros_driver.FlightRecordExporter &lt;recording dir or segment&gt; [output.csv]
+ */
+public class FlightRecordExporter {
+
+    public static final String CSV_HEADER = "wall_ms,mono_ns,type,code,v0,v1,v2,v3,v4,v5,v6,v7,v8";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FlightRecordExporter <recording dir or segment> [output.csv]");
+            System.exit(1);
+        }
+
+        Writer writer = args.length > 1 ? new FileWriter(args[1]) : new PrintWriter(System.out);
+        try {
+            long count = exportCsv(new FlightRecordReader(new File(args[0])), writer);
+            System.err.println("exported " + count + " records");
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes all records of the reader as CSV rows.
+     *
+     * @return the number of records written
+     */
+    public static long exportCsv(FlightRecordReader reader, Writer writer) throws IOException {
+        StringBuilder row = new StringBuilder(256);
+        long count = 0;
+
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        while (reader.next()) {
+            row.setLength(0);
+            row.append(reader.getWallMillis()).append(',')
+                    .append(reader.getMonoNanos()).append(',')
+                    .append(typeName(reader.getType())).append(',')
+                    .append(reader.getCode());
+            for (int i = 0; i < FlightRecorder.VALUE_COUNT; i++) {
+                row.append(',').append(reader.getValue(i));
+            }
+            row.append('\n');
+            writer.write(row.toString());
+            count++;
+        }
+        return count;
+    }
+
+    public static String typeName(int type) {
+        switch (type) {
+            case FlightRecorder.TYPE_COMMAND:
+                return "command";
+            case FlightRecorder.TYPE_VIRTUAL_STICK_SENT:
+                return "virtual_stick_sent";
+            case FlightRecorder.TYPE_SDK_RESULT:
+                return "sdk_result";
+            case FlightRecorder.TYPE_STATE:
+                return "state";
+            case FlightRecorder.TYPE_BATTERY:
+                return "battery";
+            default:
+                return String.valueOf(type);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the segments written by FlightRecorder in order, one record at a time. The fields of the current record
+ * are exposed through getters, so replaying a recording does not allocate per record.
+ *
+ * Usage: while (reader.next()) { reader.getType() ... }
+ */
+public class FlightRecordReader {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final List<File> segments;
+    private int segmentIndex = -1;
+    private MappedByteBuffer segment = null;
+    private int position = 0;
+
+    private int type;
+    private int code;
+    private long wallMillis;
+    private long monoNanos;
+    private final double[] values = new double[FlightRecorder.VALUE_COUNT];
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param path a single segment file, or a directory whose segments are read in name order
+     */
+    public FlightRecordReader(File path) throws IOException {
+        segments = listSegments(path);
+        if (segments.isEmpty()) {
+            throw new IOException("no flight records in " + path);
+        }
+    }
+
+    /**
+     * Lists the segment files of a recording, in the order they were written
+     */
+    public static List<File> listSegments(File path) {
+        List<File> files = new ArrayList<File>();
+        if (path.isDirectory()) {
+            File[] children = path.listFiles();
+            if (null != children) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    if (child.getName().endsWith(FlightRecorder.SEGMENT_SUFFIX)) {
+                        files.add(child);
+                    }
+                }
+            }
+        }
+        else if (path.isFile()) {
+            files.add(path);
+        }
+        return files;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false when all segments were read
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (null == segment || position + FlightRecorder.RECORD_SIZE > segment.capacity()) {
+                if (!openNextSegment()) {
+                    return false;
+                }
+                continue;
+            }
+
+            type = segment.getInt(position);
+            if (type == 0) {
+                // end of the data written to this segment
+                segment = null;
+                continue;
+            }
+            code = segment.getInt(position + 4);
+            wallMillis = segment.getLong(position + 8);
+            monoNanos = segment.getLong(position + 16);
+            int p = position + FlightRecorder.RECORD_HEADER_SIZE;
+            for (int i = 0; i < values.length; i++) {
+                values[i] = segment.getDouble(p + i * 8);
+            }
+            position += FlightRecorder.RECORD_SIZE;
+            return true;
+        }
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    public long getMonoNanos() {
+        return monoNanos;
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private boolean openNextSegment() throws IOException {
+        segmentIndex++;
+        if (segmentIndex >= segments.size()) {
+            segment = null;
+            return false;
+        }
+
+        File file = segments.get(segmentIndex);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        }
+        finally {
+            randomAccessFile.close();
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (segment.capacity() < FlightRecorder.FILE_HEADER_SIZE
+                || segment.getLong(0) != FlightRecorder.MAGIC
+                || segment.getInt(12) != FlightRecorder.RECORD_SIZE) {
+            throw new IOException("not a flight record segment of version " + FlightRecorder.VERSION + ": " + file);
+        }
+        position = FlightRecorder.FILE_HEADER_SIZE;
+        return true;
+    }
+}
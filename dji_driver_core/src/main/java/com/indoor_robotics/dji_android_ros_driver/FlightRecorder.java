@@ -0,0 +1,244 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * A black box recorder appending fixed size binary records to memory mapped segment files.
+ * Appending a record only writes a few primitives into the mapped buffer, the OS flushes the pages to storage,
+ * so recording does not allocate and is cheap enough for the control loop. When a segment is full the next one is
+ * mapped. Use FlightRecordReader to read the segments back and FlightRecordExporter to convert them to CSV.
+ * The directory keeps at most maxSegments segments, of this and earlier sessions: when a segment is created the
+ * oldest ones are deleted, so the recordings take at most maxSegments * segmentSize bytes of storage.
+ *
+ * Segment layout (little endian): a file header of FILE_HEADER_SIZE bytes (magic, version, record size) followed by
+ * records of RECORD_SIZE bytes: type (int), code (int), wall time in ms (long), System.nanoTime() (long) and
+ * VALUE_COUNT doubles whose meaning depends on the type. A record of type 0 marks the end of the data.
+ */
+public class FlightRecorder {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final long MAGIC = 0x3130434552494a44L; // "DJIREC01"
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 16;
+    public static final int VALUE_COUNT = 9;
+    public static final int RECORD_HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = RECORD_HEADER_SIZE + VALUE_COUNT * 8;
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+    public static final String SEGMENT_SUFFIX = ".rec";
+
+    /** Received movement command: pitch, roll, yaw, throttle, sequence */
+    public static final int TYPE_COMMAND = 1;
+    /** Command sent to the SDK: pitch, roll, yaw, throttle, sequence of the source command, watchdog scale */
+    public static final int TYPE_VIRTUAL_STICK_SENT = 2;
+    /** SDK completion result, code is the error code (0 for success): operation */
+    public static final int TYPE_SDK_RESULT = 3;
+    /** Flight controller state, code holds the StatusPublisher flags: latitude, longitude, altitude,
+     *  velocity x, y, z (NED), roll, pitch, yaw */
+    public static final int TYPE_STATE = 4;
+    /** Battery state, code is the charge in percent: voltage, current, temperature */
+    public static final int TYPE_BATTERY = 5;
+
+    /** Operations of TYPE_SDK_RESULT records */
+    public static final int OP_VIRTUAL_STICK = 1;
+    public static final int OP_TAKEOFF = 2;
+    public static final int OP_LANDING = 3;
+    public static final int OP_CONFIRM_LANDING = 4;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long sessionMillis;
+
+    private int segmentIndex = -1;
+    private File segmentFile = null;
+    private MappedByteBuffer segment = null;
+    private int position = 0;
+    private volatile long records = 0;
+    private volatile long failures = 0;
+    private volatile long deletedSegments = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Creates the first segment in the given directory, keeping at most DEFAULT_MAX_SEGMENTS segments.
+     *
+     * @param segmentSize size of each segment file in bytes
+     */
+    public FlightRecorder(File directory, int segmentSize) throws IOException {
+        this(directory, segmentSize, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * Creates the first segment in the given directory.
+     *
+     * @param segmentSize size of each segment file in bytes
+     * @param maxSegments number of segments kept in the directory, the current one included
+     */
+    public FlightRecorder(File directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < FILE_HEADER_SIZE + RECORD_SIZE) {
+            throw new IllegalArgumentException("segment size too small: " + segmentSize);
+        }
+        if (maxSegments < 2) {
+            throw new IllegalArgumentException("at least 2 segments must be kept: " + maxSegments);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - (segmentSize - FILE_HEADER_SIZE) % RECORD_SIZE;
+        this.maxSegments = maxSegments;
+        this.sessionMillis = System.currentTimeMillis();
+        nextSegment();
+    }
+
+    public void recordCommand(VirtualStickCommand command) {
+        append(TYPE_COMMAND, 0, command.pitch, command.roll, command.yaw, command.throttle, command.sequence, 0, 0, 0, 0);
+    }
+
+    public void recordVirtualStickSent(float pitch, float roll, float yaw, float throttle, long sequence, float scale) {
+        append(TYPE_VIRTUAL_STICK_SENT, 0, pitch, roll, yaw, throttle, sequence, scale, 0, 0, 0);
+    }
+
+    public void recordSdkResult(int operation, int errorCode) {
+        append(TYPE_SDK_RESULT, errorCode, operation, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public void recordState(int flags, double latitude, double longitude, double altitude,
+                            double velocityX, double velocityY, double velocityZ,
+                            double roll, double pitch, double yaw) {
+        append(TYPE_STATE, flags, latitude, longitude, altitude, velocityX, velocityY, velocityZ, roll, pitch, yaw);
+    }
+
+    public void recordBattery(int percent, double voltage, double current, double temperature) {
+        append(TYPE_BATTERY, percent, voltage, current, temperature, 0, 0, 0, 0, 0, 0);
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return how many records were lost because a new segment could not be created
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return how many old segments were deleted to stay within maxSegments
+     */
+    public long getDeletedSegments() {
+        return deletedSegments;
+    }
+
+    /**
+     * Flushes the current segment to storage and stops recording
+     */
+    public synchronized void close() {
+        if (null != segment) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private synchronized void append(int type, int code, double v0, double v1, double v2, double v3, double v4,
+                                     double v5, double v6, double v7, double v8) {
+        if (null == segment) {
+            failures++;
+            return;
+        }
+        if (position + RECORD_SIZE > segmentSize) {
+            try {
+                nextSegment();
+            }
+            catch (IOException e) {
+                segment = null;
+                failures++;
+                return;
+            }
+        }
+
+        MappedByteBuffer buffer = segment;
+        int p = position;
+        buffer.putInt(p + 4, code);
+        buffer.putLong(p + 8, System.currentTimeMillis());
+        buffer.putLong(p + 16, System.nanoTime());
+        p += RECORD_HEADER_SIZE;
+        buffer.putDouble(p, v0);
+        buffer.putDouble(p + 8, v1);
+        buffer.putDouble(p + 16, v2);
+        buffer.putDouble(p + 24, v3);
+        buffer.putDouble(p + 32, v4);
+        buffer.putDouble(p + 40, v5);
+        buffer.putDouble(p + 48, v6);
+        buffer.putDouble(p + 56, v7);
+        buffer.putDouble(p + 64, v8);
+        // the type is written last, a reader never sees a half written record as valid
+        buffer.putInt(position, type);
+
+        position += RECORD_SIZE;
+        records++;
+    }
+
+    private void nextSegment() throws IOException {
+        if (null != segment) {
+            segment.force();
+        }
+        segmentIndex++;
+        File file = new File(directory, "flight_" + sessionMillis + "_" + String.format("%04d", segmentIndex) + SEGMENT_SUFFIX);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        finally {
+            // the mapping stays valid after the channel is closed
+            randomAccessFile.close();
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putLong(0, MAGIC);
+        segment.putInt(8, VERSION);
+        segment.putInt(12, RECORD_SIZE);
+        position = FILE_HEADER_SIZE;
+        segmentFile = file;
+
+        deleteOldSegments();
+    }
+
+    /**
+     * Deletes the oldest segments of the directory beyond maxSegments. Only runs when a segment is created.
+     */
+    private void deleteOldSegments() {
+        List<File> segments = FlightRecordReader.listSegments(directory);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            // the name order is the creation order, but never delete the segment being written
+            if (!segments.get(i).equals(segmentFile) && segments.get(i).delete()) {
+                deletedSegments++;
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Conversions between the DJI conventions (NED world frame, forward-right-down body frame, angles in degrees)
+ * and the ROS conventions of REP 103 (ENU world frame, forward-left-up body frame, angles in radians).
+ * All methods write into caller provided arrays so they can be used on hot paths without allocating.
+ */
+public final class FrameMath {
+
+    private FrameMath() {
+    }
+
+    /**
+     * Converts a DJI attitude to an ENU quaternion of the FLU body frame.
+     *
+     * @param out receives {x, y, z, w}
+     */
+    public static void djiAttitudeToQuaternion(double rollDeg, double pitchDeg, double yawDeg, double[] out) {
+        double roll = Math.toRadians(rollDeg);
+        double pitch = -Math.toRadians(pitchDeg);
+        double yaw = Math.PI / 2 - Math.toRadians(yawDeg);
+        eulerToQuaternion(roll, pitch, yaw, out);
+    }
+
+    /**
+     * Converts Z-Y-X (yaw, pitch, roll) Euler angles in radians to a quaternion.
+     *
+     * @param out receives {x, y, z, w}
+     */
+    public static void eulerToQuaternion(double roll, double pitch, double yaw, double[] out) {
+        double cr = Math.cos(roll * 0.5);
+        double sr = Math.sin(roll * 0.5);
+        double cp = Math.cos(pitch * 0.5);
+        double sp = Math.sin(pitch * 0.5);
+        double cy = Math.cos(yaw * 0.5);
+        double sy = Math.sin(yaw * 0.5);
+
+        out[0] = sr * cp * cy - cr * sp * sy;
+        out[1] = cr * sp * cy + sr * cp * sy;
+        out[2] = cr * cp * sy - sr * sp * cy;
+        out[3] = cr * cp * cy + sr * sp * sy;
+    }
+
+    /**
+     * Converts a DJI NED velocity to ENU.
+     *
+     * @param out receives {east, north, up}
+     */
+    public static void nedToEnu(double north, double east, double down, double[] out) {
+        out[0] = east;
+        out[1] = north;
+        out[2] = -down;
+    }
+
+    /**
+     * Rotates a world frame vector into the body frame given by the quaternion q = {x, y, z, w}.
+     *
+     * @param out receives the body frame vector, may not be the same array as q
+     */
+    public static void worldToBody(double[] q, double vx, double vy, double vz, double[] out) {
+        // rotate by the conjugate of q: v' = q* v q
+        double qx = -q[0];
+        double qy = -q[1];
+        double qz = -q[2];
+        double qw = q[3];
+
+        double tx = 2 * (qy * vz - qz * vy);
+        double ty = 2 * (qz * vx - qx * vz);
+        double tz = 2 * (qx * vy - qy * vx);
+
+        out[0] = vx + qw * tx + (qy * tz - qz * ty);
+        out[1] = vy + qw * ty + (qz * tx - qx * tz);
+        out[2] = vz + qw * tz + (qx * ty - qy * tx);
+    }
+}
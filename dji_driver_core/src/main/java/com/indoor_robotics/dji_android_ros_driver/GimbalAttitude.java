@@ -0,0 +1,17 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The gimbal attitude, in the DJI conventions: degrees, pitch positive up, yaw clockwise from north.
+ * Instances are filled and reused by the backend.
+ */
+public class GimbalAttitude {
+
+    public float pitch;
+    public float roll;
+    public float yaw;
+}
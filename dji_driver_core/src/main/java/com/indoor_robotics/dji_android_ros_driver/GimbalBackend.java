@@ -0,0 +1,44 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The gimbal operations used by the driver, the gimbal counterpart of AircraftBackend. DjiGimbalBackend talks to
+ * the gimbal of the connected product through the DJI SDK.
+ *
+ * Operations called while no gimbal is available report AircraftError.NOT_AVAILABLE to their callback.
+ */
+public interface GimbalBackend {
+
+    /**
+     * Receives the gimbal attitude. The instance is reused by the backend, listeners must copy what they keep.
+     */
+    interface StateListener {
+        void onGimbalUpdate(GimbalAttitude attitude);
+    }
+
+    /**
+     * @return true if a gimbal is present
+     */
+    boolean isAvailable();
+
+    /**
+     * Rotates the gimbal. NaN leaves an axis as it is.
+     *
+     * @param mode        ANGLE for absolute angles in degrees, RATE for rates in degrees per second
+     * @param timeSeconds time to reach the angles in ANGLE mode
+     */
+    void rotate(GimbalCommand.Mode mode, float pitch, float roll, float yaw, float timeSeconds,
+                AircraftBackend.ResultCallback callback);
+
+    /**
+     * Registers the state listener, replacing a previous one. The listener is kept by the backend and registered
+     * again whenever a gimbal (re)connects.
+     *
+     * @return false if no gimbal is available yet, the listener then starts receiving once one connects
+     */
+    boolean setStateListener(StateListener listener);
+}
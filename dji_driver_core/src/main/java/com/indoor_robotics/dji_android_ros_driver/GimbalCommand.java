@@ -0,0 +1,47 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * An immutable snapshot of one gimbal command, in degrees (ANGLE) or degrees per second (RATE).
+ * NaN leaves an axis as it is.
+ */
+public final class GimbalCommand {
+
+    public enum Mode {
+        /** Absolute angles, sent once */
+        ANGLE,
+        /** Angular rates, sent repeatedly while the command is fresh */
+        RATE
+    }
+
+    public static final GimbalCommand NONE = new GimbalCommand(Mode.RATE, 0f, 0f, 0f, 0L, 0L);
+
+    public final Mode mode;
+    public final float pitch;
+    public final float roll;
+    public final float yaw;
+
+    /** System.nanoTime() at which the command was received */
+    public final long receivedNanos;
+
+    /** Monotonic sequence number, 0 for the initial empty command */
+    public final long sequence;
+
+    public GimbalCommand(Mode mode, float pitch, float roll, float yaw, long receivedNanos, long sequence) {
+        this.mode = mode;
+        this.pitch = pitch;
+        this.roll = roll;
+        this.yaw = yaw;
+        this.receivedNanos = receivedNanos;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "seq=" + sequence + ";mode=" + mode + ";pitch=" + pitch + ";roll=" + roll + ";yaw=" + yaw;
+    }
+}
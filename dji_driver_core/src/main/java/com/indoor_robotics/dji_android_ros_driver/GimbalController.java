@@ -0,0 +1,155 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The gimbal command path, like VirtualStickController for the airframe: the command listeners publish snapshots
+ * and sendLatest(), called by a loop at a bounded rate, forwards the newest one, so bursts of commands are
+ * coalesced. An angle command is sent once. A rate command is sent on every run while it is fresh and followed by a
+ * single stop when it goes stale. sendLatest() is called from a single thread.
+ */
+public class GimbalController {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_RATE_HZ = 10;
+    public static final int DEFAULT_RATE_TIMEOUT_MS = 500;
+
+    private static final float ANGLE_TIME_SECONDS = 0.1f; // the shortest rotation time the SDK accepts
+    private static final float RADIANS_TO_DEGREES = (float) (180.0 / Math.PI);
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final GimbalBackend gimbal;
+    private final AtomicLong sequence = new AtomicLong(0);
+    private volatile GimbalCommand latest = GimbalCommand.NONE;
+    private volatile long rateTimeoutNanos = DEFAULT_RATE_TIMEOUT_MS * NANOS_PER_MILLI;
+
+    // control loop only
+    private long lastSentSequence = 0;
+    private boolean rateStopped = true;
+
+    private volatile long sent = 0;
+    private volatile long coalesced = 0;
+    private volatile long errors = 0;
+
+    private final AircraftBackend.ResultCallback completionCallback = new AircraftBackend.ResultCallback() {
+        @Override
+        public void onResult(AircraftError error) {
+            if (null != error) {
+                errors++;
+            }
+        }
+    };
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public GimbalController(GimbalBackend gimbal) {
+        this.gimbal = gimbal;
+    }
+
+    /**
+     * @param timeoutMs time after which a rate command which was not refreshed is stopped
+     */
+    public void setRateTimeout(int timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("rate timeout must be positive");
+        }
+        this.rateTimeoutNanos = timeoutMs * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Publishes absolute angles in radians, NaN leaves an axis as it is
+     */
+    public GimbalCommand onAngle(double pitch, double roll, double yaw) {
+        return publish(GimbalCommand.Mode.ANGLE, pitch, roll, yaw);
+    }
+
+    /**
+     * Publishes angular rates in radians per second
+     */
+    public GimbalCommand onRate(double pitch, double roll, double yaw) {
+        return publish(GimbalCommand.Mode.RATE, pitch, roll, yaw);
+    }
+
+    public GimbalCommand getLatestCommand() {
+        return latest;
+    }
+
+    /**
+     * Sends the latest command to the gimbal if needed. Called by the gimbal loop.
+     */
+    public void sendLatest() {
+        if (!gimbal.isAvailable()) {
+            return;
+        }
+
+        GimbalCommand command = latest;
+        boolean isNew = command.sequence != lastSentSequence;
+        if (command.mode == GimbalCommand.Mode.ANGLE) {
+            if (isNew) {
+                send(command, command.pitch, command.roll, command.yaw);
+            }
+            return;
+        }
+
+        if (System.nanoTime() - command.receivedNanos < rateTimeoutNanos) {
+            send(command, command.pitch, command.roll, command.yaw);
+            rateStopped = false;
+        }
+        else if (!rateStopped) {
+            send(command, 0f, 0f, 0f);
+            rateStopped = true;
+        }
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return how many commands were replaced by a newer one before being sent
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private GimbalCommand publish(GimbalCommand.Mode mode, double pitch, double roll, double yaw) {
+        GimbalCommand command = new GimbalCommand(mode,
+                (float) pitch * RADIANS_TO_DEGREES,
+                (float) roll * RADIANS_TO_DEGREES,
+                (float) yaw * RADIANS_TO_DEGREES,
+                System.nanoTime(), sequence.incrementAndGet());
+        latest = command;
+        return command;
+    }
+
+    private void send(GimbalCommand command, float pitch, float roll, float yaw) {
+        if (command.sequence != lastSentSequence) {
+            coalesced += command.sequence - lastSentSequence - 1;
+            lastSentSequence = command.sequence;
+        }
+        sent++;
+        gimbal.rotate(command.mode, pitch, roll, yaw, ANGLE_TIME_SECONDS, completionCallback);
+    }
+}
@@ -0,0 +1,156 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stand-in for the DJI video feed which plays back a recorded H.264 Annex-B elementary stream.
+ * The file is split into NAL units on their start codes and delivered one NAL unit per call, paced so that slice
+ * NAL units arrive at the given frame rate. Used for running the video pipeline without a drone.
+ */
+public class H264FileFeedSource implements VideoFeedSource {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final int NAL_TYPE_MASK = 0x1f;
+    private static final int NAL_TYPE_SLICE = 1;
+    private static final int NAL_TYPE_IDR_SLICE = 5;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final File file;
+    private final int framesPerSecond;
+    private final boolean loop;
+    private volatile boolean running = false;
+    private Thread thread = null;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public H264FileFeedSource(File file, int framesPerSecond, boolean loop) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("frame rate must be positive");
+        }
+        this.file = file;
+        this.framesPerSecond = framesPerSecond;
+        this.loop = loop;
+    }
+
+    @Override
+    public synchronized boolean start(final VideoFrameSink sink) {
+        if (null != thread) {
+            return true;
+        }
+
+        final byte[] stream;
+        try {
+            stream = readFile(file);
+        }
+        catch (IOException e) {
+            return false;
+        }
+
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                do {
+                    play(stream, sink);
+                } while (running && loop);
+            }
+        }, "h264_file_feed");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (null != thread) {
+            running = false;
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * @return the index of the first byte after the next start code at or after from, or -1 if there is none
+     */
+    public static int findNextNalStart(byte[] stream, int from, int end) {
+        for (int i = from; i + 2 < end; i++) {
+            if (stream[i] == 0 && stream[i + 1] == 0 && stream[i + 2] == 1) {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void play(byte[] stream, VideoFrameSink sink) {
+        long frameNanos = 1000000000L / framesPerSecond;
+        long deadline = System.nanoTime();
+
+        int start = findNextNalStart(stream, 0, stream.length);
+        while (running && start >= 0) {
+            int next = findNextNalStart(stream, start, stream.length);
+            int end = next < 0 ? stream.length : next - 3;
+            // a 4 byte start code leaves a trailing zero on the previous unit
+            if (next >= 0 && end > start && stream[end - 1] == 0) {
+                end--;
+            }
+
+            int nalType = stream[start] & NAL_TYPE_MASK;
+            if (nalType == NAL_TYPE_SLICE || nalType == NAL_TYPE_IDR_SLICE) {
+                deadline += frameNanos;
+                long wait = deadline - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            // deliver the unit including its start code
+            int unitStart = start >= 4 && stream[start - 4] == 0 ? start - 4 : start - 3;
+            sink.onFrame(stream, unitStart, end - unitStart);
+            start = next;
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        }
+        finally {
+            in.close();
+        }
+        return data;
+    }
+}
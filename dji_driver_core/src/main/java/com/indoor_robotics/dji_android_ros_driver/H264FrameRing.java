@@ -0,0 +1,215 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded ring of preallocated direct buffers between a video feed (producer) and a publisher (consumer).
+ * When more than maxQueued frames wait for the consumer the oldest one is dropped.
+ *
+ * Slots are handed to the consumer by index and are not copied again. A taken slot belongs to the consumer until it
+ * calls release(), e.g. once an asynchronous publisher is done serializing it: the producer never writes into it, a
+ * frame which finds no free slot and no queued frame to replace is dropped instead.
+ */
+public class H264FrameRing {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ByteBuffer[] buffers;
+    private final int[] lengths;
+    private final long[] receivedMillis;
+    private final int maxQueued;
+
+    // guarded by this. Queued slots in order, and the slots which are queued or taken by the consumer
+    private final int[] queue;
+    private final boolean[] busy;
+    private int head = 0;
+    private int queued = 0;
+    private int writeCursor = 0;
+
+    private volatile long offered = 0;
+    private volatile long dropped = 0;
+    private volatile long oversized = 0;
+    private volatile long blocked = 0;
+    private volatile int maxDepth = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param slots        number of preallocated buffers
+     * @param slotCapacity size of each buffer in bytes, larger frames are dropped
+     * @param maxQueued    maximum number of frames waiting for the consumer, must be smaller than slots
+     */
+    public H264FrameRing(int slots, int slotCapacity, int maxQueued) {
+        if (slots <= 1 || maxQueued <= 0 || maxQueued >= slots) {
+            throw new IllegalArgumentException("invalid ring size: slots=" + slots + " maxQueued=" + maxQueued);
+        }
+        this.buffers = new ByteBuffer[slots];
+        this.lengths = new int[slots];
+        this.receivedMillis = new long[slots];
+        this.maxQueued = maxQueued;
+        this.queue = new int[maxQueued];
+        this.busy = new boolean[slots];
+        for (int i = 0; i < slots; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(slotCapacity);
+        }
+    }
+
+    /**
+     * Copies a frame into a free slot. Called by the feed thread.
+     *
+     * @return false if the frame does not fit into a slot, or all the slots are taken, and it was dropped
+     */
+    public synchronized boolean offer(byte[] data, int offset, int length) {
+        offered++;
+        if (length > buffers[0].capacity()) {
+            oversized++;
+            return false;
+        }
+
+        if (queued == maxQueued) {
+            dropOldest();
+        }
+        int slot = findFreeSlot();
+        if (slot < 0) {
+            if (queued == 0) {
+                // every slot is still held by the consumer
+                blocked++;
+                return false;
+            }
+            dropOldest();
+            slot = findFreeSlot();
+        }
+
+        ByteBuffer buffer = buffers[slot];
+        buffer.clear();
+        buffer.put(data, offset, length);
+        lengths[slot] = length;
+        receivedMillis[slot] = System.currentTimeMillis();
+
+        busy[slot] = true;
+        queue[(head + queued) % maxQueued] = slot;
+        queued++;
+        writeCursor = (slot + 1) % buffers.length;
+        if (queued > maxDepth) {
+            maxDepth = queued;
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Takes the oldest queued frame, its slot belongs to the consumer until released. Called by the consumer thread.
+     *
+     * @return the slot index of the frame, or -1 if no frame arrived within the timeout
+     */
+    public synchronized int take(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (queued == 0) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                return -1;
+            }
+            wait(wait);
+        }
+        int slot = queue[head];
+        head = (head + 1) % maxQueued;
+        queued--;
+        return slot;
+    }
+
+    /**
+     * Gives a taken slot back to the producer
+     */
+    public synchronized void release(int slot) {
+        busy[slot] = false;
+    }
+
+    public int getSlotCount() {
+        return buffers.length;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * @return the buffer of a slot, its content is valid from 0 to getLength(slot)
+     */
+    public ByteBuffer getBuffer(int slot) {
+        return buffers[slot];
+    }
+
+    public int getLength(int slot) {
+        return lengths[slot];
+    }
+
+    public long getReceivedMillis(int slot) {
+        return receivedMillis[slot];
+    }
+
+    public synchronized int getDepth() {
+        return queued;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * @return frames dropped because the consumer was too slow
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return frames dropped because they did not fit into a slot
+     */
+    public long getOversized() {
+        return oversized;
+    }
+
+    /**
+     * @return frames dropped because the consumer held all the slots
+     */
+    public long getBlocked() {
+        return blocked;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void dropOldest() {
+        busy[queue[head]] = false;
+        head = (head + 1) % maxQueued;
+        queued--;
+        dropped++;
+    }
+
+    /**
+     * @return a slot neither queued nor taken, from the one after the last written, or -1
+     */
+    private int findFreeSlot() {
+        for (int i = 0; i < buffers.length; i++) {
+            int slot = (writeCursor + i) % buffers.length;
+            if (!busy[slot]) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+}
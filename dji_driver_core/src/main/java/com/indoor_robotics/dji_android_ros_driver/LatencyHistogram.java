@@ -0,0 +1,167 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * A fixed memory latency histogram with microsecond resolution. Buckets are log-linear: 16 buckets per power of
+ * two, so a percentile is reported within about 6% of the actual value, from 1 us up to about 2 minutes (larger values
+ * are counted in the last bucket).
+ * Recording never allocates and must be done by a single thread. Other threads can read concurrently, they might
+ * see the counts of the latest samples a little late, which is fine for statistics.
+ */
+public class LatencyHistogram {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 22;
+
+    public static final int BUCKET_COUNT = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final int[] counts = new int[BUCKET_COUNT];
+    private volatile long count = 0;
+    private volatile long maxMicros = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public void record(long nanos) {
+        long micros = nanos < 0 ? 0 : nanos / 1000;
+        counts[bucketOf(micros)]++;
+        if (micros > maxMicros) {
+            maxMicros = micros;
+        }
+        count++;
+    }
+
+    /**
+     * @return the number of samples recorded since the histogram was created
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the given percentile of all samples recorded since the histogram was created, 0 if there are none
+     */
+    public long getPercentileMicros(double percentile) {
+        return Math.min(percentileOf(counts, percentile), maxMicros);
+    }
+
+    /**
+     * Creates a reader reporting the samples recorded between two of its updates
+     */
+    public Interval newInterval() {
+        return new Interval();
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private static int bucketOf(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        return (shift + 1) * SUB_BUCKETS + (int) (micros >> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the highest value counted in the given bucket
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    private static long percentileOf(int[] counts, double percentile) {
+        long total = 0;
+        for (int bucketCount : counts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(counts.length - 1);
+    }
+
+    //***************************
+    // Public nested classes
+    //***************************
+
+    /**
+     * The samples of a histogram recorded between two calls to update(), e.g. over one diagnostics period.
+     * Owned by a single reader thread, does not allocate after creation.
+     */
+    public class Interval {
+
+        private final int[] previous = new int[BUCKET_COUNT];
+        private final int[] delta = new int[BUCKET_COUNT];
+        private long intervalCount = 0;
+
+        private Interval() {
+        }
+
+        /**
+         * Takes the samples recorded since the previous update as the current interval
+         */
+        public void update() {
+            long total = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                int current = counts[i];
+                delta[i] = current - previous[i];
+                previous[i] = current;
+                total += delta[i];
+            }
+            intervalCount = total;
+        }
+
+        public long getCount() {
+            return intervalCount;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the given percentile of the current interval, 0 if it has no samples
+         */
+        public long getPercentileMicros(double percentile) {
+            return percentileOf(delta, percentile);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Converts GPS positions to local east/north (ENU) meters from an origin and back. The meters per degree of the
+ * WGS84 ellipsoid are computed once when the origin is set, so a conversion is a subtraction and a multiply per
+ * axis. This is an equirectangular approximation, not a true tangent plane: the meters per degree of longitude are
+ * those of the origin latitude, so the east error grows with the north offset, about
+ * east * north * tan(latitude) / 6371 km. At 45 degrees that is about 4 cm at 500 m x 500 m, 16 cm at 1 km x 1 km and
+ * 1.4 m at 3 km x 3 km. Set a new origin for missions that go further than about a kilometer.
+ *
+ * The origin is replaced atomically and can be set from any thread, conversions do not allocate.
+ */
+public class LocalProjection {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final double WGS84_A = 6378137.0; // semi-major axis in meters
+    private static final double WGS84_E2 = 6.69437999014e-3; // first eccentricity squared
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile Origin origin = null;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Sets the origin of the local frame
+     */
+    public void setOrigin(double latitude, double longitude) {
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            throw new IllegalArgumentException("invalid origin: " + latitude + ", " + longitude);
+        }
+        origin = new Origin(latitude, longitude);
+    }
+
+    public void clearOrigin() {
+        origin = null;
+    }
+
+    public boolean hasOrigin() {
+        return null != origin;
+    }
+
+    /**
+     * @return the latitude of the origin, NaN when there is none
+     */
+    public double getOriginLatitude() {
+        Origin o = origin;
+        return null != o ? o.latitude : Double.NaN;
+    }
+
+    /**
+     * @return the longitude of the origin, NaN when there is none
+     */
+    public double getOriginLongitude() {
+        Origin o = origin;
+        return null != o ? o.longitude : Double.NaN;
+    }
+
+    /**
+     * Converts a GPS position to east/north meters from the origin
+     *
+     * @param out receives {east, north}
+     * @return false if there is no origin or the position is not known, out is then {0, 0}
+     */
+    public boolean toEnu(double latitude, double longitude, float[] out) {
+        Origin o = origin;
+        if (null == o || Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            out[0] = 0;
+            out[1] = 0;
+            return false;
+        }
+        out[0] = (float) ((longitude - o.longitude) * o.metersPerDegreeLongitude);
+        out[1] = (float) ((latitude - o.latitude) * o.metersPerDegreeLatitude);
+        return true;
+    }
+
+    /**
+     * Converts east/north meters from the origin back to a GPS position
+     *
+     * @param out receives {latitude, longitude}
+     * @return false if there is no origin, out is then {NaN, NaN}
+     */
+    public boolean toGeodetic(double east, double north, double[] out) {
+        Origin o = origin;
+        if (null == o) {
+            out[0] = Double.NaN;
+            out[1] = Double.NaN;
+            return false;
+        }
+        out[0] = o.latitude + north / o.metersPerDegreeLatitude;
+        out[1] = o.longitude + east / o.metersPerDegreeLongitude;
+        return true;
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    private static class Origin {
+
+        final double latitude;
+        final double longitude;
+        final double metersPerDegreeLatitude;
+        final double metersPerDegreeLongitude;
+
+        Origin(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+
+            // radii of curvature of the ellipsoid at the origin, meridian and prime vertical
+            double sin = Math.sin(Math.toRadians(latitude));
+            double w = 1 - WGS84_E2 * sin * sin;
+            double meridian = WGS84_A * (1 - WGS84_E2) / (w * Math.sqrt(w));
+            double primeVertical = WGS84_A / Math.sqrt(w);
+            this.metersPerDegreeLatitude = Math.toRadians(meridian);
+            this.metersPerDegreeLongitude = Math.toRadians(primeVertical * Math.cos(Math.toRadians(latitude)));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Tick timing statistics of a periodic loop, and the count of ticks whose task threw. Written only by the loop
+ * thread, read by anyone.
+ * Jitter is the time between the scheduled deadline of a tick and the moment it actually ran.
+ */
+public class LoopStats {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile long ticks = 0;
+    private volatile long overruns = 0;
+    private volatile long lastJitterNanos = 0;
+    private volatile long maxJitterNanos = 0;
+    private volatile long totalJitterNanos = 0;
+    private volatile long lastTickNanos = 0;
+    private volatile long lastIntervalNanos = 0;
+    private volatile long failures = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Records one tick. Called by the loop thread only.
+     *
+     * @param tickNanos   the time the tick started running
+     * @param jitterNanos how late the tick started relative to its deadline
+     * @param overrun     true if the deadline was missed by a full period or more
+     */
+    public void record(long tickNanos, long jitterNanos, boolean overrun) {
+        if (lastTickNanos != 0) {
+            lastIntervalNanos = tickNanos - lastTickNanos;
+        }
+        lastTickNanos = tickNanos;
+        lastJitterNanos = jitterNanos;
+        totalJitterNanos += jitterNanos;
+        if (jitterNanos > maxJitterNanos) {
+            maxJitterNanos = jitterNanos;
+        }
+        if (overrun) {
+            overruns++;
+        }
+        ticks++;
+    }
+
+    /**
+     * Records a tick whose task threw. Called by the loop thread only.
+     *
+     * @return the number of failures so far
+     */
+    public long recordFailure() {
+        return ++failures;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getLastJitterMicros() {
+        return lastJitterNanos / 1000;
+    }
+
+    public long getMaxJitterMicros() {
+        return maxJitterNanos / 1000;
+    }
+
+    public long getMeanJitterMicros() {
+        long count = ticks;
+        return count == 0 ? 0 : totalJitterNanos / count / 1000;
+    }
+
+    /**
+     * @return the measured rate based on the last two ticks, 0 if not known yet
+     */
+    public float getMeasuredRateHz() {
+        long interval = lastIntervalNanos;
+        return interval <= 0 ? 0f : 1e9f / interval;
+    }
+
+    @Override
+    public String toString() {
+        return "ticks=" + getTicks() + ";overruns=" + getOverruns() + ";failures=" + getFailures()
+                + ";jitterMeanUs=" + getMeanJitterMicros()
+                + ";jitterMaxUs=" + getMaxJitterMicros() + ";rateHz=" + getMeasuredRateHz();
+    }
+}
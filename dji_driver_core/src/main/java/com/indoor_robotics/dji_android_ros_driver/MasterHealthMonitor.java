@@ -0,0 +1,285 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monitors the ROS master with periodic probes, measuring their round trip time into a rolling window.
+ * Probes are frequent while the master is degraded (slow or failing) and rare while it is healthy.
+ * After several consecutive failures the master is considered down and the masters of the ordered list are probed
+ * in turn, starting from the first (the preferred one); the first one answering becomes the current master and the
+ * listener is told to reconnect the nodes to it. The monitor then stays on that master until it fails.
+ * When the first master to answer is the one which was down (e.g. a restarted roscore, or the only master), the
+ * listener is told so too: a new master process has lost the registrations of the nodes.
+ * The probes run on a scheduler of their own, so a probe blocked until its timeout (e.g. an unreachable master)
+ * never delays the other HEALTH tasks of the app. The Prober should bound a probe to about the degraded interval.
+ */
+public class MasterHealthMonitor {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_HEALTHY_INTERVAL_MS = 5000;
+    public static final int DEFAULT_DEGRADED_INTERVAL_MS = 500;
+    public static final int DEFAULT_FAILURES_TO_DOWN = 3;
+    public static final int DEFAULT_DEGRADED_RTT_MS = 300;
+    public static final int RTT_WINDOW_SIZE = 32;
+
+    private static final String TASK_NAME = "ros_master_health";
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    public enum Health {
+        /** Not probed yet */
+        UNKNOWN,
+        /** Answering in time */
+        HEALTHY,
+        /** Answering slowly, or failed less than the failures to be considered down */
+        DEGRADED,
+        /** Not answering, looking for an alternative master */
+        DOWN
+    }
+
+    /**
+     * A round trip to a master, throwing if it did not answer
+     */
+    public interface Prober {
+        void probe(URI masterUri) throws Exception;
+    }
+
+    /**
+     * Called from the probing thread
+     */
+    public interface Listener {
+        void onHealthChange(Health health, URI masterUri);
+
+        /**
+         * The current master was down and the given one answered, nodes should be reconnected to it
+         */
+        void onMasterChange(URI previousUri, URI currentUri);
+
+        /**
+         * The current master was down and answers again, nodes should be registered with it again
+         */
+        void onMasterRecovered(URI masterUri);
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final List<URI> masterUris;
+    private final Prober prober;
+    private final Listener listener;
+    private final RollingWindow rttMicros = new RollingWindow(RTT_WINDOW_SIZE);
+
+    private volatile int healthyIntervalMs = DEFAULT_HEALTHY_INTERVAL_MS;
+    private volatile int degradedIntervalMs = DEFAULT_DEGRADED_INTERVAL_MS;
+    private volatile int failuresToDown = DEFAULT_FAILURES_TO_DOWN;
+    private volatile int degradedRttMs = DEFAULT_DEGRADED_RTT_MS;
+
+    private volatile Health health = Health.UNKNOWN;
+    private volatile URI currentUri;
+    private volatile int consecutiveFailures = 0;
+    private volatile long probes = 0;
+    private volatile long failures = 0;
+    private volatile long failovers = 0;
+    private volatile long recoveries = 0;
+    private int candidate = 0;
+
+    private PeriodicScheduler probeScheduler = null;
+    private PeriodicScheduler.ScheduledTask probeLoop = null;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param masterUris the masters in order of preference, the first one is used initially
+     */
+    public MasterHealthMonitor(List<URI> masterUris, Prober prober, Listener listener) {
+        if (masterUris.isEmpty()) {
+            throw new IllegalArgumentException("no master uri");
+        }
+        this.masterUris = new ArrayList<URI>(masterUris);
+        this.prober = prober;
+        this.listener = listener;
+        this.currentUri = this.masterUris.get(0);
+    }
+
+    /**
+     * @param healthyIntervalMs  time between probes while the master is healthy
+     * @param degradedIntervalMs time between probes while it is degraded or down
+     */
+    public void setIntervals(int healthyIntervalMs, int degradedIntervalMs) {
+        if (degradedIntervalMs <= 0 || healthyIntervalMs < degradedIntervalMs) {
+            throw new IllegalArgumentException("invalid probe intervals: healthy=" + healthyIntervalMs + " degraded=" + degradedIntervalMs);
+        }
+        this.healthyIntervalMs = healthyIntervalMs;
+        this.degradedIntervalMs = degradedIntervalMs;
+        updateInterval();
+    }
+
+    /**
+     * @param failuresToDown consecutive failures after which the master is down and fallbacks are probed
+     * @param degradedRttMs  mean round trip time above which the master is degraded
+     */
+    public void setThresholds(int failuresToDown, int degradedRttMs) {
+        if (failuresToDown <= 0 || degradedRttMs <= 0) {
+            throw new IllegalArgumentException("invalid thresholds: failures=" + failuresToDown + " rtt=" + degradedRttMs);
+        }
+        this.failuresToDown = failuresToDown;
+        this.degradedRttMs = degradedRttMs;
+    }
+
+    /**
+     * Starts probing on the thread of the monitor
+     */
+    public synchronized void start() {
+        if (null == probeLoop) {
+            probeScheduler = new PeriodicScheduler(TASK_NAME);
+            probeLoop = probeScheduler.scheduleAtFixedRate(TASK_NAME, PeriodicScheduler.Priority.HEALTH, 0,
+                    degradedIntervalMs, new Runnable() {
+                        @Override
+                        public void run() {
+                            probeOnce();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Stops probing, a probe in progress completes
+     */
+    public synchronized void stop() {
+        if (null != probeLoop) {
+            probeScheduler.shutdown();
+            probeScheduler = null;
+            probeLoop = null;
+        }
+    }
+
+    /**
+     * Runs one probe, of the current master or, while it is down, of the next candidate. Called by the probe task.
+     */
+    public void probeOnce() {
+        URI target = health == Health.DOWN ? masterUris.get(candidate) : currentUri;
+
+        long start = System.nanoTime();
+        boolean answered;
+        try {
+            prober.probe(target);
+            answered = true;
+        }
+        catch (Exception e) {
+            answered = false;
+        }
+        long rtt = (System.nanoTime() - start) / NANOS_PER_MICRO;
+        probes++;
+
+        Health previousHealth = health;
+        URI previousUri = currentUri;
+
+        boolean recovered = false;
+        if (answered) {
+            if (!target.equals(currentUri)) {
+                currentUri = target;
+                failovers++;
+                rttMicros.clear();
+            }
+            else if (previousHealth == Health.DOWN) {
+                recovered = true;
+                recoveries++;
+                rttMicros.clear();
+            }
+            consecutiveFailures = 0;
+            rttMicros.add(rtt);
+            health = rttMicros.getMean() > degradedRttMs * 1000L ? Health.DEGRADED : Health.HEALTHY;
+        }
+        else {
+            failures++;
+            if (health == Health.DOWN) {
+                candidate = (candidate + 1) % masterUris.size();
+            }
+            else {
+                consecutiveFailures++;
+                if (consecutiveFailures >= failuresToDown) {
+                    health = Health.DOWN;
+                    candidate = 0;
+                }
+                else {
+                    health = Health.DEGRADED;
+                }
+            }
+        }
+
+        if (health != previousHealth) {
+            updateInterval();
+            listener.onHealthChange(health, currentUri);
+        }
+        if (!currentUri.equals(previousUri)) {
+            listener.onMasterChange(previousUri, currentUri);
+        }
+        else if (recovered) {
+            listener.onMasterRecovered(currentUri);
+        }
+    }
+
+    public Health getHealth() {
+        return health;
+    }
+
+    /**
+     * @return true if the current master answers, even slowly
+     */
+    public boolean isConnected() {
+        Health current = health;
+        return current == Health.HEALTHY || (current == Health.DEGRADED && consecutiveFailures == 0);
+    }
+
+    public URI getCurrentMasterUri() {
+        return currentUri;
+    }
+
+    /**
+     * @return the round trip times of the latest probes of the current master, in microseconds
+     */
+    public RollingWindow getRttMicros() {
+        return rttMicros;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getFailovers() {
+        return failovers;
+    }
+
+    /**
+     * @return how many times the current master answered again after being down
+     */
+    public long getRecoveries() {
+        return recoveries;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private synchronized void updateInterval() {
+        if (null != probeLoop) {
+            probeLoop.setPeriodMs(health == Health.HEALTHY ? healthyIntervalMs : degradedIntervalMs);
+        }
+    }
+}
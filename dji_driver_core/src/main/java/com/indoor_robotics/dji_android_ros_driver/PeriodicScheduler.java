@@ -0,0 +1,384 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs all the periodic work of the app on one thread per priority class: CONTROL outranks TELEMETRY, which
+ * outranks HEALTH (health checks and UI refresh), so slow telemetry or UI work never delays a control tick.
+ * Tasks of the same class run in deadline order on their class thread.
+ *
+ * Like the former FixedRateLoop, the next deadline of a task is computed from its previous deadline and not from
+ * the time it ran, so tasks do not drift, and a task missing its deadline by a full period re-synchronizes instead
+ * of bursting to catch up. Every task keeps its own LoopStats (deadline misses are the overruns) and its rate can be
+ * changed at runtime. A run which throws is counted as a failure and logged through a TaskFailureLog, the task keeps
+ * being scheduled.
+ */
+public class PeriodicScheduler {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    public enum Priority {
+        CONTROL(Thread.MAX_PRIORITY),
+        TELEMETRY(Thread.NORM_PRIORITY + 1),
+        HEALTH(Thread.MIN_PRIORITY + 1);
+
+        final int threadPriority;
+
+        Priority(int threadPriority) {
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final String name;
+    private final Worker[] workers = new Worker[Priority.values().length];
+    private boolean shutdown = false;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param name prefix of the scheduler thread names
+     */
+    public PeriodicScheduler(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Schedules a task at a fixed period. The class thread is started with its first task.
+     *
+     * @param initialDelayMs delay before the first run
+     */
+    public ScheduledTask scheduleAtFixedRate(String taskName, Priority priority, long initialDelayMs,
+                                             long periodMs, Runnable task) {
+        return schedule(taskName, priority, initialDelayMs * NANOS_PER_MILLI, periodMs * NANOS_PER_MILLI, task);
+    }
+
+    /**
+     * Schedules a task at a fixed rate, starting right away
+     */
+    public ScheduledTask scheduleAtRate(String taskName, Priority priority, double rateHz, Runnable task) {
+        if (!(rateHz > 0)) {
+            throw new IllegalArgumentException("invalid rate for " + taskName + ": " + rateHz + " Hz");
+        }
+        return schedule(taskName, priority, 0, (long) (NANOS_PER_SECOND / rateHz), task);
+    }
+
+    /**
+     * @return the scheduled task with the given name, null if there is none
+     */
+    public synchronized ScheduledTask getTask(String taskName) {
+        for (Worker worker : workers) {
+            if (null != worker) {
+                for (ScheduledTask task : worker.tasks) {
+                    if (task.name.equals(taskName)) {
+                        return task;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all scheduled tasks, in priority order
+     */
+    public synchronized List<ScheduledTask> getTasks() {
+        List<ScheduledTask> tasks = new ArrayList<ScheduledTask>();
+        for (Worker worker : workers) {
+            if (null != worker) {
+                for (ScheduledTask task : worker.tasks) {
+                    tasks.add(task);
+                }
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * Cancels all tasks and stops the threads. A task running at that moment completes its run.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (int i = 0; i < workers.length; i++) {
+            if (null != workers[i]) {
+                workers[i].stop();
+                workers[i] = null;
+            }
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private synchronized ScheduledTask schedule(String taskName, Priority priority, long initialDelayNanos,
+                                                long periodNanos, Runnable task) {
+        if (shutdown) {
+            throw new IllegalStateException("scheduler " + name + " is shut down");
+        }
+        ScheduledTask scheduled = new ScheduledTask(taskName, priority, task, periodNanos,
+                System.nanoTime() + initialDelayNanos);
+
+        Worker worker = workers[priority.ordinal()];
+        if (null == worker) {
+            worker = new Worker(priority);
+            workers[priority.ordinal()] = worker;
+            worker.start();
+        }
+        worker.add(scheduled);
+        return scheduled;
+    }
+
+    //***************************
+    // Public nested classes
+    //***************************
+
+    /**
+     * A task scheduled at a fixed rate, returned by scheduleAtFixedRate()
+     */
+    public class ScheduledTask {
+
+        private final String name;
+        private final Priority priority;
+        private final Runnable task;
+        private final LoopStats stats = new LoopStats();
+        private final TaskFailureLog failureLog;
+
+        private volatile long periodNanos;
+        private volatile boolean periodChanged = false;
+        private volatile boolean cancelled = false;
+
+        // owned by the class thread
+        private long deadline;
+        private long lastDeadline = 0;
+
+        private ScheduledTask(String name, Priority priority, Runnable task, long periodNanos, long firstDeadline) {
+            if (periodNanos <= 0) {
+                throw new IllegalArgumentException("invalid period for " + name + ": " + periodNanos + " ns");
+            }
+            this.name = name;
+            this.priority = priority;
+            this.task = task;
+            this.failureLog = new TaskFailureLog(PeriodicScheduler.this.name + "/" + name);
+            this.periodNanos = periodNanos;
+            this.deadline = firstDeadline;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return timing statistics, the overruns are the deadlines missed by a full period or more
+         */
+        public LoopStats getStats() {
+            return stats;
+        }
+
+        /**
+         * @return how many runs threw an exception
+         */
+        public long getFailures() {
+            return stats.getFailures();
+        }
+
+        public long getPeriodNanos() {
+            return periodNanos;
+        }
+
+        /**
+         * Changes the period. Takes effect from the next run, counted from the previous one.
+         */
+        public void setPeriodMs(long periodMs) {
+            setPeriodNanos(periodMs * NANOS_PER_MILLI);
+        }
+
+        public void setRateHz(double rateHz) {
+            if (!(rateHz > 0)) {
+                throw new IllegalArgumentException("invalid rate for " + name + ": " + rateHz + " Hz");
+            }
+            setPeriodNanos((long) (NANOS_PER_SECOND / rateHz));
+        }
+
+        public double getRateHz() {
+            return (double) NANOS_PER_SECOND / periodNanos;
+        }
+
+        /**
+         * Removes the task from the scheduler. A run in progress completes.
+         */
+        public void cancel() {
+            cancelled = true;
+            synchronized (PeriodicScheduler.this) {
+                Worker worker = workers[priority.ordinal()];
+                if (null != worker) {
+                    worker.remove(this);
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void setPeriodNanos(long periodNanos) {
+            if (periodNanos <= 0) {
+                throw new IllegalArgumentException("invalid period for " + name + ": " + periodNanos + " ns");
+            }
+            this.periodNanos = periodNanos;
+            this.periodChanged = true;
+            synchronized (PeriodicScheduler.this) {
+                Worker worker = workers[priority.ordinal()];
+                if (null != worker) {
+                    worker.wakeUp();
+                }
+            }
+        }
+
+        /**
+         * @return the deadline of the next run, applying a period change
+         */
+        private long nextDeadline() {
+            if (periodChanged) {
+                periodChanged = false;
+                if (lastDeadline != 0) {
+                    deadline = lastDeadline + periodNanos;
+                }
+            }
+            return deadline;
+        }
+
+        private void run(long now) {
+            long period = periodNanos;
+            long jitter = now - deadline;
+            boolean overrun = jitter >= period;
+            stats.record(now, jitter, overrun);
+
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                // a failing run must not kill the other tasks of the class
+                failureLog.onFailure(e, stats.recordFailure());
+            }
+
+            lastDeadline = deadline;
+            deadline = overrun ? now + period : deadline + period;
+        }
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    /**
+     * The thread of one priority class
+     */
+    private class Worker {
+
+        private final Priority priority;
+        private volatile ScheduledTask[] tasks = new ScheduledTask[0];
+        private volatile boolean running = false;
+        private Thread thread = null;
+
+        Worker(Priority priority) {
+            this.priority = priority;
+        }
+
+        // add and remove are called with the scheduler lock held
+        void add(ScheduledTask task) {
+            ScheduledTask[] updated = new ScheduledTask[tasks.length + 1];
+            System.arraycopy(tasks, 0, updated, 0, tasks.length);
+            updated[tasks.length] = task;
+            tasks = updated;
+            wakeUp();
+        }
+
+        void remove(ScheduledTask task) {
+            List<ScheduledTask> remaining = new ArrayList<ScheduledTask>();
+            for (ScheduledTask t : tasks) {
+                if (t != task) {
+                    remaining.add(t);
+                }
+            }
+            tasks = remaining.toArray(new ScheduledTask[remaining.size()]);
+            wakeUp();
+        }
+
+        void wakeUp() {
+            Thread t = thread;
+            if (null != t) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        void start() {
+            running = true;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop();
+                }
+            }, name + "_" + priority.name().toLowerCase());
+            thread.setPriority(priority.threadPriority);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            tasks = new ScheduledTask[0];
+            wakeUp();
+            thread = null;
+        }
+
+        private void loop() {
+            while (running) {
+                // earliest deadline first, the task list and periods may change while waiting
+                ScheduledTask next = null;
+                long nextDeadline = 0;
+                for (ScheduledTask task : tasks) {
+                    long deadline = task.nextDeadline();
+                    if (!task.cancelled && (null == next || deadline - nextDeadline < 0)) {
+                        next = task;
+                        nextDeadline = deadline;
+                    }
+                }
+
+                if (null == next) {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                if (nextDeadline - now > 0) {
+                    LockSupport.parkNanos(this, nextDeadline - now);
+                    continue;
+                }
+
+                next.run(now);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * A single axis PID controller. The derivative of the error is given by the caller, typically from a measured
+ * velocity, so a setpoint step does not kick the output. The integral term and the output are clamped to the output
+ * limit. update() and reset() must be called from a single thread, the gains can be changed from any thread.
+ */
+public class PidController {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile float kp;
+    private volatile float ki;
+    private volatile float kd;
+    private volatile float outputLimit;
+
+    private float integral = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public PidController(float kp, float ki, float kd, float outputLimit) {
+        configure(kp, ki, kd, outputLimit);
+    }
+
+    public void configure(float kp, float ki, float kd, float outputLimit) {
+        if (kp < 0 || ki < 0 || kd < 0 || outputLimit <= 0) {
+            throw new IllegalArgumentException("invalid gains: kp=" + kp + " ki=" + ki + " kd=" + kd + " limit=" + outputLimit);
+        }
+        this.kp = kp;
+        this.ki = ki;
+        this.kd = kd;
+        this.outputLimit = outputLimit;
+    }
+
+    public float getKp() {
+        return kp;
+    }
+
+    public float getKi() {
+        return ki;
+    }
+
+    public float getKd() {
+        return kd;
+    }
+
+    public float getOutputLimit() {
+        return outputLimit;
+    }
+
+    /**
+     * @param error     setpoint minus measurement
+     * @param errorRate derivative of the error, e.g. minus the measured velocity for a fixed setpoint
+     * @param dtSeconds time since the previous update, 0 skips the integration
+     */
+    public float update(float error, float errorRate, float dtSeconds) {
+        float limit = outputLimit;
+        float i = ki;
+        if (i > 0) {
+            integral = clamp(integral + error * dtSeconds, limit / i);
+        }
+        else {
+            integral = 0;
+        }
+        return clamp(kp * error + i * integral + kd * errorRate, limit);
+    }
+
+    public void reset() {
+        integral = 0;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private static float clamp(float value, float limit) {
+        return value > limit ? limit : (value < -limit ? -limit : value);
+    }
+}
@@ -0,0 +1,236 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Closes the position and altitude loops on the phone, from the flight controller state feedback, so a correction
+ * does not pay a network round trip. The outputs are virtual stick velocities (body frame, m/s and degrees per
+ * second), one PID per axis with the derivative taken from the measured velocity.
+ *
+ * Positions are east/north offsets in meters from the origin of a LocalProjection, and the altitude above the take
+ * off point. When the projection has no origin yet, the first position hold sets it.
+ *
+ * Setpoints can be changed from any thread, update() must be called from the state callback thread only.
+ */
+public class PositionHoldController {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public enum Mode {
+        /** Nothing is controlled */
+        OFF,
+        /** Only the throttle is controlled, the other axes come from the raw velocity commands */
+        ALTITUDE,
+        /** Position, altitude and heading are controlled */
+        POSITION
+    }
+
+    public static final float DEFAULT_HORIZONTAL_KP = 0.8f;
+    public static final float DEFAULT_HORIZONTAL_KI = 0.05f;
+    public static final float DEFAULT_HORIZONTAL_KD = 0.2f;
+    public static final float DEFAULT_MAX_HORIZONTAL_SPEED = 2f; // m/s
+    public static final float DEFAULT_VERTICAL_KP = 1f;
+    public static final float DEFAULT_VERTICAL_KI = 0.1f;
+    public static final float DEFAULT_VERTICAL_KD = 0.1f;
+    public static final float DEFAULT_MAX_VERTICAL_SPEED = 1f; // m/s
+    public static final float DEFAULT_YAW_KP = 1.5f; // degrees per second per degree
+    public static final float DEFAULT_MAX_YAW_RATE = 30f; // degrees per second
+
+    private static final long MAX_DT_NANOS = 500000000L; // a longer gap restarts the integration
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final PidController northPid = new PidController(DEFAULT_HORIZONTAL_KP, DEFAULT_HORIZONTAL_KI,
+            DEFAULT_HORIZONTAL_KD, DEFAULT_MAX_HORIZONTAL_SPEED);
+    private final PidController eastPid = new PidController(DEFAULT_HORIZONTAL_KP, DEFAULT_HORIZONTAL_KI,
+            DEFAULT_HORIZONTAL_KD, DEFAULT_MAX_HORIZONTAL_SPEED);
+    private final PidController upPid = new PidController(DEFAULT_VERTICAL_KP, DEFAULT_VERTICAL_KI,
+            DEFAULT_VERTICAL_KD, DEFAULT_MAX_VERTICAL_SPEED);
+    private final PidController yawPid = new PidController(DEFAULT_YAW_KP, 0, 0, DEFAULT_MAX_YAW_RATE);
+
+    private final LocalProjection projection;
+    private final AtomicReference<Setpoint> setpoint = new AtomicReference<Setpoint>(Setpoint.OFF);
+
+    // state callback thread only
+    private Setpoint lastSetpoint = Setpoint.OFF;
+    private long lastUpdateNanos = 0;
+    private final float[] local = new float[2];
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public PositionHoldController() {
+        this(new LocalProjection());
+    }
+
+    public PositionHoldController(LocalProjection projection) {
+        this.projection = projection;
+    }
+
+    public LocalProjection getProjection() {
+        return projection;
+    }
+
+    public void setHorizontalGains(float kp, float ki, float kd, float maxSpeed) {
+        northPid.configure(kp, ki, kd, maxSpeed);
+        eastPid.configure(kp, ki, kd, maxSpeed);
+    }
+
+    public void setVerticalGains(float kp, float ki, float kd, float maxSpeed) {
+        upPid.configure(kp, ki, kd, maxSpeed);
+    }
+
+    public void setYawGains(float kp, float maxRate) {
+        yawPid.configure(kp, 0, 0, maxRate);
+    }
+
+    public Mode getMode() {
+        return setpoint.get().mode;
+    }
+
+    /**
+     * Holds the given altitude above the take off point, the other axes are left to the raw velocity commands
+     */
+    public void holdAltitude(float altitude) {
+        setpoint.set(new Setpoint(Mode.ALTITUDE, false, 0, 0, altitude, Float.NaN));
+    }
+
+    /**
+     * Holds a position relative to the origin, keeping the heading the aircraft has when the hold starts
+     */
+    public void holdPosition(float east, float north, float altitude) {
+        setpoint.set(new Setpoint(Mode.POSITION, false, east, north, altitude, Float.NaN));
+    }
+
+    /**
+     * Holds the position, altitude and heading the aircraft has on the next update
+     */
+    public void holdCurrentPosition() {
+        setpoint.set(Setpoint.CAPTURE);
+    }
+
+    public void disable() {
+        setpoint.set(Setpoint.OFF);
+    }
+
+    /**
+     * Runs the controllers on a new state. Without a GPS position the horizontal outputs are 0.
+     *
+     * @param out receives pitch, roll, yaw and throttle in virtual stick units
+     * @return false if the hold is off, out is not written then
+     */
+    public boolean update(AircraftState state, long nowNanos, float[] out) {
+        Setpoint target = setpoint.get();
+        if (target.mode == Mode.OFF) {
+            lastSetpoint = target;
+            return false;
+        }
+
+        if (!projection.hasOrigin() && !Double.isNaN(state.latitude) && !Double.isNaN(state.longitude)) {
+            projection.setOrigin(state.latitude, state.longitude);
+        }
+        boolean hasPosition = projection.toEnu(state.latitude, state.longitude, local);
+        if (target.capture) {
+            Setpoint captured = new Setpoint(Mode.POSITION, false, local[0], local[1], state.altitude, (float) state.yaw);
+            if (!setpoint.compareAndSet(target, captured)) {
+                // replaced meanwhile, handled on the next update
+                return false;
+            }
+            target = captured;
+        }
+        if (target.mode == Mode.POSITION && Float.isNaN(target.yaw)) {
+            Setpoint withYaw = new Setpoint(Mode.POSITION, false, target.east, target.north, target.altitude, (float) state.yaw);
+            setpoint.compareAndSet(target, withYaw);
+            target = withYaw;
+        }
+
+        // a new hold or a gap in the feedback restarts the integration
+        long dtNanos = nowNanos - lastUpdateNanos;
+        if (target.mode != lastSetpoint.mode || dtNanos > MAX_DT_NANOS || dtNanos < 0) {
+            northPid.reset();
+            eastPid.reset();
+            upPid.reset();
+            dtNanos = 0;
+        }
+        lastSetpoint = target;
+        lastUpdateNanos = nowNanos;
+        float dt = (float) dtNanos / NANOS_PER_SECOND;
+
+        float up = upPid.update(target.altitude - state.altitude, state.velocityZ, dt); // NED velocity, down is positive
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = 0;
+        out[3] = TwistConversion.throttle(up);
+        if (target.mode != Mode.POSITION) {
+            return true;
+        }
+
+        if (hasPosition) {
+            float north = northPid.update(target.north - local[1], -state.velocityX, dt);
+            float east = eastPid.update(target.east - local[0], -state.velocityY, dt);
+
+            // world to body (forward, left) by the DJI heading, clockwise from north
+            double yaw = Math.toRadians(state.yaw);
+            double cos = Math.cos(yaw);
+            double sin = Math.sin(yaw);
+            double forward = north * cos + east * sin;
+            double left = north * sin - east * cos;
+            out[0] = TwistConversion.pitch(forward, left);
+            out[1] = TwistConversion.roll(forward, left);
+        }
+        out[2] = yawPid.update(wrapDegrees(target.yaw - (float) state.yaw), 0, dt);
+        return true;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private static float wrapDegrees(float angle) {
+        float wrapped = angle % 360f;
+        if (wrapped > 180f) {
+            wrapped -= 360f;
+        }
+        else if (wrapped < -180f) {
+            wrapped += 360f;
+        }
+        return wrapped;
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    private static class Setpoint {
+
+        static final Setpoint OFF = new Setpoint(Mode.OFF, false, 0, 0, 0, Float.NaN);
+        static final Setpoint CAPTURE = new Setpoint(Mode.POSITION, true, 0, 0, 0, Float.NaN);
+
+        final Mode mode;
+        final boolean capture;
+        final float east;
+        final float north;
+        final float altitude;
+        final float yaw;
+
+        Setpoint(Mode mode, boolean capture, float east, float north, float altitude, float yaw) {
+            this.mode = mode;
+            this.capture = capture;
+            this.east = east;
+            this.north = north;
+            this.altitude = altitude;
+            this.yaw = yaw;
+        }
+    }
+}
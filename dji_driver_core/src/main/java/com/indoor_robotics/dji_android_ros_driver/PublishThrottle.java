@@ -0,0 +1,67 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Decides when a change-driven topic should be published: changes are published no more often than the minimum
+ * interval (a change inside the interval is remembered and published once it passed), and the latest value is
+ * republished after the maximum interval even if nothing changed.
+ */
+public class PublishThrottle {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile long minIntervalNanos;
+    private volatile long maxIntervalNanos;
+    private long lastPublishNanos = 0;
+    private boolean everPublished = false;
+    private boolean dirty = false;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public PublishThrottle(int minIntervalMs, int maxIntervalMs) {
+        setIntervals(minIntervalMs, maxIntervalMs);
+    }
+
+    public void setIntervals(int minIntervalMs, int maxIntervalMs) {
+        if (minIntervalMs < 0 || maxIntervalMs <= 0 || maxIntervalMs < minIntervalMs) {
+            throw new IllegalArgumentException("invalid publish intervals: min=" + minIntervalMs + " max=" + maxIntervalMs);
+        }
+        this.minIntervalNanos = minIntervalMs * NANOS_PER_MILLI;
+        this.maxIntervalNanos = maxIntervalMs * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Checks whether a publish is due and if so, records it as done.
+     *
+     * @param changed  true if the value changed since the last call
+     * @param nowNanos the current System.nanoTime()
+     * @return true if the caller should publish now
+     */
+    public synchronized boolean shouldPublish(boolean changed, long nowNanos) {
+        dirty |= changed;
+        long sinceLast = nowNanos - lastPublishNanos;
+        boolean due = !everPublished
+                || (dirty && sinceLast >= minIntervalNanos)
+                || sinceLast >= maxIntervalNanos;
+        if (due) {
+            lastPublishNanos = nowNanos;
+            everPublished = true;
+            dirty = false;
+        }
+        return due;
+    }
+}
@@ -0,0 +1,96 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.Arrays;
+
+/**
+ * The last N samples of a value, e.g. round trip times, in a preallocated ring. Adding does not allocate.
+ * Thread safe, all methods are synchronized (meant for low rate samples).
+ */
+public class RollingWindow {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final long[] samples;
+    private final long[] sorted;
+    private int next = 0;
+    private int size = 0;
+    private long last = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public RollingWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        samples = new long[capacity];
+        sorted = new long[capacity];
+    }
+
+    public synchronized void add(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        last = value;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        last = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the latest sample, 0 if the window is empty
+     */
+    public synchronized long getLast() {
+        return last;
+    }
+
+    public synchronized long getMean() {
+        if (size == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += samples[i];
+        }
+        return total / size;
+    }
+
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the given percentile of the samples in the window, 0 if it is empty
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        System.arraycopy(samples, 0, sorted, 0, size);
+        Arrays.sort(sorted, 0, size);
+        int index = (int) Math.ceil(size * Math.min(100.0, Math.max(0.0, percentile)) / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -0,0 +1,129 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Decides which datagrams of a newest-wins stream are applied. A packet is dropped when it is not newer than the
+ * last accepted one of the same sender session (duplicated, reordered), or when it is stale: its one way delay is
+ * more than the maximum age above the smallest delay seen recently. The smallest delay stands for the clock offset
+ * between the sender and the receiver plus the network latency, so no clock synchronization is needed.
+ * Not thread safe, used by the receive thread only.
+ */
+public class SequenceFilter {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public enum Result {
+        ACCEPTED,
+        OUT_OF_ORDER,
+        STALE
+    }
+
+    public static final int DEFAULT_MAX_AGE_MS = 200;
+
+    private static final int DELAY_WINDOW = 64;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private volatile int maxAgeMs = DEFAULT_MAX_AGE_MS;
+
+    private boolean hasSession = false;
+    private int session = 0;
+    private int lastSequence = 0;
+
+    // recent one way delays, including the clock offset, for the smallest delay
+    private final long[] delays = new long[DELAY_WINDOW];
+    private int delayCount = 0;
+    private int delayNext = 0;
+
+    private volatile long accepted = 0;
+    private volatile long outOfOrder = 0;
+    private volatile long stale = 0;
+    private volatile long sessions = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * @param maxAgeMs extra delay above the smallest one after which a packet is stale, 0 disables the check
+     */
+    public void setMaxAgeMs(int maxAgeMs) {
+        if (maxAgeMs < 0) {
+            throw new IllegalArgumentException("max age must not be negative");
+        }
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    public Result accept(int session, int sequence, long senderMillis, long receiveMillis) {
+        if (!hasSession || session != this.session) {
+            // a new sender, or the sender restarted
+            hasSession = true;
+            this.session = session;
+            delayCount = 0;
+            delayNext = 0;
+            sessions++;
+        }
+        else if (sequence - lastSequence <= 0) {
+            // compared as a difference so it survives the wrap around
+            outOfOrder++;
+            return Result.OUT_OF_ORDER;
+        }
+        lastSequence = sequence;
+
+        long delay = receiveMillis - senderMillis;
+        delays[delayNext] = delay;
+        delayNext = (delayNext + 1) % DELAY_WINDOW;
+        if (delayCount < DELAY_WINDOW) {
+            delayCount++;
+        }
+
+        int maxAge = maxAgeMs;
+        if (maxAge > 0 && delay - minDelay() > maxAge) {
+            stale++;
+            return Result.STALE;
+        }
+        accepted++;
+        return Result.ACCEPTED;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getOutOfOrder() {
+        return outOfOrder;
+    }
+
+    public long getStale() {
+        return stale;
+    }
+
+    /**
+     * @return how many sender sessions were seen
+     */
+    public long getSessions() {
+        return sessions;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private long minDelay() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < delayCount; i++) {
+            if (delays[i] < min) {
+                min = delays[i];
+            }
+        }
+        return min;
+    }
+}
@@ -0,0 +1,452 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * A chain of filter stages applied to the virtual stick setpoints right before they are sent to the SDK.
+ * The setpoint is a float[AXES] indexed by PITCH, ROLL, YAW and THROTTLE, in virtual stick units, which the stages
+ * modify in place. Stages keep their state in primitive fields, so processing a sample does not allocate.
+ *
+ * process() and reset() must be called from a single thread (the control loop). The parameters of the stages and
+ * the heading can be changed from any thread.
+ */
+public class SetpointPipeline {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int PITCH = 0;
+    public static final int ROLL = 1;
+    public static final int YAW = 2;
+    public static final int THROTTLE = 3;
+    public static final int AXES = 4;
+
+    /** Virtual stick limits of the SDK in the velocity control modes */
+    public static final float MAX_HORIZONTAL_SPEED = 15f; // m/s
+    public static final float MAX_YAW_RATE = 100f; // degrees per second
+    public static final float MAX_VERTICAL_SPEED = 4f; // m/s
+
+    private static final long MAX_DT_NANOS = 500000000L; // a longer gap restarts the stateful stages
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    public enum Frame {
+        /** Horizontal setpoints along the body axes, as the SDK expects them */
+        BODY,
+        /** Horizontal setpoints along east (x) and north (y), rotated to the body frame by the heading */
+        GROUND
+    }
+
+    /**
+     * One filter stage
+     */
+    public interface Stage {
+
+        /**
+         * @param axes             the setpoint, modified in place
+         * @param dtSeconds        time since the previous sample, 0 for the first sample after a reset
+         * @param headingDegrees   heading of the aircraft, clockwise from north, NaN when not known
+         */
+        void apply(float[] axes, float dtSeconds, float headingDegrees);
+
+        /**
+         * Forgets the previous samples, the next sample starts from hover
+         */
+        void reset();
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final Stage[] stages;
+    private volatile float headingDegrees = Float.NaN;
+    private long lastNanos = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public SetpointPipeline(Stage... stages) {
+        this.stages = stages.clone();
+    }
+
+    /**
+     * Creates the default chain: unit conversion, frame transform, deadband, clamp to the SDK limits, geofence,
+     * slew limit and low-pass. Only the clamp is active until the other stages are configured.
+     */
+    public static SetpointPipeline createDefault() {
+        return new SetpointPipeline(new Scale(), new FrameTransform(), new Deadband(), new Clamp(), new Geofence(),
+                new SlewLimit(), new LowPass());
+    }
+
+    /**
+     * @return the first stage of the given type, null if there is none
+     */
+    public <T extends Stage> T getStage(Class<T> type) {
+        for (Stage stage : stages) {
+            if (type.isInstance(stage)) {
+                return type.cast(stage);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the latest heading of the aircraft, in the DJI convention (degrees clockwise from north)
+     */
+    public void setHeading(double headingDegrees) {
+        this.headingDegrees = (float) headingDegrees;
+    }
+
+    public void process(float[] axes, long nowNanos) {
+        long dtNanos = nowNanos - lastNanos;
+        if (dtNanos > MAX_DT_NANOS || dtNanos < 0 || lastNanos == 0) {
+            reset();
+            dtNanos = 0;
+        }
+        lastNanos = nowNanos;
+
+        float dt = dtNanos / NANOS_PER_SECOND;
+        float heading = headingDegrees;
+        for (Stage stage : stages) {
+            stage.apply(axes, dt, heading);
+        }
+    }
+
+    public void reset() {
+        lastNanos = 0;
+        for (Stage stage : stages) {
+            stage.reset();
+        }
+    }
+
+    //***************************
+    // Public nested classes
+    //***************************
+
+    /**
+     * A stage with one parameter per axis
+     */
+    public abstract static class AxisStage implements Stage {
+
+        protected final float[] values;
+
+        protected AxisStage(float pitch, float roll, float yaw, float throttle) {
+            values = new float[]{pitch, roll, yaw, throttle};
+        }
+
+        public void set(int axis, float value) {
+            values[axis] = value;
+        }
+
+        public float get(int axis) {
+            return values[axis];
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+    /**
+     * Unit conversion: multiplies each axis by a factor, e.g. to scale speeds or convert from other units
+     */
+    public static class Scale extends AxisStage {
+
+        public Scale() {
+            super(1f, 1f, 1f, 1f);
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            for (int i = 0; i < AXES; i++) {
+                axes[i] *= values[i];
+            }
+        }
+    }
+
+    /**
+     * Rotates ground frame horizontal setpoints to the body frame the SDK is set up for. Pitch and roll come in as
+     * converted from a twist (TwistConversion), that is roll along x (east) and pitch along y (north), and leave
+     * as body velocities. Without a heading the horizontal setpoints are zeroed.
+     */
+    public static class FrameTransform implements Stage {
+
+        private volatile Frame frame = Frame.BODY;
+
+        public void setFrame(Frame frame) {
+            this.frame = frame;
+        }
+
+        public Frame getFrame() {
+            return frame;
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            if (frame == Frame.BODY) {
+                return;
+            }
+            if (Float.isNaN(headingDegrees)) {
+                axes[PITCH] = 0;
+                axes[ROLL] = 0;
+                return;
+            }
+            double heading = Math.toRadians(headingDegrees);
+            double cos = Math.cos(heading);
+            double sin = Math.sin(heading);
+            float east = axes[ROLL];
+            float north = axes[PITCH];
+            axes[ROLL] = (float) (north * cos + east * sin); // forward
+            axes[PITCH] = (float) (north * sin - east * cos); // left
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+
+    /**
+     * Zeroes the axes whose magnitude is below a threshold, to ignore noise around the neutral position
+     */
+    public static class Deadband extends AxisStage {
+
+        public Deadband() {
+            super(0f, 0f, 0f, 0f);
+        }
+
+        @Override
+        public void set(int axis, float threshold) {
+            super.set(axis, Math.abs(threshold));
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            for (int i = 0; i < AXES; i++) {
+                if (Math.abs(axes[i]) < values[i]) {
+                    axes[i] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clamps each axis to a symmetric limit, by default the limits of the SDK
+     */
+    public static class Clamp extends AxisStage {
+
+        public Clamp() {
+            super(MAX_HORIZONTAL_SPEED, MAX_HORIZONTAL_SPEED, MAX_YAW_RATE, MAX_VERTICAL_SPEED);
+        }
+
+        @Override
+        public void set(int axis, float limit) {
+            super.set(axis, Math.abs(limit));
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            for (int i = 0; i < AXES; i++) {
+                float limit = values[i];
+                float value = axes[i];
+                // NaN is not a valid stick value, it becomes 0
+                axes[i] = value > limit ? limit : (value < -limit ? -limit : (value == value ? value : 0));
+            }
+        }
+    }
+
+    /**
+     * Slows the aircraft down as it approaches the boundaries of a cylinder around the local origin: within the
+     * margin, the horizontal velocity away from the origin and the climb rate are scaled down linearly to 0 at the
+     * boundary. Velocities back inside are untouched, so an aircraft outside the fence can always return.
+     * Expects body frame velocities, after the frame transform. The horizontal limit needs the position and the
+     * heading, without them only the altitude is limited. A radius or maximum altitude of 0 disables that limit.
+     */
+    public static class Geofence implements Stage {
+
+        public static final float DEFAULT_MARGIN = 5f; // meters
+
+        private volatile float radius = 0;
+        private volatile float maxAltitude = 0;
+        private volatile float margin = DEFAULT_MARGIN;
+
+        // latest position, written by the state callback. A torn update mixes two samples 100 ms apart.
+        private volatile boolean hasPosition = false;
+        private volatile float east = 0;
+        private volatile float north = 0;
+        private volatile boolean hasAltitude = false;
+        private volatile float altitude = 0;
+
+        /**
+         * @param radius      horizontal distance from the origin in meters, 0 for no limit
+         * @param maxAltitude altitude above the take off point in meters, 0 for no limit
+         * @param margin      distance from the boundaries at which the slow down starts, in meters
+         */
+        public void configure(float radius, float maxAltitude, float margin) {
+            if (radius < 0 || maxAltitude < 0 || margin <= 0) {
+                throw new IllegalArgumentException("invalid geofence: radius " + radius + ", max altitude "
+                        + maxAltitude + ", margin " + margin);
+            }
+            this.radius = radius;
+            this.maxAltitude = maxAltitude;
+            this.margin = margin;
+        }
+
+        public float getRadius() {
+            return radius;
+        }
+
+        public float getMaxAltitude() {
+            return maxAltitude;
+        }
+
+        public float getMargin() {
+            return margin;
+        }
+
+        /**
+         * Sets the latest position of the aircraft
+         *
+         * @param hasPosition false if east and north are not known (no GPS fix or no origin)
+         */
+        public void setPosition(boolean hasPosition, float east, float north, float altitude) {
+            this.east = east;
+            this.north = north;
+            this.hasPosition = hasPosition;
+            this.altitude = altitude;
+            this.hasAltitude = true;
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            float limit = maxAltitude;
+            if (limit > 0 && hasAltitude && axes[THROTTLE] > 0) {
+                axes[THROTTLE] *= limitFactor(limit - altitude);
+            }
+
+            limit = radius;
+            if (limit <= 0 || !hasPosition || Float.isNaN(headingDegrees)) {
+                return;
+            }
+            float e = east;
+            float n = north;
+            float distance = (float) Math.sqrt(e * e + n * n);
+            float factor = limitFactor(limit - distance);
+            if (factor >= 1f || distance == 0) {
+                return;
+            }
+
+            // body velocity to ground, the inverse of FrameTransform
+            double heading = Math.toRadians(headingDegrees);
+            float cos = (float) Math.cos(heading);
+            float sin = (float) Math.sin(heading);
+            float forward = axes[ROLL];
+            float left = axes[PITCH];
+            float velocityNorth = forward * cos + left * sin;
+            float velocityEast = forward * sin - left * cos;
+
+            // scale down the outward component only
+            float outward = (velocityEast * e + velocityNorth * n) / distance;
+            if (outward <= 0) {
+                return;
+            }
+            float removed = outward * (1f - factor) / distance;
+            velocityEast -= removed * e;
+            velocityNorth -= removed * n;
+
+            axes[ROLL] = velocityNorth * cos + velocityEast * sin;
+            axes[PITCH] = velocityNorth * sin - velocityEast * cos;
+        }
+
+        @Override
+        public void reset() {
+        }
+
+        /**
+         * @return the factor applied to a velocity towards a boundary at the given distance
+         */
+        private float limitFactor(float distanceToBoundary) {
+            float m = margin;
+            return distanceToBoundary >= m ? 1f : (distanceToBoundary <= 0 ? 0f : distanceToBoundary / m);
+        }
+    }
+
+    /**
+     * Limits the rate of change of each axis, in units per second. 0 leaves an axis unlimited.
+     */
+    public static class SlewLimit extends AxisStage {
+
+        private final float[] last = new float[AXES];
+
+        public SlewLimit() {
+            super(0f, 0f, 0f, 0f);
+        }
+
+        @Override
+        public void set(int axis, float ratePerSecond) {
+            super.set(axis, Math.abs(ratePerSecond));
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            for (int i = 0; i < AXES; i++) {
+                float rate = values[i];
+                if (rate > 0) {
+                    float maxStep = rate * dtSeconds;
+                    float step = axes[i] - last[i];
+                    if (step > maxStep) {
+                        axes[i] = last[i] + maxStep;
+                    }
+                    else if (step < -maxStep) {
+                        axes[i] = last[i] - maxStep;
+                    }
+                }
+                last[i] = axes[i];
+            }
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < AXES; i++) {
+                last[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * First order low-pass filter on all axes. A cutoff of 0 disables the filter.
+     */
+    public static class LowPass implements Stage {
+
+        private volatile float timeConstant = 0;
+        private final float[] state = new float[AXES];
+
+        public void setCutoffHz(float cutoffHz) {
+            if (cutoffHz < 0) {
+                throw new IllegalArgumentException("cutoff must not be negative: " + cutoffHz);
+            }
+            timeConstant = cutoffHz == 0 ? 0 : (float) (1.0 / (2 * Math.PI * cutoffHz));
+        }
+
+        @Override
+        public void apply(float[] axes, float dtSeconds, float headingDegrees) {
+            float tau = timeConstant;
+            float alpha = tau == 0 ? 1f : dtSeconds / (tau + dtSeconds);
+            for (int i = 0; i < AXES; i++) {
+                state[i] += (axes[i] - state[i]) * alpha;
+                axes[i] = state[i];
+            }
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < AXES; i++) {
+                state[i] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simulated aircraft running on a plain JVM, for running and benchmarking the driver without a drone.
+ *
+ * The dynamics are simple: in virtual stick mode the body velocities and the yaw rate follow the commands with a
+ * first order response, the position is integrated from the velocities around a fixed origin. Every SDK call is
+ * completed after a configurable latency, virtual stick commands are applied (and reported to the actuation
+ * listener) after the same latency, so end to end command latency can be measured.
+ */
+public class SimulatedAircraftBackend implements AircraftBackend {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final double DEFAULT_ORIGIN_LATITUDE = 32.0853;
+    public static final double DEFAULT_ORIGIN_LONGITUDE = 34.7818;
+    public static final float DEFAULT_TIME_CONSTANT_S = 0.3f;
+
+    private static final int PHYSICS_RATE_HZ = 100;
+    private static final int STATE_DIVIDER = 10; // state callbacks at 10 Hz
+    private static final int BATTERY_DIVIDER = 100; // battery callbacks at 1 Hz
+    private static final int PENDING_CAPACITY = 256;
+    private static final float TAKEOFF_ALTITUDE_M = 1.2f;
+    private static final float TAKEOFF_LANDING_SPEED = 1.0f;
+    private static final float LANDING_CONFIRMATION_ALTITUDE_M = 0.3f;
+    private static final double EARTH_RADIUS_M = 6378137.0;
+
+    /**
+     * Notified on the simulation thread when a virtual stick command takes effect
+     */
+    public interface ActuationListener {
+        void onActuation(float pitch, float roll, float yaw, float throttle, long submittedNanos, long appliedNanos);
+    }
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final ScheduledExecutorService executor;
+    private final double originLatitude;
+    private final double originLongitude;
+
+    private volatile long latencyNanos;
+    private volatile float timeConstant = DEFAULT_TIME_CONSTANT_S;
+    private volatile boolean connected = true;
+    private volatile ActuationListener actuationListener = null;
+    private volatile StateListener stateListener = null;
+    private volatile BatteryListener batteryListener = null;
+
+    // Pending virtual stick commands, a preallocated ring guarded by itself
+    private final float[] pendingValues = new float[PENDING_CAPACITY * 4];
+    private final long[] pendingSubmitted = new long[PENDING_CAPACITY];
+    private final ResultCallback[] pendingCallbacks = new ResultCallback[PENDING_CAPACITY];
+    private int pendingHead = 0;
+    private int pendingCount = 0;
+
+    // Simulation state, only touched by the simulation thread
+    private boolean virtualStickEnabled = false;
+    private boolean motorsOn = false;
+    private boolean flying = false;
+    private boolean takingOff = false;
+    private boolean landing = false;
+    private boolean landingConfirmationNeeded = false;
+    private float commandPitch, commandRoll, commandYaw, commandThrottle;
+    private double north, east, up;
+    private double velocityForward, velocityRight, velocityUp;
+    private double yawDeg, yawRate;
+    private double batteryPercent = 100;
+    private long steps = 0;
+
+    private final AircraftState state = new AircraftState();
+    private final BatteryInfo battery = new BatteryInfo();
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public SimulatedAircraftBackend(int sdkLatencyMs) {
+        this(sdkLatencyMs, DEFAULT_ORIGIN_LATITUDE, DEFAULT_ORIGIN_LONGITUDE);
+    }
+
+    public SimulatedAircraftBackend(int sdkLatencyMs, double originLatitude, double originLongitude) {
+        this.originLatitude = originLatitude;
+        this.originLongitude = originLongitude;
+        setSdkLatencyMs(sdkLatencyMs);
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "simulated_aircraft");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                step(1.0 / PHYSICS_RATE_HZ);
+            }
+        }, 0, 1000000L / PHYSICS_RATE_HZ, TimeUnit.MICROSECONDS);
+    }
+
+    public void setSdkLatencyMs(int sdkLatencyMs) {
+        if (sdkLatencyMs < 0) {
+            throw new IllegalArgumentException("latency must not be negative");
+        }
+        this.latencyNanos = sdkLatencyMs * 1000000L;
+    }
+
+    public void setVelocityTimeConstant(float seconds) {
+        this.timeConstant = seconds;
+    }
+
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    public void setActuationListener(ActuationListener listener) {
+        this.actuationListener = listener;
+    }
+
+    /**
+     * Stops the simulation thread
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * The simulation needs no configuration, it is ready while connected
+     */
+    @Override
+    public boolean isReady() {
+        return connected;
+    }
+
+    @Override
+    public void setVirtualStickModeEnabled(final boolean enabled, ResultCallback callback) {
+        later(new Runnable() {
+            @Override
+            public void run() {
+                virtualStickEnabled = enabled;
+            }
+        }, callback);
+    }
+
+    @Override
+    public void sendVirtualStickData(float pitch, float roll, float yaw, float throttle, ResultCallback callback) {
+        synchronized (pendingValues) {
+            if (pendingCount == PENDING_CAPACITY) {
+                // the link is saturated, the oldest command is lost
+                pendingHead = (pendingHead + 1) % PENDING_CAPACITY;
+                pendingCount--;
+            }
+            int index = (pendingHead + pendingCount) % PENDING_CAPACITY;
+            pendingValues[index * 4] = pitch;
+            pendingValues[index * 4 + 1] = roll;
+            pendingValues[index * 4 + 2] = yaw;
+            pendingValues[index * 4 + 3] = throttle;
+            pendingSubmitted[index] = System.nanoTime();
+            pendingCallbacks[index] = callback;
+            pendingCount++;
+        }
+    }
+
+    @Override
+    public void startTakeoff(ResultCallback callback) {
+        later(new Runnable() {
+            @Override
+            public void run() {
+                if (!flying) {
+                    motorsOn = true;
+                    flying = true;
+                    takingOff = true;
+                    landing = false;
+                }
+            }
+        }, callback);
+    }
+
+    @Override
+    public void startLanding(ResultCallback callback) {
+        later(new Runnable() {
+            @Override
+            public void run() {
+                if (flying) {
+                    takingOff = false;
+                    landing = true;
+                }
+            }
+        }, callback);
+    }
+
+    @Override
+    public void confirmLanding(ResultCallback callback) {
+        later(new Runnable() {
+            @Override
+            public void run() {
+                if (landingConfirmationNeeded) {
+                    touchDown();
+                }
+            }
+        }, callback);
+    }
+
+    @Override
+    public boolean setStateListener(StateListener listener) {
+        this.stateListener = listener;
+        return true;
+    }
+
+    @Override
+    public boolean setBatteryListener(BatteryListener listener) {
+        this.batteryListener = listener;
+        return true;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    /**
+     * Runs an operation on the simulation thread after the SDK latency, then reports success
+     */
+    private void later(final Runnable operation, final ResultCallback callback) {
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                operation.run();
+                if (null != callback) {
+                    callback.onResult(null);
+                }
+            }
+        }, latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void step(double dt) {
+        long now = System.nanoTime();
+        applyPendingCommands(now);
+
+        if (takingOff) {
+            velocityUp = TAKEOFF_LANDING_SPEED;
+            if (up >= TAKEOFF_ALTITUDE_M) {
+                takingOff = false;
+                velocityUp = 0;
+            }
+        }
+        else if (landing) {
+            velocityForward = 0;
+            velocityRight = 0;
+            yawRate = 0;
+            velocityUp = -TAKEOFF_LANDING_SPEED;
+            if (up <= LANDING_CONFIRMATION_ALTITUDE_M) {
+                velocityUp = 0;
+                landingConfirmationNeeded = true;
+            }
+        }
+        else if (flying && virtualStickEnabled) {
+            // first order response of the body velocities to the virtual stick velocity commands
+            double alpha = Math.min(1.0, dt / Math.max(timeConstant, 1e-3));
+            velocityForward += (commandRoll - velocityForward) * alpha;
+            velocityRight += (commandPitch - velocityRight) * alpha;
+            velocityUp += (commandThrottle - velocityUp) * alpha;
+            yawRate += (commandYaw - yawRate) * alpha;
+        }
+        else if (flying) {
+            velocityForward = 0;
+            velocityRight = 0;
+            velocityUp = 0;
+            yawRate = 0;
+        }
+
+        if (flying) {
+            yawDeg += yawRate * dt;
+            if (yawDeg > 180) {
+                yawDeg -= 360;
+            }
+            else if (yawDeg < -180) {
+                yawDeg += 360;
+            }
+            double yaw = Math.toRadians(yawDeg);
+            north += (velocityForward * Math.cos(yaw) - velocityRight * Math.sin(yaw)) * dt;
+            east += (velocityForward * Math.sin(yaw) + velocityRight * Math.cos(yaw)) * dt;
+            up = Math.max(0, up + velocityUp * dt);
+        }
+        if (motorsOn) {
+            batteryPercent = Math.max(0, batteryPercent - dt * 100 / (20 * 60)); // 20 minutes of flight
+        }
+
+        steps++;
+        if (steps % STATE_DIVIDER == 0) {
+            publishState();
+        }
+        if (steps % BATTERY_DIVIDER == 0) {
+            publishBattery();
+        }
+    }
+
+    private void applyPendingCommands(long now) {
+        long latency = latencyNanos;
+        while (true) {
+            float pitch, roll, yaw, throttle;
+            long submitted;
+            ResultCallback callback;
+            synchronized (pendingValues) {
+                if (pendingCount == 0 || now - pendingSubmitted[pendingHead] < latency) {
+                    return;
+                }
+                int index = pendingHead;
+                pitch = pendingValues[index * 4];
+                roll = pendingValues[index * 4 + 1];
+                yaw = pendingValues[index * 4 + 2];
+                throttle = pendingValues[index * 4 + 3];
+                submitted = pendingSubmitted[index];
+                callback = pendingCallbacks[index];
+                pendingCallbacks[index] = null;
+                pendingHead = (pendingHead + 1) % PENDING_CAPACITY;
+                pendingCount--;
+            }
+
+            commandPitch = pitch;
+            commandRoll = roll;
+            commandYaw = yaw;
+            commandThrottle = throttle;
+
+            ActuationListener listener = actuationListener;
+            if (null != listener) {
+                listener.onActuation(pitch, roll, yaw, throttle, submitted, now);
+            }
+            if (null != callback) {
+                callback.onResult(virtualStickEnabled ? null : AircraftError.NOT_AVAILABLE);
+            }
+        }
+    }
+
+    private void touchDown() {
+        up = 0;
+        velocityForward = 0;
+        velocityRight = 0;
+        velocityUp = 0;
+        yawRate = 0;
+        flying = false;
+        motorsOn = false;
+        landing = false;
+        landingConfirmationNeeded = false;
+    }
+
+    private void publishState() {
+        StateListener listener = stateListener;
+        if (null == listener) {
+            return;
+        }
+
+        double yaw = Math.toRadians(yawDeg);
+        state.areMotorsOn = motorsOn;
+        state.isFlying = flying;
+        state.isLandingConfirmationNeeded = landingConfirmationNeeded;
+        state.latitude = originLatitude + Math.toDegrees(north / EARTH_RADIUS_M);
+        state.longitude = originLongitude + Math.toDegrees(east / (EARTH_RADIUS_M * Math.cos(Math.toRadians(originLatitude))));
+        state.altitude = (float) up;
+        state.velocityX = (float) (velocityForward * Math.cos(yaw) - velocityRight * Math.sin(yaw));
+        state.velocityY = (float) (velocityForward * Math.sin(yaw) + velocityRight * Math.cos(yaw));
+        state.velocityZ = (float) -velocityUp;
+        state.roll = 0;
+        state.pitch = 0;
+        state.yaw = yawDeg;
+        listener.onStateUpdate(state);
+    }
+
+    private void publishBattery() {
+        BatteryListener listener = batteryListener;
+        if (null == listener) {
+            return;
+        }
+
+        battery.chargeRemainingInPercent = (int) batteryPercent;
+        battery.fullChargeCapacityMah = 3830;
+        battery.designCapacityMah = 3830;
+        battery.chargeRemainingMah = (int) (battery.fullChargeCapacityMah * batteryPercent / 100);
+        battery.voltageMv = (int) (13200 + 4000 * batteryPercent / 100);
+        battery.currentMa = motorsOn ? -8000 : -300;
+        battery.temperature = 30f;
+        listener.onBatteryUpdate(battery);
+    }
+}
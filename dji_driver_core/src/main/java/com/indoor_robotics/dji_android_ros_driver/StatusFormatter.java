@@ -0,0 +1,30 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Builds the legacy status string published on /dji/status, e.g.
+ * "battery=87.0;isConnected=true;areMotorsOn=false;isFlying=false;altitude=0.0"
+ */
+public final class StatusFormatter {
+
+    private StatusFormatter() {
+    }
+
+    /**
+     * Builds the status string into the given builder, which is cleared first and can be reused between calls
+     */
+    public static String format(StringBuilder builder, float batteryLevel, boolean isConnected, boolean areMotorsOn,
+                                boolean isFlying, float altitude) {
+        builder.setLength(0);
+        builder.append("battery=").append(batteryLevel)
+                .append(";isConnected=").append(isConnected)
+                .append(";areMotorsOn=").append(areMotorsOn)
+                .append(";isFlying=").append(isFlying)
+                .append(";altitude=").append(altitude);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,63 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs the exceptions thrown by the runs of a loop task without flooding the log at the loop rate: the first
+ * failure is logged with its stack trace, later ones at most once per LOG_INTERVAL_MS with the number of failures
+ * since the previous report. Uses java.util.logging, which goes to logcat on Android.
+ * Called by the loop thread only.
+ */
+public class TaskFailureLog {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int LOG_INTERVAL_MS = 10000;
+
+    private static final Logger LOGGER = Logger.getLogger(TaskFailureLog.class.getName());
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final String taskName;
+    private long lastLogNanos = 0;
+    private long lastLoggedFailures = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public TaskFailureLog(String taskName) {
+        this.taskName = taskName;
+    }
+
+    /**
+     * @param failure  the exception thrown by the run
+     * @param failures the number of failures of the task so far, this one included
+     */
+    public void onFailure(RuntimeException failure, long failures) {
+        long now = System.nanoTime();
+        if (lastLoggedFailures == 0) {
+            LOGGER.log(Level.WARNING, "task " + taskName + " failed", failure);
+        }
+        else if (now - lastLogNanos >= LOG_INTERVAL_MS * NANOS_PER_MILLI) {
+            LOGGER.log(Level.WARNING, "task " + taskName + " failed " + (failures - lastLoggedFailures)
+                    + " more times (" + failures + " in total), latest: " + failure);
+        }
+        else {
+            return;
+        }
+        lastLogNanos = now;
+        lastLoggedFailures = failures;
+    }
+}
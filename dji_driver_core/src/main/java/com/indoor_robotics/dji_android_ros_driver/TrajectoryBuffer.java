@@ -0,0 +1,210 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * A time-parameterized virtual stick trajectory, stored in a preallocated ring and played back by the control loop.
+ * Points are received in batches: a batch replaces the buffered points from its first point on, so a long
+ * trajectory can be streamed in overlapping chunks and a new plan replaces the old one. Played points are dropped
+ * from the ring as time passes.
+ *
+ * The writer (a single thread, e.g. the ROS subscriber) fills a batch with beginBatch() and addPoint(), which do not
+ * lock, and splices it in with commitBatch(). The control loop calls sample(). Both are short critical sections on
+ * preallocated arrays, nothing allocates.
+ */
+public class TrajectoryBuffer {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final int capacity;
+
+    // ring of points, times are System.nanoTime() based
+    private final long[] times;
+    private final float[] pitch;
+    private final float[] roll;
+    private final float[] yaw;
+    private final float[] throttle;
+    private int head = 0;
+    private int size = 0;
+
+    // the batch being filled by the writer
+    private final long[] batchTimes;
+    private final float[] batchValues;
+    private long batchStartNanos = 0;
+    private int batchSize = 0;
+    private int batchRejected = 0;
+
+    private volatile long batches = 0;
+    private volatile long droppedPoints = 0;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public TrajectoryBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        times = new long[capacity];
+        pitch = new float[capacity];
+        roll = new float[capacity];
+        yaw = new float[capacity];
+        throttle = new float[capacity];
+        batchTimes = new long[capacity];
+        batchValues = new float[capacity * 4];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Starts a new batch, discarding a batch which was not committed
+     *
+     * @param startNanos System.nanoTime() at which the time from start of the points is 0
+     */
+    public void beginBatch(long startNanos) {
+        batchStartNanos = startNanos;
+        batchSize = 0;
+        batchRejected = 0;
+    }
+
+    /**
+     * Adds a point to the current batch, in virtual stick units. Points must come in increasing time order.
+     *
+     * @return false if the point was dropped, because it is out of order or the batch is full
+     */
+    public boolean addPoint(long timeFromStartNanos, float pitch, float roll, float yaw, float throttle) {
+        long time = batchStartNanos + timeFromStartNanos;
+        if (batchSize == capacity || (batchSize > 0 && time <= batchTimes[batchSize - 1])) {
+            batchRejected++;
+            return false;
+        }
+        batchTimes[batchSize] = time;
+        int v = batchSize * 4;
+        batchValues[v] = pitch;
+        batchValues[v + 1] = roll;
+        batchValues[v + 2] = yaw;
+        batchValues[v + 3] = throttle;
+        batchSize++;
+        return true;
+    }
+
+    /**
+     * Replaces the buffered points from the first point of the batch on with the points of the batch. Points which
+     * do not fit in the ring are dropped.
+     *
+     * @return the number of points which were dropped, out of order or not fitting
+     */
+    public synchronized int commitBatch() {
+        if (batchSize == 0) {
+            return batchRejected;
+        }
+
+        // keep the buffered points before the batch, those from its first point on are replaced
+        long first = batchTimes[0];
+        while (size > 0 && times[index(size - 1)] >= first) {
+            size--;
+        }
+
+        int dropped = batchRejected;
+        for (int i = 0; i < batchSize; i++) {
+            if (size == capacity) {
+                dropped += batchSize - i;
+                break;
+            }
+            int slot = index(size);
+            int v = i * 4;
+            times[slot] = batchTimes[i];
+            pitch[slot] = batchValues[v];
+            roll[slot] = batchValues[v + 1];
+            yaw[slot] = batchValues[v + 2];
+            throttle[slot] = batchValues[v + 3];
+            size++;
+        }
+
+        batchSize = 0;
+        batches++;
+        droppedPoints += dropped;
+        return dropped;
+    }
+
+    /**
+     * Drops all buffered points, e.g. when preempted by another command source
+     */
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return true if there are points left to play
+     */
+    public synchronized boolean isActive() {
+        return size > 0;
+    }
+
+    /**
+     * Interpolates the trajectory at the given time. Points before that time are dropped, once the last point is
+     * reached the trajectory is over and the buffer is empty.
+     *
+     * @param out receives pitch, roll, yaw and throttle
+     * @return false if there is nothing to play at that time (empty, over, or not started yet)
+     */
+    public synchronized boolean sample(long nowNanos, float[] out) {
+        while (size >= 2 && times[index(1)] <= nowNanos) {
+            head = index(1);
+            size--;
+        }
+        if (size == 0 || nowNanos < times[head]) {
+            return false;
+        }
+        if (size == 1) {
+            // past the last point
+            clear();
+            return false;
+        }
+
+        int next = index(1);
+        float f = (float) (nowNanos - times[head]) / (float) (times[next] - times[head]);
+        out[0] = pitch[head] + (pitch[next] - pitch[head]) * f;
+        out[1] = roll[head] + (roll[next] - roll[head]) * f;
+        out[2] = yaw[head] + (yaw[next] - yaw[head]) * f;
+        out[3] = throttle[head] + (throttle[next] - throttle[head]) * f;
+        return true;
+    }
+
+    /**
+     * @return the number of committed batches
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return the number of points dropped because they were out of order or did not fit
+     */
+    public long getDroppedPoints() {
+        return droppedPoints;
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private int index(int offset) {
+        return (head + offset) % capacity;
+    }
+}
@@ -0,0 +1,35 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Conversion of a ROS twist to DJI virtual stick values, for the velocity control modes set up by the driver
+ * (body frame, velocities in m/s, yaw rate in degrees per second).
+ * Note that DJI names the axes as sticks: pitch moves along the body y axis and roll along the body x axis.
+ */
+public final class TwistConversion {
+
+    private static final float RADIANS_TO_DEGREES = (float) (180.0 / Math.PI);
+
+    private TwistConversion() {
+    }
+
+    public static float pitch(double linearX, double linearY) {
+        return (float) linearY; // Movement along the y axis
+    }
+
+    public static float roll(double linearX, double linearY) {
+        return (float) linearX; // Movement along the x axis
+    }
+
+    public static float yaw(double angularZ) {
+        return (float) angularZ * RADIANS_TO_DEGREES; // Convert to degrees. ROS works with radians...
+    }
+
+    public static float throttle(double linearZ) {
+        return (float) linearZ; // Movement along the Z axis
+    }
+}
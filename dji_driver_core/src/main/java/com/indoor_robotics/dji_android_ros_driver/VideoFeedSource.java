@@ -0,0 +1,21 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * A source of raw H.264 data: the DJI video feed on the phone or a recorded file for testing.
+ */
+public interface VideoFeedSource {
+
+    /**
+     * Starts delivering data to the sink.
+     *
+     * @return false if the source is not available yet, the caller may retry later
+     */
+    boolean start(VideoFrameSink sink);
+
+    void stop();
+}
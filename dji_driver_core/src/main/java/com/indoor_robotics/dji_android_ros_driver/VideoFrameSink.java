@@ -0,0 +1,15 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * Receives raw H.264 data from a video feed. The data array belongs to the feed and may be reused as soon as
+ * the call returns, so implementations must copy what they keep.
+ */
+public interface VideoFrameSink {
+
+    void onFrame(byte[] data, int offset, int length);
+}
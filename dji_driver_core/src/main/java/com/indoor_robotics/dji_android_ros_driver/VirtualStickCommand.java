@@ -0,0 +1,47 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * An immutable snapshot of one virtual stick command. A new instance is published for every received command,
+ * so a reader always sees all four axes of the same command.
+ */
+public final class VirtualStickCommand {
+
+    public static final VirtualStickCommand HOVER = new VirtualStickCommand(0f, 0f, 0f, 0f, 0L, 0L, false);
+
+    public final float pitch;
+    public final float roll;
+    public final float yaw;
+    public final float throttle;
+
+    /** System.nanoTime() at which the command was received */
+    public final long receivedNanos;
+
+    /** Monotonic sequence number, 0 for the initial hover command */
+    public final long sequence;
+
+    /**
+     * True for commands coming from a continuous stream (cmd_vel), which are expected to be refreshed and are
+     * therefore subject to the stale command watchdog. Commands from one-shot services are held until replaced.
+     */
+    public final boolean streamed;
+
+    public VirtualStickCommand(float pitch, float roll, float yaw, float throttle, long receivedNanos, long sequence, boolean streamed) {
+        this.pitch = pitch;
+        this.roll = roll;
+        this.yaw = yaw;
+        this.throttle = throttle;
+        this.receivedNanos = receivedNanos;
+        this.sequence = sequence;
+        this.streamed = streamed;
+    }
+
+    @Override
+    public String toString() {
+        return "seq=" + sequence + ";pitch=" + pitch + ";roll=" + roll + ";yaw=" + yaw + ";throttle=" + throttle;
+    }
+}
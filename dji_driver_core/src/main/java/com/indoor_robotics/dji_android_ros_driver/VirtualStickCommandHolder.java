@@ -0,0 +1,49 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the latest virtual stick command. Writers publish a new immutable snapshot and readers get the latest one,
+ * both without locking.
+ */
+public class VirtualStickCommandHolder {
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final AtomicLong sequence = new AtomicLong(0);
+    private volatile VirtualStickCommand latest = VirtualStickCommand.HOVER;
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    /**
+     * Publishes a new command, stamped with the current time and the next sequence number.
+     *
+     * @return the published snapshot
+     */
+    public VirtualStickCommand publish(float pitch, float roll, float yaw, float throttle, boolean streamed) {
+        VirtualStickCommand command = new VirtualStickCommand(pitch, roll, yaw, throttle,
+                System.nanoTime(), sequence.incrementAndGet(), streamed);
+        latest = command;
+        return command;
+    }
+
+    /**
+     * Publishes a held (non streamed) zero command.
+     */
+    public VirtualStickCommand publishHover() {
+        return publish(0f, 0f, 0f, 0f, false);
+    }
+
+    public VirtualStickCommand get() {
+        return latest;
+    }
+}
@@ -0,0 +1,349 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+/**
+ * The virtual stick control path, independent of ROS and of the SDK: commands are published as snapshots by the
+ * command sources (cmd_vel listener, services) and sendLatest() forwards the latest one to the aircraft, decayed to
+ * hover by the watchdog when it is stale. sendLatest() is called from a single control thread and does not allocate.
+ *
+ * A trajectory loaded into the TrajectoryBuffer takes precedence over the held command while it plays, and is
+ * preempted by any other command. Its points are interpolated at the loop rate and are not subject to the watchdog,
+ * they are already on the phone. When it ends the aircraft hovers.
+ *
+ * The position hold runs on each flight controller state update (onAircraftState()), which only publishes its output
+ * as a snapshot: all the sends happen on the control thread, the SDK and the latency tracker have a single caller.
+ * Holding a position, the control loop sends the latest output while it is fresh and hover when the feedback stops.
+ * Holding an altitude, its throttle replaces the one of the latest command sent by the control loop.
+ *
+ * Everything the control loop sends (commands, trajectory samples, the altitude hold throttle) goes through the
+ * setpoint pipeline. The output of a position hold does not, its controllers already limit it, but it still goes
+ * through the geofence stage of the pipeline.
+ */
+public class VirtualStickController {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    public static final int HOLD_FEEDBACK_TIMEOUT_MS = 500;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private final AircraftBackend aircraft;
+    private final VirtualStickCommandHolder commandHolder = new VirtualStickCommandHolder();
+    private final CommandWatchdog commandWatchdog = new CommandWatchdog();
+    private final CommandLatencyTracker latencyTracker = new CommandLatencyTracker();
+    private final TrajectoryBuffer trajectory = new TrajectoryBuffer(TrajectoryBuffer.DEFAULT_CAPACITY);
+    private final float[] trajectorySample = new float[4];
+    private final LocalProjection localProjection = new LocalProjection();
+    private final PositionHoldController positionHold = new PositionHoldController(localProjection);
+    private final float[] localPosition = new float[2];
+    private final float[] holdOutput = new float[4]; // state callback thread only
+    private volatile HoldSetpoint holdSetpoint = null;
+    private volatile SetpointPipeline setpointPipeline = SetpointPipeline.createDefault();
+    private final float[] setpoint = new float[SetpointPipeline.AXES];
+    private volatile FlightRecorder flightRecorder = null;
+
+    private final AircraftBackend.ResultCallback completionCallback = new AircraftBackend.ResultCallback() {
+        @Override
+        public void onResult(AircraftError error) {
+            latencyTracker.onCompletion(error, System.nanoTime());
+
+            // only failures are recorded, successes at the loop rate would flood the recorder
+            FlightRecorder recorder = flightRecorder;
+            if (null != error && null != recorder) {
+                recorder.recordSdkResult(FlightRecorder.OP_VIRTUAL_STICK, error.code);
+            }
+        }
+    };
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    public VirtualStickController(AircraftBackend aircraft) {
+        this.aircraft = aircraft;
+    }
+
+    public void setFlightRecorder(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    public SetpointPipeline getSetpointPipeline() {
+        return setpointPipeline;
+    }
+
+    /**
+     * Replaces the filter stages applied to the commands sent by the control loop
+     */
+    public void setSetpointPipeline(SetpointPipeline setpointPipeline) {
+        this.setpointPipeline = setpointPipeline;
+    }
+
+    public CommandWatchdog getCommandWatchdog() {
+        return commandWatchdog;
+    }
+
+    public CommandLatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    /**
+     * @return the trajectory buffer, filled by a single writer which then calls commitTrajectory()
+     */
+    public TrajectoryBuffer getTrajectory() {
+        return trajectory;
+    }
+
+    /**
+     * Splices the batch filled in the trajectory buffer into the played trajectory. The held command becomes hover,
+     * which is what the aircraft does once the trajectory is over.
+     *
+     * @return the number of points which were dropped
+     */
+    public int commitTrajectory() {
+        positionHold.disable();
+        int dropped = trajectory.commitBatch();
+        commandHolder.publishHover();
+        return dropped;
+    }
+
+    /**
+     * Stops the trajectory, if one is playing, and hovers
+     */
+    public void cancelTrajectory() {
+        trajectory.clear();
+        commandHolder.publishHover();
+    }
+
+    /**
+     * @return the projection of GPS positions to the local frame, shared by the position hold and the geofence
+     */
+    public LocalProjection getLocalProjection() {
+        return localProjection;
+    }
+
+    public PositionHoldController getPositionHold() {
+        return positionHold;
+    }
+
+    /**
+     * Holds an altitude above the take off point, the other axes still follow the streamed commands
+     */
+    public void holdAltitude(float altitude) {
+        trajectory.clear();
+        positionHold.holdAltitude(altitude);
+    }
+
+    /**
+     * Holds a position relative to the position hold origin, preempting other commands
+     */
+    public void holdPosition(float east, float north, float altitude) {
+        trajectory.clear();
+        positionHold.holdPosition(east, north, altitude);
+        commandHolder.publishHover();
+    }
+
+    /**
+     * Holds the current position, altitude and heading, preempting other commands
+     */
+    public void holdCurrentPosition() {
+        trajectory.clear();
+        positionHold.holdCurrentPosition();
+        commandHolder.publishHover();
+    }
+
+    /**
+     * Stops the position or altitude hold and hovers
+     */
+    public void releaseHold() {
+        positionHold.disable();
+        commandHolder.publishHover();
+    }
+
+    /**
+     * Updates the geofence and runs the position hold on a new flight controller state. Called from the state
+     * callback thread.
+     *
+     * @return true if the hold has a new output for the control loop to send
+     */
+    public boolean onAircraftState(AircraftState state) {
+        SetpointPipeline pipeline = setpointPipeline;
+        pipeline.setHeading(state.yaw);
+        SetpointPipeline.Geofence geofence = pipeline.getStage(SetpointPipeline.Geofence.class);
+        if (null != geofence) {
+            boolean hasPosition = localProjection.toEnu(state.latitude, state.longitude, localPosition);
+            geofence.setPosition(hasPosition, localPosition[0], localPosition[1], state.altitude);
+        }
+
+        long nowNanos = System.nanoTime();
+        if (!positionHold.update(state, nowNanos, holdOutput)) {
+            return false;
+        }
+        holdSetpoint = new HoldSetpoint(holdOutput, (float) state.yaw, nowNanos);
+        return true;
+    }
+
+    /**
+     * @return the latest published command
+     */
+    public VirtualStickCommand getLatestCommand() {
+        return commandHolder.get();
+    }
+
+    /**
+     * Publishes a streamed command from a ROS twist (linear velocities in m/s, angular in rad/s)
+     */
+    public VirtualStickCommand onTwist(double linearX, double linearY, double linearZ, double angularZ) {
+        trajectory.clear();
+        if (positionHold.getMode() == PositionHoldController.Mode.POSITION) {
+            positionHold.disable();
+        }
+        VirtualStickCommand command = commandHolder.publish(
+                TwistConversion.pitch(linearX, linearY),
+                TwistConversion.roll(linearX, linearY),
+                TwistConversion.yaw(angularZ),
+                TwistConversion.throttle(linearZ),
+                true);
+
+        FlightRecorder recorder = flightRecorder;
+        if (null != recorder) {
+            recorder.recordCommand(command);
+        }
+        return command;
+    }
+
+    /**
+     * Publishes a command which is held until replaced, in virtual stick units
+     */
+    public VirtualStickCommand hold(float pitch, float roll, float yaw, float throttle) {
+        trajectory.clear();
+        positionHold.disable();
+        return commandHolder.publish(pitch, roll, yaw, throttle, false);
+    }
+
+    public VirtualStickCommand hover() {
+        trajectory.clear();
+        positionHold.disable();
+        return commandHolder.publishHover();
+    }
+
+    /**
+     * Sends the latest command to the aircraft. Called by the control loop.
+     */
+    public void sendLatest() {
+        if (!aircraft.isAvailable()) {
+            return;
+        }
+
+        //use the latest command snapshot and send as virtual sticks params, decayed to hover if it is stale.
+
+        long pickupNanos = System.nanoTime();
+        PositionHoldController.Mode holdMode = positionHold.getMode();
+        HoldSetpoint hold = holdSetpoint;
+        boolean holdFresh = holdMode != PositionHoldController.Mode.OFF && null != hold
+                && pickupNanos - hold.updateNanos < HOLD_FEEDBACK_TIMEOUT_MS * NANOS_PER_MILLI;
+        if (holdMode == PositionHoldController.Mode.POSITION && holdFresh) {
+            sendHold(hold, pickupNanos);
+            return;
+        }
+
+        if (trajectory.sample(pickupNanos, trajectorySample)) {
+            // the held hover command stands for the trajectory, it is not streamed so only the SDK stages are tracked
+            VirtualStickCommand command = commandHolder.get();
+            latencyTracker.onPickup(command, pickupNanos);
+            filterAndSend(command, pickupNanos, trajectorySample[0], trajectorySample[1], trajectorySample[2],
+                    trajectorySample[3], 1);
+            return;
+        }
+
+        VirtualStickCommand command = commandHolder.get();
+        latencyTracker.onPickup(command, pickupNanos);
+        float scale = commandWatchdog.scale(command, pickupNanos);
+        float throttle = command.throttle * scale;
+        if (holdMode == PositionHoldController.Mode.ALTITUDE) {
+            // hover vertically when the feedback stops
+            throttle = holdFresh ? hold.throttle : 0f;
+        }
+        filterAndSend(command, pickupNanos, command.pitch * scale, command.roll * scale, command.yaw * scale, throttle, scale);
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    private void filterAndSend(VirtualStickCommand command, long pickupNanos, float pitch, float roll, float yaw,
+                               float throttle, float scale) {
+        float[] axes = setpoint;
+        axes[SetpointPipeline.PITCH] = pitch;
+        axes[SetpointPipeline.ROLL] = roll;
+        axes[SetpointPipeline.YAW] = yaw;
+        axes[SetpointPipeline.THROTTLE] = throttle;
+        setpointPipeline.process(axes, pickupNanos);
+        send(command, pickupNanos, axes[SetpointPipeline.PITCH], axes[SetpointPipeline.ROLL],
+                axes[SetpointPipeline.YAW], axes[SetpointPipeline.THROTTLE], scale);
+    }
+
+    /**
+     * Sends the output of a position hold. Its controllers already limit it, only the geofence applies.
+     */
+    private void sendHold(HoldSetpoint hold, long pickupNanos) {
+        float[] axes = setpoint;
+        axes[SetpointPipeline.PITCH] = hold.pitch;
+        axes[SetpointPipeline.ROLL] = hold.roll;
+        axes[SetpointPipeline.YAW] = hold.yaw;
+        axes[SetpointPipeline.THROTTLE] = hold.throttle;
+        SetpointPipeline.Geofence geofence = setpointPipeline.getStage(SetpointPipeline.Geofence.class);
+        if (null != geofence) {
+            geofence.apply(axes, 0, hold.heading);
+        }
+        VirtualStickCommand command = commandHolder.get();
+        latencyTracker.onPickup(command, pickupNanos);
+        send(command, pickupNanos, axes[SetpointPipeline.PITCH], axes[SetpointPipeline.ROLL],
+                axes[SetpointPipeline.YAW], axes[SetpointPipeline.THROTTLE], 1);
+    }
+
+    private void send(VirtualStickCommand command, long pickupNanos, float pitch, float roll, float yaw, float throttle, float scale) {
+        latencyTracker.onSubmit(command, pickupNanos, System.nanoTime());
+        aircraft.sendVirtualStickData(pitch, roll, yaw, throttle, completionCallback);
+
+        FlightRecorder recorder = flightRecorder;
+        if (null != recorder) {
+            recorder.recordVirtualStickSent(pitch, roll, yaw, throttle, command.sequence, scale);
+        }
+    }
+
+    //***************************
+    // Private nested classes
+    //***************************
+
+    /**
+     * An output of the position hold, in virtual stick units, with the heading it was computed at
+     */
+    private static final class HoldSetpoint {
+
+        final float pitch;
+        final float roll;
+        final float yaw;
+        final float throttle;
+        final float heading;
+        final long updateNanos;
+
+        HoldSetpoint(float[] output, float heading, long updateNanos) {
+            this.pitch = output[0];
+            this.roll = output[1];
+            this.yaw = output[2];
+            this.throttle = output[3];
+            this.heading = heading;
+            this.updateNanos = updateNanos;
+        }
+    }
+}
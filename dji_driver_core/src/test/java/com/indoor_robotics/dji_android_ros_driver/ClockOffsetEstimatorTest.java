@@ -0,0 +1,72 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClockOffsetEstimatorTest {
+
+    private static final long MILLI = 1000000L;
+
+    @Test
+    public void symmetricExchangeGivesTheOffset() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        assertFalse(estimator.hasEstimate());
+
+        // host clock 5 s ahead, 10 ms each way
+        assertTrue(estimator.onEcho(1000 * MILLI, 5010 * MILLI, 1020 * MILLI));
+        assertTrue(estimator.hasEstimate());
+        assertEquals(4000 * MILLI, estimator.getOffsetNanos());
+        assertEquals(20 * MILLI, estimator.getRttNanos());
+        assertEquals(1500 * MILLI, estimator.toLocalNanos(5500 * MILLI));
+    }
+
+    @Test
+    public void usesTheSampleWithTheShortestRoundTrip() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        estimator.onEcho(1000 * MILLI, 5010 * MILLI, 1020 * MILLI);
+        // queued on the way back: the midpoint assumption is off by 40 ms
+        estimator.onEcho(2000 * MILLI, 6010 * MILLI, 2100 * MILLI);
+        assertEquals(4000 * MILLI, estimator.getOffsetNanos());
+        assertEquals(100 * MILLI, estimator.getLastRttNanos());
+        assertEquals(2, estimator.getSamples());
+    }
+
+    @Test
+    public void oldSamplesLeaveTheWindow() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator(2);
+        estimator.onEcho(1000 * MILLI, 5010 * MILLI, 1020 * MILLI);
+        estimator.onEcho(2000 * MILLI, 6020 * MILLI, 2040 * MILLI);
+        estimator.onEcho(3000 * MILLI, 7030 * MILLI, 3040 * MILLI);
+        assertEquals(40 * MILLI, estimator.getRttNanos());
+        assertEquals(4010 * MILLI, estimator.getOffsetNanos());
+    }
+
+    @Test
+    public void rejectsSlowAndInvalidExchanges() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        estimator.setMaxRttMs(100);
+        assertFalse(estimator.onEcho(1000 * MILLI, 5100 * MILLI, 1200 * MILLI));
+        assertFalse(estimator.onEcho(1000 * MILLI, 5000 * MILLI, 900 * MILLI));
+        assertEquals(2, estimator.getRejected());
+        assertFalse(estimator.hasEstimate());
+    }
+
+    @Test
+    public void resetForgetsTheEstimate() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        estimator.onEcho(1000 * MILLI, 5010 * MILLI, 1020 * MILLI);
+        estimator.reset();
+        assertFalse(estimator.hasEstimate());
+
+        estimator.onEcho(2000 * MILLI, 3050 * MILLI, 2100 * MILLI);
+        assertEquals(1000 * MILLI, estimator.getOffsetNanos());
+    }
+}
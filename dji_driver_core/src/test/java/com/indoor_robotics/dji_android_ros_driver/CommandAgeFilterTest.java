@@ -0,0 +1,80 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CommandAgeFilterTest {
+
+    private static final long MILLI = 1000000L;
+    private static final long HOST_AHEAD_NANOS = 5000 * MILLI;
+
+    private final ClockOffsetEstimator clock = new ClockOffsetEstimator();
+    private final CommandAgeFilter filter = new CommandAgeFilter(clock);
+
+    @Test
+    public void commandsAreAcceptedWhileTheClockIsNotSynchronized() {
+        long age = filter.ageNanos(1000 * MILLI, 100000 * MILLI);
+        assertEquals(CommandAgeFilter.UNKNOWN_AGE, age);
+        assertTrue(filter.accept(age));
+        assertEquals(1, filter.getUnknown());
+        assertEquals(0, filter.getAges().getCount());
+    }
+
+    @Test
+    public void unstampedCommandsHaveNoAge() {
+        synchronize();
+        assertEquals(CommandAgeFilter.UNKNOWN_AGE, filter.ageNanos(0, 100000 * MILLI));
+    }
+
+    @Test
+    public void ageIsMeasuredOnThePhoneClock() {
+        synchronize();
+        long phoneNow = 100000 * MILLI;
+
+        // stamped 50 ms ago on the host, whose clock is 5 s ahead
+        long age = filter.ageNanos(phoneNow + HOST_AHEAD_NANOS - 50 * MILLI, phoneNow);
+        assertEquals(50 * MILLI, age);
+        assertTrue(filter.accept(age));
+        assertEquals(1, filter.getAges().getCount());
+    }
+
+    @Test
+    public void oldCommandsAreDropped() {
+        filter.setMaxAgeMs(100);
+        assertTrue(filter.accept(100 * MILLI));
+        assertFalse(filter.accept(101 * MILLI));
+        assertEquals(1, filter.getAccepted());
+        assertEquals(1, filter.getDropped());
+
+        // dropped commands are part of the ages
+        assertEquals(2, filter.getAges().getCount());
+    }
+
+    @Test
+    public void zeroMaximumAgeAcceptsEverything() {
+        filter.setMaxAgeMs(0);
+        assertTrue(filter.accept(60000 * MILLI));
+        assertEquals(0, filter.getDropped());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeMaximumAge() {
+        filter.setMaxAgeMs(-1);
+    }
+
+    /**
+     * One exchange with a symmetric 10 ms round trip to a host whose clock is HOST_AHEAD_NANOS ahead
+     */
+    private void synchronize() {
+        long sent = 1000 * MILLI;
+        assertTrue(clock.onEcho(sent, sent + 5 * MILLI + HOST_AHEAD_NANOS, sent + 10 * MILLI));
+    }
+}
@@ -0,0 +1,79 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandWatchdogTest {
+
+    private static final long MILLI = 1000000L;
+    private static final float EPSILON = 1e-6f;
+
+    private final CommandWatchdog watchdog = new CommandWatchdog();
+
+    @Test
+    public void freshCommandIsApplied() {
+        watchdog.configure(100, 200);
+        VirtualStickCommand command = streamed(1, 0);
+
+        assertEquals(1f, watchdog.scale(command, 0), EPSILON);
+        assertEquals(1f, watchdog.scale(command, 100 * MILLI), EPSILON);
+        assertEquals(0, watchdog.getTrips());
+    }
+
+    @Test
+    public void staleCommandDecaysToHover() {
+        watchdog.configure(100, 200);
+        VirtualStickCommand command = streamed(1, 0);
+
+        assertEquals(0.75f, watchdog.scale(command, 150 * MILLI), EPSILON);
+        assertEquals(0.25f, watchdog.scale(command, 250 * MILLI), EPSILON);
+        assertEquals(0f, watchdog.scale(command, 300 * MILLI), EPSILON);
+        assertEquals(0f, watchdog.scale(command, 10000 * MILLI), EPSILON);
+    }
+
+    @Test
+    public void tripsAreCountedOncePerCommand() {
+        watchdog.configure(100, 200);
+        watchdog.scale(streamed(1, 0), 150 * MILLI);
+        watchdog.scale(streamed(1, 0), 250 * MILLI);
+        assertEquals(1, watchdog.getTrips());
+
+        watchdog.scale(streamed(2, 300 * MILLI), 500 * MILLI);
+        assertEquals(2, watchdog.getTrips());
+    }
+
+    @Test
+    public void zeroDecayStopsImmediately() {
+        watchdog.configure(100, 0);
+        assertEquals(0f, watchdog.scale(streamed(1, 0), 101 * MILLI), EPSILON);
+    }
+
+    @Test
+    public void zeroTimeoutDisablesTheWatchdog() {
+        watchdog.configure(0, 200);
+        assertEquals(1f, watchdog.scale(streamed(1, 0), 10000 * MILLI), EPSILON);
+        assertEquals(0, watchdog.getTrips());
+    }
+
+    @Test
+    public void heldCommandsDoNotDecay() {
+        watchdog.configure(100, 200);
+        VirtualStickCommand held = new VirtualStickCommand(1f, 0f, 0f, 0f, 0, 1, false);
+        assertEquals(1f, watchdog.scale(held, 10000 * MILLI), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeTimes() {
+        watchdog.configure(-1, 200);
+    }
+
+    private static VirtualStickCommand streamed(long sequence, long receivedNanos) {
+        return new VirtualStickCommand(1f, 0f, 0f, 0f, receivedNanos, sequence, true);
+    }
+}
@@ -0,0 +1,62 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventDrivenLoopTest {
+
+    private EventDrivenLoop loop;
+
+    @After
+    public void tearDown() {
+        loop.stop();
+    }
+
+    @Test
+    public void signalRunsTheTask() throws InterruptedException {
+        final CountDownLatch runs = new CountDownLatch(2);
+        loop = new EventDrivenLoop("test_loop", new Runnable() {
+            @Override
+            public void run() {
+                runs.countDown();
+            }
+        });
+        loop.setIntervals(0, 10000);
+        loop.start();
+        // the first run is the keepalive of the start
+        Thread.sleep(50);
+        loop.signal();
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+        assertEquals(0, loop.getStats().getFailures());
+    }
+
+    @Test
+    public void failingRunsAreCountedAndDoNotStopTheLoop() throws InterruptedException {
+        // the fourth run starts once the failures of the first three were counted
+        final CountDownLatch runs = new CountDownLatch(4);
+        loop = new EventDrivenLoop("failing_loop", new Runnable() {
+            @Override
+            public void run() {
+                runs.countDown();
+                throw new IllegalStateException("tick failed");
+            }
+        });
+        loop.setIntervals(0, 5);
+        loop.start();
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+        assertTrue(loop.getStats().getFailures() >= 3);
+    }
+}
@@ -0,0 +1,142 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FastPathEndpointTest {
+
+    private static final long RECEIVE_TIMEOUT_MS = 2000;
+    private static final float EPSILON = 1e-6f;
+
+    private FastPathEndpoint phone;
+    private FastPathEndpoint host;
+
+    @After
+    public void tearDown() {
+        if (null != phone) {
+            phone.stop();
+        }
+        if (null != host) {
+            host.stop();
+        }
+    }
+
+    @Test
+    public void twistPacketRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(FastPathPacket.PACKET_SIZE);
+        FastPathPacket packet = new FastPathPacket();
+        packet.type = FastPathPacket.TYPE_TWIST;
+        packet.session = 12345;
+        packet.sequence = -7;
+        packet.senderMillis = 1500000000123L;
+        packet.linearX = 0.5f;
+        packet.linearY = -1f;
+        packet.linearZ = 0.25f;
+        packet.angularZ = 0.3f;
+        packet.encode(buffer);
+
+        FastPathPacket decoded = new FastPathPacket();
+        assertTrue(decoded.decode(buffer, FastPathPacket.PACKET_SIZE));
+        assertEquals(FastPathPacket.TYPE_TWIST, decoded.type);
+        assertEquals(12345, decoded.session);
+        assertEquals(-7, decoded.sequence);
+        assertEquals(1500000000123L, decoded.senderMillis);
+        assertEquals(0.5f, decoded.linearX, EPSILON);
+        assertEquals(-1f, decoded.linearY, EPSILON);
+        assertEquals(0.25f, decoded.linearZ, EPSILON);
+        assertEquals(0.3f, decoded.angularZ, EPSILON);
+    }
+
+    @Test
+    public void telemetryPacketRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(FastPathPacket.PACKET_SIZE);
+        FastPathPacket packet = new FastPathPacket();
+        packet.type = FastPathPacket.TYPE_TELEMETRY;
+        packet.flags = 5;
+        packet.latitude = 32.0853123;
+        packet.longitude = 34.7818456;
+        packet.altitude = 12.5f;
+        packet.velocityZ = -0.5f;
+        packet.yaw = 179f;
+        packet.encode(buffer);
+
+        FastPathPacket decoded = new FastPathPacket();
+        assertTrue(decoded.decode(buffer, FastPathPacket.PACKET_SIZE));
+        assertEquals(FastPathPacket.TYPE_TELEMETRY, decoded.type);
+        assertEquals(5, decoded.flags);
+        assertEquals(32.0853123, decoded.latitude, 1e-9);
+        assertEquals(34.7818456, decoded.longitude, 1e-9);
+        assertEquals(12.5f, decoded.altitude, EPSILON);
+        assertEquals(-0.5f, decoded.velocityZ, EPSILON);
+        assertEquals(179f, decoded.yaw, EPSILON);
+    }
+
+    @Test
+    public void rejectsMalformedPackets() {
+        ByteBuffer buffer = ByteBuffer.allocate(FastPathPacket.PACKET_SIZE);
+        FastPathPacket packet = new FastPathPacket();
+        packet.type = FastPathPacket.TYPE_TWIST;
+        packet.encode(buffer);
+
+        FastPathPacket decoded = new FastPathPacket();
+        assertFalse(decoded.decode(buffer, FastPathPacket.PACKET_SIZE - 1));
+        buffer.put(2, (byte) (FastPathPacket.VERSION + 1));
+        assertFalse(decoded.decode(buffer, FastPathPacket.PACKET_SIZE));
+    }
+
+    @Test
+    public void twistAndTelemetryOverLoopback() throws Exception {
+        final BlockingQueue<float[]> twists = new LinkedBlockingQueue<float[]>();
+        final BlockingQueue<float[]> telemetry = new LinkedBlockingQueue<float[]>();
+        phone = new FastPathEndpoint(0, new FastPathEndpoint.Listener() {
+            @Override
+            public void onPacket(FastPathPacket packet) {
+                twists.add(new float[]{packet.linearX, packet.angularZ});
+            }
+        });
+        host = new FastPathEndpoint(0, new FastPathEndpoint.Listener() {
+            @Override
+            public void onPacket(FastPathPacket packet) {
+                telemetry.add(new float[]{packet.flags, packet.altitude});
+            }
+        });
+        phone.start();
+        host.start();
+
+        // no peer yet: the phone answers whoever commands it
+        AircraftState state = new AircraftState();
+        state.altitude = 3.5f;
+        assertFalse(phone.sendTelemetry(1, state));
+
+        host.setPeer(new InetSocketAddress(InetAddress.getLoopbackAddress(), phone.getLocalPort()));
+        assertTrue(host.sendTwist(0.5, 0, 0, 0, 0, -0.25));
+        float[] twist = twists.poll(RECEIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(twist);
+        assertEquals(0.5f, twist[0], EPSILON);
+        assertEquals(-0.25f, twist[1], EPSILON);
+
+        assertTrue(phone.sendTelemetry(1, state));
+        float[] received = telemetry.poll(RECEIVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(received);
+        assertEquals(1f, received[0], EPSILON);
+        assertEquals(3.5f, received[1], EPSILON);
+        assertEquals(1, phone.getFilter().getAccepted());
+    }
+}
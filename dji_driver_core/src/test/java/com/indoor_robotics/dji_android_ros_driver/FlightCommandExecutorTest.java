@@ -0,0 +1,120 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlightCommandExecutorTest {
+
+    private static final long RESULT_TIMEOUT_MS = 2000;
+
+    private final BlockingQueue<Long> accepted = new LinkedBlockingQueue<Long>();
+    private final BlockingQueue<FlightCommandResult> results = new LinkedBlockingQueue<FlightCommandResult>();
+    private final FlightCommandExecutor.ResultListener listener = new FlightCommandExecutor.ResultListener() {
+        @Override
+        public void onAccepted(FlightCommand command, long id, long submittedMillis) {
+            accepted.add(id);
+        }
+
+        @Override
+        public void onResult(FlightCommandResult result) {
+            results.add(result);
+        }
+    };
+
+    private SimulatedAircraftBackend aircraft;
+    private FlightCommandExecutor executor;
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        aircraft.shutdown();
+    }
+
+    @Test
+    public void reportsTheIdOnAcceptAndTheResult() throws InterruptedException {
+        aircraft = new SimulatedAircraftBackend(10);
+        executor = new FlightCommandExecutor(aircraft, listener);
+
+        long id = executor.submit(FlightCommand.TAKEOFF);
+        assertEquals(Long.valueOf(id), accepted.poll());
+
+        FlightCommandResult result = results.poll(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(result);
+        assertEquals(id, result.id);
+        assertEquals(FlightCommandResult.Status.SUCCEEDED, result.status);
+        assertFalse(executor.isInFlight(FlightCommand.TAKEOFF));
+    }
+
+    @Test
+    public void collapsesRequestsWhileInFlight() throws InterruptedException {
+        aircraft = new SimulatedAircraftBackend(200);
+        executor = new FlightCommandExecutor(aircraft, listener);
+
+        long id = executor.submit(FlightCommand.LANDING);
+        assertEquals(id, executor.submit(FlightCommand.LANDING));
+        assertEquals(1, accepted.size());
+        assertEquals(1, executor.getDuplicates());
+
+        FlightCommandResult result = results.poll(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(result);
+        assertEquals(1, result.duplicates);
+    }
+
+    @Test
+    public void timesOutWithoutAnotherRequest() throws InterruptedException {
+        aircraft = new SimulatedAircraftBackend(60000);
+        executor = new FlightCommandExecutor(aircraft, listener);
+        executor.setTimeoutMs(50);
+
+        long id = executor.submit(FlightCommand.TAKEOFF);
+        FlightCommandResult result = results.poll(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(result);
+        assertEquals(id, result.id);
+        assertEquals(FlightCommandResult.Status.TIMED_OUT, result.status);
+        assertFalse(executor.isInFlight(FlightCommand.TAKEOFF));
+
+        // a new request starts a new execution
+        assertTrue(executor.submit(FlightCommand.TAKEOFF) > id);
+    }
+
+    @Test
+    public void shutdownAbortsExecutionsInFlight() throws InterruptedException {
+        final AtomicInteger takeoffs = new AtomicInteger();
+        aircraft = new SimulatedAircraftBackend(60000) {
+            @Override
+            public void startTakeoff(ResultCallback callback) {
+                takeoffs.incrementAndGet();
+                super.startTakeoff(callback);
+            }
+        };
+        executor = new FlightCommandExecutor(aircraft, listener);
+
+        long id = executor.submit(FlightCommand.TAKEOFF);
+        executor.shutdown();
+        FlightCommandResult result = results.poll();
+        assertNotNull(result);
+        assertEquals(id, result.id);
+        assertEquals(FlightCommandResult.Status.ABORTED, result.status);
+        assertFalse(executor.isInFlight(FlightCommand.TAKEOFF));
+
+        // after a restart the command is sent again instead of being collapsed into the aborted execution
+        assertTrue(executor.submit(FlightCommand.TAKEOFF) > id);
+        assertEquals(2, takeoffs.get());
+        assertEquals(0, executor.getDuplicates());
+    }
+}
@@ -0,0 +1,125 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderTest {
+
+    private static final double EPSILON = 1e-6;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsAreReadBack() throws IOException {
+        File directory = folder.newFolder("records");
+        FlightRecorder recorder = new FlightRecorder(directory, FlightRecorder.DEFAULT_SEGMENT_SIZE);
+        recorder.recordVirtualStickSent(1.5f, -2f, 30f, 0.5f, 42, 0.75f);
+        recorder.recordSdkResult(FlightRecorder.OP_TAKEOFF, 7);
+        recorder.recordState(3, 32.0853, 34.7818, 12.5, 1, 2, -0.5, 0.1, 0.2, 90);
+        recorder.recordBattery(80, 15.2, -8.1, 31);
+        recorder.close();
+        assertEquals(4, recorder.getRecords());
+
+        FlightRecordReader reader = new FlightRecordReader(directory);
+        assertTrue(reader.next());
+        assertEquals(FlightRecorder.TYPE_VIRTUAL_STICK_SENT, reader.getType());
+        assertEquals(1.5, reader.getValue(0), EPSILON);
+        assertEquals(-2, reader.getValue(1), EPSILON);
+        assertEquals(30, reader.getValue(2), EPSILON);
+        assertEquals(0.5, reader.getValue(3), EPSILON);
+        assertEquals(42, reader.getValue(4), EPSILON);
+        assertEquals(0.75, reader.getValue(5), EPSILON);
+
+        assertTrue(reader.next());
+        assertEquals(FlightRecorder.TYPE_SDK_RESULT, reader.getType());
+        assertEquals(7, reader.getCode());
+        assertEquals(FlightRecorder.OP_TAKEOFF, reader.getValue(0), EPSILON);
+
+        assertTrue(reader.next());
+        assertEquals(FlightRecorder.TYPE_STATE, reader.getType());
+        assertEquals(3, reader.getCode());
+        assertEquals(32.0853, reader.getValue(0), EPSILON);
+        assertEquals(34.7818, reader.getValue(1), EPSILON);
+        assertEquals(90, reader.getValue(8), EPSILON);
+
+        assertTrue(reader.next());
+        assertEquals(FlightRecorder.TYPE_BATTERY, reader.getType());
+        assertEquals(80, reader.getCode());
+        assertEquals(15.2, reader.getValue(0), EPSILON);
+
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void recordsSpanSegmentsInOrder() throws IOException {
+        File directory = folder.newFolder("records");
+        int segmentSize = FlightRecorder.FILE_HEADER_SIZE + 3 * FlightRecorder.RECORD_SIZE;
+        FlightRecorder recorder = new FlightRecorder(directory, segmentSize);
+        for (int i = 0; i < 10; i++) {
+            recorder.recordSdkResult(FlightRecorder.OP_VIRTUAL_STICK, i);
+        }
+        recorder.close();
+        assertEquals(4, FlightRecordReader.listSegments(directory).size());
+
+        FlightRecordReader reader = new FlightRecordReader(directory);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(reader.next());
+            assertEquals(i, reader.getCode());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void oldestSegmentsAreDeleted() throws IOException {
+        File directory = folder.newFolder("records");
+        int segmentSize = FlightRecorder.FILE_HEADER_SIZE + FlightRecorder.RECORD_SIZE;
+        FlightRecorder recorder = new FlightRecorder(directory, segmentSize, 3);
+        for (int i = 0; i < 5; i++) {
+            recorder.recordSdkResult(FlightRecorder.OP_VIRTUAL_STICK, i);
+        }
+        recorder.close();
+        assertEquals(3, FlightRecordReader.listSegments(directory).size());
+        assertEquals(2, recorder.getDeletedSegments());
+
+        // one record per segment, the last three are kept
+        FlightRecordReader reader = new FlightRecordReader(directory);
+        for (int i = 2; i < 5; i++) {
+            assertTrue(reader.next());
+            assertEquals(i, reader.getCode());
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void recordsAreTimestamped() throws IOException {
+        File directory = folder.newFolder("records");
+        FlightRecorder recorder = new FlightRecorder(directory, FlightRecorder.DEFAULT_SEGMENT_SIZE);
+        long before = System.currentTimeMillis();
+        recorder.recordSdkResult(FlightRecorder.OP_LANDING, 0);
+        long after = System.currentTimeMillis();
+        recorder.close();
+
+        FlightRecordReader reader = new FlightRecordReader(directory);
+        assertTrue(reader.next());
+        assertTrue(reader.getWallMillis() >= before && reader.getWallMillis() <= after);
+    }
+
+    @Test(expected = IOException.class)
+    public void readerRejectsAnEmptyDirectory() throws IOException {
+        new FlightRecordReader(folder.newFolder("empty"));
+    }
+}
@@ -0,0 +1,102 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays a file through the source into the ring VideoBridgeNode publishes from
+ */
+public class H264FileFeedSourceTest {
+
+    private static final long TAKE_TIMEOUT_MS = 2000;
+
+    // SPS and PPS with 4 byte start codes, then an IDR slice and two slices with 3 byte start codes
+    private static final byte[][] UNITS = {
+            {0, 0, 0, 1, 0x67, 0x42, 0x00, 0x1e},
+            {0, 0, 0, 1, 0x68, (byte) 0xce, 0x3c, (byte) 0x80},
+            {0, 0, 1, 0x65, (byte) 0x88, (byte) 0x84, 0x21},
+            {0, 0, 1, 0x41, (byte) 0x9a, 0x02},
+            {0, 0, 1, 0x41, (byte) 0x9a, 0x04, 0x7f},
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deliversOneNalUnitPerFrame() throws Exception {
+        final H264FrameRing ring = new H264FrameRing(16, 1024, 8);
+        H264FileFeedSource source = new H264FileFeedSource(writeStream(), 1000, false);
+        assertTrue(source.start(new VideoFrameSink() {
+            @Override
+            public void onFrame(byte[] data, int offset, int length) {
+                ring.offer(data, offset, length);
+            }
+        }));
+
+        try {
+            for (byte[] unit : UNITS) {
+                int slot = ring.take(TAKE_TIMEOUT_MS);
+                assertTrue(slot >= 0);
+                byte[] frame = new byte[ring.getLength(slot)];
+                ByteBuffer buffer = ring.getBuffer(slot).duplicate();
+                buffer.flip();
+                buffer.get(frame);
+                ring.release(slot);
+                assertArrayEquals(unit, frame);
+            }
+            assertEquals(-1, ring.take(100));
+            assertEquals(0, ring.getDropped());
+        }
+        finally {
+            source.stop();
+        }
+    }
+
+    @Test
+    public void missingFileIsNotAvailable() {
+        H264FileFeedSource source = new H264FileFeedSource(new File(folder.getRoot(), "missing.h264"), 30, false);
+        assertFalse(source.start(new VideoFrameSink() {
+            @Override
+            public void onFrame(byte[] data, int offset, int length) {
+            }
+        }));
+    }
+
+    @Test
+    public void findsStartCodes() {
+        byte[] stream = {0, 0, 0, 1, 0x67, 0, 0, 1, 0x68};
+        assertEquals(4, H264FileFeedSource.findNextNalStart(stream, 0, stream.length));
+        assertEquals(8, H264FileFeedSource.findNextNalStart(stream, 4, stream.length));
+        assertEquals(-1, H264FileFeedSource.findNextNalStart(stream, 8, stream.length));
+    }
+
+    private File writeStream() throws IOException {
+        File file = folder.newFile("feed.h264");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (byte[] unit : UNITS) {
+                out.write(unit);
+            }
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    }
+}
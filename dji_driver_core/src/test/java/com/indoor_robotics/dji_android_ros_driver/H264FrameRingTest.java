@@ -0,0 +1,112 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class H264FrameRingTest {
+
+    @Test
+    public void framesAreTakenInOrder() throws InterruptedException {
+        H264FrameRing ring = new H264FrameRing(4, 16, 2);
+        assertTrue(ring.offer(frame(1), 0, 3));
+        assertTrue(ring.offer(frame(2), 0, 3));
+        assertEquals(2, ring.getDepth());
+
+        assertEquals(1, takeFrame(ring));
+        assertEquals(2, takeFrame(ring));
+        assertEquals(-1, ring.take(0));
+        assertEquals(0, ring.getDropped());
+    }
+
+    @Test
+    public void slowConsumerDropsTheOldestFrame() throws InterruptedException {
+        H264FrameRing ring = new H264FrameRing(4, 16, 2);
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(ring.offer(frame(i), 0, 3));
+        }
+
+        assertEquals(1, ring.getDropped());
+        assertEquals(2, ring.getMaxDepth());
+        assertEquals(2, takeFrame(ring));
+        assertEquals(3, takeFrame(ring));
+    }
+
+    @Test
+    public void framesAreBlockedWhileTheConsumerHoldsEverySlot() throws InterruptedException {
+        H264FrameRing ring = new H264FrameRing(3, 16, 1);
+        int[] held = new int[3];
+        for (int i = 0; i < held.length; i++) {
+            assertTrue(ring.offer(frame(i), 0, 3));
+            held[i] = ring.take(0);
+        }
+
+        // the held slots are never overwritten
+        assertFalse(ring.offer(frame(9), 0, 3));
+        assertEquals(1, ring.getBlocked());
+        assertEquals(0, ring.getDropped());
+        for (int i = 0; i < held.length; i++) {
+            assertEquals(i, ring.getBuffer(held[i]).get(0));
+        }
+
+        ring.release(held[0]);
+        assertTrue(ring.offer(frame(9), 0, 3));
+        assertEquals(9, takeFrame(ring));
+    }
+
+    @Test
+    public void queuedFrameIsReplacedWhenNoSlotIsFree() throws InterruptedException {
+        H264FrameRing ring = new H264FrameRing(3, 16, 2);
+        assertTrue(ring.offer(frame(1), 0, 3));
+        int held = ring.take(0);
+        assertTrue(ring.offer(frame(2), 0, 3));
+        assertTrue(ring.offer(frame(3), 0, 3));
+
+        // slots: one held, two queued, the oldest queued frame makes room
+        assertTrue(ring.offer(frame(4), 0, 3));
+        assertEquals(1, ring.getDropped());
+        assertEquals(0, ring.getBlocked());
+        assertEquals(1, ring.getBuffer(held).get(0));
+        assertEquals(3, takeFrame(ring));
+        assertEquals(4, takeFrame(ring));
+    }
+
+    @Test
+    public void oversizedFramesAreDropped() {
+        H264FrameRing ring = new H264FrameRing(4, 2, 2);
+        assertFalse(ring.offer(frame(1), 0, 3));
+        assertEquals(1, ring.getOversized());
+        assertEquals(1, ring.getOffered());
+        assertEquals(0, ring.getDepth());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMoreQueuedFramesThanSlots() {
+        new H264FrameRing(4, 16, 4);
+    }
+
+    private static byte[] frame(int id) {
+        return new byte[]{(byte) id, 0, 0};
+    }
+
+    /**
+     * Takes a frame and releases its slot
+     *
+     * @return the id of the frame
+     */
+    private static int takeFrame(H264FrameRing ring) throws InterruptedException {
+        int slot = ring.take(0);
+        assertTrue(slot >= 0);
+        assertEquals(3, ring.getLength(slot));
+        int id = ring.getBuffer(slot).get(0);
+        ring.release(slot);
+        return id;
+    }
+}
@@ -0,0 +1,87 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final long MICRO = 1000L;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        assertEquals(0, histogram.getPercentileMicros(50));
+        LatencyHistogram.Interval interval = histogram.newInterval();
+        interval.update();
+        assertEquals(0, interval.getCount());
+        assertEquals(0, interval.getPercentileMicros(99));
+    }
+
+    @Test
+    public void smallValuesArePercentilesOfTheSamples() {
+        for (int micros = 1; micros <= 10; micros++) {
+            histogram.record(micros * MICRO);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(1, histogram.getPercentileMicros(0));
+        assertEquals(5, histogram.getPercentileMicros(50));
+        assertEquals(9, histogram.getPercentileMicros(90));
+        assertEquals(10, histogram.getPercentileMicros(100));
+        assertEquals(10, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void bucketsAreWithinASixteenthOfTheValue() {
+        LatencyHistogram.Interval interval = histogram.newInterval();
+        for (long micros = 32; micros < 100000000L; micros = micros * 5 / 4 + 1) {
+            histogram.record(micros * MICRO);
+            interval.update();
+
+            // the interval is not capped by the maximum, it reports the top of the bucket
+            long reported = interval.getPercentileMicros(50);
+            assertTrue(micros + " reported as " + reported, reported >= micros && reported <= micros + micros / 16);
+        }
+    }
+
+    @Test
+    public void percentileIsCappedByTheMaximum() {
+        histogram.record(1000 * MICRO);
+        assertEquals(1000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void negativeAndHugeValuesAreClamped() {
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        // values beyond the range are reported as the top of the last bucket, about 2 minutes
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(134217727L, histogram.getPercentileMicros(100));
+        assertEquals(Long.MAX_VALUE / MICRO, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void intervalHoldsTheSamplesSinceItsPreviousUpdate() {
+        LatencyHistogram.Interval interval = histogram.newInterval();
+        histogram.record(3 * MICRO);
+        interval.update();
+        assertEquals(1, interval.getCount());
+        assertEquals(3, interval.getPercentileMicros(50));
+
+        histogram.record(7 * MICRO);
+        histogram.record(8 * MICRO);
+        interval.update();
+        assertEquals(2, interval.getCount());
+        assertEquals(7, interval.getPercentileMicros(50));
+        assertEquals(3, histogram.getCount());
+    }
+}
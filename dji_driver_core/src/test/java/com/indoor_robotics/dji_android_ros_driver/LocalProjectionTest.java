@@ -0,0 +1,79 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocalProjectionTest {
+
+    private static final double ORIGIN_LATITUDE = 32.0853;
+    private static final double ORIGIN_LONGITUDE = 34.7818;
+
+    private final LocalProjection projection = new LocalProjection();
+    private final float[] local = new float[2];
+    private final double[] geodetic = new double[2];
+
+    @Test
+    public void nothingIsConvertedWithoutAnOrigin() {
+        assertFalse(projection.hasOrigin());
+        assertTrue(Double.isNaN(projection.getOriginLatitude()));
+
+        local[0] = 5f;
+        assertFalse(projection.toEnu(ORIGIN_LATITUDE, ORIGIN_LONGITUDE, local));
+        assertEquals(0f, local[0], 0f);
+        assertFalse(projection.toGeodetic(1, 1, geodetic));
+        assertTrue(Double.isNaN(geodetic[0]));
+    }
+
+    @Test
+    public void metersPerDegreeAreThoseOfTheEllipsoid() {
+        // at the equator a degree of latitude is 110574 m and a degree of longitude 111319 m
+        projection.setOrigin(0, 0);
+        assertTrue(projection.toEnu(0.01, 0.01, local));
+        assertEquals(1113.19, local[0], 0.01);
+        assertEquals(1105.74, local[1], 0.01);
+
+        // a degree of longitude shrinks with the cosine of the latitude
+        projection.setOrigin(60, 0);
+        projection.toEnu(60, 0.01, local);
+        assertEquals(558.00, local[0], 0.01);
+    }
+
+    @Test
+    public void originIsAtZero() {
+        projection.setOrigin(ORIGIN_LATITUDE, ORIGIN_LONGITUDE);
+        assertTrue(projection.toEnu(ORIGIN_LATITUDE, ORIGIN_LONGITUDE, local));
+        assertEquals(0f, local[0], 0f);
+        assertEquals(0f, local[1], 0f);
+    }
+
+    @Test
+    public void conversionsRoundTrip() {
+        projection.setOrigin(ORIGIN_LATITUDE, ORIGIN_LONGITUDE);
+        assertTrue(projection.toGeodetic(-350.5, 1200.25, geodetic));
+        assertTrue(projection.toEnu(geodetic[0], geodetic[1], local));
+        assertEquals(-350.5, local[0], 1e-3);
+        assertEquals(1200.25, local[1], 1e-3);
+    }
+
+    @Test
+    public void unknownPositionIsNotConverted() {
+        projection.setOrigin(ORIGIN_LATITUDE, ORIGIN_LONGITUDE);
+        assertFalse(projection.toEnu(Double.NaN, ORIGIN_LONGITUDE, local));
+
+        projection.clearOrigin();
+        assertFalse(projection.hasOrigin());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownOrigin() {
+        projection.setOrigin(Double.NaN, ORIGIN_LONGITUDE);
+    }
+}
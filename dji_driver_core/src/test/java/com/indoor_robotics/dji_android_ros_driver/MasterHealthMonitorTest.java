@@ -0,0 +1,195 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MasterHealthMonitorTest {
+
+    private static final URI PRIMARY = URI.create("http://primary:11311");
+    private static final URI SECONDARY = URI.create("http://secondary:11311");
+    private static final URI TERTIARY = URI.create("http://tertiary:11311");
+
+    private final Set<URI> reachable = Collections.synchronizedSet(new HashSet<URI>());
+    private final List<URI> probed = Collections.synchronizedList(new ArrayList<URI>());
+    private final List<String> events = new ArrayList<String>();
+
+    private final MasterHealthMonitor.Prober prober = new MasterHealthMonitor.Prober() {
+        @Override
+        public void probe(URI masterUri) throws Exception {
+            probed.add(masterUri);
+            if (!reachable.contains(masterUri)) {
+                throw new java.io.IOException("unreachable");
+            }
+        }
+    };
+
+    private final MasterHealthMonitor.Listener listener = new MasterHealthMonitor.Listener() {
+        @Override
+        public void onHealthChange(MasterHealthMonitor.Health health, URI masterUri) {
+            events.add(health + " " + masterUri.getHost());
+        }
+
+        @Override
+        public void onMasterChange(URI previousUri, URI currentUri) {
+            events.add("change " + previousUri.getHost() + " " + currentUri.getHost());
+        }
+
+        @Override
+        public void onMasterRecovered(URI masterUri) {
+            events.add("recovered " + masterUri.getHost());
+        }
+    };
+
+    private final MasterHealthMonitor monitor = new MasterHealthMonitor(
+            Arrays.asList(PRIMARY, SECONDARY, TERTIARY), prober, listener);
+
+    @Test
+    public void answeringMasterIsHealthy() {
+        reachable.add(PRIMARY);
+        assertEquals(MasterHealthMonitor.Health.UNKNOWN, monitor.getHealth());
+
+        monitor.probeOnce();
+        assertEquals(MasterHealthMonitor.Health.HEALTHY, monitor.getHealth());
+        assertTrue(monitor.isConnected());
+        assertEquals(1, monitor.getRttMicros().size());
+        assertEquals(Arrays.asList("HEALTHY primary"), events);
+    }
+
+    @Test
+    public void slowMasterIsDegradedButConnected() {
+        MasterHealthMonitor slow = new MasterHealthMonitor(Arrays.asList(PRIMARY), new MasterHealthMonitor.Prober() {
+            @Override
+            public void probe(URI masterUri) throws Exception {
+                Thread.sleep(5);
+            }
+        }, listener);
+        slow.setThresholds(MasterHealthMonitor.DEFAULT_FAILURES_TO_DOWN, 1);
+
+        slow.probeOnce();
+        assertEquals(MasterHealthMonitor.Health.DEGRADED, slow.getHealth());
+        assertTrue(slow.isConnected());
+    }
+
+    @Test
+    public void masterIsDownAfterConsecutiveFailures() {
+        monitor.setThresholds(3, MasterHealthMonitor.DEFAULT_DEGRADED_RTT_MS);
+        reachable.add(PRIMARY);
+        monitor.probeOnce();
+        reachable.clear();
+
+        monitor.probeOnce();
+        monitor.probeOnce();
+        assertEquals(MasterHealthMonitor.Health.DEGRADED, monitor.getHealth());
+        assertFalse(monitor.isConnected());
+
+        monitor.probeOnce();
+        assertEquals(MasterHealthMonitor.Health.DOWN, monitor.getHealth());
+        assertEquals(3, monitor.getFailures());
+        assertEquals(Arrays.asList("HEALTHY primary", "DEGRADED primary", "DOWN primary"), events);
+    }
+
+    @Test
+    public void failoverProbesTheMastersInOrderOfPreference() {
+        reachable.add(TERTIARY);
+        failUntilDown();
+        probed.clear();
+        events.clear();
+
+        monitor.probeOnce();
+        monitor.probeOnce();
+        monitor.probeOnce();
+        assertEquals(Arrays.asList(PRIMARY, SECONDARY, TERTIARY), probed);
+        assertEquals(TERTIARY, monitor.getCurrentMasterUri());
+        assertEquals(MasterHealthMonitor.Health.HEALTHY, monitor.getHealth());
+        assertEquals(1, monitor.getFailovers());
+        assertEquals(Arrays.asList("HEALTHY tertiary", "change primary tertiary"), events);
+
+        // the monitor stays on the master which answered, even once the preferred one is back
+        reachable.add(PRIMARY);
+        probed.clear();
+        monitor.probeOnce();
+        assertEquals(Arrays.asList(TERTIARY), probed);
+    }
+
+    @Test
+    public void candidatesAreProbedAgainFromTheStart() {
+        failUntilDown();
+        for (int i = 0; i < 4; i++) {
+            monitor.probeOnce();
+        }
+        assertEquals(MasterHealthMonitor.Health.DOWN, monitor.getHealth());
+        assertEquals(Arrays.asList(PRIMARY, SECONDARY, TERTIARY, PRIMARY),
+                probed.subList(probed.size() - 4, probed.size()));
+    }
+
+    @Test
+    public void restartedMasterIsReportedAsRecovered() {
+        failUntilDown();
+        events.clear();
+
+        reachable.add(PRIMARY);
+        monitor.probeOnce();
+        assertEquals(PRIMARY, monitor.getCurrentMasterUri());
+        assertEquals(1, monitor.getRecoveries());
+        assertEquals(0, monitor.getFailovers());
+        assertEquals(Arrays.asList("HEALTHY primary", "recovered primary"), events);
+    }
+
+    @Test
+    public void probesRunOnTheThreadOfTheMonitor() throws InterruptedException {
+        final CountDownLatch probes = new CountDownLatch(2);
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        MasterHealthMonitor threaded = new MasterHealthMonitor(Arrays.asList(PRIMARY), new MasterHealthMonitor.Prober() {
+            @Override
+            public void probe(URI masterUri) throws Exception {
+                threads.add(Thread.currentThread());
+                probes.countDown();
+            }
+        }, listener);
+        threaded.setIntervals(10, 10);
+
+        threaded.start();
+        try {
+            assertTrue(probes.await(2, TimeUnit.SECONDS));
+        }
+        finally {
+            threaded.stop();
+        }
+        assertFalse(threads.contains(Thread.currentThread()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyMasterList() {
+        new MasterHealthMonitor(new ArrayList<URI>(), prober, listener);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAHealthyIntervalShorterThanTheDegradedOne() {
+        monitor.setIntervals(100, 500);
+    }
+
+    private void failUntilDown() {
+        for (int i = 0; i < MasterHealthMonitor.DEFAULT_FAILURES_TO_DOWN; i++) {
+            monitor.probeOnce();
+        }
+        assertEquals(MasterHealthMonitor.Health.DOWN, monitor.getHealth());
+    }
+}
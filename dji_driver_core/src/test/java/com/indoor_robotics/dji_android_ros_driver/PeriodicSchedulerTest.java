@@ -0,0 +1,135 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PeriodicSchedulerTest {
+
+    private final PeriodicScheduler scheduler = new PeriodicScheduler("test");
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void runsTasksAtTheirRate() throws InterruptedException {
+        final CountDownLatch runs = new CountDownLatch(10);
+        PeriodicScheduler.ScheduledTask task = scheduler.scheduleAtRate("fast",
+                PeriodicScheduler.Priority.CONTROL, 100, new Runnable() {
+                    @Override
+                    public void run() {
+                        runs.countDown();
+                    }
+                });
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+        assertEquals(10000000L, task.getPeriodNanos());
+        assertTrue(task.getStats().getTicks() >= 10);
+    }
+
+    @Test
+    public void failingRunsAreCountedAndDoNotStopTheTask() throws InterruptedException {
+        // the fourth run starts once the failures of the first three were counted
+        final CountDownLatch runs = new CountDownLatch(4);
+        PeriodicScheduler.ScheduledTask task = scheduler.scheduleAtFixedRate("failing",
+                PeriodicScheduler.Priority.TELEMETRY, 0, 5, new Runnable() {
+                    @Override
+                    public void run() {
+                        runs.countDown();
+                        throw new IllegalStateException("tick failed");
+                    }
+                });
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+        assertTrue(task.getFailures() >= 3);
+    }
+
+    @Test
+    public void cancelledTaskStopsRunning() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        PeriodicScheduler.ScheduledTask task = scheduler.scheduleAtFixedRate("cancelled",
+                PeriodicScheduler.Priority.HEALTH, 0, 5, new Runnable() {
+                    @Override
+                    public void run() {
+                        runs.incrementAndGet();
+                    }
+                });
+        Thread.sleep(50);
+        task.cancel();
+        // a run in progress completes
+        Thread.sleep(20);
+        int cancelledRuns = runs.get();
+
+        Thread.sleep(50);
+        assertTrue(task.isCancelled());
+        assertEquals(cancelledRuns, runs.get());
+        assertNull(scheduler.getTask("cancelled"));
+    }
+
+    @Test
+    public void tasksAreFoundByName() {
+        Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        PeriodicScheduler.ScheduledTask control = scheduler.scheduleAtRate("control",
+                PeriodicScheduler.Priority.CONTROL, 10, noop);
+        PeriodicScheduler.ScheduledTask health = scheduler.scheduleAtRate("health",
+                PeriodicScheduler.Priority.HEALTH, 1, noop);
+
+        assertSame(health, scheduler.getTask("health"));
+        assertEquals(2, scheduler.getTasks().size());
+        assertSame(control, scheduler.getTasks().get(0));
+    }
+
+    @Test
+    public void rateChangeTakesEffect() throws InterruptedException {
+        final CountDownLatch runs = new CountDownLatch(5);
+        PeriodicScheduler.ScheduledTask task = scheduler.scheduleAtRate("slow",
+                PeriodicScheduler.Priority.TELEMETRY, 0.1, new Runnable() {
+                    @Override
+                    public void run() {
+                        runs.countDown();
+                    }
+                });
+        task.setRateHz(200);
+
+        assertTrue(runs.await(2, TimeUnit.SECONDS));
+        assertEquals(200, task.getRateHz(), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidRate() {
+        scheduler.scheduleAtRate("invalid", PeriodicScheduler.Priority.CONTROL, 0, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTasksAfterShutdown() {
+        scheduler.shutdown();
+        scheduler.scheduleAtRate("late", PeriodicScheduler.Priority.CONTROL, 10, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+}
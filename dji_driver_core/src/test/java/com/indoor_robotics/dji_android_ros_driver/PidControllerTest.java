@@ -0,0 +1,73 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PidControllerTest {
+
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void proportionalAndDerivativeTerms() {
+        PidController pid = new PidController(2f, 0f, 0.5f, 10f);
+        assertEquals(3f, pid.update(1.5f, 0f, 0.1f), EPSILON);
+        assertEquals(2f, pid.update(1.5f, -2f, 0.1f), EPSILON);
+    }
+
+    @Test
+    public void integralAccumulatesOverTime() {
+        PidController pid = new PidController(0f, 1f, 0f, 10f);
+        assertEquals(1f, pid.update(2f, 0f, 0.5f), EPSILON);
+        assertEquals(2f, pid.update(2f, 0f, 0.5f), EPSILON);
+
+        // no time elapsed, no integration
+        assertEquals(2f, pid.update(2f, 0f, 0f), EPSILON);
+
+        pid.reset();
+        assertEquals(0f, pid.update(2f, 0f, 0f), EPSILON);
+    }
+
+    @Test
+    public void outputIsClampedToTheLimit() {
+        PidController pid = new PidController(100f, 0f, 0f, 2f);
+        assertEquals(2f, pid.update(1f, 0f, 0.1f), EPSILON);
+        assertEquals(-2f, pid.update(-1f, 0f, 0.1f), EPSILON);
+    }
+
+    @Test
+    public void integralDoesNotWindUpBeyondTheLimit() {
+        PidController pid = new PidController(0f, 1f, 0f, 1f);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1f, pid.update(10f, 0f, 1f), EPSILON);
+        }
+
+        // a single opposite step unwinds it, instead of 1000 seconds worth of integral
+        assertEquals(0f, pid.update(-1f, 0f, 1f), EPSILON);
+    }
+
+    @Test
+    public void zeroIntegralGainClearsTheIntegral() {
+        PidController pid = new PidController(0f, 1f, 0f, 10f);
+        pid.update(1f, 0f, 1f);
+        pid.configure(0f, 0f, 0f, 10f);
+        assertEquals(0f, pid.update(1f, 0f, 1f), EPSILON);
+        pid.configure(0f, 1f, 0f, 10f);
+        assertEquals(1f, pid.update(1f, 0f, 1f), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeGains() {
+        new PidController(-1f, 0f, 0f, 1f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroOutputLimit() {
+        new PidController(1f, 0f, 0f, 0f);
+    }
+}
@@ -0,0 +1,135 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionHoldControllerTest {
+
+    private static final double ORIGIN_LATITUDE = 32.0853;
+    private static final double ORIGIN_LONGITUDE = 34.7818;
+    private static final long PERIOD_NANOS = 100000000L;
+    private static final float EPSILON = 1e-3f;
+
+    private final LocalProjection projection = new LocalProjection();
+    private final PositionHoldController controller = new PositionHoldController(projection);
+    private final AircraftState state = new AircraftState();
+    private final float[] out = new float[4];
+
+    @Before
+    public void setUp() {
+        projection.setOrigin(ORIGIN_LATITUDE, ORIGIN_LONGITUDE);
+        state.latitude = ORIGIN_LATITUDE;
+        state.longitude = ORIGIN_LONGITUDE;
+        state.altitude = 10f;
+
+        // proportional only, so the outputs are easy to predict
+        controller.setHorizontalGains(0.5f, 0f, 0f, 2f);
+        controller.setVerticalGains(0.25f, 0f, 0f, 1f);
+        controller.setYawGains(1f, 100f);
+    }
+
+    @Test
+    public void offDoesNotWriteTheOutputs() {
+        out[3] = 42f;
+        assertFalse(controller.update(state, 0, out));
+        assertEquals(PositionHoldController.Mode.OFF, controller.getMode());
+        assertEquals(42f, out[3], EPSILON);
+    }
+
+    @Test
+    public void altitudeHoldOnlyControlsTheThrottle() {
+        controller.holdAltitude(12f);
+        assertTrue(controller.update(state, 0, out));
+        assertEquals(0f, out[0], EPSILON);
+        assertEquals(0f, out[1], EPSILON);
+        assertEquals(0f, out[2], EPSILON);
+        assertEquals(0.5f, out[3], EPSILON);
+
+        // clamped to the maximum vertical speed
+        state.altitude = 0f;
+        controller.update(state, PERIOD_NANOS, out);
+        assertEquals(1f, out[3], EPSILON);
+    }
+
+    @Test
+    public void positionErrorIsRotatedIntoTheBodyFrame() {
+        // the target is 2 m north of the aircraft
+        controller.holdPosition(0f, 2f, 10f);
+
+        // facing north the aircraft moves forward (roll axis)
+        state.yaw = 0;
+        controller.update(state, 0, out);
+        assertEquals(0f, out[0], EPSILON);
+        assertEquals(1f, out[1], EPSILON);
+
+        // facing east north is to the left (pitch axis)
+        controller.holdPosition(0f, 2f, 10f);
+        state.yaw = 90;
+        controller.update(state, PERIOD_NANOS, out);
+        assertEquals(1f, out[0], EPSILON);
+        assertEquals(0f, out[1], EPSILON);
+    }
+
+    @Test
+    public void headingIsHeldAcrossTheWrap() {
+        state.yaw = 170;
+        controller.holdPosition(0f, 0f, 10f);
+        controller.update(state, 0, out);
+        assertEquals(0f, out[2], EPSILON);
+
+        // 20 degrees past the held heading, turning back the short way
+        state.yaw = -170;
+        controller.update(state, PERIOD_NANOS, out);
+        assertEquals(-20f, out[2], EPSILON);
+    }
+
+    @Test
+    public void currentPositionIsCaptured() {
+        state.latitude = ORIGIN_LATITUDE + 0.0001;
+        state.yaw = 45;
+        controller.holdCurrentPosition();
+        controller.update(state, 0, out);
+        assertEquals(PositionHoldController.Mode.POSITION, controller.getMode());
+        assertEquals(0f, out[0], EPSILON);
+        assertEquals(0f, out[1], EPSILON);
+        assertEquals(0f, out[2], EPSILON);
+        assertEquals(0f, out[3], EPSILON);
+
+        // drifting 1 m down is corrected
+        state.altitude = 9f;
+        controller.update(state, PERIOD_NANOS, out);
+        assertEquals(0.25f, out[3], EPSILON);
+    }
+
+    @Test
+    public void firstHoldSetsTheOrigin() {
+        projection.clearOrigin();
+        state.latitude = 1.0;
+        state.longitude = 2.0;
+        controller.holdAltitude(10f);
+        controller.update(state, 0, out);
+
+        assertTrue(projection.hasOrigin());
+        assertEquals(1.0, projection.getOriginLatitude(), 1e-12);
+        assertEquals(2.0, projection.getOriginLongitude(), 1e-12);
+    }
+
+    @Test
+    public void horizontalOutputsAreZeroWithoutAPosition() {
+        state.latitude = Double.NaN;
+        state.longitude = Double.NaN;
+        controller.holdPosition(5f, 5f, 10f);
+        controller.update(state, 0, out);
+        assertEquals(0f, out[0], EPSILON);
+        assertEquals(0f, out[1], EPSILON);
+    }
+}
@@ -0,0 +1,71 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SequenceFilterTest {
+
+    @Test
+    public void acceptsIncreasingSequences() {
+        SequenceFilter filter = new SequenceFilter();
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, 1, 1000, 1010));
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, 2, 1020, 1030));
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, 5, 1040, 1050));
+        assertEquals(3, filter.getAccepted());
+        assertEquals(1, filter.getSessions());
+    }
+
+    @Test
+    public void dropsDuplicatedAndReorderedPackets() {
+        SequenceFilter filter = new SequenceFilter();
+        filter.accept(7, 10, 1000, 1010);
+        assertEquals(SequenceFilter.Result.OUT_OF_ORDER, filter.accept(7, 10, 1000, 1011));
+        assertEquals(SequenceFilter.Result.OUT_OF_ORDER, filter.accept(7, 9, 990, 1012));
+        assertEquals(2, filter.getOutOfOrder());
+    }
+
+    @Test
+    public void survivesSequenceWrapAround() {
+        SequenceFilter filter = new SequenceFilter();
+        filter.accept(7, Integer.MAX_VALUE, 1000, 1010);
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, Integer.MIN_VALUE, 1020, 1030));
+    }
+
+    @Test
+    public void restartedSenderStartsANewSession() {
+        SequenceFilter filter = new SequenceFilter();
+        filter.accept(7, 100, 1000, 1010);
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(8, 1, 1020, 1030));
+        assertEquals(2, filter.getSessions());
+    }
+
+    @Test
+    public void dropsPacketsDelayedBeyondTheMaximumAge() {
+        SequenceFilter filter = new SequenceFilter();
+        filter.setMaxAgeMs(100);
+        // the sender clock is 5 s behind, only the delay above the smallest one counts
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, 1, 1000, 6010));
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, 2, 1020, 6100));
+        assertEquals(SequenceFilter.Result.STALE, filter.accept(7, 3, 1040, 6200));
+        assertEquals(1, filter.getStale());
+    }
+
+    @Test
+    public void zeroMaximumAgeDisablesTheStalenessCheck() {
+        SequenceFilter filter = new SequenceFilter();
+        filter.setMaxAgeMs(0);
+        filter.accept(7, 1, 1000, 1010);
+        assertEquals(SequenceFilter.Result.ACCEPTED, filter.accept(7, 2, 1020, 60000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeMaximumAge() {
+        new SequenceFilter().setMaxAgeMs(-1);
+    }
+}
@@ -0,0 +1,204 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SetpointPipelineTest {
+
+    private static final long START_NANOS = 1000000000L;
+    private static final long PERIOD_NANOS = 100000000L;
+    private static final float EPSILON = 1e-4f;
+
+    private final float[] axes = new float[SetpointPipeline.AXES];
+
+    @Test
+    public void groundFrameIsRotatedByTheHeading() {
+        SetpointPipeline.FrameTransform transform = new SetpointPipeline.FrameTransform();
+        transform.setFrame(SetpointPipeline.Frame.GROUND);
+        SetpointPipeline pipeline = new SetpointPipeline(transform);
+
+        // east at 1 m/s: to the right when facing north, forward when facing east
+        pipeline.setHeading(0);
+        process(pipeline, START_NANOS, 0f, 1f, 0f, 0f);
+        assertEquals(-1f, axes[SetpointPipeline.PITCH], EPSILON);
+        assertEquals(0f, axes[SetpointPipeline.ROLL], EPSILON);
+
+        pipeline.setHeading(90);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 0f, 1f, 0f, 0f);
+        assertEquals(0f, axes[SetpointPipeline.PITCH], EPSILON);
+        assertEquals(1f, axes[SetpointPipeline.ROLL], EPSILON);
+    }
+
+    @Test
+    public void groundFrameWithoutHeadingHovers() {
+        SetpointPipeline.FrameTransform transform = new SetpointPipeline.FrameTransform();
+        transform.setFrame(SetpointPipeline.Frame.GROUND);
+        SetpointPipeline pipeline = new SetpointPipeline(transform);
+
+        process(pipeline, START_NANOS, 1f, 1f, 5f, 0.5f);
+        assertEquals(0f, axes[SetpointPipeline.PITCH], EPSILON);
+        assertEquals(0f, axes[SetpointPipeline.ROLL], EPSILON);
+        assertEquals(5f, axes[SetpointPipeline.YAW], EPSILON);
+        assertEquals(0.5f, axes[SetpointPipeline.THROTTLE], EPSILON);
+    }
+
+    @Test
+    public void bodyFrameIsLeftAsIs() {
+        SetpointPipeline pipeline = new SetpointPipeline(new SetpointPipeline.FrameTransform());
+        pipeline.setHeading(90);
+        process(pipeline, START_NANOS, 1f, 2f, 0f, 0f);
+        assertEquals(1f, axes[SetpointPipeline.PITCH], EPSILON);
+        assertEquals(2f, axes[SetpointPipeline.ROLL], EPSILON);
+    }
+
+    @Test
+    public void deadbandAndClamp() {
+        SetpointPipeline.Deadband deadband = new SetpointPipeline.Deadband();
+        deadband.set(SetpointPipeline.PITCH, -0.1f);
+        SetpointPipeline pipeline = new SetpointPipeline(deadband, new SetpointPipeline.Clamp());
+
+        process(pipeline, START_NANOS, 0.05f, 20f, -200f, Float.NaN);
+        assertEquals(0f, axes[SetpointPipeline.PITCH], EPSILON);
+        assertEquals(SetpointPipeline.MAX_HORIZONTAL_SPEED, axes[SetpointPipeline.ROLL], EPSILON);
+        assertEquals(-SetpointPipeline.MAX_YAW_RATE, axes[SetpointPipeline.YAW], EPSILON);
+        assertEquals(0f, axes[SetpointPipeline.THROTTLE], EPSILON);
+    }
+
+    @Test
+    public void slewLimitRampsFromHover() {
+        SetpointPipeline.SlewLimit slew = new SetpointPipeline.SlewLimit();
+        slew.set(SetpointPipeline.THROTTLE, 1f);
+        SetpointPipeline pipeline = new SetpointPipeline(slew);
+
+        // the first sample after a reset has no elapsed time
+        process(pipeline, START_NANOS, 2f, 0f, 0f, 1f);
+        assertEquals(0f, axes[SetpointPipeline.THROTTLE], EPSILON);
+        assertEquals(2f, axes[SetpointPipeline.PITCH], EPSILON);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 0f, 0f, 0f, 1f);
+        assertEquals(0.1f, axes[SetpointPipeline.THROTTLE], EPSILON);
+        process(pipeline, START_NANOS + 2 * PERIOD_NANOS, 0f, 0f, 0f, -1f);
+        assertEquals(0f, axes[SetpointPipeline.THROTTLE], EPSILON);
+    }
+
+    @Test
+    public void lowPassConvergesWithItsTimeConstant() {
+        SetpointPipeline.LowPass lowPass = new SetpointPipeline.LowPass();
+        // time constant of 0.1 s, so half way per 0.1 s period
+        lowPass.setCutoffHz((float) (1.0 / (2 * Math.PI * 0.1)));
+        SetpointPipeline pipeline = new SetpointPipeline(lowPass);
+
+        process(pipeline, START_NANOS, 1f, 0f, 0f, 0f);
+        assertEquals(0f, axes[SetpointPipeline.PITCH], EPSILON);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 1f, 0f, 0f, 0f);
+        assertEquals(0.5f, axes[SetpointPipeline.PITCH], EPSILON);
+        process(pipeline, START_NANOS + 2 * PERIOD_NANOS, 1f, 0f, 0f, 0f);
+        assertEquals(0.75f, axes[SetpointPipeline.PITCH], EPSILON);
+
+        lowPass.setCutoffHz(0);
+        process(pipeline, START_NANOS + 3 * PERIOD_NANOS, 1f, 0f, 0f, 0f);
+        assertEquals(1f, axes[SetpointPipeline.PITCH], EPSILON);
+    }
+
+    @Test
+    public void gapInTheSamplesRestartsFromHover() {
+        SetpointPipeline.SlewLimit slew = new SetpointPipeline.SlewLimit();
+        slew.set(SetpointPipeline.PITCH, 1f);
+        SetpointPipeline pipeline = new SetpointPipeline(slew);
+
+        process(pipeline, START_NANOS, 1f, 0f, 0f, 0f);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 1f, 0f, 0f, 0f);
+        assertEquals(0.1f, axes[SetpointPipeline.PITCH], EPSILON);
+
+        process(pipeline, START_NANOS + 20 * PERIOD_NANOS, 1f, 0f, 0f, 0f);
+        assertEquals(0f, axes[SetpointPipeline.PITCH], EPSILON);
+    }
+
+    @Test
+    public void defaultPipelineOnlyClamps() {
+        SetpointPipeline pipeline = SetpointPipeline.createDefault();
+        assertNotNull(pipeline.getStage(SetpointPipeline.LowPass.class));
+        assertNull(new SetpointPipeline().getStage(SetpointPipeline.LowPass.class));
+
+        process(pipeline, START_NANOS, 1f, -2f, 30f, 10f);
+        assertEquals(1f, axes[SetpointPipeline.PITCH], EPSILON);
+        assertEquals(-2f, axes[SetpointPipeline.ROLL], EPSILON);
+        assertEquals(30f, axes[SetpointPipeline.YAW], EPSILON);
+        assertEquals(SetpointPipeline.MAX_VERTICAL_SPEED, axes[SetpointPipeline.THROTTLE], EPSILON);
+    }
+
+    @Test
+    public void geofenceSlowsTheClimbNearTheMaximumAltitude() {
+        SetpointPipeline.Geofence geofence = new SetpointPipeline.Geofence();
+        geofence.configure(0, 50, 5);
+        SetpointPipeline pipeline = new SetpointPipeline(geofence);
+
+        geofence.setPosition(false, 0, 0, 47.5f);
+        process(pipeline, START_NANOS, 0f, 0f, 0f, 2f);
+        assertEquals(1f, axes[SetpointPipeline.THROTTLE], EPSILON);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 0f, 0f, 0f, -2f);
+        assertEquals(-2f, axes[SetpointPipeline.THROTTLE], EPSILON);
+
+        geofence.setPosition(false, 0, 0, 55f);
+        process(pipeline, START_NANOS + 2 * PERIOD_NANOS, 0f, 0f, 0f, 2f);
+        assertEquals(0f, axes[SetpointPipeline.THROTTLE], EPSILON);
+    }
+
+    @Test
+    public void geofenceOnlySlowsTheOutwardVelocity() {
+        SetpointPipeline.Geofence geofence = new SetpointPipeline.Geofence();
+        geofence.configure(100, 0, 10);
+        SetpointPipeline pipeline = new SetpointPipeline(geofence);
+        // half way through the margin, east of the origin
+        geofence.setPosition(true, 95, 0, 10);
+
+        // facing east: forward is outward and is halved, backward is untouched
+        pipeline.setHeading(90);
+        process(pipeline, START_NANOS, 0f, 2f, 0f, 0f);
+        assertEquals(1f, axes[SetpointPipeline.ROLL], EPSILON);
+        assertEquals(0f, axes[SetpointPipeline.PITCH], EPSILON);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 0f, -2f, 0f, 0f);
+        assertEquals(-2f, axes[SetpointPipeline.ROLL], EPSILON);
+
+        // facing north: forward runs along the boundary and is untouched
+        pipeline.setHeading(0);
+        process(pipeline, START_NANOS + 2 * PERIOD_NANOS, 0f, 2f, 0f, 0f);
+        assertEquals(2f, axes[SetpointPipeline.ROLL], EPSILON);
+    }
+
+    @Test
+    public void geofenceNeedsPositionAndHeading() {
+        SetpointPipeline.Geofence geofence = new SetpointPipeline.Geofence();
+        geofence.configure(100, 0, 10);
+        SetpointPipeline pipeline = new SetpointPipeline(geofence);
+
+        geofence.setPosition(true, 100, 0, 10);
+        process(pipeline, START_NANOS, 0f, 2f, 0f, 0f);
+        assertEquals(2f, axes[SetpointPipeline.ROLL], EPSILON);
+
+        geofence.setPosition(false, 100, 0, 10);
+        pipeline.setHeading(90);
+        process(pipeline, START_NANOS + PERIOD_NANOS, 0f, 2f, 0f, 0f);
+        assertEquals(2f, axes[SetpointPipeline.ROLL], EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void geofenceRejectsANegativeRadius() {
+        new SetpointPipeline.Geofence().configure(-1, 0, 5);
+    }
+
+    private void process(SetpointPipeline pipeline, long nowNanos, float pitch, float roll, float yaw, float throttle) {
+        axes[SetpointPipeline.PITCH] = pitch;
+        axes[SetpointPipeline.ROLL] = roll;
+        axes[SetpointPipeline.YAW] = yaw;
+        axes[SetpointPipeline.THROTTLE] = throttle;
+        pipeline.process(axes, nowNanos);
+    }
+}
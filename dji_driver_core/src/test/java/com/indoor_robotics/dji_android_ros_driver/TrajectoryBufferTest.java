@@ -0,0 +1,105 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrajectoryBufferTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final float EPSILON = 1e-4f;
+
+    private final float[] out = new float[4];
+
+    @Test
+    public void interpolatesBetweenPoints() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(8);
+        trajectory.beginBatch(0);
+        trajectory.addPoint(0, 0f, 0f, 0f, 0f);
+        trajectory.addPoint(SECOND, 2f, -2f, 4f, 1f);
+        assertEquals(0, trajectory.commitBatch());
+
+        assertTrue(trajectory.sample(SECOND / 4, out));
+        assertEquals(0.5f, out[0], EPSILON);
+        assertEquals(-0.5f, out[1], EPSILON);
+        assertEquals(1f, out[2], EPSILON);
+        assertEquals(0.25f, out[3], EPSILON);
+    }
+
+    @Test
+    public void isOverAfterTheLastPoint() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(8);
+        trajectory.beginBatch(0);
+        trajectory.addPoint(0, 0f, 0f, 0f, 0f);
+        trajectory.addPoint(SECOND, 1f, 0f, 0f, 0f);
+        trajectory.commitBatch();
+
+        assertFalse(trajectory.sample(2 * SECOND, out));
+        assertFalse(trajectory.isActive());
+    }
+
+    @Test
+    public void doesNotPlayBeforeTheFirstPoint() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(8);
+        trajectory.beginBatch(SECOND);
+        trajectory.addPoint(0, 0f, 0f, 0f, 0f);
+        trajectory.addPoint(SECOND, 1f, 0f, 0f, 0f);
+        trajectory.commitBatch();
+
+        assertFalse(trajectory.sample(SECOND / 2, out));
+        assertTrue(trajectory.isActive());
+    }
+
+    @Test
+    public void batchReplacesPointsFromItsFirstPointOn() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(8);
+        trajectory.beginBatch(0);
+        trajectory.addPoint(0, 0f, 0f, 0f, 0f);
+        trajectory.addPoint(SECOND, 1f, 0f, 0f, 0f);
+        trajectory.addPoint(2 * SECOND, 2f, 0f, 0f, 0f);
+        trajectory.commitBatch();
+
+        trajectory.beginBatch(SECOND);
+        trajectory.addPoint(0, -1f, 0f, 0f, 0f);
+        trajectory.addPoint(SECOND, -2f, 0f, 0f, 0f);
+        trajectory.commitBatch();
+
+        assertTrue(trajectory.sample(SECOND / 2, out));
+        assertEquals(-0.5f, out[0], EPSILON);
+        assertTrue(trajectory.sample(3 * SECOND / 2, out));
+        assertEquals(-1.5f, out[0], EPSILON);
+        assertEquals(2, trajectory.getBatches());
+    }
+
+    @Test
+    public void dropsOutOfOrderAndOverflowingPoints() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(2);
+        trajectory.beginBatch(0);
+        assertTrue(trajectory.addPoint(SECOND, 0f, 0f, 0f, 0f));
+        assertFalse(trajectory.addPoint(SECOND, 0f, 0f, 0f, 0f));
+        assertTrue(trajectory.addPoint(2 * SECOND, 0f, 0f, 0f, 0f));
+        assertFalse(trajectory.addPoint(3 * SECOND, 0f, 0f, 0f, 0f));
+        assertEquals(2, trajectory.commitBatch());
+        assertEquals(2, trajectory.getDroppedPoints());
+    }
+
+    @Test
+    public void clearStopsPlayback() {
+        TrajectoryBuffer trajectory = new TrajectoryBuffer(8);
+        trajectory.beginBatch(0);
+        trajectory.addPoint(0, 0f, 0f, 0f, 0f);
+        trajectory.addPoint(SECOND, 1f, 0f, 0f, 0f);
+        trajectory.commitBatch();
+
+        trajectory.clear();
+        assertFalse(trajectory.isActive());
+        assertFalse(trajectory.sample(SECOND / 2, out));
+    }
+}
@@ -0,0 +1,60 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.relay;
+
+import org.ros.message.MessageListener;
+import org.ros.namespace.GraphName;
+import org.ros.node.AbstractNodeMain;
+import org.ros.node.ConnectedNode;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+
+/**
+ * Runs on the ROS host and answers the clock pings of the driver, so the phone can estimate the offset between the
+ * two clocks and the age of the stamped commands. Each ping is echoed at once with the host time in the header
+ * stamp and the ping stamp in time_ref; the sequence number and source are kept.
+ *
+ * The host time is the node's ROS time, the clock the commands are stamped with.
+ */
+public class ClockEchoNode extends AbstractNodeMain {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final String NODE_NAME = "dji_clock_echo";
+    private static final String PING_TOPIC_NAME = "/dji/clock/ping";
+    private static final String ECHO_TOPIC_NAME = "/dji/clock/echo";
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    @Override
+    public GraphName getDefaultNodeName() {
+        return GraphName.of(NODE_NAME);
+    }
+
+    @Override
+    public void onStart(final ConnectedNode connectedNode) {
+        final Publisher<sensor_msgs.TimeReference> pubEcho =
+                connectedNode.newPublisher(ECHO_TOPIC_NAME, sensor_msgs.TimeReference._TYPE);
+
+        Subscriber<sensor_msgs.TimeReference> subPing =
+                connectedNode.newSubscriber(PING_TOPIC_NAME, sensor_msgs.TimeReference._TYPE);
+        subPing.addMessageListener(new MessageListener<sensor_msgs.TimeReference>() {
+            @Override
+            public void onNewMessage(sensor_msgs.TimeReference ping) {
+                sensor_msgs.TimeReference echo = pubEcho.newMessage();
+                echo.getHeader().setSeq(ping.getHeader().getSeq());
+                echo.getHeader().setStamp(connectedNode.getCurrentTime());
+                echo.setTimeRef(ping.getHeader().getStamp());
+                echo.setSource(ping.getSource());
+                pubEcho.publish(echo);
+            }
+        });
+    }
+}
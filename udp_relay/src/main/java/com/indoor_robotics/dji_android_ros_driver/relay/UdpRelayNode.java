@@ -0,0 +1,180 @@
+/******************************************************************************
+ Copyright (c) 2018, Indoor Robotics
+ All rights reserved.
+ *******************************************************************************/
+
+package com.indoor_robotics.dji_android_ros_driver.relay;
+
+import com.indoor_robotics.dji_android_ros_driver.FastPathEndpoint;
+import com.indoor_robotics.dji_android_ros_driver.FastPathPacket;
+import com.indoor_robotics.dji_android_ros_driver.FrameMath;
+import com.indoor_robotics.dji_android_ros_driver.SequenceFilter;
+
+import org.ros.message.MessageListener;
+import org.ros.namespace.GraphName;
+import org.ros.node.AbstractNodeMain;
+import org.ros.node.ConnectedNode;
+import org.ros.node.Node;
+import org.ros.node.parameter.ParameterTree;
+import org.ros.node.topic.Publisher;
+import org.ros.node.topic.Subscriber;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Runs on the ROS host and bridges the UDP fast path of the driver to normal topics: twists received on the
+ * cmd_vel topic are sent to the phone as datagrams, and the telemetry datagrams of the phone are published as
+ * odometry, GPS fix and flight state flags.
+ *
+ * Parameters: ~phone_host (required), ~port (the fast path port of the driver), ~local_port (0 for any),
+ * ~cmd_vel_topic, ~max_age_ms (of the received telemetry).
+ * When the driver also subscribes to the same cmd_vel topic, it ignores the twists it receives over TCPROS for
+ * ~fast_path/hold_off_ms after each datagram, so a backlog released after a stall cannot override fresher commands;
+ * TCPROS only takes over when the datagrams stop. To use the fast path alone, point the driver's ~cmd_vel_topic to
+ * another topic.
+ */
+public class UdpRelayNode extends AbstractNodeMain {
+
+    //***************************
+    // Setting up constants
+    //***************************
+
+    private static final String NODE_NAME = "dji_udp_relay";
+    private static final String CMD_VEL_TOPIC_NAME = "/cmd_vel";
+    private static final String ODOMETRY_TOPIC_NAME = "/dji/fast/odom";
+    private static final String NAV_SAT_FIX_TOPIC_NAME = "/dji/fast/gps";
+    private static final String FLIGHT_STATE_TOPIC_NAME = "/dji/fast/flight_state";
+    private static final String ODOM_FRAME_ID = "odom";
+    private static final String BASE_FRAME_ID = "base_link";
+    private static final String GPS_FRAME_ID = "gps";
+
+    //***************************
+    // Private Fields
+    //***************************
+
+    private FastPathEndpoint endpoint = null;
+
+    private Publisher<nav_msgs.Odometry> pubOdometry;
+    private Publisher<sensor_msgs.NavSatFix> pubNavSatFix;
+    private Publisher<std_msgs.UInt8> pubFlightState;
+
+    // receive thread only
+    private final double[] quaternion = new double[4];
+    private final double[] velocityEnu = new double[3];
+    private final double[] velocityBody = new double[3];
+
+    //***************************
+    // Public Methods
+    //***************************
+
+    @Override
+    public GraphName getDefaultNodeName() {
+        return GraphName.of(NODE_NAME);
+    }
+
+    @Override
+    public void onStart(final ConnectedNode connectedNode) {
+        ParameterTree params = connectedNode.getParameterTree();
+        String phoneHost = params.getString("~phone_host", "");
+        int port = params.getInteger("~port", FastPathEndpoint.DEFAULT_PORT);
+        int localPort = params.getInteger("~local_port", 0);
+        if (phoneHost.isEmpty()) {
+            connectedNode.getLog().error("The ~phone_host parameter is required");
+            connectedNode.shutdown();
+            return;
+        }
+
+        pubOdometry = connectedNode.newPublisher(ODOMETRY_TOPIC_NAME, nav_msgs.Odometry._TYPE);
+        pubNavSatFix = connectedNode.newPublisher(NAV_SAT_FIX_TOPIC_NAME, sensor_msgs.NavSatFix._TYPE);
+        pubFlightState = connectedNode.newPublisher(FLIGHT_STATE_TOPIC_NAME, std_msgs.UInt8._TYPE);
+
+        endpoint = new FastPathEndpoint(localPort, new FastPathEndpoint.Listener() {
+            @Override
+            public void onPacket(FastPathPacket packet) {
+                if (packet.type == FastPathPacket.TYPE_TELEMETRY) {
+                    publishTelemetry(packet);
+                }
+            }
+        });
+        endpoint.setPeer(new InetSocketAddress(phoneHost, port));
+        endpoint.getFilter().setMaxAgeMs(params.getInteger("~max_age_ms", SequenceFilter.DEFAULT_MAX_AGE_MS));
+        try {
+            endpoint.start();
+        }
+        catch (IOException e) {
+            connectedNode.getLog().error("Cannot open the UDP socket", e);
+            connectedNode.shutdown();
+            return;
+        }
+        connectedNode.getLog().info("Relaying to " + phoneHost + ":" + port + " from port " + endpoint.getLocalPort());
+
+        Subscriber<geometry_msgs.Twist> subCmdvel =
+                connectedNode.newSubscriber(params.getString("~cmd_vel_topic", CMD_VEL_TOPIC_NAME), geometry_msgs.Twist._TYPE);
+        subCmdvel.addMessageListener(new MessageListener<geometry_msgs.Twist>() {
+            @Override
+            public void onNewMessage(geometry_msgs.Twist message) {
+                geometry_msgs.Vector3 linear = message.getLinear();
+                geometry_msgs.Vector3 angular = message.getAngular();
+                endpoint.sendTwist(linear.getX(), linear.getY(), linear.getZ(), angular.getX(), angular.getY(), angular.getZ());
+            }
+        });
+    }
+
+    @Override
+    public void onShutdown(Node node) {
+        if (null != endpoint) {
+            endpoint.stop();
+            endpoint = null;
+        }
+    }
+
+    //***************************
+    // Private Methods
+    //***************************
+
+    /**
+     * Publishes a telemetry packet like the driver's own topics, stamped with the sender time
+     */
+    private void publishTelemetry(FastPathPacket packet) {
+        int secs = (int) (packet.senderMillis / 1000);
+        int nsecs = (int) ((packet.senderMillis % 1000) * 1000000);
+
+        std_msgs.UInt8 flightState = pubFlightState.newMessage();
+        flightState.setData((byte) packet.flags);
+        pubFlightState.publish(flightState);
+
+        if (!Double.isNaN(packet.latitude) && !Double.isNaN(packet.longitude)) {
+            sensor_msgs.NavSatFix fix = pubNavSatFix.newMessage();
+            fix.getHeader().setFrameId(GPS_FRAME_ID);
+            fix.getHeader().getStamp().secs = secs;
+            fix.getHeader().getStamp().nsecs = nsecs;
+            fix.setLatitude(packet.latitude);
+            fix.setLongitude(packet.longitude);
+            fix.setAltitude(packet.altitude);
+            fix.setPositionCovarianceType(sensor_msgs.NavSatFix.COVARIANCE_TYPE_UNKNOWN);
+            pubNavSatFix.publish(fix);
+        }
+
+        FrameMath.djiAttitudeToQuaternion(packet.roll, packet.pitch, packet.yaw, quaternion);
+        FrameMath.nedToEnu(packet.velocityX, packet.velocityY, packet.velocityZ, velocityEnu);
+        FrameMath.worldToBody(quaternion, velocityEnu[0], velocityEnu[1], velocityEnu[2], velocityBody);
+
+        nav_msgs.Odometry odometry = pubOdometry.newMessage();
+        odometry.getHeader().setFrameId(ODOM_FRAME_ID);
+        odometry.getHeader().getStamp().secs = secs;
+        odometry.getHeader().getStamp().nsecs = nsecs;
+        odometry.setChildFrameId(BASE_FRAME_ID);
+        geometry_msgs.Pose pose = odometry.getPose().getPose();
+        pose.getPosition().setZ(packet.altitude);
+        pose.getOrientation().setX(quaternion[0]);
+        pose.getOrientation().setY(quaternion[1]);
+        pose.getOrientation().setZ(quaternion[2]);
+        pose.getOrientation().setW(quaternion[3]);
+        geometry_msgs.Vector3 linear = odometry.getTwist().getTwist().getLinear();
+        linear.setX(velocityBody[0]);
+        linear.setY(velocityBody[1]);
+        linear.setZ(velocityBody[2]);
+        pubOdometry.publish(odometry);
+    }
+}